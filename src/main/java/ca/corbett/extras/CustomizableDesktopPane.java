@@ -194,7 +194,7 @@ public class CustomizableDesktopPane extends JDesktopPane {
     @Override
     public void paintComponent(Graphics g) {
         if (gradientConfig != null) {
-            GradientUtil.fill(gradientConfig, (Graphics2D)g, 0, 0, getWidth(), getHeight());
+            GradientUtil.fillCached(gradientConfig, (Graphics2D)g, 0, 0, getWidth(), getHeight());
         }
         else {
             g.setColor(bgColor);
@@ -103,7 +103,8 @@ public class HashUtil {
         }
         try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file))) {
             MessageDigest digest = getMessageDigest(hashType);
-            byte[] buffer = new byte[1024 * 1024 * 4]; // 4MB buffer
+            // Up to a 4MB buffer, but don't allocate all of that just to hash a small file:
+            byte[] buffer = new byte[(int)Math.max(8192, Math.min(file.length(), 1024 * 1024 * 4))];
             int len;
             while ((len = is.read(buffer)) != -1) {
                 digest.update(buffer, 0, len);
@@ -373,12 +373,14 @@ public class DirTreeDemoPanel extends PanelBuilder {
                                                       JOptionPane.QUESTION_MESSAGE);
             if (path != null && !path.isBlank()) {
                 File pathFile = new File(path);
-                if (!dirTree.selectAndScrollTo(pathFile)) {
-                    JOptionPane.showMessageDialog(DemoApp.getInstance(),
-                                                  "The path \"" + path + "\" could not be found in the DirTree.",
-                                                  "Path not found",
-                                                  JOptionPane.INFORMATION_MESSAGE);
-                }
+                dirTree.selectAndScrollToAsync(pathFile).thenAccept(found -> {
+                    if (!found) {
+                        JOptionPane.showMessageDialog(DemoApp.getInstance(),
+                                                      "The path \"" + path + "\" could not be found in the DirTree.",
+                                                      "Path not found",
+                                                      JOptionPane.INFORMATION_MESSAGE);
+                    }
+                });
             }
         }
     }
@@ -0,0 +1,187 @@
+package ca.corbett.extras.dirtree;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A short-lived cache of directory listings, shared by every DirTree in the application.
+ * Each listing records the name of every entry in a directory, along with whether it is a
+ * directory, a file, or hidden, so that building tree nodes from a cached listing doesn't
+ * touch the filesystem at all.
+ * <p>
+ * The same directories tend to be listed several times in quick succession: once to probe
+ * whether a node has children, again when it's expanded, and again when selectAndScrollTo()
+ * walks through it. Listings older than the time-to-live are discarded, as are the least
+ * recently used listings once the cache is full. DirTree invalidates a directory's listing
+ * when it sees that directory change, and invalidates all of its own directories on reload().
+ * </p>
+ * <p>
+ * Directories are listed outside the lock, so an invalidation can arrive while a listing is
+ * in progress. Every invalidation is stamped with a generation number, and a listing that
+ * started before the latest invalidation of its directory is returned but not cached.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class DirListingCache {
+
+    static final long DEFAULT_TIME_TO_LIVE_MS = 5000;
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final DirListingCache shared = new DirListingCache(DEFAULT_TIME_TO_LIVE_MS, DEFAULT_MAX_ENTRIES);
+
+    /**
+     * One entry in a directory listing.
+     */
+    record Entry(String name, boolean isDirectory, boolean isFile, boolean isHidden) {
+    }
+
+    private record Listing(List<Entry> entries, long createdNanos) {
+    }
+
+    private final int maxEntries;
+    private final Map<String, Listing> listings;
+    private final Map<String, Long> invalidations;
+    private long generation;
+    private long forgottenGeneration;
+    private volatile long timeToLiveNanos;
+
+    DirListingCache(long timeToLiveMs, int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLiveMs * 1_000_000L;
+        this.listings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > DirListingCache.this.maxEntries;
+            }
+        };
+
+        // Invalidation stamps are bounded too. Once one is dropped, we can no longer tell which
+        // directory it was for, so any listing that started before it is treated as stale:
+        this.invalidations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > DirListingCache.this.maxEntries) {
+                    forgottenGeneration = Math.max(forgottenGeneration, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    static DirListingCache getShared() {
+        return shared;
+    }
+
+    long getTimeToLiveMs() {
+        return timeToLiveNanos / 1_000_000L;
+    }
+
+    /**
+     * Sets how long listings are kept. Zero disables caching.
+     */
+    void setTimeToLiveMs(long timeToLiveMs) {
+        if (timeToLiveMs < 0) {
+            throw new IllegalArgumentException("Time to live cannot be negative.");
+        }
+        this.timeToLiveNanos = timeToLiveMs * 1_000_000L;
+        if (timeToLiveMs == 0) {
+            clear();
+        }
+    }
+
+    /**
+     * Returns the listing of the given directory, sorted case-insensitively by name, from the
+     * cache if there's a fresh one, or from the filesystem otherwise.
+     *
+     * @return The listing, or null if the directory can't be listed.
+     */
+    List<Entry> getListing(File dir) {
+        long startGeneration = getGeneration();
+        List<Entry> cached = getCachedListing(dir);
+        if (cached != null) {
+            return cached;
+        }
+
+        String[] names = dir.list();
+        if (names == null) {
+            return null;
+        }
+        Arrays.sort(names, Comparator.comparing(name -> name.toLowerCase(Locale.ROOT)));
+        List<Entry> entries = new ArrayList<>(names.length);
+        for (String name : names) {
+            File file = new File(dir, name);
+            boolean isDirectory = file.isDirectory();
+            entries.add(new Entry(name, isDirectory, !isDirectory && file.isFile(), file.isHidden()));
+        }
+        entries = Collections.unmodifiableList(entries);
+        store(dir, entries, startGeneration);
+        return entries;
+    }
+
+    /**
+     * Returns the current generation, to be passed to store() once a listing is complete.
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the given listing, unless the directory was invalidated after the given generation,
+     * in which case the listing may already be out of date.
+     */
+    synchronized void store(File dir, List<Entry> entries, long startGeneration) {
+        String key = getKey(dir);
+        if (timeToLiveNanos <= 0
+                || forgottenGeneration > startGeneration
+                || invalidations.getOrDefault(key, 0L) > startGeneration) {
+            return;
+        }
+        listings.put(key, new Listing(entries, System.nanoTime()));
+    }
+
+    /**
+     * Returns the cached listing of the given directory, or null if there isn't a fresh one.
+     */
+    synchronized List<Entry> getCachedListing(File dir) {
+        String key = getKey(dir);
+        Listing listing = listings.get(key);
+        if (listing == null) {
+            return null;
+        }
+        if (System.nanoTime() - listing.createdNanos() > timeToLiveNanos) {
+            listings.remove(key);
+            return null;
+        }
+        return listing.entries();
+    }
+
+    synchronized void invalidate(File dir) {
+        String key = getKey(dir);
+        listings.remove(key);
+        invalidations.put(key, ++generation);
+    }
+
+    synchronized void clear() {
+        listings.clear();
+        invalidations.clear();
+        forgottenGeneration = ++generation;
+    }
+
+    synchronized int size() {
+        return listings.size();
+    }
+
+    private static String getKey(File dir) {
+        return dir.getAbsolutePath();
+    }
+}
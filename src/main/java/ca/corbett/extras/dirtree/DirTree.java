@@ -1,11 +1,13 @@
 package ca.corbett.extras.dirtree;
 
+import ca.corbett.extras.io.WatchHub;
+
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.DefaultTreeSelectionModel;
@@ -23,10 +25,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -36,6 +37,12 @@ import java.util.logging.Logger;
  * The DirTree can be "locked" to a specific directory, in which case it will only display
  * subdirectories of that directory. When "unlocked", the DirTree will display all
  * filesystem roots (e.g. "/" on Linux-based systems, or all available drives on Windows).
+ * <p>
+ * Directories are loaded lazily, in the background, as they are expanded. By default, the tree
+ * shows a snapshot of the filesystem and only picks up external changes when reload() is invoked.
+ * With setWatchFilesystem(true), the expanded directories are watched instead, and directories
+ * that are created, deleted or renamed appear in (or disappear from) the tree as it happens.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since 2017-11-09
@@ -49,6 +56,8 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
 
     private final JScrollPane scrollPane;
     private final JTree tree = new JTree();
+    private final DirTreeLoader loader = new DirTreeLoader(tree);
+    private final DirTreeWatcher watcher = new DirTreeWatcher(tree);
     private final List<DirTreeListener> listeners = new CopyOnWriteArrayList<>();
 
     private DirTreeNode fakeRootNode; // The "fake" node at the top of the tree - only used if lockNode == null
@@ -60,6 +69,9 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
     private boolean showFiles;
     private FileFilter fileFilter;
     private boolean notificationsEnabled = true;
+    private boolean watchFilesystem;
+    private boolean removedFromHierarchy;
+    private long navigationGeneration;
 
     /**
      * Creates a DirTree in "unlocked" mode, showing all filesystem roots.
@@ -85,7 +97,7 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
 
         // Force single selection and enable lazy load of subdirectories:
         tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
-        tree.addTreeWillExpandListener(new DirTreeExpandListener());
+        tree.addTreeWillExpandListener(new DirTreeExpandListener(loader));
 
         // This will load and populate our root node(s):
         unlock(true);
@@ -98,6 +110,9 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
         scrollPane = new JScrollPane(tree);
         add(scrollPane, BorderLayout.CENTER);
 
+        // Find out which of the visible directories actually have children, as they scroll into view:
+        scrollPane.getViewport().addChangeListener(e -> loader.probeVisibleRows());
+
         // Add our right-click popup menu:
         setComponentPopupMenu(DirTreePopupMenu.createPopup(this));
 
@@ -110,8 +125,7 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
                     TreePath path = tree.getPathForLocation(e.getX(), e.getY());
-                    if (path != null) {
-                        DirTreeNode node = (DirTreeNode)path.getLastPathComponent();
+                    if (path != null && path.getLastPathComponent() instanceof DirTreeNode node) {
                         if (node.isFileNode()) {
                             fireFileDoubleClickedEvent(node.getDir());
                         }
@@ -480,12 +494,73 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
         return this;
     }
 
+    /**
+     * Indicates whether this DirTree watches the filesystem for changes. Default is false.
+     */
+    public boolean isWatchFilesystem() {
+        return watchFilesystem;
+    }
+
+    /**
+     * Controls whether this DirTree watches the filesystem for changes. Default is false.
+     * When enabled, every expanded directory is watched, and entries that are created or deleted
+     * by other applications are added to or removed from the tree individually, without a reload.
+     * Collapsing a directory stops watching it (and everything underneath it).
+     * <p>
+     * Watching is suspended while this DirTree is removed from its container hierarchy,
+     * so a discarded DirTree doesn't keep its watches alive.
+     * </p>
+     *
+     * @param watchFilesystem Whether to keep this tree in sync with the filesystem.
+     */
+    public DirTree setWatchFilesystem(boolean watchFilesystem) {
+        this.watchFilesystem = watchFilesystem;
+        updateWatcher();
+        return this;
+    }
+
+    /**
+     * Sets the WatchHub used when watching the filesystem. By default, WatchHub.getShared() is used.
+     *
+     * @param watchHub The WatchHub to use, or null to use the shared one.
+     */
+    public DirTree setWatchHub(WatchHub watchHub) {
+        watcher.setWatchHub(watchHub);
+        return this;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        removedFromHierarchy = false;
+        updateWatcher();
+    }
+
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        removedFromHierarchy = true;
+        updateWatcher();
+    }
+
+    private void updateWatcher() {
+        watcher.setEnabled(watchFilesystem && !removedFromHierarchy);
+    }
+
+    /**
+     * Returns the watcher that keeps this tree in sync with the filesystem. For internal package use only.
+     */
+    DirTreeWatcher getWatcher() {
+        return watcher;
+    }
+
     /**
      * Reloads this DirTree. When the reload is complete, the currently selected
      * directory (if any) will be re-selected.
      */
     public void reload() {
         File currentDir = getCurrentDir();
+        invalidateCachedListings(); // a reload should always show fresh contents
 
         notificationsEnabled = false; // be silent about it
         try {
@@ -557,42 +632,17 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
             return;
         }
 
-        // Load up the new root node:
+        // Load up the new root node. Its children are not probed here; that happens in the
+        // background for whichever of them are visible.
         lockNode = new DirTreeNode(newRootDir, showHidden, showFiles, fileFilter);
-        File[] files = newRootDir.listFiles();
-        if (files != null) {
-            Arrays.sort(files, Comparator.comparing(o -> o.getName().toLowerCase()));
-
-            // First pass: add directories
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    if (file.isHidden() && !showHidden) {
-                        continue;
-                    }
-                    lockNode.add(new DirTreeNode(file, showHidden, showFiles, fileFilter));
-                }
-            }
-
-            // Second pass: add files (if showFiles is enabled)
-            if (showFiles) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        if (file.isHidden() && !showHidden) {
-                            continue;
-                        }
-                        if (fileFilter != null && !fileFilter.accept(file)) {
-                            continue;
-                        }
-                        lockNode.add(new DirTreeNode(file, showHidden, showFiles, fileFilter));
-                    }
-                }
-            }
-        }
+        lockNode.loadChildren();
 
         // Create a new tree model based on our new root node:
         DefaultTreeModel treeModel = new DefaultTreeModel(lockNode);
         treeModel.setAsksAllowsChildren(true);
         tree.setModel(treeModel);
+        watcher.modelChanged(true);
+        loader.probeVisibleRowsLater();
 
         // We are officially locked. Let listeners know:
         fireLockEvent();
@@ -647,15 +697,19 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
         // In unlocked mode with multiple filesystem roots, we use a "fake" root node to contain those roots:
         lockNode = null;
         fakeRootNode = new DirTreeNode(new File(FAKE_ROOT_NAME), showHidden, showFiles, fileFilter);
-        fakeRootNode.setAllowsChildren(true); // Override DirTreeNode logic for this fake root
+        List<DirTreeNode> rootNodes = new ArrayList<>();
         for (File root : roots) {
-            fakeRootNode.add(new DirTreeNode(root, showHidden, showFiles, fileFilter));
+            rootNodes.add(new DirTreeNode(root, showHidden, showFiles, fileFilter));
         }
+        fakeRootNode.applyChildren(rootNodes); // so it's never "loaded" from the filesystem
+        fakeRootNode.setAllowsChildren(true); // Override DirTreeNode logic for this fake root
 
         // Use our new root node to reset the tree model:
         DefaultTreeModel treeModel = new DefaultTreeModel(fakeRootNode);
         treeModel.setAsksAllowsChildren(true);
         tree.setModel(treeModel);
+        watcher.modelChanged(false);
+        loader.probeVisibleRowsLater();
 
         // Select the old root (if there was one):
         if (oldNode != null) {
@@ -668,18 +722,128 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
 
     /**
      * Selects and scrolls to the given directory. Does nothing if the directory doesn't exist.
+     * Every directory on the way to the target that hasn't been loaded yet is loaded right here,
+     * on the calling thread. For deeply nested targets, or slow filesystems, consider
+     * selectAndScrollToAsync() instead.
      *
      * @param dir The directory to select.
+     * @return true if the directory was found and selected.
      */
     public boolean selectAndScrollTo(File dir) {
+        DirTreeNode rootNode = (lockNode != null) ? lockNode : fakeRootNode;
+        NavigationPlan plan = planNavigation(dir, lockNode, getChildNodes(rootNode));
+        return plan != null && applyNavigation(plan, null);
+    }
+
+    /**
+     * Selects and scrolls to the given directory without blocking the EDT. The path is resolved,
+     * and every directory on the way to it is listed, on a background thread. The tree is then
+     * updated in one go on the EDT: the missing children are filled in, the path is expanded,
+     * and the target is selected and scrolled into view.
+     * <p>
+     * If the tree is reloaded, or another navigation is requested, before the background work
+     * finishes, this navigation is abandoned and the returned future completes with false.
+     * </p>
+     * <p>
+     * Must be invoked on the EDT. The returned future is also completed on the EDT.
+     * </p>
+     *
+     * @param dir The directory to select.
+     * @return A future that completes with true if the directory was found and selected.
+     */
+    public CompletableFuture<Boolean> selectAndScrollToAsync(File dir) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long generation = ++navigationGeneration;
+        DirTreeNode rootNode = (lockNode != null) ? lockNode : fakeRootNode;
+        DirTreeNode lockedTo = lockNode;
+        List<DirTreeNode> rootChildren = getChildNodes(rootNode);
+
+        DirTreeLoader.runInBackground(() -> {
+            NavigationPlan plan = null;
+            List<List<DirTreeNode>> listings = null;
+            try {
+                plan = planNavigation(dir, lockedTo, rootChildren);
+                if (plan != null) {
+                    listings = listAlongPath(plan);
+                }
+            }
+            catch (RuntimeException e) {
+                log.log(Level.WARNING, "DirTree.selectAndScrollToAsync(): unable to resolve path.", e);
+            }
+            NavigationPlan finalPlan = plan;
+            List<List<DirTreeNode>> finalListings = listings;
+            SwingUtilities.invokeLater(() -> {
+                DirTreeNode currentRoot = (lockNode != null) ? lockNode : fakeRootNode;
+                if (finalPlan == null || generation != navigationGeneration || currentRoot != rootNode) {
+                    result.complete(false);
+                    return;
+                }
+                result.complete(applyNavigation(finalPlan, finalListings));
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Discards the cached listings of every directory in this tree. The cache is shared,
+     * so listings of directories that only other DirTrees are showing are left alone.
+     */
+    private void invalidateCachedListings() {
+        if (!(tree.getModel().getRoot() instanceof DirTreeNode root)) {
+            return;
+        }
+        Enumeration<TreeNode> nodes = root.depthFirstEnumeration();
+        while (nodes.hasMoreElements()) {
+            if (nodes.nextElement() instanceof DirTreeNode node && !node.isFileNode()) {
+                DirListingCache.getShared().invalidate(node.getDir());
+            }
+        }
+    }
+
+    /**
+     * Returns the time-to-live, in milliseconds, of the directory listing cache shared by all DirTrees.
+     */
+    public static long getListingCacheTimeToLive() {
+        return DirListingCache.getShared().getTimeToLiveMs();
+    }
+
+    /**
+     * Sets how long directory listings are cached, in milliseconds. The cache is shared by all DirTrees,
+     * and saves listing the same directory over and over when it is probed, expanded, and navigated through
+     * in quick succession. Changes that a DirTree sees (via reload() or setWatchFilesystem(true)) discard
+     * the affected listings regardless. The default is 5 seconds. Zero disables the cache.
+     *
+     * @param millis How long to keep directory listings.
+     */
+    public static void setListingCacheTimeToLive(long millis) {
+        DirListingCache.getShared().setTimeToLiveMs(millis);
+    }
+
+    /**
+     * The result of resolving a navigation target: the top-level node it lives under, and the names
+     * of the directories to walk through from there. The last name is the target itself.
+     */
+    private record NavigationPlan(DirTreeNode startingNode, List<String> names) {
+    }
+
+    /**
+     * Works out where the given directory lives in the tree. This only looks at the filesystem and
+     * at the given nodes (not the tree itself), so it is safe to invoke from any thread.
+     *
+     * @param dir           The directory to navigate to.
+     * @param lockedTo      The lock node, or null if unlocked.
+     * @param rootChildren  The filesystem root nodes, if unlocked.
+     * @return The navigation plan, or null if the directory can't be shown in the tree.
+     */
+    private static NavigationPlan planNavigation(File dir, DirTreeNode lockedTo, List<DirTreeNode> rootChildren) {
         if (dir == null) {
             log.warning("DirTree.selectAndScrollTo(): given dir is null. Ignoring request.");
-            return false;
+            return null;
         }
         if (!dir.exists() || !dir.isDirectory()) {
             log.warning("DirTree.selectAndScrollTo(): given dir \"" + dir.getAbsolutePath() + "\""
                                 + " doesn't exist, or is not a directory. Ignoring request.");
-            return false;
+            return null;
         }
 
         try {
@@ -687,22 +851,21 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
             Path targetPath = Paths.get(dir.getAbsolutePath()).toRealPath();
 
             // If we're locked, make sure the given dir is within the locked tree:
-            if (lockNode != null) { // We don't call isLocked() here because of our special "/" case
-                Path lockPath = Paths.get(lockNode.getDir().getAbsolutePath()).toRealPath();
+            if (lockedTo != null) { // We don't call isLocked() here because of our special "/" case
+                Path lockPath = Paths.get(lockedTo.getDir().getAbsolutePath()).toRealPath();
                 if (!targetPath.startsWith(lockPath)) {
                     log.warning("DirTree.selectAndScrollTo(): given dir is outside locked tree."
                                         + " Ignoring request.");
-                    return false;
+                    return null;
                 }
 
                 // Our "starting node" for the search will be the lock node:
-                startingNode = lockNode;
+                startingNode = lockedTo;
             }
 
             // If we're not locked, we need to find the starting node among the filesystem roots:
             else {
-                for (int i = 0; i < fakeRootNode.getChildCount(); i++) {
-                    DirTreeNode candidate = (DirTreeNode)fakeRootNode.getChildAt(i);
+                for (DirTreeNode candidate : rootChildren) {
                     if (targetPath.startsWith(Paths.get(candidate.getDir().getAbsolutePath()).toRealPath())) {
                         startingNode = candidate;
                         break;
@@ -713,7 +876,7 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
                 if (startingNode == null) {
                     log.warning("DirTree.selectAndScrollTo(): given dir is outside filesystem roots."
                                         + " Ignoring request.");
-                    return false;
+                    return null;
                 }
             }
 
@@ -724,74 +887,117 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
             if (!targetPath.startsWith(treeRootPath)) {
                 log.warning("DirTree.selectAndScrollTo(): given dir is outside starting node tree."
                                     + " Ignoring request.");
-                return false;
+                return null;
             }
 
-            // Get the relative path from tree root to target
+            // Get the names of each directory from the tree root down to the target:
             Path relativePath = treeRootPath.relativize(targetPath);
-
-            // Start from tree root and expand down
-            Path currentPath = treeRootPath;
-            expandNodeAtPath(currentPath); // Expand the root itself
-
-            // Walk through each component of the relative path
+            List<String> names = new ArrayList<>();
             for (int i = 0; i < relativePath.getNameCount(); i++) {
-                currentPath = currentPath.resolve(relativePath.getName(i));
-                expandNodeAtPath(currentPath);
+                String name = relativePath.getName(i).toString();
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
             }
-
-            // Now we should be able to find the old root node, unless something went wrong:
-            TreePath pathToOldRoot = findPathToNode(new DirTreeNode(dir, showHidden, showFiles, fileFilter));
-            tree.getSelectionModel().setSelectionPath(pathToOldRoot);
-            tree.scrollPathToVisible(pathToOldRoot);
-            return true;
+            return new NavigationPlan(startingNode, names);
         }
         catch (IOException ioe) {
             log.log(Level.SEVERE, "DirTree.selectAndScrollTo(): IOException while resolving paths.", ioe);
-            return false;
+            return null;
         }
     }
 
     /**
-     * Given a path, expands the corresponding node in the tree.
+     * Lists every directory along the given navigation path, from the starting node down to and
+     * including the target. Invoked off the EDT; the listings go through the shared DirListingCache.
+     * A directory that can't be listed gets a null entry.
      */
-    private void expandNodeAtPath(Path path) {
-        DirTreeNode tmpNode = new DirTreeNode(path.toFile(), showHidden, showFiles, fileFilter);
-        TreePath treePath = findPathToNode(tmpNode);
-        if (treePath != null) {
-            ((DirTreeNode)treePath.getLastPathComponent()).loadChildren();
-            tree.expandPath(treePath);
+    private static List<List<DirTreeNode>> listAlongPath(NavigationPlan plan) {
+        List<List<DirTreeNode>> listings = new ArrayList<>();
+        DirTreeNode startingNode = plan.startingNode();
+        File current = startingNode.getDir();
+        listings.add(startingNode.isChildrenLoaded() ? null : startingNode.listChildren());
+        for (String name : plan.names()) {
+            current = new File(current, name);
+            listings.add(startingNode.createDirectoryNode(current).listChildren());
         }
+        return listings;
     }
 
     /**
-     * Finds and returns a specific tree path by looking for the given node.
-     * Implementation note: you may be wondering why not just invoke dirNode.getPath(). Well,
-     * when locking and unlocking the tree, we play havoc with the "actual" path to any given
-     * node (by converting a child node into a "root" (or chroot) node). So, this method
-     * ignores getPath() and instead searches the entire tree looking for a node whose
-     * directory matches the given node's directory. Inefficient but accurate.
+     * Walks the given navigation path through the tree, loading whatever hasn't been loaded
+     * (from the given listings, if there are any), expands every directory along the way,
+     * and selects and scrolls to the target. Must be invoked on the EDT.
      *
-     * @param dirNode The DirTreeNode whose path we want to look up.
-     * @return The TreePath for this node.
+     * @param plan     The resolved navigation path.
+     * @param listings Listings from listAlongPath(), or null to load synchronously as needed.
+     * @return true if the target was found and selected.
      */
-    private TreePath findPathToNode(DirTreeNode dirNode) {
-        // Our "root" node depends on whether we're locked or not:
-        DirTreeNode rootNode = (lockNode != null) ? lockNode : fakeRootNode;
-
-        // The rest of this logic is a brute-force search through the tree:
-        File targetDir = dirNode.getDir();
-        Enumeration<TreeNode> e = rootNode.depthFirstEnumeration();
-        while (e.hasMoreElements()) {
-            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
-            if (((DirTreeNode)node).getDir().equals(targetDir)) {
-                return new TreePath(node.getPath());
+    private boolean applyNavigation(NavigationPlan plan, List<List<DirTreeNode>> listings) {
+        List<DirTreeNode> chain = new ArrayList<>();
+        DirTreeNode node = plan.startingNode();
+        chain.add(node);
+        for (int i = 0; i <= plan.names().size(); i++) {
+            ensureChildrenLoaded(node, listings == null ? null : listings.get(i));
+            if (i == plan.names().size()) {
+                break;
+            }
+            node = findChildNode(node, plan.names().get(i));
+            if (node == null) {
+                log.warning("DirTree.selectAndScrollTo(): \"" + plan.names().get(i) + "\" is not shown in the tree."
+                                    + " Ignoring request.");
+                return false;
             }
+            chain.add(node);
         }
 
+        for (DirTreeNode expandNode : chain) {
+            tree.expandPath(new TreePath(expandNode.getPath()));
+        }
+        TreePath targetPath = new TreePath(node.getPath());
+        tree.getSelectionModel().setSelectionPath(targetPath);
+        tree.scrollPathToVisible(targetPath);
+        return true;
+    }
+
+    /**
+     * Makes sure the given node's children are loaded, using the given listing if there is one,
+     * and lets the tree model know if anything changed.
+     */
+    private void ensureChildrenLoaded(DirTreeNode node, List<DirTreeNode> listing) {
+        if (node.isChildrenLoaded()) {
+            return;
+        }
+        if (listing != null && node.applyChildren(listing)) {
+            ((DefaultTreeModel)tree.getModel()).nodeStructureChanged(node);
+            return;
+        }
+        loader.loadChildrenNow(node);
+    }
+
+    private static DirTreeNode findChildNode(DirTreeNode parent, String name) {
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            if (parent.getChildAt(i) instanceof DirTreeNode child
+                    && !child.isFileNode()
+                    && child.getDir().getName().equals(name)) {
+                return child;
+            }
+        }
         return null;
     }
 
+    private static List<DirTreeNode> getChildNodes(DirTreeNode node) {
+        List<DirTreeNode> children = new ArrayList<>();
+        if (node != null) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                if (node.getChildAt(i) instanceof DirTreeNode child) {
+                    children.add(child);
+                }
+            }
+        }
+        return children;
+    }
+
     /**
      * Overridden from TreeSelectionListener, so we can listen for selection events within
      * our JTree and notify our own listeners that the selection has changed.
@@ -806,10 +1012,9 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
             return;
         }
 
-        DirTreeNode selectedNode = (DirTreeNode)e.getNewLeadSelectionPath().getLastPathComponent();
-
-        // File nodes don't update currentNode or fire selectionChanged:
-        if (selectedNode.isFileNode()) {
+        // File nodes (and "loading" placeholders) don't update currentNode or fire selectionChanged:
+        if (!(e.getNewLeadSelectionPath().getLastPathComponent() instanceof DirTreeNode selectedNode)
+                || selectedNode.isFileNode()) {
             return;
         }
 
@@ -935,11 +1140,8 @@ public final class DirTree extends JPanel implements TreeSelectionListener {
                 return true;
             }
 
-            // Get a DirTreeNode for the new selection:
-            DirTreeNode newNode = (DirTreeNode)newPath.getLastPathComponent();
-
-            // File nodes are always allowed without veto:
-            if (newNode.isFileNode()) {
+            // File nodes (and "loading" placeholders) are always allowed without veto:
+            if (!(newPath.getLastPathComponent() instanceof DirTreeNode newNode) || newNode.isFileNode()) {
                 return true;
             }
 
@@ -5,16 +5,25 @@ import javax.swing.event.TreeWillExpandListener;
 
 /**
  * A custom listener for the DirTree component that handles lazy loading of child nodes
- * when a node is expanded.
+ * when a node is expanded. The children are loaded in the background by the given
+ * DirTreeLoader, so expanding a huge or slow directory doesn't freeze the UI.
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since 2017-11-09
  */
 class DirTreeExpandListener implements TreeWillExpandListener {
 
+    private final DirTreeLoader loader;
+
+    DirTreeExpandListener(DirTreeLoader loader) {
+        this.loader = loader;
+    }
+
     @Override
     public void treeWillExpand(TreeExpansionEvent event) {
-        ((DirTreeNode)event.getPath().getLastPathComponent()).loadChildren();
+        if (event.getPath().getLastPathComponent() instanceof DirTreeNode node) {
+            loader.loadChildrenInBackground(node);
+        }
     }
 
     @Override
@@ -0,0 +1,221 @@
+package ca.corbett.extras.dirtree;
+
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Does the filesystem work for a DirTree off the EDT. There are two kinds of job:
+ * <ul>
+ *     <li><b>Loading</b> - when a node is expanded for the first time, a "loading" placeholder
+ *     is shown underneath it while its directory is listed in the background. The real children
+ *     then replace the placeholder in a single model update.</li>
+ *     <li><b>Probing</b> - new directory nodes are assumed to be expandable. Only the nodes in
+ *     rows that are actually visible are probed to find out whether they have any children,
+ *     and those that don't lose their expand handle.</li>
+ * </ul>
+ * <p>
+ * All methods in this class must be invoked on the EDT. The worker threads never touch
+ * a node that is attached to the tree; results are handed back to the EDT to be applied.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+class DirTreeLoader implements TreeExpansionListener {
+
+    private static final Logger log = Logger.getLogger(DirTreeLoader.class.getName());
+
+    private static final int WORKER_COUNT = 4;
+
+    // Shared by all DirTree instances. The threads are daemons and time out when idle,
+    // so there's nothing to shut down.
+    private static final ExecutorService executor = createExecutor();
+
+    private final JTree tree;
+    private final Set<DirTreeNode> loadingNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<DirTreeNode> probingNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    DirTreeLoader(JTree tree) {
+        this.tree = tree;
+        tree.addTreeExpansionListener(this);
+    }
+
+    /**
+     * Starts loading the children of the given node in the background, if that hasn't
+     * been done already and isn't already under way.
+     */
+    void loadChildrenInBackground(DirTreeNode node) {
+        if (node.isFileNode() || node.isChildrenLoaded() || !loadingNodes.add(node)) {
+            return;
+        }
+        DefaultTreeModel model = getModelContaining(node);
+        if (model != null && node.getChildCount() == 0) {
+            model.insertNodeInto(new DirTreeLoadingNode(), node, 0);
+        }
+        executor.execute(() -> {
+            List<DirTreeNode> children = null;
+            try {
+                children = node.listChildren();
+            }
+            catch (RuntimeException e) {
+                log.log(Level.WARNING, "DirTree: unable to list " + node.getDir().getAbsolutePath(), e);
+            }
+            List<DirTreeNode> result = children == null ? List.of() : children;
+            SwingUtilities.invokeLater(() -> finishLoading(node, result));
+        });
+    }
+
+    /**
+     * Synchronously loads the children of the given node, if needed, and lets the model know.
+     * This is for callers that need the children right now, such as selectAndScrollTo().
+     */
+    void loadChildrenNow(DirTreeNode node) {
+        if (node.isChildrenLoaded()) {
+            return;
+        }
+        node.loadChildren();
+        DefaultTreeModel model = getModelContaining(node);
+        if (node.isChildrenLoaded() && model != null) {
+            model.nodeStructureChanged(node);
+        }
+    }
+
+    /**
+     * Runs the given task on the worker pool shared by all DirTree instances.
+     */
+    static void runInBackground(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Reports whether any background loads are in progress. For testing purposes.
+     */
+    boolean isLoading() {
+        return !loadingNodes.isEmpty() || !probingNodes.isEmpty();
+    }
+
+    /**
+     * Queues a probe for every directory node in the currently visible rows that hasn't been probed.
+     */
+    void probeVisibleRows() {
+        Rectangle visible = tree.getVisibleRect();
+        if (visible.isEmpty() || tree.getRowCount() == 0) {
+            return;
+        }
+        int firstRow = tree.getClosestRowForLocation(visible.x, visible.y);
+        int lastRow = tree.getClosestRowForLocation(visible.x, visible.y + visible.height);
+        if (firstRow < 0) {
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            TreePath path = tree.getPathForRow(row);
+            if (path != null && path.getLastPathComponent() instanceof DirTreeNode node) {
+                probeInBackground(node);
+            }
+        }
+    }
+
+    /**
+     * Probes visible rows after any pending layout has been done.
+     */
+    void probeVisibleRowsLater() {
+        SwingUtilities.invokeLater(this::probeVisibleRows);
+    }
+
+    @Override
+    public void treeExpanded(TreeExpansionEvent event) {
+        probeVisibleRowsLater();
+    }
+
+    @Override
+    public void treeCollapsed(TreeExpansionEvent event) {
+        probeVisibleRowsLater();
+    }
+
+    private void probeInBackground(DirTreeNode node) {
+        if (node.isProbed() || node.isChildrenLoaded() || loadingNodes.contains(node) || !probingNodes.add(node)) {
+            return;
+        }
+        // The node is attached to the tree, so the worker only gets its directory and settings:
+        BooleanSupplier probe = node.createProbe();
+        String path = node.getDir().getAbsolutePath();
+        executor.execute(() -> {
+            boolean hasChildren = true;
+            try {
+                hasChildren = probe.getAsBoolean();
+            }
+            catch (RuntimeException e) {
+                log.log(Level.FINE, "DirTree: unable to probe " + path, e);
+            }
+            boolean result = hasChildren;
+            SwingUtilities.invokeLater(() -> finishProbe(node, result));
+        });
+    }
+
+    private void finishLoading(DirTreeNode node, List<DirTreeNode> children) {
+        loadingNodes.remove(node);
+        if (!node.applyChildren(children)) {
+            return; // loaded synchronously in the meantime
+        }
+        DefaultTreeModel model = getModelContaining(node);
+        if (model != null) {
+            model.nodeStructureChanged(node);
+            probeVisibleRows();
+        }
+    }
+
+    private void finishProbe(DirTreeNode node, boolean hasChildren) {
+        probingNodes.remove(node);
+        node.setProbeResult(hasChildren);
+        if (hasChildren || node.isChildrenLoaded() || loadingNodes.contains(node) || !node.getAllowsChildren()) {
+            return;
+        }
+        node.setAllowsChildren(false);
+        DefaultTreeModel model = getModelContaining(node);
+        if (model != null) {
+            model.nodeChanged(node);
+        }
+    }
+
+    /**
+     * Returns the tree's model if the given node is still part of it, or null if the tree
+     * has been reloaded since the node was created.
+     */
+    private DefaultTreeModel getModelContaining(DirTreeNode node) {
+        TreeModel model = tree.getModel();
+        if (model instanceof DefaultTreeModel defaultModel && node.getRoot() == model.getRoot()) {
+            return defaultModel;
+        }
+        return null;
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 30, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "DirTree-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,19 @@
+package ca.corbett.extras.dirtree;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * A placeholder node that is shown underneath a DirTreeNode while its children are being
+ * loaded in the background. It is replaced by the real children as soon as they arrive.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class DirTreeLoadingNode extends DefaultMutableTreeNode {
+
+    static final String LABEL = "Loading...";
+
+    DirTreeLoadingNode() {
+        super(LABEL, false);
+    }
+}
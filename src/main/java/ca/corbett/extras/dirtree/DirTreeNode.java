@@ -3,20 +3,38 @@ package ca.corbett.extras.dirtree;
 import javax.swing.tree.DefaultMutableTreeNode;
 import java.io.File;
 import java.io.FileFilter;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents a single node (directory or file) within our DirTree.
+ * <p>
+ * Nodes are cheap to create: the filesystem is not touched until the node's children
+ * are actually needed. Whether a directory has any children at all is probed lazily
+ * (see hasChildren()), and until that happens, a directory node is assumed to be expandable.
+ * DirTree probes the nodes in the visible rows, and loads children when a node is expanded,
+ * on a background thread in both cases.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since 2017-11-09
  */
 public final class DirTreeNode extends DefaultMutableTreeNode {
+    private static final Logger log = Logger.getLogger(DirTreeNode.class.getName());
+
     private final File dir;
+    private final boolean isFile;
     private volatile boolean childrenLoaded;
-    private final boolean hasChildren;
+    private volatile Boolean hasChildren; // null until probed
     private final boolean showHidden;
     private final boolean showFiles;
     private final FileFilter fileFilter;
@@ -42,24 +60,34 @@ public final class DirTreeNode extends DefaultMutableTreeNode {
      * @param fileFilter An optional FileFilter to restrict which files are shown (null means all files).
      */
     public DirTreeNode(File dir, boolean showHidden, boolean showFiles, FileFilter fileFilter) {
+        this(dir, dir.isFile(), showHidden, showFiles, fileFilter);
+    }
+
+    /**
+     * Invoked internally when the caller already knows whether the given File is a file,
+     * to save a stat call per node when listing large directories.
+     */
+    DirTreeNode(File dir, boolean isFile, boolean showHidden, boolean showFiles, FileFilter fileFilter) {
         super(dir.getName());
         this.dir = dir;
+        this.isFile = isFile;
         this.showHidden = showHidden;
         this.showFiles = showFiles;
         this.fileFilter = fileFilter;
-        if (dir.isFile()) {
+        if (isFile) {
             this.hasChildren = false;
         }
-        else {
-            this.hasChildren = hasChildren();
-        }
-        setAllowsChildren(hasChildren);
+        setAllowsChildren(!isFile); // optimistic until probed
         childrenLoaded = false;
     }
 
+    /**
+     * A directory node that hasn't been probed yet is assumed not to be a leaf.
+     */
     @Override
     public boolean isLeaf() {
-        return !hasChildren;
+        Boolean probed = hasChildren;
+        return probed != null && !probed;
     }
 
     public File getDir() {
@@ -72,7 +100,7 @@ public final class DirTreeNode extends DefaultMutableTreeNode {
      * @return true if this node represents a file.
      */
     public boolean isFileNode() {
-        return dir.isFile();
+        return isFile;
     }
 
     /**
@@ -92,8 +120,28 @@ public final class DirTreeNode extends DefaultMutableTreeNode {
         return showHidden;
     }
 
+    /**
+     * Indicates whether this node's children have been loaded.
+     */
+    public boolean isChildrenLoaded() {
+        return childrenLoaded;
+    }
+
+    /**
+     * Indicates whether this node has been probed for children yet. If not, hasChildren()
+     * will hit the filesystem.
+     */
+    boolean isProbed() {
+        return hasChildren != null;
+    }
+
+    /**
+     * Synchronously loads the children of this node, if they haven't been loaded already.
+     * This does not notify any tree model; DirTree uses listChildren() and applyChildren()
+     * to do the same thing off the EDT.
+     */
     public void loadChildren() {
-        if (dir.isFile()) {
+        if (isFile) {
             return;
         }
         if (!childrenLoaded && dir.canRead()) {
@@ -102,76 +150,210 @@ public final class DirTreeNode extends DefaultMutableTreeNode {
                 if (childrenLoaded) {
                     return;
                 }
-                int childCount = 0;
-                String[] fileNames = dir.list();
-                if (fileNames != null) {
-                    Arrays.sort(fileNames, Comparator.comparing(String::toLowerCase));
-
-                    // First pass: add directories
-                    for (String fileName : fileNames) {
-                        File file = new File(dir, fileName);
-                        if (file.isDirectory()) {
-                            if (file.isHidden() && !showHidden) {
-                                continue;
-                            }
-                            add(new DirTreeNode(file, showHidden, showFiles, fileFilter));
-                            childCount++;
-                        }
-                    }
-
-                    // Second pass: add files (if showFiles is enabled)
-                    if (showFiles) {
-                        for (String fileName : fileNames) {
-                            File file = new File(dir, fileName);
-                            if (file.isFile()) {
-                                if (file.isHidden() && !showHidden) {
-                                    continue;
-                                }
-                                if (fileFilter != null && !fileFilter.accept(file)) {
-                                    continue;
-                                }
-                                add(new DirTreeNode(file, showHidden, showFiles, fileFilter));
-                                childCount++;
-                            }
-                        }
-                    }
-
-                    childrenLoaded = true;
-                    setAllowsChildren(childCount > 0);
+                List<DirTreeNode> children = listChildren();
+                if (children != null) {
+                    applyChildren(children);
                 }
             }
         }
     }
 
+    /**
+     * Lists the child nodes of this node: directories first, then files (if showFiles is enabled),
+     * each group sorted case-insensitively by name. The returned nodes are not added to this node,
+     * and nothing about them is probed, so this is safe to invoke from any thread.
+     * The directory listing comes from the shared DirListingCache if a fresh one is available.
+     *
+     * @return The child nodes, or null if this directory can't be listed.
+     */
+    List<DirTreeNode> listChildren() {
+        if (isFile) {
+            return new ArrayList<>();
+        }
+        List<DirListingCache.Entry> entries = DirListingCache.getShared().getListing(dir);
+        if (entries == null) {
+            return null;
+        }
+
+        // Collect directories and files separately:
+        List<DirTreeNode> dirs = new ArrayList<>();
+        List<DirTreeNode> files = new ArrayList<>();
+        for (DirListingCache.Entry entry : entries) {
+            DirTreeNode child = createChildNode(entry);
+            if (child != null) {
+                (child.isFileNode() ? files : dirs).add(child);
+            }
+        }
+        dirs.addAll(files);
+        return dirs;
+    }
+
+    /**
+     * Creates a node for the given file or directory within this directory, with the same display
+     * settings as this node, or returns null if it shouldn't be shown. Safe to invoke from any thread.
+     */
+    DirTreeNode createChildNode(File file) {
+        boolean isDirectory = file.isDirectory();
+        return createChildNode(new DirListingCache.Entry(file.getName(), isDirectory,
+                                                         !isDirectory && file.isFile(), file.isHidden()));
+    }
+
+    /**
+     * Creates a node for the given listing entry within this directory, or returns null if it
+     * shouldn't be shown. This doesn't touch the filesystem, unless there's a FileFilter to ask.
+     */
+    DirTreeNode createChildNode(DirListingCache.Entry entry) {
+        return isShown(entry)
+                ? new DirTreeNode(new File(dir, entry.name()), !entry.isDirectory(), showHidden, showFiles, fileFilter)
+                : null;
+    }
+
+    private boolean isShown(DirListingCache.Entry entry) {
+        return isShown(entry, dir, showHidden, showFiles, fileFilter);
+    }
+
+    private static boolean isShown(DirListingCache.Entry entry, File dir, boolean showHidden, boolean showFiles,
+                                   FileFilter fileFilter) {
+        if (!entry.isDirectory() && !(showFiles && entry.isFile())) {
+            return false;
+        }
+        if (!showHidden && entry.isHidden()) {
+            return false;
+        }
+        return entry.isDirectory() || fileFilter == null || fileFilter.accept(new File(dir, entry.name()));
+    }
+
+    /**
+     * Creates an unattached node for the given directory, with the same display settings as this node.
+     * Safe to invoke from any thread.
+     */
+    DirTreeNode createDirectoryNode(File directory) {
+        return new DirTreeNode(directory, false, showHidden, showFiles, fileFilter);
+    }
+
+    /**
+     * Compares two sibling nodes in display order: directories before files, then by name,
+     * ignoring case. This is the order in which listChildren() returns them.
+     */
+    static int compareForDisplay(DirTreeNode a, DirTreeNode b) {
+        if (a.isFile != b.isFile) {
+            return a.isFile ? 1 : -1;
+        }
+        return a.dir.getName().toLowerCase(Locale.ROOT).compareTo(b.dir.getName().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Replaces whatever is currently under this node (for example, a "loading" placeholder)
+     * with the given children, and marks this node as loaded. Does nothing if the children were
+     * loaded in the meantime by some other route.
+     *
+     * @param children The child nodes, as returned by listChildren().
+     * @return true if the children were applied.
+     */
+    synchronized boolean applyChildren(List<DirTreeNode> children) {
+        if (childrenLoaded) {
+            return false;
+        }
+        removeAllChildren();
+        for (DirTreeNode child : children) {
+            add(child);
+        }
+        childrenLoaded = true;
+        hasChildren = !children.isEmpty();
+        setAllowsChildren(!children.isEmpty());
+        return true;
+    }
+
+    /**
+     * Invoked after children have been added or removed individually, to bring the
+     * has-children state back in line with the actual children.
+     */
+    void childrenChanged() {
+        boolean nonEmpty = getChildCount() > 0;
+        hasChildren = nonEmpty;
+        setAllowsChildren(nonEmpty);
+    }
+
+    /**
+     * Reports whether this directory has anything to show underneath it. The directory is
+     * scanned only as far as the first entry that would be shown, and the answer is remembered,
+     * so this is cheap after the first call.
+     */
     public boolean hasChildren() {
-        if (dir.isFile()) {
+        if (isFile) {
             return false;
         }
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    if (file.isHidden() && !showHidden) {
-                        continue;
-                    }
+        Boolean probed = hasChildren;
+        if (probed == null) {
+            probed = childrenLoaded ? getChildCount() > 0 : probeForChildren(dir, showHidden, showFiles, fileFilter);
+            hasChildren = probed;
+        }
+        return probed;
+    }
+
+    /**
+     * Returns a probe that does the same job as hasChildren(), but captures only this node's
+     * directory and display settings, not the node itself. That makes it safe to run on a worker
+     * thread while this node is attached to a tree; the answer is then handed back on the EDT
+     * with setProbeResult().
+     */
+    BooleanSupplier createProbe() {
+        if (isFile) {
+            return () -> false;
+        }
+        File probeDir = dir;
+        boolean probeHidden = showHidden;
+        boolean probeFiles = showFiles;
+        FileFilter probeFilter = fileFilter;
+        return () -> probeForChildren(probeDir, probeHidden, probeFiles, probeFilter);
+    }
+
+    /**
+     * Records the answer from a probe made with createProbe(), unless this node has been
+     * probed or loaded some other way in the meantime.
+     */
+    void setProbeResult(boolean result) {
+        if (hasChildren == null && !childrenLoaded) {
+            hasChildren = result;
+        }
+    }
+
+    /**
+     * Scans this directory until the first visible subdirectory (or visible matching file,
+     * if showFiles is enabled) is found. A cached listing is used if there is one, but a
+     * probe never lists the whole directory just to fill the cache.
+     */
+    private static boolean probeForChildren(File dir, boolean showHidden, boolean showFiles, FileFilter fileFilter) {
+        List<DirListingCache.Entry> cached = DirListingCache.getShared().getCachedListing(dir);
+        if (cached != null) {
+            for (DirListingCache.Entry entry : cached) {
+                if (isShown(entry, dir, showHidden, showFiles, fileFilter)) {
                     return true;
                 }
             }
-            // If showFiles is enabled, check for matching files too:
-            if (showFiles) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        if (file.isHidden() && !showHidden) {
-                            continue;
-                        }
-                        if (fileFilter != null && !fileFilter.accept(file)) {
-                            continue;
-                        }
-                        return true;
-                    }
+            return false;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+            for (Path entry : stream) {
+                File file = entry.toFile();
+                boolean isDirectory = file.isDirectory();
+                if (!isDirectory && !showFiles) {
+                    continue;
+                }
+                if (!showHidden && file.isHidden()) {
+                    continue;
+                }
+                if (isDirectory) {
+                    return true;
+                }
+                if (file.isFile() && (fileFilter == null || fileFilter.accept(file))) {
+                    return true;
                 }
             }
         }
+        catch (IOException | SecurityException e) {
+            log.log(Level.FINE, "DirTreeNode: unable to probe " + dir.getAbsolutePath(), e);
+        }
         return false;
     }
 
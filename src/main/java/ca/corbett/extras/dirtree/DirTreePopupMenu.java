@@ -65,7 +65,9 @@ public class DirTreePopupMenu extends JPopupMenu {
         TreePath selPath = tree.getPathForLocation(x, y);
         DirTreeNode node = null;
         if (selPath != null) {
-            node = (DirTreeNode)selPath.getLastPathComponent();
+            if (selPath.getLastPathComponent() instanceof DirTreeNode dirTreeNode) {
+                node = dirTreeNode;
+            }
             tree.setSelectionPath(selPath);
         }
         if (selRow > -1) {
@@ -0,0 +1,330 @@
+package ca.corbett.extras.dirtree;
+
+import ca.corbett.extras.io.WatchHub;
+
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a DirTree in step with the filesystem. Only directories whose children are on display
+ * are watched: a watch is added when a node is expanded, and dropped (along with the watches of
+ * everything underneath it) when it is collapsed. Changes are applied to the tree model one
+ * node at a time, so nothing is reloaded and nothing already loaded is lost.
+ * <p>
+ * Events that arrive for a directory whose children are still being loaded in the background
+ * are held back, and replayed once the load completes. If the WatchService reports an overflow,
+ * the affected directory is listed again and the differences are applied.
+ * </p>
+ * <p>
+ * Everything in this class happens on the EDT, except the WatchHub callback, which only
+ * stats the changed path before handing the event over.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+class DirTreeWatcher implements TreeExpansionListener, TreeModelListener {
+
+    private static final Logger log = Logger.getLogger(DirTreeWatcher.class.getName());
+
+    private final JTree tree;
+    private final Map<DirTreeNode, WatchHub.Subscription> subscriptions = new IdentityHashMap<>();
+    private final Map<DirTreeNode, List<Runnable>> pendingChanges = new IdentityHashMap<>();
+    private WatchHub watchHub;
+    private TreeModel model;
+    private boolean enabled;
+    private boolean watchRoot;
+
+    DirTreeWatcher(JTree tree) {
+        this.tree = tree;
+        tree.addTreeExpansionListener(this);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops watching. When started, every directory currently on display is watched.
+     */
+    void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        if (enabled) {
+            watchExpandedNodes();
+        }
+        else {
+            unwatchAll();
+        }
+    }
+
+    WatchHub getWatchHub() {
+        return watchHub == null ? WatchHub.getShared() : watchHub;
+    }
+
+    /**
+     * Sets the WatchHub to use, or null to use the shared one. Existing watches are moved over.
+     */
+    void setWatchHub(WatchHub watchHub) {
+        unwatchAll();
+        this.watchHub = watchHub;
+        if (enabled) {
+            watchExpandedNodes();
+        }
+    }
+
+    /**
+     * Must be invoked whenever the tree is given a new model. All existing watches belong to
+     * the old model, so they are dropped.
+     *
+     * @param watchRoot Whether the root node represents a real directory (false for the fake
+     *                  root that holds the filesystem roots in unlocked mode).
+     */
+    void modelChanged(boolean watchRoot) {
+        unwatchAll();
+        if (model != null) {
+            model.removeTreeModelListener(this);
+        }
+        model = tree.getModel();
+        if (model != null) {
+            model.addTreeModelListener(this);
+        }
+        this.watchRoot = watchRoot;
+        if (enabled) {
+            watchExpandedNodes();
+        }
+    }
+
+    /**
+     * Returns the number of directories currently being watched. For testing purposes.
+     */
+    int getWatchedDirectoryCount() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void treeExpanded(TreeExpansionEvent event) {
+        if (!enabled) {
+            return;
+        }
+        // Re-expanding a node also brings back any of its descendants that were expanded before:
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(event.getPath());
+        watchPath(event.getPath());
+        while (expanded != null && expanded.hasMoreElements()) {
+            watchPath(expanded.nextElement());
+        }
+    }
+
+    @Override
+    public void treeCollapsed(TreeExpansionEvent event) {
+        if (event.getPath().getLastPathComponent() instanceof DirTreeNode node) {
+            unwatchSubtree(node);
+        }
+    }
+
+    /**
+     * Replays any changes that arrived while a node's children were being loaded.
+     * DirTreeLoader signals a completed load with a structure change on that node.
+     */
+    @Override
+    public void treeStructureChanged(TreeModelEvent e) {
+        if (e.getTreePath() != null
+                && e.getTreePath().getLastPathComponent() instanceof DirTreeNode node
+                && node.isChildrenLoaded()) {
+            List<Runnable> changes = pendingChanges.remove(node);
+            if (changes != null) {
+                changes.forEach(Runnable::run);
+            }
+        }
+    }
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent e) {
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent e) {
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent e) {
+    }
+
+    private void watchExpandedNodes() {
+        if (model == null || !(model.getRoot() instanceof DirTreeNode root)) {
+            return;
+        }
+        TreePath rootPath = new TreePath(root);
+        if (watchRoot) {
+            watch(root);
+        }
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(rootPath);
+        while (expanded != null && expanded.hasMoreElements()) {
+            TreePath path = expanded.nextElement();
+            if (path.getPathCount() > 1) {
+                watchPath(path);
+            }
+        }
+    }
+
+    private void watchPath(TreePath path) {
+        if (path.getLastPathComponent() instanceof DirTreeNode node
+                && (path.getPathCount() > 1 || watchRoot)) {
+            watch(node);
+        }
+    }
+
+    private void watch(DirTreeNode node) {
+        if (node.isFileNode() || subscriptions.containsKey(node)) {
+            return;
+        }
+        try {
+            WatchHub.Subscription subscription = getWatchHub().watchDirectory(
+                    node.getDir().toPath(), false, (path, kind) -> pathChanged(node, path, kind));
+            subscriptions.put(node, subscription);
+        }
+        catch (IOException | RuntimeException e) {
+            log.log(Level.FINE, "DirTree: unable to watch " + node.getDir().getAbsolutePath(), e);
+        }
+    }
+
+    private void unwatchSubtree(DirTreeNode node) {
+        for (DirTreeNode watched : new ArrayList<>(subscriptions.keySet())) {
+            if (node.isNodeDescendant(watched)) {
+                subscriptions.remove(watched).close();
+                pendingChanges.remove(watched);
+            }
+        }
+    }
+
+    private void unwatchAll() {
+        for (WatchHub.Subscription subscription : subscriptions.values()) {
+            subscription.close();
+        }
+        subscriptions.clear();
+        pendingChanges.clear();
+    }
+
+    /**
+     * Invoked on the WatchHub dispatcher thread. New entries are stat'ed here, off the EDT.
+     */
+    private void pathChanged(DirTreeNode parent, Path path, WatchEvent.Kind<?> kind) {
+        if (kind != StandardWatchEventKinds.ENTRY_MODIFY) {
+            DirListingCache.getShared().invalidate(parent.getDir());
+        }
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            DirTreeNode child = parent.createChildNode(path.toFile());
+            if (child != null) {
+                SwingUtilities.invokeLater(() -> applyChange(parent, () -> insertChild(parent, child)));
+            }
+        }
+        else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            String name = path.getFileName().toString();
+            SwingUtilities.invokeLater(() -> applyChange(parent, () -> removeChild(parent, name)));
+        }
+        else if (kind == StandardWatchEventKinds.OVERFLOW) {
+            SwingUtilities.invokeLater(() -> applyChange(parent, () -> refresh(parent)));
+        }
+        // ENTRY_MODIFY doesn't affect what the tree shows.
+    }
+
+    private void applyChange(DirTreeNode parent, Runnable change) {
+        if (!subscriptions.containsKey(parent)) {
+            return; // collapsed or reloaded since the event was queued
+        }
+        if (!parent.isChildrenLoaded()) {
+            pendingChanges.computeIfAbsent(parent, k -> new ArrayList<>()).add(change);
+            return;
+        }
+        change.run();
+    }
+
+    private void insertChild(DirTreeNode parent, DirTreeNode child) {
+        if (!(model instanceof DefaultTreeModel treeModel) || findChild(parent, child.getDir().getName()) != null) {
+            return;
+        }
+        int index = 0;
+        while (index < parent.getChildCount()
+                && DirTreeNode.compareForDisplay((DirTreeNode)parent.getChildAt(index), child) < 0) {
+            index++;
+        }
+        boolean wasEmpty = parent.getChildCount() == 0;
+        parent.setAllowsChildren(true);
+        treeModel.insertNodeInto(child, parent, index);
+        parent.childrenChanged();
+        if (wasEmpty) {
+            treeModel.nodeChanged(parent);
+        }
+    }
+
+    private void removeChild(DirTreeNode parent, String name) {
+        DirTreeNode child = findChild(parent, name);
+        if (!(model instanceof DefaultTreeModel treeModel) || child == null) {
+            return;
+        }
+        unwatchSubtree(child);
+        treeModel.removeNodeFromParent(child);
+        parent.childrenChanged();
+        if (parent.getChildCount() == 0) {
+            treeModel.nodeChanged(parent);
+        }
+    }
+
+    /**
+     * Lists the given directory again in the background, and applies whatever changed.
+     */
+    private void refresh(DirTreeNode parent) {
+        DirTreeLoader.runInBackground(() -> {
+            List<DirTreeNode> children = parent.listChildren();
+            if (children != null) {
+                SwingUtilities.invokeLater(() -> applyChange(parent, () -> reconcile(parent, children)));
+            }
+        });
+    }
+
+    private void reconcile(DirTreeNode parent, List<DirTreeNode> children) {
+        Set<String> names = new HashSet<>();
+        for (DirTreeNode child : children) {
+            names.add(child.getDir().getName());
+        }
+        for (int i = parent.getChildCount() - 1; i >= 0; i--) {
+            if (parent.getChildAt(i) instanceof DirTreeNode existing && !names.contains(existing.getDir().getName())) {
+                removeChild(parent, existing.getDir().getName());
+            }
+        }
+        for (DirTreeNode child : children) {
+            insertChild(parent, child);
+        }
+    }
+
+    private static DirTreeNode findChild(DirTreeNode parent, String name) {
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            if (parent.getChildAt(i) instanceof DirTreeNode child && child.getDir().getName().equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+}
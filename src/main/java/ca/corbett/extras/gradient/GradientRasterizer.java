@@ -0,0 +1,328 @@
+package ca.corbett.extras.gradient;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * A software rasterizer for Gradient fills. Instead of building GradientPaint or
+ * RadialGradientPaint objects and going through the Java2D paint pipeline, this class
+ * precomputes a color lookup table for the Gradient and writes pixel values directly into
+ * an int[] buffer. Large images are rendered across rows in parallel.
+ * <p>
+ * The results are visually equivalent to GradientUtil.fill(), but not guaranteed to be
+ * pixel-identical, as Java2D may use slightly different interpolation internally.
+ * </p>
+ * <p>
+ * <b>Caching</b> - getCachedImage() keeps a small LRU cache of rendered images keyed by
+ * gradient and size. This is intended for things like desktop backgrounds, which are
+ * repainted frequently but rarely change: a repaint of an unchanged background becomes a
+ * single image blit. Images returned from the cache are shared, and must not be modified
+ * by the caller. Use createImage() if you need an image that you can draw on.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class GradientRasterizer {
+
+    /**
+     * The number of entries in each precomputed color lookup table.
+     */
+    public static final int LUT_SIZE = 1024;
+
+    /**
+     * Images with at least this many pixels will be rendered across rows in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    /**
+     * The default maximum number of images that getCachedImage() will hold on to.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 8;
+
+    private static int maxCacheEntries = DEFAULT_CACHE_SIZE;
+    private static final Map<CacheKey, BufferedImage> imageCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, BufferedImage> eldest) {
+            return size() > maxCacheEntries;
+        }
+    };
+
+    /**
+     * Protected constructor to allow subclassing for application-specific utility methods
+     * while preventing direct instantiation of this utility class.
+     */
+    protected GradientRasterizer() {
+    }
+
+    /**
+     * Returns a rendered image of the given Gradient at the given size, from cache if possible.
+     * The returned image is shared with other callers and must not be modified!
+     * If either color in the Gradient is not fully opaque, the returned image will be
+     * TYPE_INT_ARGB, otherwise it will be TYPE_INT_RGB.
+     *
+     * @param gradient The Gradient to render.
+     * @param width    The width of the image. Must be greater than zero.
+     * @param height   The height of the image. Must be greater than zero.
+     * @return A shared, read-only image containing the requested gradient.
+     */
+    public static BufferedImage getCachedImage(Gradient gradient, int width, int height) {
+        CacheKey key = new CacheKey(gradient, width, height);
+        synchronized (imageCache) {
+            BufferedImage image = imageCache.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+
+        // Render outside the lock so that we don't hold up other callers:
+        BufferedImage image = createImage(gradient, width, height);
+        synchronized (imageCache) {
+            imageCache.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Discards all cached gradient images.
+     */
+    public static void clearCache() {
+        synchronized (imageCache) {
+            imageCache.clear();
+        }
+    }
+
+    /**
+     * Sets the maximum number of images that getCachedImage() will hold on to. The least
+     * recently used images are evicted first. A value of 0 disables caching.
+     *
+     * @param maxEntries The new maximum cache size. Must not be negative.
+     */
+    public static void setMaxCacheEntries(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size can't be negative.");
+        }
+        synchronized (imageCache) {
+            maxCacheEntries = maxEntries;
+            while (imageCache.size() > maxCacheEntries) {
+                imageCache.remove(imageCache.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of images that getCachedImage() will hold on to.
+     */
+    public static int getMaxCacheEntries() {
+        synchronized (imageCache) {
+            return maxCacheEntries;
+        }
+    }
+
+    /**
+     * Creates a new image of the given size and renders the given Gradient into it.
+     * If either color in the Gradient is not fully opaque, the returned image will be
+     * TYPE_INT_ARGB, otherwise it will be TYPE_INT_RGB.
+     *
+     * @param gradient The Gradient to render.
+     * @param width    The width of the image. Must be greater than zero.
+     * @param height   The height of the image. Must be greater than zero.
+     * @return A new BufferedImage containing the requested gradient.
+     */
+    public static BufferedImage createImage(Gradient gradient, int width, int height) {
+        int type = isOpaque(gradient) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage image = new BufferedImage(width, height, type);
+        int[] pixels = new int[width * height];
+        rasterize(gradient, pixels, width, height);
+
+        // setDataElements() copies into the raster without un-managing the image,
+        // so Java2D remains free to cache it in video memory for fast blits:
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        return image;
+    }
+
+    /**
+     * Renders the given Gradient into the given pixel buffer, which is assumed to be
+     * width*height pixels in row-major order. Pixel values are written as ARGB ints.
+     * Buffers of PARALLEL_THRESHOLD pixels or more will be rendered in parallel.
+     *
+     * @param gradient The Gradient to render.
+     * @param pixels   The pixel buffer to receive the gradient.
+     * @param width    The width of the area to render.
+     * @param height   The height of the area to render.
+     */
+    public static void rasterize(Gradient gradient, int[] pixels, int width, int height) {
+        rasterize(gradient, pixels, width, height, (long)width * height >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Renders the given Gradient into the given pixel buffer, which is assumed to be
+     * width*height pixels in row-major order. Pixel values are written as ARGB ints.
+     *
+     * @param gradient The Gradient to render.
+     * @param pixels   The pixel buffer to receive the gradient.
+     * @param width    The width of the area to render.
+     * @param height   The height of the area to render.
+     * @param parallel If true, rows will be rendered in parallel on the common ForkJoinPool.
+     */
+    public static void rasterize(Gradient gradient, int[] pixels, int width, int height, boolean parallel) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel buffer is too small for the requested size.");
+        }
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        final int[] lut = createColorTable(gradient.color1(), gradient.color2());
+        final Segment[] segments = createSegments(gradient.type(), width, height);
+        IntStream rows = IntStream.range(0, height);
+        if (parallel) {
+            rows = rows.parallel();
+        }
+
+        if (gradient.type() == GradientType.CIRCLE) {
+            rows.forEach(y -> renderCircularRow(lut, pixels, width, height, y));
+        }
+        else if (gradient.type() == GradientType.HORIZONTAL_LINEAR || gradient.type() == GradientType.VERTICAL_STRIPE) {
+            // Every row is identical, so render the first one and copy it down:
+            renderLinearRow(lut, segments, pixels, width, 0);
+            rows.skip(1).forEach(y -> System.arraycopy(pixels, 0, pixels, y * width, width));
+        }
+        else {
+            rows.forEach(y -> renderLinearRow(lut, segments, pixels, width, y));
+        }
+    }
+
+    /**
+     * Builds a lookup table of LUT_SIZE ARGB values that interpolate linearly from
+     * color1 to color2.
+     */
+    protected static int[] createColorTable(Color color1, Color color2) {
+        int[] lut = new int[LUT_SIZE];
+        int a1 = color1.getAlpha();
+        int r1 = color1.getRed();
+        int g1 = color1.getGreen();
+        int b1 = color1.getBlue();
+        int a2 = color2.getAlpha();
+        int r2 = color2.getRed();
+        int g2 = color2.getGreen();
+        int b2 = color2.getBlue();
+        for (int i = 0; i < LUT_SIZE; i++) {
+            float t = i / (float)(LUT_SIZE - 1);
+            int a = Math.round(a1 + (a2 - a1) * t);
+            int r = Math.round(r1 + (r2 - r1) * t);
+            int g = Math.round(g1 + (g2 - g1) * t);
+            int b = Math.round(b1 + (b2 - b1) * t);
+            lut[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        return lut;
+    }
+
+    /**
+     * Breaks the given linear gradient type down into one or more rectangular segments, each
+     * with its own gradient vector. This mirrors the way GradientUtil.fill() splits up the
+     * stripe and star gradients into multiple fillRect() calls.
+     */
+    protected static Segment[] createSegments(GradientType type, int w, int h) {
+        final int cx = w / 2;
+        final int cy = h / 2;
+        return switch (type) {
+            case HORIZONTAL_LINEAR -> new Segment[]{new Segment(0, 0, w, h, 0, 0, w, 0, false)};
+            case VERTICAL_LINEAR -> new Segment[]{new Segment(0, 0, w, h, 0, 0, 0, h, false)};
+            case HORIZONTAL_STRIPE -> new Segment[]{
+                    new Segment(0, 0, w, cy, 0, 0, 0, cy, false),
+                    new Segment(0, cy, w, h, 0, cy, 0, h, true)};
+            case VERTICAL_STRIPE -> new Segment[]{
+                    new Segment(0, 0, cx, h, 0, 0, cx, 0, false),
+                    new Segment(cx, 0, w, h, cx, 0, w, 0, true)};
+            case DIAGONAL1 -> new Segment[]{new Segment(0, 0, w, h, 0, 0, w, h, false)};
+            case DIAGONAL2 -> new Segment[]{new Segment(0, 0, w, h, 0, h, w, 0, false)};
+            case STAR -> new Segment[]{
+                    new Segment(0, 0, cx, cy, 0, 0, cx, cy, false),
+                    new Segment(cx, cy, w, h, cx, cy, w, h, true),
+                    new Segment(0, cy, cx, h, 0, h, cx, cy, false),
+                    new Segment(cx, 0, w, cy, cx, cy, w, 0, true)};
+            case CIRCLE -> new Segment[0]; // handled separately
+        };
+    }
+
+    private static void renderLinearRow(int[] lut, Segment[] segments, int[] pixels, int width, int y) {
+        final int rowOffset = y * width;
+        final float py = y + 0.5f;
+        for (Segment segment : segments) {
+            if (y < segment.y1 || y >= segment.y2 || segment.x1 >= segment.x2) {
+                continue;
+            }
+
+            // Project each pixel center onto the gradient vector. Along a row, the
+            // projection is linear in x, so we can just step it:
+            float dx = segment.gx2 - segment.gx1;
+            float dy = segment.gy2 - segment.gy1;
+            float lengthSquared = dx * dx + dy * dy;
+            float step = lengthSquared == 0 ? 0 : dx / lengthSquared;
+            float t = lengthSquared == 0 ? 0 :
+                    ((segment.x1 + 0.5f - segment.gx1) * dx + (py - segment.gy1) * dy) / lengthSquared;
+            if (step == 0) {
+                // Purely vertical gradient: the whole row segment is one color.
+                int index = lookupIndex(t);
+                Arrays.fill(pixels, rowOffset + segment.x1, rowOffset + segment.x2,
+                            lut[segment.reversed ? LUT_SIZE - 1 - index : index]);
+                continue;
+            }
+            for (int x = segment.x1; x < segment.x2; x++) {
+                int index = lookupIndex(t);
+                pixels[rowOffset + x] = lut[segment.reversed ? LUT_SIZE - 1 - index : index];
+                t += step;
+            }
+        }
+    }
+
+    private static void renderCircularRow(int[] lut, int[] pixels, int width, int height, int y) {
+        // Same geometry as GradientUtil.createCircularGradientPaint():
+        final float centerX = width / 2f;
+        final float centerY = height / 2f;
+        final float radius = Math.max(0.5f, Math.min(width, height) / 2f);
+        final float dy = y + 0.5f - centerY;
+        final float dySquared = dy * dy;
+        final int rowOffset = y * width;
+        for (int x = 0; x < width; x++) {
+            float dx = x + 0.5f - centerX;
+            float t = (float)Math.sqrt(dx * dx + dySquared) / radius;
+            pixels[rowOffset + x] = lut[lookupIndex(t)];
+        }
+    }
+
+    private static int lookupIndex(float t) {
+        if (t <= 0f) {
+            return 0;
+        }
+        if (t >= 1f) {
+            return LUT_SIZE - 1;
+        }
+        return (int)(t * (LUT_SIZE - 1) + 0.5f);
+    }
+
+    /**
+     * Reports whether both colors in the given Gradient are fully opaque.
+     */
+    protected static boolean isOpaque(Gradient gradient) {
+        return gradient.color1().getAlpha() == 255 && gradient.color2().getAlpha() == 255;
+    }
+
+    /**
+     * Describes a rectangular area (x1,y1 inclusive to x2,y2 exclusive) that is filled with a
+     * linear gradient running from (gx1,gy1) to (gx2,gy2). If reversed, the gradient runs
+     * from color2 to color1 instead.
+     */
+    protected record Segment(int x1, int y1, int x2, int y2,
+                             float gx1, float gy1, float gx2, float gy2,
+                             boolean reversed) {
+    }
+
+    private record CacheKey(Gradient gradient, int width, int height) {
+    }
+}
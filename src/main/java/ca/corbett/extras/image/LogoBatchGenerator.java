@@ -0,0 +1,273 @@
+package ca.corbett.extras.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates many LogoGenerator images in one go, on a pool of worker threads.
+ * Each Job describes the text to render, the LogoProperty preset to render it with, and an
+ * optional output file. Jobs are rendered in parallel, and results are handed back to the
+ * caller as they complete, so that large batches can be processed without holding every
+ * generated image in memory at once.
+ * <p>
+ * Auto-sized font fitting is shared across the whole batch: if two jobs have the same text,
+ * font, and dimensions (for example, the same text rendered with several color presets),
+ * the font size is only fitted once.
+ * </p>
+ * <p>
+ * If a Job has an output file, the image is encoded and saved there by the worker thread,
+ * using ImageUtil. Files ending in ".png" are saved as png, and everything else is saved as
+ * jpeg. Note that this differs from LogoGenerator.generateAndSaveImage(), which always saves
+ * jpeg regardless of the file extension. Each Result reports how long the image took to
+ * render and to save.
+ * </p>
+ * <p>
+ * Example usage:
+ * </p>
+ * <pre>
+ * List&lt;LogoBatchGenerator.Job&gt; jobs = new ArrayList&lt;&gt;();
+ * for (LogoProperty preset : presets) {
+ *     jobs.add(new LogoBatchGenerator.Job("Hello", preset, new File(outDir, preset.getPropertyName() + ".jpg")));
+ * }
+ * new LogoBatchGenerator().generate(jobs, result -&gt; {
+ *     if (! result.isSuccess()) {
+ *         logger.warning("Failed: " + result.error().getMessage());
+ *     }
+ * });
+ * </pre>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class LogoBatchGenerator {
+
+    private static final Logger log = Logger.getLogger(LogoBatchGenerator.class.getName());
+
+    /**
+     * Matches the compression quality used by LogoGenerator.generateAndSaveImage().
+     */
+    public static final float DEFAULT_JPEG_QUALITY = 0.98f;
+
+    /**
+     * Describes one image to generate.
+     *
+     * @param text       The text to render.
+     * @param preset     The LogoProperty containing config settings to use.
+     * @param outputFile Optional. If set, the image will be saved here and not retained in the Result.
+     */
+    public record Job(String text, LogoProperty preset, File outputFile) {
+        public Job(String text, LogoProperty preset) {
+            this(text, preset, null);
+        }
+    }
+
+    /**
+     * Describes the outcome of one Job.
+     *
+     * @param job             The Job that produced this Result.
+     * @param image           The generated image, or null if the job was saved to a file or failed.
+     * @param renderTimeNanos How long it took to render the image.
+     * @param saveTimeNanos   How long it took to encode and save the image (0 if not saved).
+     * @param error           The exception that caused this Job to fail, or null on success.
+     */
+    public record Result(Job job, BufferedImage image, long renderTimeNanos, long saveTimeNanos, Exception error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final int threadCount;
+    private float jpegQuality;
+
+    /**
+     * Creates a LogoBatchGenerator with one worker thread per available processor.
+     */
+    public LogoBatchGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a LogoBatchGenerator with the given number of worker threads.
+     *
+     * @param threadCount The number of worker threads to use. Must be at least 1.
+     */
+    public LogoBatchGenerator(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be at least 1.");
+        }
+        this.threadCount = threadCount;
+        this.jpegQuality = DEFAULT_JPEG_QUALITY;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * Sets the compression quality to use when saving jpeg images.
+     *
+     * @param quality A value between 0 and 1.
+     */
+    public void setJpegQuality(float quality) {
+        if (quality < 0f || quality > 1f) {
+            throw new IllegalArgumentException("Jpeg quality must be between 0 and 1.");
+        }
+        this.jpegQuality = quality;
+    }
+
+    /**
+     * Generates all the given Jobs and returns their Results in the same order as the input list.
+     * Note that this retains every image that is not saved to a file, so for very large batches,
+     * consider using generate(List, Consumer) instead.
+     *
+     * @param jobs The Jobs to generate.
+     * @return A list of Results, one per Job, in the same order.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public List<Result> generate(List<Job> jobs) throws InterruptedException {
+        Result[] results = new Result[jobs.size()];
+        run(jobs, (index, result) -> results[index] = result);
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Generates all the given Jobs, handing each Result to the given consumer as soon as it
+     * completes. Results will therefore arrive in completion order, not input order.
+     * The consumer is always invoked on the calling thread, so it doesn't need to be thread safe.
+     *
+     * @param jobs     The Jobs to generate.
+     * @param consumer Receives each Result as it completes.
+     * @throws InterruptedException If the calling thread is interrupted while waiting. Any Jobs
+     *                              that haven't started yet will be abandoned.
+     */
+    public void generate(List<Job> jobs, Consumer<Result> consumer) throws InterruptedException {
+        run(jobs, (index, result) -> consumer.accept(result));
+    }
+
+    private void run(List<Job> jobs, IndexedResultConsumer consumer) throws InterruptedException {
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        final Map<LogoGenerator.FontFitKey, Integer> fitCache = new ConcurrentHashMap<>();
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, jobs.size()), r -> {
+            Thread t = new Thread(r, "LogoBatchGenerator-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            CompletionService<IndexedResult> completionService = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < jobs.size(); i++) {
+                final int index = i;
+                final Job job = jobs.get(i);
+                completionService.submit(() -> new IndexedResult(index, process(job, fitCache)));
+            }
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Future<IndexedResult> future = completionService.take();
+                try {
+                    IndexedResult indexedResult = future.get();
+                    consumer.accept(indexedResult.index, indexedResult.result);
+                }
+                catch (ExecutionException ee) {
+                    // process() catches everything, so this shouldn't happen:
+                    log.log(Level.SEVERE, "LogoBatchGenerator: unexpected worker failure", ee.getCause());
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders (and optionally saves) a single Job. Never throws; errors are reported in the Result.
+     */
+    protected Result process(Job job, Map<LogoGenerator.FontFitKey, Integer> fitCache) {
+        long renderStart = System.nanoTime();
+        BufferedImage image;
+        try {
+            image = LogoGenerator.generateImage(job.text(), job.preset(), fitCache);
+        }
+        catch (RuntimeException e) {
+            return new Result(job, null, System.nanoTime() - renderStart, 0, e);
+        }
+        long renderTime = System.nanoTime() - renderStart;
+
+        if (job.outputFile() == null) {
+            return new Result(job, image, renderTime, 0, null);
+        }
+
+        long saveStart = System.nanoTime();
+        try {
+            save(image, job.outputFile());
+            return new Result(job, null, renderTime, System.nanoTime() - saveStart, null);
+        }
+        catch (IOException | RuntimeException e) {
+            return new Result(job, null, renderTime, System.nanoTime() - saveStart, e);
+        }
+    }
+
+    /**
+     * Saves the given image to the given file. ImageUtil's default jpeg writer is a shared
+     * static instance, which isn't safe to use from multiple threads at once, so each call
+     * here gets its own writer.
+     */
+    protected void save(BufferedImage image, File file) throws IOException {
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".png")) {
+            ImageUtil.savePngImage(image, file);
+            return;
+        }
+
+        Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpg");
+        if (!iter.hasNext()) {
+            throw new IOException("Can't find ImageWriter for jpg images.");
+        }
+        ImageWriter writer = iter.next();
+        try {
+            ImageWriteParam writeParam = new JPEGImageWriteParam(Locale.getDefault());
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(jpegQuality);
+            ImageUtil.saveImage(image, file, writer, writeParam);
+        }
+        finally {
+            writer.dispose();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexedResultConsumer {
+        void accept(int index, Result result);
+    }
+
+    private record IndexedResult(int index, Result result) {
+    }
+}
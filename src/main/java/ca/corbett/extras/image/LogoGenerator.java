@@ -9,6 +9,7 @@ import javax.imageio.ImageWriter;
 import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
 import javax.imageio.stream.FileImageOutputStream;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
@@ -16,6 +17,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -41,6 +43,21 @@ public final class LogoGenerator {
      * @return A BufferedImage containing the rendered final product.
      */
     public static BufferedImage generateImage(String text, LogoProperty preset) {
+        return generateImage(text, preset, null);
+    }
+
+    /**
+     * Generates an image using the given text and LogoConfig instance, optionally consulting
+     * the given cache of previously fitted font sizes. This allows LogoBatchGenerator to skip
+     * the font fitting step entirely for presets that share the same text, font and dimensions.
+     *
+     * @param text     The text to render.
+     * @param preset   The LogoConfig instance containing config settings to use.
+     * @param fitCache An optional cache of auto-sized font sizes. May be null. Must be thread safe
+     *                 if it is shared between threads.
+     * @return A BufferedImage containing the rendered final product.
+     */
+    static BufferedImage generateImage(String text, LogoProperty preset, Map<FontFitKey, Integer> fitCache) {
         int width = preset.getLogoWidth();
         int height = preset.getLogoHeight();
         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
@@ -77,37 +94,22 @@ public final class LogoGenerator {
 
         // Compute size automatically if requested:
         if (preset.isAutoSize()) {
-            int fontSize = 150;
-            int fontDecrement = 1;
-
-            // It's possible we were given very large dimensions.
-            // If so, increase our starting font size and our search decrement accordingly.
-            // Note: we could just start with a font size of a million and work our way down, but
-            // in the interest of performance it's better if we don't have to do that.
-            int tempWidth = width;
-            while (tempWidth > 1500) {
-                fontSize += 100;
-                fontDecrement++;
-                tempWidth -= 1000;
+            int fontSize;
+            FontFitKey fitKey = new FontFitKey(text, font.getName(), font.getStyle(), width, height);
+            Integer cachedSize = fitCache == null ? null : fitCache.get(fitKey);
+            if (cachedSize != null) {
+                fontSize = cachedSize;
             }
-
-            // Now search for a size that fits, assuming that we're starting with a size that's
-            // too large, and decrementing it down until we find the largest size that fits.
-            boolean fits = false;
-            while (!fits) {
-                font = new Font(font.getName(), font.getStyle(), fontSize);
-                graphics.setFont(font);
-                if (graphics.getFontMetrics().stringWidth(text) < (width * 0.9)
-                        && graphics.getFontMetrics().getLineMetrics(text, graphics).getHeight() < (height * 0.9)) {
-                    fits = true;
-                }
-                else {
-                    fontSize -= fontDecrement;
+            else {
+                fontSize = findAutoFontSize(graphics, font, text, width, height);
+                if (fitCache != null) {
+                    fitCache.put(fitKey, fontSize);
                 }
             }
+            font = new Font(font.getName(), font.getStyle(), fontSize);
+            graphics.setFont(font);
             textWidth = graphics.getFontMetrics().stringWidth(text);
-            textHeight = (int)graphics.getFontMetrics().getLineMetrics(text, graphics).getHeight();//.getAscent();
-            //textHeight += (int)graphics.getFontMetrics().getLineMetrics(text, graphics).getDescent();
+            textHeight = (int)graphics.getFontMetrics().getLineMetrics(text, graphics).getHeight();
         }
 
         // It's possible the text is just too wide to fit in these dimensions. Not much
@@ -139,6 +141,55 @@ public final class LogoGenerator {
         return image;
     }
 
+    /**
+     * Finds the largest font size for which the given text fits within 90% of the given width
+     * and height. It's possible we were given very large dimensions, so the upper bound
+     * of the search scales with the image width. Text size grows with font size, so we can
+     * binary search the range instead of stepping down one size at a time, which means
+     * measuring the text a handful of times instead of potentially hundreds of times.
+     * If the text won't fit at any size, the smallest size (1) is returned.
+     *
+     * @param graphics The Graphics2D that will be used to render the text.
+     * @param font     The font to fit. Only its name and style are used.
+     * @param text     The text to fit.
+     * @param width    The image width.
+     * @param height   The image height.
+     * @return The largest font point size that fits.
+     */
+    static int findAutoFontSize(Graphics2D graphics, Font font, String text, int width, int height) {
+        int maxSize = 150;
+        int tempWidth = width;
+        while (tempWidth > 1500) {
+            maxSize += 100;
+            tempWidth -= 1000;
+        }
+
+        int low = 1;
+        int high = maxSize;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (textFits(graphics, new Font(font.getName(), font.getStyle(), mid), text, width, height)) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean textFits(Graphics2D graphics, Font font, String text, int width, int height) {
+        FontMetrics metrics = graphics.getFontMetrics(font);
+        return metrics.stringWidth(text) < (width * 0.9)
+                && metrics.getLineMetrics(text, graphics).getHeight() < (height * 0.9);
+    }
+
+    /**
+     * Cache key for auto-sized fonts: the fitted size depends only on these values.
+     */
+    record FontFitKey(String text, String fontName, int fontStyle, int width, int height) {
+    }
+
     /**
      * Generates an image using the given text and LogoConfig instance, and then saves it
      * to the given File. Output format is currently limited to jpeg regardless of
@@ -4,9 +4,11 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
+import java.awt.font.GlyphVector;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,6 +16,15 @@ import java.util.List;
 /**
  * Animates a text display, such that a given text string will be slowly "printed" out character
  * by character with configurable styling and with a configurable speed.
+ * <p>
+ *     <b>Incremental rendering</b> - by default, every frame clears the buffer and redraws all
+ *     text revealed so far. For long text at high speeds, this can get expensive, as the per-frame
+ *     cost grows with the length of the text. You can optionally enable incremental rendering
+ *     via setIncrementalRendering(true). In this mode, the full text is laid out once into
+ *     cached glyph runs (one per wrapped line) with precomputed character positions, and each
+ *     frame only draws the newly revealed glyphs plus the cursor area. The rest of the buffer
+ *     is left untouched from the previous frame.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a> (with help from Claude!)
  * @since swing-extras 2.3
@@ -50,6 +61,13 @@ public class AnimatedTextRenderer {
     protected int padding;
     protected boolean needsReflow;
 
+    // Incremental rendering state
+    protected boolean incrementalRendering;
+    protected List<GlyphRun> glyphRuns;
+    protected int renderedCharIndex;
+    protected Rectangle lastCursorBounds;
+    protected boolean needsFullRedraw;
+
     /**
      * Creates a new AnimatedTextRenderer with the given dimensions and the given text string.
      * All styling options and speed will use built-in default values.
@@ -83,6 +101,7 @@ public class AnimatedTextRenderer {
         this.cursorBlinkRate = 0.0; // Eh, I'm not wild about the blinking, default it to off
         this.padding = 10;
         this.needsReflow = true;
+        this.incrementalRendering = false;
 
         // Initialize animation state
         this.currentCharIndex = 0;
@@ -165,7 +184,11 @@ public class AnimatedTextRenderer {
         int availableWidth = buffer.getWidth() - (padding * 2);
 
         this.wrappedLines = wrapText(textToRender, frc, font, availableWidth);
+        this.glyphRuns = incrementalRendering ? layoutGlyphRuns(wrappedLines, frc) : null;
         this.totalChars = textToRender.length();
+        this.renderedCharIndex = 0;
+        this.lastCursorBounds = null;
+        this.needsFullRedraw = false;
 
         // Clear buffer and reset animation
         clearBuffer();
@@ -183,6 +206,11 @@ public class AnimatedTextRenderer {
             return;
         }
 
+        if (incrementalRendering && glyphRuns != null) {
+            renderIncrementally(charIndex);
+            return;
+        }
+
         // Clear buffer
         clearBuffer();
 
@@ -230,6 +258,133 @@ public class AnimatedTextRenderer {
         }
     }
 
+    /**
+     * Incremental counterpart to renderUpToCharacter: erases the previous cursor, draws only
+     * the glyphs between the last rendered character and the given character index, and then
+     * draws the cursor in its new position. Falls back to a full redraw if the index has moved
+     * backwards or if styling has changed since the last frame.
+     */
+    protected void renderIncrementally(int charIndex) {
+        if (needsFullRedraw || charIndex < renderedCharIndex) {
+            clearBuffer();
+            renderedCharIndex = 0;
+            lastCursorBounds = null;
+            needsFullRedraw = false;
+        }
+
+        // Erase the cursor from the previous frame, if there was one:
+        if (lastCursorBounds != null) {
+            bufferGraphics.setColor(backgroundColor);
+            bufferGraphics.fillRect(lastCursorBounds.x, lastCursorBounds.y,
+                                    lastCursorBounds.width, lastCursorBounds.height);
+            lastCursorBounds = null;
+        }
+
+        // Draw only the newly revealed glyphs:
+        if (charIndex > renderedCharIndex) {
+            drawGlyphRange(renderedCharIndex, charIndex);
+            renderedCharIndex = charIndex;
+        }
+
+        // Draw cursor if animation is not complete and cursor should be visible
+        if (showCursor && charIndex < totalChars) {
+            CursorPosition cursorPos = findCursorPosition(charIndex);
+            if (cursorPos != null) {
+                drawCursor(cursorPos);
+                FontMetrics fm = bufferGraphics.getFontMetrics();
+                lastCursorBounds = new Rectangle(cursorPos.x, cursorPos.y - fm.getAscent(),
+                                                 fm.charWidth('M'), fm.getHeight());
+            }
+        }
+        bufferGraphics.setColor(textColor);
+    }
+
+    /**
+     * Draws the glyphs for the given character range (start inclusive, end exclusive).
+     * Each affected glyph run is drawn through a clip rectangle that covers only the
+     * horizontal band occupied by the newly revealed characters, so previously drawn
+     * glyphs are never painted twice.
+     */
+    protected void drawGlyphRange(int startChar, int endChar) {
+        FontMetrics fm = bufferGraphics.getFontMetrics();
+        int lineHeight = fm.getHeight();
+        Shape originalClip = bufferGraphics.getClip();
+        bufferGraphics.setColor(textColor);
+
+        for (GlyphRun run : glyphRuns) {
+            if (run.startChar >= endChar) {
+                break;
+            }
+            if (run.endChar() <= startChar) {
+                continue;
+            }
+
+            int from = Math.max(startChar, run.startChar) - run.startChar;
+            int to = Math.min(endChar, run.endChar()) - run.startChar;
+
+            // Extend the band to the buffer edges at line boundaries so that glyph
+            // overhang at the start or end of a line isn't clipped away:
+            int clipLeft = from == 0 ? 0 : padding + (int)Math.floor(run.charX[from]);
+            int clipRight = to == run.length ? buffer.getWidth() : padding + (int)Math.floor(run.charX[to]);
+            int clipTop = run.baseline - fm.getAscent();
+
+            bufferGraphics.setClip(clipLeft, clipTop, clipRight - clipLeft, lineHeight);
+            bufferGraphics.drawGlyphVector(run.glyphs, padding, run.baseline);
+        }
+
+        bufferGraphics.setClip(originalClip);
+    }
+
+    /**
+     * Returns the cursor position for the given character index, or null if that index
+     * does not fall within any visible glyph run.
+     */
+    protected CursorPosition findCursorPosition(int charIndex) {
+        int lineHeight = bufferGraphics.getFontMetrics().getHeight();
+        for (GlyphRun run : glyphRuns) {
+            if (charIndex >= run.startChar && charIndex <= run.endChar()) {
+                int x = padding + Math.round(run.charX[charIndex - run.startChar]);
+                return new CursorPosition(x, run.baseline, lineHeight);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lays out the given wrapped lines into glyph runs with precomputed character positions.
+     * Lines that would extend past the bottom of the buffer are not laid out.
+     */
+    protected List<GlyphRun> layoutGlyphRuns(List<String> lines, FontRenderContext frc) {
+        List<GlyphRun> runs = new ArrayList<>();
+        FontMetrics fm = bufferGraphics.getFontMetrics(font);
+        int lineHeight = fm.getHeight();
+        int y = padding + fm.getAscent();
+        int charsProcessed = 0;
+
+        for (String line : lines) {
+            GlyphVector glyphs = font.createGlyphVector(frc, line);
+
+            // getGlyphPositions() returns interleaved x,y pairs, including the position
+            // just past the last glyph, which gives us the end-of-line cursor position.
+            float[] positions = glyphs.getGlyphPositions(0, glyphs.getNumGlyphs() + 1, null);
+            float[] charX = new float[line.length() + 1];
+            for (int i = 0; i < charX.length; i++) {
+                charX[i] = positions[Math.min(i, glyphs.getNumGlyphs()) * 2];
+            }
+
+            runs.add(new GlyphRun(glyphs, charsProcessed, line.length(), y, charX));
+            charsProcessed += line.length();
+            y += lineHeight;
+
+            // Check if we've exceeded the bottom boundary
+            if (y > buffer.getHeight() - padding) {
+                break;
+            }
+        }
+
+        return runs;
+    }
+
     /**
      * Draws the block cursor at the specified position
      */
@@ -263,7 +418,38 @@ public class AnimatedTextRenderer {
     }
 
     /**
-     * Wraps text to fit within the specified width
+     * Holds one laid-out line of text for incremental rendering.
+     */
+    protected static class GlyphRun {
+        final GlyphVector glyphs;
+        final int startChar;
+        final int length;
+        final int baseline;
+        final float[] charX; // x offset of each character, plus one for end of line
+
+        GlyphRun(GlyphVector glyphs, int startChar, int length, int baseline, float[] charX) {
+            this.glyphs = glyphs;
+            this.startChar = startChar;
+            this.length = length;
+            this.baseline = baseline;
+            this.charX = charX;
+        }
+
+        int endChar() {
+            return startChar + length;
+        }
+    }
+
+    /**
+     * Wraps text to fit within the specified width. Each word is measured once with
+     * measureWidth(), and line widths are the sum of their words and spaces, so this is
+     * linear in the length of the text. Both rendering modes wrap with this, so the same
+     * text always breaks at the same places.
+     * <p>
+     * Because widths are advances, they include the space around each glyph that a check
+     * of the visible (ink) bounds would leave out. A word that would only just fit by its
+     * ink therefore goes onto the next line.
+     * </p>
      */
     protected List<String> wrapText(String text, FontRenderContext frc, Font font, int maxWidth) {
         List<String> lines = new ArrayList<>();
@@ -273,20 +459,29 @@ public class AnimatedTextRenderer {
             return lines;
         }
 
+        double spaceWidth = measureWidth(" ", frc, font);
         StringBuilder currentLine = new StringBuilder();
+        double currentWidth = 0;
 
         for (String word : words) {
-            String testLine = currentLine.length() == 0 ? word : currentLine + " " + word;
-
-            // Check if adding this word would exceed the width
-            TextLayout layout = new TextLayout(testLine, font, frc);
-            if (layout.getBounds().getWidth() > maxWidth && currentLine.length() != 0) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            double wordWidth = measureWidth(word, frc, font);
+            if (currentLine.length() == 0) {
+                currentLine.append(word);
+                currentWidth = wordWidth;
+            }
+            else if (currentWidth + spaceWidth + wordWidth > maxWidth) {
                 // Start a new line
                 lines.add(currentLine.toString());
-                currentLine = new StringBuilder(word);
+                currentLine.setLength(0);
+                currentLine.append(word);
+                currentWidth = wordWidth;
             }
             else {
-                currentLine = new StringBuilder(testLine);
+                currentLine.append(' ').append(word);
+                currentWidth += spaceWidth + wordWidth;
             }
         }
 
@@ -298,6 +493,14 @@ public class AnimatedTextRenderer {
         return lines;
     }
 
+    /**
+     * Returns the width of the given text when drawn in the given font, measured by advance
+     * (which is also how incremental rendering positions its glyphs).
+     */
+    protected double measureWidth(String text, FontRenderContext frc, Font font) {
+        return font.getStringBounds(text, frc).getWidth();
+    }
+
     /**
      * Returns the current buffer image
      */
@@ -336,6 +539,7 @@ public class AnimatedTextRenderer {
     public void setTextColor(Color textColor) {
         this.textColor = textColor;
         this.cursorColor = textColor; // Update cursor color to match
+        this.needsFullRedraw = true;
         // Re-render current text with new color
         if (currentCharIndex > 0) {
             renderUpToCharacter(currentCharIndex);
@@ -365,6 +569,7 @@ public class AnimatedTextRenderer {
      */
     public void setBackgroundColor(Color backgroundColor) {
         this.backgroundColor = backgroundColor;
+        this.needsFullRedraw = true;
         // Re-render current text with new background
         if (currentCharIndex > 0) {
             renderUpToCharacter(currentCharIndex);
@@ -379,6 +584,26 @@ public class AnimatedTextRenderer {
         this.needsReflow = true;
     }
 
+    /**
+     * Enables or disables incremental rendering (triggers reflow). When enabled, the text is
+     * laid out once into cached glyph runs, and each frame draws only the newly revealed
+     * characters plus the cursor area, rather than redrawing all text revealed so far.
+     * This is off by default.
+     */
+    public void setIncrementalRendering(boolean incremental) {
+        if (incremental != incrementalRendering) {
+            this.incrementalRendering = incremental;
+            this.needsReflow = true;
+        }
+    }
+
+    /**
+     * Reports whether incremental rendering is enabled.
+     */
+    public boolean isIncrementalRendering() {
+        return incrementalRendering;
+    }
+
     /**
      * Checks if animation is complete
      */
@@ -406,6 +631,8 @@ public class AnimatedTextRenderer {
         this.cursorAccumulator = 0.0;
         this.showCursor = true;
         this.lastUpdateTime = System.currentTimeMillis();
+        this.renderedCharIndex = 0;
+        this.lastCursorBounds = null;
         clearBuffer();
     }
 
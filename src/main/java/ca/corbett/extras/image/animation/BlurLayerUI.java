@@ -6,7 +6,6 @@ import javax.swing.JPanel;
 import javax.swing.Timer;
 import javax.swing.plaf.LayerUI;
 import java.awt.AWTEvent;
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
@@ -101,6 +100,13 @@ public class BlurLayerUI extends LayerUI<JPanel> {
 
     private boolean blurred = false;
     private BufferedImage blurredImage;
+
+    // Offscreen surface holding the blurred image with the color and text overlays already
+    // composited on top. Animation frames only change the opacity it is drawn with:
+    private final CompositingSurface overlaySurface = new CompositingSurface(this::paintOverlay);
+
+    private final FrameMetrics frameMetrics = new FrameMetrics("BlurLayerUI");
+    private boolean frameMetricsOverlayVisible;
     private Color blurOverlayColor;
     private String overlayText;
     private int overlayTextSize;
@@ -142,13 +148,14 @@ public class BlurLayerUI extends LayerUI<JPanel> {
             timer.stop();
         }
         animating = false;
+        frameMetrics.pause();
         onComplete = null;
         
         boolean oldValue = this.blurred;
         this.blurred = blurred;
         this.blurOpacity = blurred ? 1f : 0f;
         if (!blurred) {
-            blurredImage = null; // Clear cached image
+            clearCachedImages();
         }
 
         // Request a repaint to reflect the change
@@ -225,6 +232,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
                 blurOverlayColor.getGreen(),
                 blurOverlayColor.getBlue(),
                 BLUR_ALPHA);
+        overlaySurface.invalidate();
     }
 
     /**
@@ -240,6 +248,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
      */
     public BlurLayerUI setOverlayText(String overlayText) {
         this.overlayText = overlayText;
+        overlaySurface.invalidate();
         return this;
     }
 
@@ -263,6 +272,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
                                                        TEXT_MINIMUM_SIZE + " and " + TEXT_MAXIMUM_SIZE);
         }
         this.overlayTextSize = overlayTextSize;
+        overlaySurface.invalidate();
     }
 
     /**
@@ -277,6 +287,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
      */
     public void setOverlayTextColor(Color overlayTextColor) {
         this.overlayTextColor = overlayTextColor;
+        overlaySurface.invalidate();
     }
 
     /**
@@ -296,12 +307,57 @@ public class BlurLayerUI extends LayerUI<JPanel> {
         BlurIntensity old = this.blurIntensity;
         if (old != intensity) {
             this.blurIntensity = intensity;
-            this.blurredImage = null; // clear cached image so new intensity is applied
+            clearCachedImages(); // clear cached image so new intensity is applied
             firePropertyChange("blurIntensity", old, intensity);
         }
         return this;
     }
 
+    /**
+     * Reports whether the blur overlay is allowed to use an accelerated (VolatileImage)
+     * offscreen surface. This is enabled by default.
+     */
+    public boolean isAccelerationEnabled() {
+        return overlaySurface.isAccelerationEnabled();
+    }
+
+    /**
+     * Allows or disallows the use of an accelerated (VolatileImage) offscreen surface for
+     * the blur overlay. Acceleration is enabled by default, and will fall back to a
+     * BufferedImage automatically if it isn't available. You may wish to disable it if you
+     * encounter rendering problems with a particular graphics driver.
+     */
+    public BlurLayerUI setAccelerationEnabled(boolean enabled) {
+        overlaySurface.setAccelerationEnabled(enabled);
+        return this;
+    }
+
+    /**
+     * Returns frame timing statistics for this effect.
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
+    }
+
+    /**
+     * Reports whether the frame timing debug overlay is shown.
+     */
+    public boolean isFrameMetricsOverlayVisible() {
+        return frameMetricsOverlayVisible;
+    }
+
+    /**
+     * Shows or hides a small debug overlay in the top left corner of the layer, displaying
+     * the current frame timing statistics for this effect. This is off by default.
+     */
+    public BlurLayerUI setFrameMetricsOverlayVisible(boolean visible) {
+        this.frameMetricsOverlayVisible = visible;
+        if (layer != null) {
+            layer.repaint();
+        }
+        return this;
+    }
+
     /**
      * Performs a "blur out" animation, gradually applying the blur effect.
      * Optionally, you can provide a Runnable that will be executed when the blur
@@ -318,13 +374,17 @@ public class BlurLayerUI extends LayerUI<JPanel> {
         this.animating = true;
 
         float increment = (float)animationSpeed.getDelayMS() / animationDuration.getDurationMS();
+        frameMetrics.setTargetFps(1000.0 / animationSpeed.getDelayMS());
+        frameMetrics.pause();
 
         timer = new Timer(animationSpeed.getDelayMS(), e -> {
+            long tickStart = System.nanoTime();
             blurOpacity += increment;
             if (blurOpacity >= 1f) {
                 blurOpacity = 1f;
                 timer.stop();
                 animating = false;
+                frameMetrics.pause();
                 // Force a final repaint at full opacity before executing callback
                 if (layer != null) {
                     layer.repaint();
@@ -342,6 +402,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
             else if (layer != null) {
                 layer.repaint();
             }
+            frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, System.nanoTime() - tickStart);
         });
         timer.start();
     }
@@ -364,15 +425,19 @@ public class BlurLayerUI extends LayerUI<JPanel> {
         this.animating = true;
 
         float decrement = (float)animationSpeed.getDelayMS() / animationDuration.getDurationMS();
+        frameMetrics.setTargetFps(1000.0 / animationSpeed.getDelayMS());
+        frameMetrics.pause();
 
         timer = new Timer(animationSpeed.getDelayMS(), e -> {
+            long tickStart = System.nanoTime();
             blurOpacity -= decrement;
             if (blurOpacity <= 0f) {
                 blurOpacity = 0f;
                 timer.stop();
                 animating = false;
+                frameMetrics.pause();
                 this.blurred = false;
-                blurredImage = null; // Clear cached image
+                clearCachedImages();
                 // Force a final repaint at zero opacity before executing callback
                 if (layer != null) {
                     layer.repaint();
@@ -390,6 +455,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
             else if (layer != null) {
                 layer.repaint();
             }
+            frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, System.nanoTime() - tickStart);
         });
         timer.start();
     }
@@ -397,54 +463,77 @@ public class BlurLayerUI extends LayerUI<JPanel> {
     @Override
     public void paint(Graphics g, JComponent c) {
         // Paint the component normally first
+        long contentStart = System.nanoTime();
         super.paint(g, c);
+        long effectStart = System.nanoTime();
 
         if (blurred || blurOpacity > 0f) {
-            // Create blurred overlay
+            // Create blurred image if we don't have one or if the size has changed
             if (blurredImage == null ||
                     blurredImage.getWidth() != c.getWidth() ||
                     blurredImage.getHeight() != c.getHeight()) {
 
                 blurredImage = createBlurredImage(c);
+                overlaySurface.invalidate();
             }
 
-            // Draw the blurred image over the component with opacity
-            Graphics2D g2 = (Graphics2D)g.create();
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, blurOpacity));
-            g2.drawImage(blurredImage, 0, 0, null);
-            g2.dispose();
-
-            // Add semi-transparent overlay
-            g.setColor(blurOverlayColor);
-            Graphics2D g2d = (Graphics2D)g.create();
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, blurOpacity));
-            g2d.fillRect(0, 0, c.getWidth(), c.getHeight());
-            g2d.dispose();
-
-            if (overlayText != null && !overlayText.isBlank()) {
-                g.setColor(overlayTextColor);
-                g.setFont(g.getFont().deriveFont(Font.BOLD, (float)overlayTextSize));
-                FontMetrics fm = g.getFontMetrics();
-                String[] lines = overlayText.replace("\\n", "\n").split("\n", -1);
-                int lineHeight = fm.getHeight();
-                int totalHeight = lineHeight * lines.length;
-                int startY = (c.getHeight() - totalHeight) / 2 + fm.getAscent();
-
-                // Enable antialiasing for smoother text
-                Graphics2D g2text = (Graphics2D)g.create();
-                g2text.setRenderingHint(java.awt.RenderingHints.KEY_TEXT_ANTIALIASING,
-                                     java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-                g2text.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, blurOpacity));
-                for (int i = 0; i < lines.length; i++) {
-                    int x = (c.getWidth() - fm.stringWidth(lines[i])) / 2;
-                    int y = startY + i * lineHeight;
-                    g2text.drawString(lines[i], x, y);
-                }
-                g2text.dispose();
+            // The blurred image, color overlay, and text are all composited together
+            // once into our overlay surface, so each frame is just one blit:
+            overlaySurface.draw(g, c, blurOpacity);
+        }
+
+        if (animating) {
+            frameMetrics.recordPhase(FrameMetrics.Phase.CONTENT, effectStart - contentStart);
+            frameMetrics.recordPhase(FrameMetrics.Phase.EFFECT, System.nanoTime() - effectStart);
+            frameMetrics.frameCompleted();
+        }
+        if (frameMetricsOverlayVisible) {
+            frameMetrics.paintOverlay((Graphics2D)g, 4, 4);
+        }
+    }
+
+    /**
+     * Renders the overlay content (blurred image, color overlay, and text) into our
+     * offscreen surface.
+     */
+    private void paintOverlay(Graphics2D g, int width, int height) {
+        if (blurredImage != null) {
+            g.drawImage(blurredImage, 0, 0, null);
+        }
+
+        // Add semi-transparent overlay
+        g.setColor(blurOverlayColor);
+        g.fillRect(0, 0, width, height);
+
+        if (overlayText != null && !overlayText.isBlank()) {
+            Font baseFont = layer != null && layer.getFont() != null ? layer.getFont() : g.getFont();
+            g.setColor(overlayTextColor);
+            g.setFont(baseFont.deriveFont(Font.BOLD, (float)overlayTextSize));
+            FontMetrics fm = g.getFontMetrics();
+            String[] lines = overlayText.replace("\\n", "\n").split("\n", -1);
+            int lineHeight = fm.getHeight();
+            int totalHeight = lineHeight * lines.length;
+            int startY = (height - totalHeight) / 2 + fm.getAscent();
+
+            // Enable antialiasing for smoother text
+            g.setRenderingHint(java.awt.RenderingHints.KEY_TEXT_ANTIALIASING,
+                               java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            for (int i = 0; i < lines.length; i++) {
+                int x = (width - fm.stringWidth(lines[i])) / 2;
+                int y = startY + i * lineHeight;
+                g.drawString(lines[i], x, y);
             }
         }
     }
 
+    /**
+     * Discards the cached blurred image and overlay surface.
+     */
+    private void clearCachedImages() {
+        blurredImage = null;
+        overlaySurface.flush();
+    }
+
     /**
      * Invoked internally to capture an image of the given component and then
      * overlay a blur effect on it.
@@ -507,6 +596,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
         }
         // Reset animation and blur state so this UI instance can be safely reused
         animating = false;
+        frameMetrics.pause();
         onComplete = null;
         blurred = false;
         blurOpacity = 0.0f;
@@ -514,7 +604,7 @@ public class BlurLayerUI extends LayerUI<JPanel> {
             ((JLayer<?>) c).setLayerEventMask(0);
         }
         layer = null;
-        blurredImage = null;
+        clearCachedImages();
     }
 
     @Override
@@ -0,0 +1,234 @@
+package ca.corbett.extras.image.animation;
+
+import javax.swing.JComponent;
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An offscreen surface shared by the animated LayerUI classes in this package, for overlays
+ * whose content stays the same while their opacity animates. The overlay content is rendered
+ * once into a VolatileImage, so that it can live in video memory. After that, each animation
+ * frame is just a single image blit with an alpha composite, which most pipelines can do in
+ * hardware.
+ * <p>
+ * VolatileImage contents can be lost at any time (display mode changes, the window moving to
+ * another screen, and so on). When that happens, the content is re-rendered and the draw is
+ * retried. If a VolatileImage can't be created at all (for example, in a headless environment
+ * or if the component isn't displayable yet), or if acceleration has been disabled, a plain
+ * BufferedImage is used instead.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+class CompositingSurface {
+
+    private static final Logger log = Logger.getLogger(CompositingSurface.class.getName());
+
+    /**
+     * How many times we'll try to re-render lost volatile contents in a single draw.
+     */
+    private static final int MAX_RESTORE_ATTEMPTS = 3;
+
+    /**
+     * Renders the overlay content into the surface. The surface is already cleared
+     * to fully transparent when this is invoked.
+     */
+    @FunctionalInterface
+    interface ContentPainter {
+        void paintContent(Graphics2D g, int width, int height);
+    }
+
+    private final ContentPainter painter;
+    private VolatileImage volatileImage;
+    private BufferedImage fallbackImage;
+    private boolean contentValid;
+    private boolean accelerationEnabled;
+
+    CompositingSurface(ContentPainter painter) {
+        this.painter = painter;
+        this.accelerationEnabled = true;
+    }
+
+    /**
+     * Marks the surface content as stale, so that it will be re-rendered on the next draw.
+     */
+    void invalidate() {
+        contentValid = false;
+    }
+
+    /**
+     * Releases any offscreen images held by this surface.
+     */
+    void flush() {
+        if (volatileImage != null) {
+            volatileImage.flush();
+            volatileImage = null;
+        }
+        if (fallbackImage != null) {
+            fallbackImage.flush();
+            fallbackImage = null;
+        }
+        contentValid = false;
+    }
+
+    boolean isAccelerationEnabled() {
+        return accelerationEnabled;
+    }
+
+    void setAccelerationEnabled(boolean enabled) {
+        if (enabled != accelerationEnabled) {
+            accelerationEnabled = enabled;
+            flush();
+        }
+    }
+
+    /**
+     * Reports whether the last draw went through a VolatileImage.
+     */
+    boolean isAccelerated() {
+        return volatileImage != null;
+    }
+
+    /**
+     * Draws the surface content over the given component at the given opacity, rendering
+     * the content first if it is stale or if the component size has changed.
+     */
+    void draw(Graphics g, JComponent c, float opacity) {
+        int width = c.getWidth();
+        int height = c.getHeight();
+        if (width <= 0 || height <= 0 || opacity <= 0f) {
+            return;
+        }
+
+        Graphics2D g2 = (Graphics2D)g.create();
+        try {
+            // Disable anti-aliasing for better performance on large fills
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, Math.min(1f, opacity)));
+
+            if (accelerationEnabled && drawAccelerated(g2, c.getGraphicsConfiguration(), width, height)) {
+                return;
+            }
+            drawFallback(g2, width, height);
+        }
+        finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Attempts to draw via a VolatileImage. Returns false if that isn't possible, in which
+     * case the caller should fall back to drawFallback().
+     */
+    private boolean drawAccelerated(Graphics2D g2, GraphicsConfiguration gc, int width, int height) {
+        if (gc == null) {
+            return false;
+        }
+
+        try {
+            for (int attempt = 0; attempt < MAX_RESTORE_ATTEMPTS; attempt++) {
+                if (volatileImage == null
+                        || volatileImage.getWidth() != width
+                        || volatileImage.getHeight() != height) {
+                    recreateVolatileImage(gc, width, height);
+                    if (volatileImage == null) {
+                        return false;
+                    }
+                }
+
+                int status = volatileImage.validate(gc);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    recreateVolatileImage(gc, width, height);
+                    if (volatileImage == null) {
+                        return false;
+                    }
+                }
+                else if (status == VolatileImage.IMAGE_RESTORED) {
+                    contentValid = false;
+                }
+
+                if (!contentValid) {
+                    renderContent(volatileImage.createGraphics(), width, height);
+                    contentValid = true;
+                }
+
+                g2.drawImage(volatileImage, 0, 0, null);
+                if (!volatileImage.contentsLost()) {
+                    return true;
+                }
+                contentValid = false;
+            }
+        }
+        catch (RuntimeException e) {
+            // Some pipelines/drivers are flaky with volatile images. Don't keep trying:
+            log.log(Level.FINE, "CompositingSurface: disabling acceleration: " + e.getMessage(), e);
+            accelerationEnabled = false;
+            flush();
+            return false;
+        }
+
+        // Contents kept getting lost; just draw this frame from the fallback image:
+        contentValid = false;
+        return false;
+    }
+
+    private void recreateVolatileImage(GraphicsConfiguration gc, int width, int height) {
+        if (volatileImage != null) {
+            volatileImage.flush();
+        }
+        volatileImage = gc.createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT);
+        contentValid = false;
+
+        // We no longer need the fallback image if we're accelerated:
+        if (fallbackImage != null) {
+            fallbackImage.flush();
+            fallbackImage = null;
+        }
+    }
+
+    private void drawFallback(Graphics2D g2, int width, int height) {
+        if (volatileImage != null) {
+            volatileImage.flush();
+            volatileImage = null;
+            contentValid = false;
+        }
+        if (fallbackImage == null || fallbackImage.getWidth() != width || fallbackImage.getHeight() != height) {
+            fallbackImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            contentValid = false;
+        }
+        if (!contentValid) {
+            renderContent(fallbackImage.createGraphics(), width, height);
+            contentValid = true;
+        }
+        g2.drawImage(fallbackImage, 0, 0, null);
+    }
+
+    private void renderContent(Graphics2D g, int width, int height) {
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.setComposite(AlphaComposite.SrcOver);
+            painter.paintContent(g, width, height);
+        }
+        finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Exposed for testing: returns whichever image currently backs this surface, or null.
+     */
+    Image getBackingImage() {
+        return volatileImage != null ? volatileImage : fallbackImage;
+    }
+}
@@ -6,13 +6,10 @@ import javax.swing.JPanel;
 import javax.swing.Timer;
 import javax.swing.plaf.LayerUI;
 import java.awt.AWTEvent;
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 
 /**
  * This is a LayerUI implementation that can be used to "fade" a JPanel
@@ -73,10 +70,12 @@ public class FadeLayerUI extends LayerUI<JPanel> {
     private AnimationDuration animationDuration;
     private AnimationSpeed animationSpeed;
 
-    // Cache for the fade overlay
-    private BufferedImage fadeCache;
-    private int lastWidth = -1;
-    private int lastHeight = -1;
+    // Offscreen surface for the fade overlay. The overlay is rendered once, and each
+    // animation frame only changes the opacity it is composited with:
+    private final CompositingSurface fadeSurface = new CompositingSurface(this::paintFadeOverlay);
+
+    private final FrameMetrics frameMetrics = new FrameMetrics("FadeLayerUI");
+    private boolean frameMetricsOverlayVisible;
 
     /**
      * Creates a new FadeLayerUI with default settings. You can associate it with
@@ -110,6 +109,7 @@ public class FadeLayerUI extends LayerUI<JPanel> {
      */
     public FadeLayerUI setFadeColor(Color fadeColor) {
         this.fadeColor = fadeColor;
+        fadeSurface.invalidate();
         return this;
     }
 
@@ -143,6 +143,51 @@ public class FadeLayerUI extends LayerUI<JPanel> {
         return this;
     }
 
+    /**
+     * Reports whether the fade overlay is allowed to use an accelerated (VolatileImage)
+     * offscreen surface. This is enabled by default.
+     */
+    public boolean isAccelerationEnabled() {
+        return fadeSurface.isAccelerationEnabled();
+    }
+
+    /**
+     * Allows or disallows the use of an accelerated (VolatileImage) offscreen surface for
+     * the fade overlay. Acceleration is enabled by default, and will fall back to a
+     * BufferedImage automatically if it isn't available. You may wish to disable it if you
+     * encounter rendering problems with a particular graphics driver.
+     */
+    public FadeLayerUI setAccelerationEnabled(boolean enabled) {
+        fadeSurface.setAccelerationEnabled(enabled);
+        return this;
+    }
+
+    /**
+     * Returns frame timing statistics for this effect.
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
+    }
+
+    /**
+     * Reports whether the frame timing debug overlay is shown.
+     */
+    public boolean isFrameMetricsOverlayVisible() {
+        return frameMetricsOverlayVisible;
+    }
+
+    /**
+     * Shows or hides a small debug overlay in the top left corner of the layer, displaying
+     * the current frame timing statistics for this effect. This is off by default.
+     */
+    public FadeLayerUI setFrameMetricsOverlayVisible(boolean visible) {
+        this.frameMetricsOverlayVisible = visible;
+        if (layer != null) {
+            layer.repaint();
+        }
+        return this;
+    }
+
     /**
      * Performs a "fade out" animation, fading the content to the configured fade color.
      * Optionally, you can provide a Runnable that will be executed when the fade out
@@ -159,14 +204,18 @@ public class FadeLayerUI extends LayerUI<JPanel> {
         this.animating = true;
 
         float increment = (float)animationSpeed.getDelayMS() / animationDuration.getDurationMS();
+        frameMetrics.setTargetFps(1000.0 / animationSpeed.getDelayMS());
+        frameMetrics.pause();
 
         timer = new Timer(animationSpeed.getDelayMS(), e -> {
+            long tickStart = System.nanoTime();
             opacity += increment;
             if (opacity >= 1f) {
                 opacity = 1f;
                 timer.stop();
                 animating = false;
-                fadeCache = null; // Clear cache
+                fadeSurface.flush(); // Release offscreen memory
+                frameMetrics.pause();
                 // Force a final repaint at full opacity before executing callback
                 if (layer != null) {
                     layer.repaint();
@@ -184,6 +233,7 @@ public class FadeLayerUI extends LayerUI<JPanel> {
             else if (layer != null) {
                 layer.repaint();
             }
+            frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, System.nanoTime() - tickStart);
         });
         timer.start();
     }
@@ -206,14 +256,18 @@ public class FadeLayerUI extends LayerUI<JPanel> {
         this.animating = true;
 
         float decrement = (float)animationSpeed.getDelayMS() / animationDuration.getDurationMS();
+        frameMetrics.setTargetFps(1000.0 / animationSpeed.getDelayMS());
+        frameMetrics.pause();
 
         timer = new Timer(animationSpeed.getDelayMS(), e -> {
+            long tickStart = System.nanoTime();
             opacity -= decrement;
             if (opacity <= 0f) {
                 opacity = 0f;
                 timer.stop();
                 animating = false;
-                fadeCache = null; // Clear cache
+                fadeSurface.flush(); // Release offscreen memory
+                frameMetrics.pause();
                 // Force a final repaint at zero opacity before executing callback
                 if (layer != null) {
                     layer.repaint();
@@ -231,6 +285,7 @@ public class FadeLayerUI extends LayerUI<JPanel> {
             else if (layer != null) {
                 layer.repaint();
             }
+            frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, System.nanoTime() - tickStart);
         });
         timer.start();
     }
@@ -257,38 +312,39 @@ public class FadeLayerUI extends LayerUI<JPanel> {
         if (timer != null && timer.isRunning()) {
             timer.stop();
         }
+        frameMetrics.pause();
         layer = null;
-        fadeCache = null;
+        fadeSurface.flush();
     }
 
     @Override
     public void paint(Graphics g, JComponent c) {
+        long contentStart = System.nanoTime();
         super.paint(g, c);
+        long effectStart = System.nanoTime();
 
         if (opacity > 0f) {
-            int width = c.getWidth();
-            int height = c.getHeight();
-
-            // Create or recreate cache if dimensions changed
-            if (fadeCache == null || lastWidth != width || lastHeight != height) {
-                fadeCache = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D cacheG = fadeCache.createGraphics();
-                cacheG.setColor(fadeColor);
-                cacheG.fillRect(0, 0, width, height);
-                cacheG.dispose();
-                lastWidth = width;
-                lastHeight = height;
-            }
+            fadeSurface.draw(g, c, opacity);
+        }
 
-            Graphics2D g2 = (Graphics2D)g.create();
-            // Disable anti-aliasing for better performance on large fills
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-            g2.drawImage(fadeCache, 0, 0, null);
-            g2.dispose();
+        if (animating) {
+            frameMetrics.recordPhase(FrameMetrics.Phase.CONTENT, effectStart - contentStart);
+            frameMetrics.recordPhase(FrameMetrics.Phase.EFFECT, System.nanoTime() - effectStart);
+            frameMetrics.frameCompleted();
+        }
+        if (frameMetricsOverlayVisible) {
+            frameMetrics.paintOverlay((Graphics2D)g, 4, 4);
         }
     }
 
+    /**
+     * Renders the fade overlay content into our offscreen surface.
+     */
+    private void paintFadeOverlay(Graphics2D g, int width, int height) {
+        g.setColor(fadeColor);
+        g.fillRect(0, 0, width, height);
+    }
+
     // Block mouse events during animation
     @Override
     protected void processMouseEvent(MouseEvent e, JLayer<? extends JPanel> l) {
@@ -0,0 +1,315 @@
+package ca.corbett.extras.image.animation;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects frame timing statistics for an animation effect: a histogram of frame times,
+ * achieved frames per second, a count of dropped frames, and a breakdown of where the
+ * time in each frame was spent. Every animation class in this package exposes one of these
+ * via getFrameMetrics(), so you can find out which effect is blowing your frame budget
+ * on slow hardware.
+ * <p>
+ * <b>Phases</b> - each frame is made up of up to three phases. UPDATE is the time spent
+ * advancing the animation state (moving images, updating snowflakes, stepping opacity),
+ * CONTENT is the time spent painting the wrapped component underneath a LayerUI effect, and
+ * EFFECT is the time spent painting the effect itself. The frame time is the sum of all
+ * phases recorded since the previous frame.
+ * </p>
+ * <p>
+ * <b>Dropped frames</b> - if the interval between two frames is more than 1.5 times the
+ * target frame interval, the frames that should have fit into that gap are counted as dropped.
+ * Use pause() when an animation stops, so that the idle gap before it starts again isn't
+ * counted.
+ * </p>
+ * <p>
+ * Statistics can be read programmatically with getSnapshot(), or drawn as a small debug
+ * overlay with paintOverlay(). The LayerUI classes in this package can do that for you via
+ * setFrameMetricsOverlayVisible(true).
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class FrameMetrics {
+
+    /**
+     * The parts of a frame that are timed separately.
+     */
+    public enum Phase {
+        UPDATE("Update"),
+        CONTENT("Content"),
+        EFFECT("Effect");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final double DEFAULT_TARGET_FPS = 60.0;
+
+    /**
+     * Upper bounds (exclusive, in milliseconds) of each histogram bucket. There is one
+     * additional bucket at the end for frames that took longer than the last bound.
+     */
+    private static final long[] BUCKET_BOUNDS_MS = {1, 2, 4, 8, 16, 33, 66, 100};
+
+    /**
+     * Smoothing factor for the exponential moving average of the frame interval.
+     */
+    private static final double FPS_SMOOTHING = 0.1;
+
+    private final String name;
+    private double targetFps;
+    private boolean enabled;
+
+    private final long[] pendingPhaseNanos = new long[Phase.values().length];
+    private final long[] totalPhaseNanos = new long[Phase.values().length];
+    private final long[] histogram = new long[BUCKET_BOUNDS_MS.length + 1];
+    private long frameCount;
+    private long droppedFrames;
+    private long totalFrameNanos;
+    private long maxFrameNanos;
+    private long lastFrameTimestamp;
+    private double averageIntervalNanos;
+
+    /**
+     * Creates a new, empty FrameMetrics with the given name and the default target frame rate.
+     *
+     * @param name A name for the effect being measured (shown in the debug overlay).
+     */
+    public FrameMetrics(String name) {
+        this.name = name;
+        this.targetFps = DEFAULT_TARGET_FPS;
+        this.enabled = true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized double getTargetFps() {
+        return targetFps;
+    }
+
+    /**
+     * Sets the frame rate that this animation is expected to achieve. This is used to
+     * decide when frames have been dropped.
+     */
+    public synchronized void setTargetFps(double targetFps) {
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("Target fps must be greater than zero.");
+        }
+        this.targetFps = targetFps;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Metrics are enabled by default. If disabled, all record methods do nothing.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records time spent in the given phase of the current frame.
+     *
+     * @param phase The phase that was timed.
+     * @param nanos How long it took, in nanoseconds.
+     */
+    public synchronized void recordPhase(Phase phase, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        pendingPhaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Marks the end of a frame. All phase times recorded since the previous frame are
+     * added up into this frame's time.
+     */
+    public synchronized void frameCompleted() {
+        if (!enabled) {
+            return;
+        }
+
+        long frameNanos = 0;
+        for (int i = 0; i < pendingPhaseNanos.length; i++) {
+            frameNanos += pendingPhaseNanos[i];
+            totalPhaseNanos[i] += pendingPhaseNanos[i];
+            pendingPhaseNanos[i] = 0;
+        }
+        frameCount++;
+        totalFrameNanos += frameNanos;
+        maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+        histogram[bucketFor(frameNanos)]++;
+
+        long now = System.nanoTime();
+        if (lastFrameTimestamp != 0) {
+            long interval = now - lastFrameTimestamp;
+            double targetInterval = 1_000_000_000.0 / targetFps;
+            if (interval > targetInterval * 1.5) {
+                droppedFrames += Math.round(interval / targetInterval) - 1;
+            }
+            averageIntervalNanos = averageIntervalNanos == 0
+                    ? interval
+                    : averageIntervalNanos + FPS_SMOOTHING * (interval - averageIntervalNanos);
+        }
+        lastFrameTimestamp = now;
+    }
+
+    /**
+     * Signals that the animation has stopped. The gap between now and the next frame will
+     * not be counted as dropped frames, and any partially recorded frame is discarded.
+     */
+    public synchronized void pause() {
+        lastFrameTimestamp = 0;
+        Arrays.fill(pendingPhaseNanos, 0);
+    }
+
+    /**
+     * Discards all collected statistics.
+     */
+    public synchronized void reset() {
+        Arrays.fill(pendingPhaseNanos, 0);
+        Arrays.fill(totalPhaseNanos, 0);
+        Arrays.fill(histogram, 0);
+        frameCount = 0;
+        droppedFrames = 0;
+        totalFrameNanos = 0;
+        maxFrameNanos = 0;
+        lastFrameTimestamp = 0;
+        averageIntervalNanos = 0;
+    }
+
+    /**
+     * Returns a point-in-time copy of the current statistics.
+     */
+    public synchronized Snapshot getSnapshot() {
+        double[] averagePhaseMillis = new double[totalPhaseNanos.length];
+        for (int i = 0; i < totalPhaseNanos.length; i++) {
+            averagePhaseMillis[i] = frameCount == 0 ? 0 : totalPhaseNanos[i] / 1_000_000.0 / frameCount;
+        }
+        return new Snapshot(name,
+                            frameCount,
+                            droppedFrames,
+                            averageIntervalNanos == 0 ? 0 : 1_000_000_000.0 / averageIntervalNanos,
+                            targetFps,
+                            frameCount == 0 ? 0 : totalFrameNanos / 1_000_000.0 / frameCount,
+                            maxFrameNanos / 1_000_000.0,
+                            averagePhaseMillis,
+                            histogram.clone());
+    }
+
+    /**
+     * Returns the upper bounds, in milliseconds, of the frame time histogram buckets.
+     * The histogram has one more bucket than this, for frames slower than the last bound.
+     */
+    public static long[] getHistogramBucketBounds() {
+        return BUCKET_BOUNDS_MS.clone();
+    }
+
+    /**
+     * Draws a small translucent box at the given location showing the current statistics.
+     * This is intended for debugging, and is not included in the recorded frame times.
+     */
+    public void paintOverlay(Graphics2D g, int x, int y) {
+        List<String> lines = getSnapshot().toLines();
+        Graphics2D g2 = (Graphics2D)g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+            FontMetrics fm = g2.getFontMetrics();
+            int width = 0;
+            for (String line : lines) {
+                width = Math.max(width, fm.stringWidth(line));
+            }
+            int padding = 4;
+            g2.setColor(new Color(0, 0, 0, 160));
+            g2.fillRect(x, y, width + padding * 2, fm.getHeight() * lines.size() + padding * 2);
+            g2.setColor(Color.WHITE);
+            int lineY = y + padding + fm.getAscent();
+            for (String line : lines) {
+                g2.drawString(line, x + padding, lineY);
+                lineY += fm.getHeight();
+            }
+        }
+        finally {
+            g2.dispose();
+        }
+    }
+
+    private static int bucketFor(long frameNanos) {
+        long millis = frameNanos / 1_000_000;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (millis < BUCKET_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    /**
+     * An immutable point-in-time copy of the statistics in a FrameMetrics instance.
+     *
+     * @param name               The name of the effect being measured.
+     * @param frameCount         The number of frames recorded.
+     * @param droppedFrames      The number of frames that were expected but never happened.
+     * @param achievedFps        The recent (smoothed) frame rate.
+     * @param targetFps          The frame rate the effect is expected to achieve.
+     * @param averageFrameMillis The average frame time, in milliseconds.
+     * @param maxFrameMillis     The slowest frame time, in milliseconds.
+     * @param averagePhaseMillis The average time per frame spent in each Phase, indexed by ordinal.
+     * @param histogram          Frame counts per histogram bucket (see getHistogramBucketBounds()).
+     */
+    public record Snapshot(String name, long frameCount, long droppedFrames, double achievedFps, double targetFps,
+                           double averageFrameMillis, double maxFrameMillis, double[] averagePhaseMillis,
+                           long[] histogram) {
+
+        /**
+         * Returns the average time per frame spent in the given phase, in milliseconds.
+         */
+        public double getAveragePhaseMillis(Phase phase) {
+            return averagePhaseMillis[phase.ordinal()];
+        }
+
+        /**
+         * Formats this snapshot as a few short lines of text, suitable for logging or display.
+         */
+        public List<String> toLines() {
+            List<String> lines = new ArrayList<>();
+            lines.add(name);
+            lines.add(String.format(Locale.ROOT, "fps: %.1f / %.0f  dropped: %d",
+                                    achievedFps, targetFps, droppedFrames));
+            lines.add(String.format(Locale.ROOT, "frame: avg %.2fms  max %.2fms",
+                                    averageFrameMillis, maxFrameMillis));
+            StringBuilder phases = new StringBuilder();
+            for (Phase phase : Phase.values()) {
+                if (!phases.isEmpty()) {
+                    phases.append("  ");
+                }
+                phases.append(String.format(Locale.ROOT, "%s %.2fms", phase.toString().toLowerCase(Locale.ROOT),
+                                            getAveragePhaseMillis(phase)));
+            }
+            lines.add(phases.toString());
+            return lines;
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class ImageAnimator {
 
     protected EasingType easingType;
 
+    protected final FrameMetrics frameMetrics = new FrameMetrics("ImageAnimator");
+
     /**
      * Creates an ImageAnimator with default easing settings.
      */
@@ -180,6 +182,7 @@ public class ImageAnimator {
      * Updates movement of the image and renders it at its new position.
      */
     public void renderFrame(Graphics2D g) {
+        long updateStart = System.nanoTime();
         if (! movementComplete) {
             long currentTime = System.nanoTime();
             double deltaTime = (currentTime - lastUpdateTime) / 1_000_000_000.0; // Convert to seconds
@@ -229,6 +232,9 @@ public class ImageAnimator {
             }
         }
 
+        long paintStart = System.nanoTime();
+        frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, paintStart - updateStart);
+
         if (image != null) {
             // Render with transparency if requested:
             if (transparency < 1.0f) {
@@ -242,6 +248,9 @@ public class ImageAnimator {
                 g.setComposite(AlphaComposite.Clear);
             }
         }
+
+        frameMetrics.recordPhase(FrameMetrics.Phase.EFFECT, System.nanoTime() - paintStart);
+        frameMetrics.frameCompleted();
     }
 
     /**
@@ -289,6 +298,14 @@ public class ImageAnimator {
         return currentY;
     }
 
+    /**
+     * Returns frame timing statistics for this animator. Set the target fps on the returned
+     * instance to match your animation loop if you want accurate dropped frame counts.
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
+    }
+
     /**
      * @return the BufferedImage being animated
      */
@@ -107,6 +107,7 @@ public class ImageScroller {
     protected boolean scaleCalculationsDone;
     protected float bounceZoneRatio; // What fraction of the scrollable area is the "bounce zone"
     protected float minSpeedRatio;   // Minimum speed as a ratio of max speed (0.0 = complete stop, 1.0 = no slowdown)
+    protected final FrameMetrics frameMetrics = new FrameMetrics("ImageScroller");
 
     public ImageScroller(BufferedImage image, int displayWidth, int displayHeight) {
         scrollSpeed = ScrollSpeed.SLOW;
@@ -233,6 +234,15 @@ public class ImageScroller {
             image.flush();
         }
         isRunning = false;
+        frameMetrics.pause();
+    }
+
+    /**
+     * Returns frame timing statistics for this scroller. Set the target fps on the returned
+     * instance to match your animation loop if you want accurate dropped frame counts.
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
     }
 
     /**
@@ -246,6 +256,8 @@ public class ImageScroller {
             return;
         }
 
+        long updateStart = System.nanoTime();
+
         // Only do the scale calculations once:
         if (!scaleCalculationsDone) {
             xOffset = 0;
@@ -276,7 +288,10 @@ public class ImageScroller {
         }
         int imgWidth = (int)(image.getWidth() * zoomFactor);
         int imgHeight = (int)(image.getHeight() * zoomFactor);
+        long paintStart = System.nanoTime();
         g.drawImage(image, xOffset, yOffset, imgWidth, imgHeight, null);
+        long paintEnd = System.nanoTime();
+        frameMetrics.recordPhase(FrameMetrics.Phase.EFFECT, paintEnd - paintStart);
 
         // Calculate base speed
         float baseSpeed = scrollSpeed.getSpeed();
@@ -332,6 +347,9 @@ public class ImageScroller {
                 yDirection = 1;
             }
         }
+
+        frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, (paintStart - updateStart) + (System.nanoTime() - paintEnd));
+        frameMetrics.frameCompleted();
     }
 
     /**
@@ -101,6 +101,9 @@ public class SnowLayerUI extends LayerUI<JPanel> {
     private volatile Color internalSnowColor;
     private volatile Color internalSnowSparkleColor;
 
+    private final FrameMetrics frameMetrics = new FrameMetrics("SnowLayerUI");
+    private boolean frameMetricsOverlayVisible;
+
     /**
      * Creates a new SnowLayerUI with default settings.
      */
@@ -111,11 +114,14 @@ public class SnowLayerUI extends LayerUI<JPanel> {
         setSnowColor(DEFAULT_SNOW_COLOR);
 
         // Create our timer but don't start it yet:
+        frameMetrics.setTargetFps(1000.0 / 30);
         animationTimer = new Timer(30, new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (targetComponent != null) {
+                    long tickStart = System.nanoTime();
                     updateSnowflakes(targetComponent);
+                    frameMetrics.recordPhase(FrameMetrics.Phase.UPDATE, System.nanoTime() - tickStart);
                     targetComponent.repaint();
                 }
             }
@@ -144,6 +150,7 @@ public class SnowLayerUI extends LayerUI<JPanel> {
             else {
                 if (animationTimer.isRunning()) {
                     animationTimer.stop();
+                    frameMetrics.pause();
                 }
             }
         });
@@ -151,6 +158,32 @@ public class SnowLayerUI extends LayerUI<JPanel> {
         return this;
     }
 
+    /**
+     * Returns frame timing statistics for this effect.
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
+    }
+
+    /**
+     * Reports whether the frame timing debug overlay is shown.
+     */
+    public boolean isFrameMetricsOverlayVisible() {
+        return frameMetricsOverlayVisible;
+    }
+
+    /**
+     * Shows or hides a small debug overlay in the top left corner of the layer, displaying
+     * the current frame timing statistics for this effect. This is off by default.
+     */
+    public SnowLayerUI setFrameMetricsOverlayVisible(boolean visible) {
+        this.frameMetricsOverlayVisible = visible;
+        if (targetComponent != null) {
+            targetComponent.repaint();
+        }
+        return this;
+    }
+
     /**
      * Returns the current snow quantity setting.
      */
@@ -274,12 +307,17 @@ public class SnowLayerUI extends LayerUI<JPanel> {
     @Override
     public void paint(Graphics g, JComponent c) {
         // First paint the wrapped component normally
+        long contentStart = System.nanoTime();
         super.paint(g, c);
 
         // If it's not snowing, we're done:
         if (!isSnowing()) {
+            if (frameMetricsOverlayVisible) {
+                frameMetrics.paintOverlay((Graphics2D)g, 4, 4);
+            }
             return;
         }
+        long effectStart = System.nanoTime();
 
         // Now we can draw our snowflakes:
         Graphics2D g2 = (Graphics2D)g.create();
@@ -291,6 +329,13 @@ public class SnowLayerUI extends LayerUI<JPanel> {
         }
 
         g2.dispose();
+
+        frameMetrics.recordPhase(FrameMetrics.Phase.CONTENT, effectStart - contentStart);
+        frameMetrics.recordPhase(FrameMetrics.Phase.EFFECT, System.nanoTime() - effectStart);
+        frameMetrics.frameCompleted();
+        if (frameMetricsOverlayVisible) {
+            frameMetrics.paintOverlay((Graphics2D)g, 4, 4);
+        }
     }
 
     /**
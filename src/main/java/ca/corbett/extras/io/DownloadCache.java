@@ -0,0 +1,245 @@
+package ca.corbett.extras.io;
+
+import ca.corbett.extras.crypt.HashUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A content-addressed cache of downloaded files, for use with DownloadManager. Every file is
+ * stored once, under its SHA-256 hash, no matter how many URLs it was downloaded from. Each URL
+ * that has been downloaded gets a small entry recording which content it produced, along with
+ * the ETag and Last-Modified validators the server sent for it.
+ * <p>
+ * When a DownloadManager has a cache, it uses it in two ways:
+ * </p>
+ * <ul>
+ *     <li>If the caller supplies the expected SHA-256 of a download and the cache already
+ *     holds that content, it is copied straight from the cache without touching the network.</li>
+ *     <li>Otherwise, if the URL has been downloaded before, the request is made conditional
+ *     (If-None-Match / If-Modified-Since). If the server responds "304 Not Modified", the
+ *     cached content is used and nothing is transferred.</li>
+ * </ul>
+ * <p>
+ * The cache directory can be shared by several DownloadManager instances in the same
+ * application, and it persists across restarts. Nothing is ever evicted automatically;
+ * use remove() or clear() if the cache needs trimming.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class DownloadCache {
+
+    private static final Logger log = Logger.getLogger(DownloadCache.class.getName());
+
+    private static final String OBJECTS_DIR = "objects";
+    private static final String ENTRIES_DIR = "entries";
+    private static final String ENTRY_EXTENSION = ".entry";
+
+    private final File cacheDir;
+    private final Path objectsDir;
+    private final Path entriesDir;
+
+    /**
+     * Creates a DownloadCache rooted in the given directory, which will be created if needed.
+     *
+     * @param cacheDir The directory to store cached downloads in.
+     * @throws IOException If the cache directory can't be created.
+     */
+    public DownloadCache(File cacheDir) throws IOException {
+        if (cacheDir == null) {
+            throw new IllegalArgumentException("Cache directory cannot be null.");
+        }
+        this.cacheDir = cacheDir;
+        this.objectsDir = cacheDir.toPath().resolve(OBJECTS_DIR);
+        this.entriesDir = cacheDir.toPath().resolve(ENTRIES_DIR);
+        Files.createDirectories(objectsDir);
+        Files.createDirectories(entriesDir);
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Returns the cache entry for the given URL, or null if that URL hasn't been cached,
+     * or if its content has since been removed from the cache.
+     */
+    public synchronized Entry getEntry(URL url) {
+        Path entryFile = getEntryFile(url);
+        if (!Files.isRegularFile(entryFile)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(entryFile)) {
+            props.load(in);
+            Entry entry = new Entry(URI.create(props.getProperty("url")).toURL(),
+                                    props.getProperty("sha256"),
+                                    Long.parseLong(props.getProperty("size", "-1")),
+                                    props.getProperty("etag"),
+                                    props.getProperty("lastModified"));
+            return contains(entry.sha256()) ? entry : null;
+        }
+        catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "DownloadCache: ignoring unreadable entry " + entryFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reports whether content with the given SHA-256 hash (hex-encoded) is in the cache.
+     */
+    public boolean contains(String sha256) {
+        Path blob = getBlobFile(sha256);
+        return blob != null && Files.isRegularFile(blob);
+    }
+
+    /**
+     * Copies the cached content with the given SHA-256 hash to the given file, replacing
+     * it if it exists. Returns false if the cache doesn't hold that content.
+     */
+    public boolean copyTo(String sha256, File targetFile) throws IOException {
+        Path blob = getBlobFile(sha256);
+        if (blob == null || !Files.isRegularFile(blob)) {
+            return false;
+        }
+        Path tempFile = targetFile.toPath()
+                                  .resolveSibling(targetFile.getName() + DownloadThread.PARTIAL_FILE_EXTENSION);
+        Files.copy(blob, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        FileSystemUtil.moveAtomically(tempFile, targetFile.toPath());
+        return true;
+    }
+
+    /**
+     * Adds the given downloaded file to the cache, and records it as the content of the given URL.
+     * The file itself is copied, not moved.
+     *
+     * @param url          The URL the file was downloaded from.
+     * @param file         The downloaded file.
+     * @param sha256       The hex-encoded SHA-256 hash of the file, which the caller has already computed.
+     * @param etag         The ETag response header, or null if there wasn't one.
+     * @param lastModified The Last-Modified response header, or null if there wasn't one.
+     * @return The new cache entry.
+     * @throws IOException If the cache can't be written.
+     */
+    public synchronized Entry store(URL url, File file, String sha256, String etag, String lastModified)
+            throws IOException {
+        Path blob = getBlobFile(sha256);
+        if (blob == null) {
+            throw new IllegalArgumentException("Invalid SHA-256 hash: " + sha256);
+        }
+        if (!Files.isRegularFile(blob)) {
+            Files.createDirectories(blob.getParent());
+            Path tempFile = blob.resolveSibling(blob.getFileName() + DownloadThread.PARTIAL_FILE_EXTENSION);
+            Files.copy(file.toPath(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+            FileSystemUtil.moveAtomically(tempFile, blob);
+        }
+
+        Entry entry = new Entry(url, sha256.toLowerCase(Locale.ROOT), file.length(), etag, lastModified);
+        Properties props = new Properties();
+        props.setProperty("url", url.toString());
+        props.setProperty("sha256", entry.sha256());
+        props.setProperty("size", Long.toString(entry.size()));
+        if (etag != null) {
+            props.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            props.setProperty("lastModified", lastModified);
+        }
+        Path entryFile = getEntryFile(url);
+        Path tempFile = entryFile.resolveSibling(entryFile.getFileName() + DownloadThread.PARTIAL_FILE_EXTENSION);
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            props.store(out, null);
+        }
+        FileSystemUtil.moveAtomically(tempFile, entryFile);
+        return entry;
+    }
+
+    /**
+     * Forgets the given URL. Its content stays in the cache, as other URLs may refer to it,
+     * until clear() is invoked.
+     */
+    public synchronized void remove(URL url) throws IOException {
+        Files.deleteIfExists(getEntryFile(url));
+    }
+
+    /**
+     * Removes everything from the cache.
+     */
+    public synchronized void clear() throws IOException {
+        deleteContents(entriesDir);
+        deleteContents(objectsDir);
+    }
+
+    /**
+     * Returns the number of URLs with an entry in this cache.
+     */
+    public synchronized int getEntryCount() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(entriesDir, "*" + ENTRY_EXTENSION)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Path getEntryFile(URL url) {
+        String key = HashUtil.getHashString(HashUtil.HashType.SHA256, url.toString().getBytes(StandardCharsets.UTF_8));
+        return entriesDir.resolve(key + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Blobs are spread over 256 subdirectories by the first two characters of their hash, so that
+     * no single directory gets huge. Returns null if the given string isn't a SHA-256 hex hash.
+     */
+    private Path getBlobFile(String sha256) {
+        if (sha256 == null || sha256.length() != 64) {
+            return null;
+        }
+        String hash = sha256.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < hash.length(); i++) {
+            if (Character.digit(hash.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void deleteContents(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    deleteContents(path);
+                }
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Records what a given URL produced the last time it was downloaded.
+     *
+     * @param url          The URL that was downloaded.
+     * @param sha256       The hex-encoded SHA-256 hash of the content.
+     * @param size         The size of the content in bytes.
+     * @param etag         The ETag the server sent, or null.
+     * @param lastModified The Last-Modified header the server sent, or null.
+     */
+    public record Entry(URL url, String sha256, long size, String etag, String lastModified) {
+    }
+}
@@ -1,11 +1,23 @@
 package ca.corbett.extras.io;
 
+import ca.corbett.extras.crypt.HashUtil;
+
 import java.io.File;
 import java.net.URL;
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -14,6 +26,22 @@ import java.util.logging.Logger;
  * manager class creates and owns a single, reusable, thread-safe HttpClient that makes launching
  * multiple download requests much cleaner. It also keeps track of downloads in progress so that
  * we can offer methods like isDownloadInProgress() and stopAllDownloads().
+ * <p>
+ * <b>Scheduling</b> - downloads are queued and executed on a bounded pool of worker threads.
+ * At most getMaxConcurrentDownloads() downloads run at once, and at most getMaxDownloadsPerHost()
+ * of those may be talking to the same host. Anything beyond that waits in the queue, in the order
+ * it was requested, until a slot frees up. Local file copies only count against the overall limit.
+ * </p>
+ * <p>
+ * <b>Resume and parallel chunks</b> - the resume and parallel chunk settings on this class are
+ * applied to every DownloadThread it creates. See DownloadThread for details.
+ * </p>
+ * <p>
+ * <b>Caching and integrity</b> - give this manager a DownloadCache with setDownloadCache() to
+ * avoid transferring files that haven't changed since they were last downloaded. Callers that
+ * know the SHA-256 of what they are downloading can pass it to downloadFile(), both to have the
+ * download verified and to skip the network entirely when the cache already holds that content.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since swing-extras 2.5
@@ -24,15 +52,154 @@ public class DownloadManager {
 
     public static final int CONNECTION_TIMEOUT_SECONDS = 10;
     public static final int DOWNLOAD_TIMEOUT_SECONDS = 60;
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 8;
+    public static final int DEFAULT_MAX_DOWNLOADS_PER_HOST = 4;
+
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
 
     private final HttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final Deque<DownloadThread> queuedDownloads = new ArrayDeque<>();
+    private final Map<String, Integer> activeDownloadsByHost = new HashMap<>();
     private final List<DownloadThread> downloadsInProgress = new ArrayList<>();
+    private final List<DownloadThread> scheduledDownloads = new ArrayList<>();
+    private int activeDownloads;
+    private int maxConcurrentDownloads;
+    private int maxDownloadsPerHost;
+    private boolean resumeEnabled;
+    private int maxParallelChunks;
+    private long parallelChunkThreshold;
+    private DownloadCache downloadCache;
+    private boolean isClosed;
 
     public DownloadManager() {
+        this(DEFAULT_MAX_CONCURRENT_DOWNLOADS, DEFAULT_MAX_DOWNLOADS_PER_HOST);
+    }
+
+    /**
+     * Creates a DownloadManager with the given concurrency limits.
+     *
+     * @param maxConcurrentDownloads The most downloads that can run at the same time.
+     * @param maxDownloadsPerHost    The most downloads that can run at the same time against a single host.
+     */
+    public DownloadManager(int maxConcurrentDownloads, int maxDownloadsPerHost) {
+        validateLimit(maxConcurrentDownloads, "Max concurrent downloads");
+        validateLimit(maxDownloadsPerHost, "Max downloads per host");
+        this.maxConcurrentDownloads = maxConcurrentDownloads;
+        this.maxDownloadsPerHost = maxDownloadsPerHost;
+        this.resumeEnabled = true;
+        this.maxParallelChunks = 1;
+        this.parallelChunkThreshold = DownloadThread.DEFAULT_PARALLEL_CHUNK_THRESHOLD;
         this.httpClient = HttpClient.newBuilder()
                                     .connectTimeout(Duration.ofSeconds(CONNECTION_TIMEOUT_SECONDS))
                                     .followRedirects(HttpClient.Redirect.NORMAL)
                                     .build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrentDownloads, maxConcurrentDownloads,
+                                               WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                               new LinkedBlockingQueue<>(),
+                                               r -> {
+                                                   Thread t = new Thread(r, "DownloadManager-worker-"
+                                                           + threadCount.incrementAndGet());
+                                                   t.setDaemon(true);
+                                                   return t;
+                                               });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public synchronized int getMaxConcurrentDownloads() {
+        return maxConcurrentDownloads;
+    }
+
+    /**
+     * Sets the most downloads that can run at the same time. If this is lowered while
+     * downloads are running, nothing is interrupted; new downloads just won't start until
+     * enough of the running ones have finished.
+     */
+    public DownloadManager setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        validateLimit(maxConcurrentDownloads, "Max concurrent downloads");
+        synchronized (this) {
+            if (maxConcurrentDownloads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(maxConcurrentDownloads);
+                executor.setCorePoolSize(maxConcurrentDownloads);
+            }
+            else {
+                executor.setCorePoolSize(maxConcurrentDownloads);
+                executor.setMaximumPoolSize(maxConcurrentDownloads);
+            }
+            this.maxConcurrentDownloads = maxConcurrentDownloads;
+        }
+        scheduleQueuedDownloads();
+        return this;
+    }
+
+    public synchronized int getMaxDownloadsPerHost() {
+        return maxDownloadsPerHost;
+    }
+
+    /**
+     * Sets the most downloads that can run at the same time against any single host.
+     */
+    public DownloadManager setMaxDownloadsPerHost(int maxDownloadsPerHost) {
+        validateLimit(maxDownloadsPerHost, "Max downloads per host");
+        synchronized (this) {
+            this.maxDownloadsPerHost = maxDownloadsPerHost;
+        }
+        scheduleQueuedDownloads();
+        return this;
+    }
+
+    public synchronized boolean isResumeEnabled() {
+        return resumeEnabled;
+    }
+
+    /**
+     * Enabled by default. See DownloadThread.setResumeEnabled().
+     */
+    public synchronized DownloadManager setResumeEnabled(boolean resumeEnabled) {
+        this.resumeEnabled = resumeEnabled;
+        return this;
+    }
+
+    public synchronized int getMaxParallelChunks() {
+        return maxParallelChunks;
+    }
+
+    /**
+     * Defaults to 1 (no parallel chunks). See DownloadThread.setMaxParallelChunks().
+     */
+    public synchronized DownloadManager setMaxParallelChunks(int maxParallelChunks) {
+        validateLimit(maxParallelChunks, "Max parallel chunks");
+        this.maxParallelChunks = maxParallelChunks;
+        return this;
+    }
+
+    public synchronized long getParallelChunkThreshold() {
+        return parallelChunkThreshold;
+    }
+
+    /**
+     * See DownloadThread.setParallelChunkThreshold().
+     */
+    public synchronized DownloadManager setParallelChunkThreshold(long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Parallel chunk threshold cannot be negative.");
+        }
+        this.parallelChunkThreshold = threshold;
+        return this;
+    }
+
+    public synchronized DownloadCache getDownloadCache() {
+        return downloadCache;
+    }
+
+    /**
+     * Sets a DownloadCache to be used by all subsequent downloads. The default is null (no cache).
+     */
+    public synchronized DownloadManager setDownloadCache(DownloadCache downloadCache) {
+        this.downloadCache = downloadCache;
+        return this;
     }
 
     /**
@@ -43,35 +210,81 @@ public class DownloadManager {
     }
 
     /**
-     * Downloads a file from the given URL and saves it to the specified path.
+     * Downloads a file from the given URL and saves it to the specified path. The download
+     * is queued, and will start as soon as the concurrency limits allow.
      *
      * @param url The URL to download from (supported protocols: http, https, file)
      * @param targetDir Where to save the file
      * @param listener An optional DownloadListener to receive progress/failure/completion notifications.
      */
     public void downloadFile(URL url, File targetDir, DownloadListener listener) {
+        downloadFile(url, targetDir, null, listener);
+    }
+
+    /**
+     * Downloads a file from the given URL and saves it to the specified path, verifying that
+     * its content has the given SHA-256 hash. If it doesn't, the download is reported as failed
+     * and no file is left behind. If this manager has a DownloadCache that already contains
+     * content with that hash, it is used without downloading anything.
+     *
+     * @param url            The URL to download from (supported protocols: http, https, file)
+     * @param targetDir      Where to save the file
+     * @param expectedSha256 The hex-encoded SHA-256 hash of the expected content, or null to skip verification.
+     * @param listener       An optional DownloadListener to receive progress/failure/completion notifications.
+     */
+    public void downloadFile(URL url, File targetDir, String expectedSha256, DownloadListener listener) {
         if (targetDir == null) {
             targetDir = new File(System.getProperty("java.io.tmpdir"));
         }
-        new Thread(createDownloadThread(url, targetDir, listener)).start();
+        DownloadThread thread = createDownloadThread(url, targetDir, listener);
+        if (expectedSha256 != null) {
+            thread.setExpectedHash(HashUtil.HashType.SHA256, expectedSha256);
+        }
+        synchronized (this) {
+            if (isClosed) {
+                throw new IllegalStateException("DownloadManager has been closed.");
+            }
+            queuedDownloads.add(thread);
+        }
+        scheduleQueuedDownloads();
+    }
+
+    /**
+     * Returns true if at least one download is currently running or waiting to run.
+     */
+    public synchronized boolean isDownloadInProgress() {
+        return !downloadsInProgress.isEmpty() || !scheduledDownloads.isEmpty() || !queuedDownloads.isEmpty();
     }
 
     /**
-     * Returns true if at least one download is currently running.
+     * Returns the number of downloads currently executing.
      */
-    public boolean isDownloadInProgress() {
-        return ! downloadsInProgress.isEmpty();
+    public synchronized int getActiveDownloadCount() {
+        return activeDownloads;
     }
 
     /**
-     * Sends a kill() request to all active download threads. Does not guarantee that they
-     * will stop immediately. Any download currently in progress will report a download failure.
+     * Returns the number of downloads waiting for a free slot.
+     */
+    public synchronized int getQueuedDownloadCount() {
+        return queuedDownloads.size();
+    }
+
+    /**
+     * Sends a kill() request to all active and queued download threads. Does not guarantee that they
+     * will stop immediately. Any download currently in progress will report a download failure,
+     * as will any queued download once it reaches the front of the queue.
      */
     public void stopAllDownloads() {
         log.info("DownloadManager: stopping all downloads in progress...");
 
         // Make a copy of the list as its contents may change as we iterate over it:
-        List<DownloadThread> inProgress = new ArrayList<>(downloadsInProgress);
+        List<DownloadThread> inProgress;
+        synchronized (this) {
+            inProgress = new ArrayList<>(downloadsInProgress);
+            inProgress.addAll(scheduledDownloads);
+            inProgress.addAll(queuedDownloads);
+        }
         for (DownloadThread thread : inProgress) {
             thread.kill();
         }
@@ -80,21 +293,98 @@ public class DownloadManager {
     /**
      * Creates and returns a DownloadThread suitable for executing the given download.
      * You can use the downloadFile() wrapper method instead, to both create and
-     * automatically start the thread.
+     * automatically schedule the thread. Threads created here and run manually do not
+     * count against this manager's concurrency limits.
      */
     public DownloadThread createDownloadThread(URL url, File targetDir, DownloadListener listener) {
         DownloadThread thread = new DownloadThread(httpClient, url, targetDir);
+        synchronized (this) {
+            thread.setResumeEnabled(resumeEnabled)
+                  .setMaxParallelChunks(maxParallelChunks)
+                  .setParallelChunkThreshold(parallelChunkThreshold)
+                  .setDownloadCache(downloadCache);
+        }
         thread.addDownloadListener(new DownloadTracker());
         thread.addDownloadListener(listener);
         return thread;
     }
 
     /**
-     * Closes the HTTP client.
+     * Stops all downloads and shuts down the worker pool. This manager can't be used after this.
+     * Downloads that were still waiting in the queue are never run; each of them reports a
+     * download failure instead.
      */
     public void close() {
-        // HttpClient doesn't actually have a close method.
-        // But if we had a custom executor, here is where we would shut it down.
+        List<DownloadThread> neverStarted;
+        synchronized (this) {
+            isClosed = true;
+            neverStarted = new ArrayList<>(queuedDownloads);
+            queuedDownloads.clear();
+        }
+        stopAllDownloads();
+        executor.shutdown();
+        for (DownloadThread thread : neverStarted) {
+            thread.abandon("DownloadManager was closed before the download started: " + thread.getUrl());
+        }
+    }
+
+    /**
+     * Starts as many queued downloads as the concurrency limits allow. Downloads whose host
+     * is already at its limit are skipped over, so they don't hold up downloads from other hosts.
+     */
+    private synchronized void scheduleQueuedDownloads() {
+        Iterator<DownloadThread> iterator = queuedDownloads.iterator();
+        while (activeDownloads < maxConcurrentDownloads && iterator.hasNext()) {
+            DownloadThread thread = iterator.next();
+            String host = getHostKey(thread.getUrl());
+            if (host != null && activeDownloadsByHost.getOrDefault(host, 0) >= maxDownloadsPerHost) {
+                continue;
+            }
+            iterator.remove();
+            scheduledDownloads.add(thread);
+            activeDownloads++;
+            if (host != null) {
+                activeDownloadsByHost.merge(host, 1, Integer::sum);
+            }
+            executor.execute(() -> runScheduledDownload(thread, host));
+        }
+    }
+
+    private void runScheduledDownload(DownloadThread thread, String host) {
+        try {
+            thread.run();
+        }
+        finally {
+            synchronized (this) {
+                // Usually already removed by DownloadTracker, before the caller's listener heard about it:
+                scheduledDownloads.remove(thread);
+                activeDownloads--;
+                if (host != null) {
+                    activeDownloadsByHost.computeIfPresent(host, (key, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+            if (!executor.isShutdown()) {
+                scheduleQueuedDownloads();
+            }
+        }
+    }
+
+    /**
+     * Returns the key used for per-host limits, or null if the given URL isn't a network download.
+     */
+    private static String getHostKey(URL url) {
+        if (url == null || url.getHost() == null || url.getHost().isBlank()
+                || "file".equalsIgnoreCase(url.getProtocol())) {
+            return null;
+        }
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    private static void validateLimit(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1.");
+        }
     }
 
     /**
@@ -135,7 +425,9 @@ public class DownloadManager {
 
         @Override
         public void downloadBegins(DownloadThread thread, URL url) {
-            downloadsInProgress.add(thread);
+            synchronized (DownloadManager.this) {
+                downloadsInProgress.add(thread);
+            }
         }
 
         @Override
@@ -145,12 +437,18 @@ public class DownloadManager {
 
         @Override
         public void downloadFailed(DownloadThread thread, URL url, String errorMsg) {
-            downloadsInProgress.remove(thread);
+            synchronized (DownloadManager.this) {
+                downloadsInProgress.remove(thread);
+                scheduledDownloads.remove(thread);
+            }
         }
 
         @Override
         public void downloadComplete(DownloadThread thread, URL url, File result) {
-            downloadsInProgress.remove(thread);
+            synchronized (DownloadManager.this) {
+                downloadsInProgress.remove(thread);
+                scheduledDownloads.remove(thread);
+            }
         }
     }
 }
\ No newline at end of file
@@ -1,7 +1,8 @@
 package ca.corbett.extras.io;
 
+import ca.corbett.extras.crypt.HashUtil;
+
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.ConnectException;
@@ -11,12 +12,30 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,6 +43,33 @@ import java.util.logging.Logger;
  * Manages a single download with progress notifications - you generally shouldn't need to interact
  * with this class directly; instances of this class are created and managed automatically
  * by the DownloadManager.
+ * <p>
+ * <b>Partial files and resume</b> - http downloads are written to a ".part" file next to the
+ * target file, and only renamed to the target name (atomically, where the file system allows it)
+ * once the download has completed. If a download fails part way through, the ".part" file is
+ * left in place, and the next attempt to download the same URL into the same directory will
+ * send an http Range request to pick up where the last one left off. If the server ignores
+ * the Range request, the download simply starts over. Note that no attempt is made to verify
+ * that the remote file hasn't changed in the meantime. Resume can be disabled with
+ * setResumeEnabled(false), in which case partial files are discarded on failure.
+ * </p>
+ * <p>
+ * <b>Parallel chunks</b> - for large files, the download can optionally be split into several
+ * byte ranges that are fetched concurrently over separate connections, which can help on
+ * high-latency links. This is off by default; see setMaxParallelChunks(). It is only used if
+ * the server reports both a Content-Length and "Accept-Ranges: bytes" in response to a HEAD
+ * request. A chunked download that fails is not resumable.
+ * </p>
+ * <p>
+ * <b>Integrity and caching</b> - if an expected hash is given with setExpectedHash(), the
+ * download is hashed as it is written, and fails (leaving no file behind) if the result doesn't
+ * match. If a DownloadCache is given with setDownloadCache(), content that is already in the cache
+ * is reused, either without any network access at all (when the expected SHA-256 is known and
+ * cached) or after a conditional request confirms that the cached copy is still current.
+ * Resumed downloads hash the existing partial bytes before continuing, and parallel chunked
+ * downloads are hashed in a single pass after the last chunk arrives, since the chunks don't
+ * arrive in order.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a> with help from claude.ai
  * @since swing-extras 2.5
@@ -32,14 +78,44 @@ public class DownloadThread implements Runnable {
 
     private static final Logger log = Logger.getLogger(DownloadThread.class.getName());
 
-    private static final int BUFFER_SIZE = 65535;
+    /**
+     * Appended to the target file name while a download is in progress.
+     */
+    public static final String PARTIAL_FILE_EXTENSION = ".part";
+
+    /**
+     * Appended to the part file name for the file that records which version of the remote
+     * file the part file holds (its ETag or Last-Modified value), so that it can be resumed.
+     */
+    public static final String VALIDATOR_FILE_EXTENSION = ".validator";
+
+    /**
+     * Files smaller than this are never split into parallel chunks, by default.
+     */
+    public static final long DEFAULT_PARALLEL_CHUNK_THRESHOLD = 8 * 1024 * 1024;
+
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 256 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 250;
 
     private final HttpClient httpClient;
     private final URL url;
     private final File targetDir;
     private final List<DownloadListener> listeners = new ArrayList<>();
     private volatile boolean isKilled;
-    private boolean isRunning;
+    private volatile boolean isRunning;
+    private boolean resumeEnabled;
+    private int maxParallelChunks;
+    private long parallelChunkThreshold;
+    private boolean partFileResumable;
+    private DownloadCache downloadCache;
+    private HashUtil.HashType expectedHashType;
+    private String expectedHash;
+    private final Map<HashUtil.HashType, String> computedHashes = new EnumMap<>(HashUtil.HashType.class);
+    private String responseETag;
+    private String responseLastModified;
+    private boolean servedFromCache;
 
     /**
      * Creates a DownloadThread for retrieving the contents of the given URL.
@@ -58,6 +134,9 @@ public class DownloadThread implements Runnable {
         this.httpClient = httpClient;
         this.url = url;
         this.targetDir = targetDir == null ? new File(System.getProperty("java.io.tmpdir")) : targetDir;
+        this.resumeEnabled = true;
+        this.maxParallelChunks = 1;
+        this.parallelChunkThreshold = DEFAULT_PARALLEL_CHUNK_THRESHOLD;
     }
 
     public void addDownloadListener(DownloadListener listener) {
@@ -68,6 +147,120 @@ public class DownloadThread implements Runnable {
         listeners.remove(listener);
     }
 
+    public URL getUrl() {
+        return url;
+    }
+
+    public File getTargetDir() {
+        return targetDir;
+    }
+
+    public boolean isResumeEnabled() {
+        return resumeEnabled;
+    }
+
+    /**
+     * Resume is enabled by default. If enabled, an existing ".part" file for this download is
+     * continued with an http Range request instead of starting over, and a ".part" file is left
+     * in place if the download fails. The server's ETag (or Last-Modified date) is stored next to
+     * the ".part" file and sent back with the Range request, so that a remote file which has
+     * changed since is downloaded again from the start; downloads from servers that send neither
+     * can't be resumed. If disabled, any existing ".part" file is overwritten and partial files
+     * are deleted on failure.
+     */
+    public DownloadThread setResumeEnabled(boolean resumeEnabled) {
+        this.resumeEnabled = resumeEnabled;
+        return this;
+    }
+
+    public int getMaxParallelChunks() {
+        return maxParallelChunks;
+    }
+
+    /**
+     * Sets the maximum number of byte ranges that a large download can be split into and
+     * fetched concurrently. The default is 1, meaning a single connection is always used.
+     * Each chunk will be at least 256KB regardless of this setting.
+     */
+    public DownloadThread setMaxParallelChunks(int maxParallelChunks) {
+        if (maxParallelChunks < 1) {
+            throw new IllegalArgumentException("Max parallel chunks must be at least 1.");
+        }
+        this.maxParallelChunks = maxParallelChunks;
+        return this;
+    }
+
+    public long getParallelChunkThreshold() {
+        return parallelChunkThreshold;
+    }
+
+    /**
+     * Files smaller than the given size in bytes are always downloaded over a single connection,
+     * even if setMaxParallelChunks() allows more. The default is DEFAULT_PARALLEL_CHUNK_THRESHOLD.
+     */
+    public DownloadThread setParallelChunkThreshold(long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Parallel chunk threshold cannot be negative.");
+        }
+        this.parallelChunkThreshold = threshold;
+        return this;
+    }
+
+    public DownloadCache getDownloadCache() {
+        return downloadCache;
+    }
+
+    /**
+     * Optionally sets a DownloadCache to check before downloading, and to store the
+     * result in afterward. The default is null, meaning no caching.
+     */
+    public DownloadThread setDownloadCache(DownloadCache downloadCache) {
+        this.downloadCache = downloadCache;
+        return this;
+    }
+
+    public HashUtil.HashType getExpectedHashType() {
+        return expectedHashType;
+    }
+
+    public String getExpectedHash() {
+        return expectedHash;
+    }
+
+    /**
+     * Optionally sets the hash that the downloaded content is expected to have. If the download
+     * doesn't match, it is reported as a failure and the downloaded file is discarded. Pass null
+     * for both to disable verification (the default).
+     *
+     * @param hashType    The hash algorithm that produced the expected hash.
+     * @param expectedHex The expected hash, hex-encoded (case doesn't matter).
+     */
+    public DownloadThread setExpectedHash(HashUtil.HashType hashType, String expectedHex) {
+        if ((hashType == null) != (expectedHex == null)) {
+            throw new IllegalArgumentException("Hash type and expected hash must both be given, or neither.");
+        }
+        this.expectedHashType = hashType;
+        this.expectedHash = expectedHex;
+        return this;
+    }
+
+    /**
+     * Returns the hex-encoded hash of the downloaded content, computed with the given algorithm,
+     * or null if that hash wasn't computed. After a successful download, this is available for
+     * the expected hash type, if one was set, and for SHA-256 if a DownloadCache was set.
+     */
+    public String getComputedHash(HashUtil.HashType hashType) {
+        return computedHashes.get(hashType);
+    }
+
+    /**
+     * Reports whether the last completed download came out of the DownloadCache instead of
+     * being transferred over the network.
+     */
+    public boolean isServedFromCache() {
+        return servedFromCache;
+    }
+
     /**
      * Reports if the download thread is actively downloading (or waiting on network).
      */
@@ -85,19 +278,27 @@ public class DownloadThread implements Runnable {
     /**
      * Tells the thread to give up on the current download and terminate itself.
      * The download will be treated as a failure. Does nothing if the thread
-     * had already completed before this method was invoked, or if the thread
-     * had not yet been started before this method was invoked.
+     * had already completed before this method was invoked. If the thread
+     * has not yet been started, it will report a failure as soon as it starts.
      */
     public void kill() {
         isKilled = true;
     }
 
+    /**
+     * Invoked by DownloadManager for a download that will never be run, to kill it and
+     * report the given failure to listeners.
+     */
+    void abandon(String errorMsg) {
+        isKilled = true;
+        fireDownloadFailed(errorMsg);
+    }
+
     @Override
     public void run() {
         if (httpClient == null || url == null) {
             fireDownloadFailed("Internal error: DownloadThread given null input, cannot proceed.");
             isRunning = false;
-            isKilled = false;
             return;
         }
         if (!"file".equalsIgnoreCase(url.getProtocol())
@@ -105,17 +306,25 @@ public class DownloadThread implements Runnable {
                 && !"https".equalsIgnoreCase(url.getProtocol())) {
             fireDownloadFailed("Unsupported file download protocol: " + url.getProtocol());
             isRunning = false;
-            isKilled = false;
+            return;
+        }
+        if (isKilled) {
+            fireDownloadFailed("Download was killed by requestor before it started: " + url);
             return;
         }
 
         isRunning = true;
-        isKilled = false;
+        partFileResumable = false;
+        servedFromCache = false;
+        computedHashes.clear();
+        responseETag = null;
+        responseLastModified = null;
         String filename = DownloadManager.getFilenameComponent(url.toString());
         if (filename.isBlank()) {
             filename = "unnamed";
         }
         File targetFile = new File(targetDir, filename);
+        File partFile = new File(targetDir, filename + PARTIAL_FILE_EXTENSION);
         fireDownloadBegins();
 
         try {
@@ -127,98 +336,569 @@ public class DownloadThread implements Runnable {
                                  + " to "
                                  + targetDir.getAbsolutePath());
                 Files.copy(Paths.get(url.toURI()), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (expectedHash != null) {
+                    computedHashes.put(expectedHashType, HashUtil.getHashString(expectedHashType, targetFile));
+                    if (!expectedHash.equalsIgnoreCase(computedHashes.get(expectedHashType))) {
+                        Files.deleteIfExists(targetFile.toPath());
+                        fireDownloadFailed(describeHashMismatch());
+                        return;
+                    }
+                }
                 isRunning = false;
                 fireDownloadComplete(targetFile);
                 return;
             }
 
-            // Otherwise, we'll download it:
-            HttpRequest request = HttpRequest.newBuilder()
-                                             .uri(url.toURI())
-                                             .timeout(Duration.ofSeconds(DownloadManager.DOWNLOAD_TIMEOUT_SECONDS))
-                                             .GET()
-                                             .build();
-            HttpResponse<InputStream> response = httpClient.send(request,
-                                                                 HttpResponse.BodyHandlers.ofInputStream());
-
-            int statusCode = response.statusCode();
-            long lastUpdateTime = System.currentTimeMillis();
-            if (statusCode == 200) {
-                long contentLength = response.headers()
-                                             .firstValueAsLong("Content-Length")
-                                             .orElse(-1L);
-
-                try (InputStream in = response.body();
-                     FileOutputStream out = new FileOutputStream(targetFile)) {
-
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    long downloaded = 0;
-                    int bytesRead;
-
-                    while ((bytesRead = in.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
-                        downloaded += bytesRead;
-
-                        // Avoid spamming progress messages, send at most four per second:
-                        long currentTime = System.currentTimeMillis();
-                        if ((currentTime - lastUpdateTime) > 250) {
-                            fireDownloadProgress(downloaded, contentLength);
-                            lastUpdateTime = currentTime;
-                        }
-
-                        // Check for kill requests:
-                        if (isKilled) {
-                            fireDownloadFailed("Download was killed by requestor.");
-                            break;
-                        }
-                    }
-
-                    isRunning = false;
-                    fireDownloadComplete(targetFile);
-                }
-                finally {
-                    isRunning = false;
-                }
+            // If we already know exactly what we're after and have it cached, we're done:
+            if (downloadCache != null
+                    && expectedHashType == HashUtil.HashType.SHA256
+                    && downloadCache.copyTo(expectedHash, targetFile)) {
+                completeFromCache(targetFile, expectedHash);
+                return;
             }
-            else if (statusCode == 404) {
-                fireDownloadFailed("404 File not found: " + url);
+
+            // Otherwise, we'll download it, in chunks if it's big enough and the server allows it.
+            // If we have an earlier copy cached, we'll ask the server whether it has changed instead,
+            // unless that copy isn't what the caller is expecting (a 304 would be no use to us then):
+            DownloadCache.Entry cached = downloadCache == null ? null : downloadCache.getEntry(url);
+            if (cached != null && !isExpectedSha256(cached.sha256())) {
+                cached = null;
             }
-            else if (statusCode >= 400 && statusCode < 500) {
-                fireDownloadFailed(statusCode + " Client error: " + url);
+            long contentLength = (maxParallelChunks > 1 && cached == null) ? probeRangeSupport() : -1;
+            if (contentLength >= parallelChunkThreshold && contentLength >= MIN_CHUNK_SIZE * 2) {
+                downloadInChunks(partFile, contentLength);
+                for (HashUtil.HashType hashType : getHashTypesToCompute()) {
+                    computedHashes.put(hashType, HashUtil.getHashString(hashType, partFile));
+                }
             }
-            else if (statusCode >= 500) {
-                fireDownloadFailed(statusCode + " Server error: " + url);
+            else if (!downloadSingleStream(partFile, true, cached)) {
+                if (downloadCache.copyTo(cached.sha256(), targetFile)) {
+                    completeFromCache(targetFile, cached.sha256());
+                    return;
+                }
+                // The cached copy disappeared out from under us; just download it again:
+                downloadSingleStream(partFile, true, null);
             }
-            else {
-                fireDownloadFailed("Unexpected status code " + statusCode + ": " + url);
+
+            if (expectedHash != null && !expectedHash.equalsIgnoreCase(computedHashes.get(expectedHashType))) {
+                partFileResumable = false;
+                throw new DownloadFailure(describeHashMismatch());
             }
+            FileSystemUtil.moveAtomically(partFile.toPath(), targetFile.toPath());
+            deleteValidator(partFile);
+            storeInCache(targetFile);
+            isRunning = false;
+            fireDownloadComplete(targetFile);
+
+        } catch (DownloadFailure e) {
+            discardPartFile(partFile);
+            fireDownloadFailed(e.getMessage());
+
         } catch (URISyntaxException e) {
             fireDownloadFailed("Invalid URL format: " + url + " - " + e.getMessage());
 
         } catch (HttpTimeoutException e) {
+            discardPartFile(partFile);
             fireDownloadFailed("Request timed out: " + url + " - " + e.getMessage());
 
         } catch (ConnectException e) {
+            discardPartFile(partFile);
             fireDownloadFailed("Connection failed: " + url + " - " + e.getMessage());
 
         } catch (IOException e) {
             // This catches various network issues and file I/O problems
+            discardPartFile(partFile);
             fireDownloadFailed("I/O error downloading " + url + ": " + e.getMessage(), e);
 
         } catch (InterruptedException e) {
             // Restore interrupt status
             Thread.currentThread().interrupt();
+            discardPartFile(partFile);
             fireDownloadFailed("Download interrupted: " + url);
 
         } catch (SecurityException e) {
+            discardPartFile(partFile);
             fireDownloadFailed("Security error (file permissions?): " + targetFile.getAbsolutePath() +
                                        " - " + e.getMessage(), e);
 
         } catch (Exception e) {
             // Catch any other unexpected exceptions
+            discardPartFile(partFile);
             fireDownloadFailed("Unexpected error downloading " + url + ": " +
                                        e.getClass().getSimpleName() + " - " + e.getMessage(), e);
         }
+        finally {
+            isRunning = false;
+        }
+    }
+
+    /**
+     * Returns true if content with the given SHA-256 would pass our hash check. If we're
+     * expecting some other kind of hash, there's no telling, so this returns false.
+     */
+    private boolean isExpectedSha256(String sha256) {
+        if (expectedHash == null) {
+            return true;
+        }
+        return expectedHashType == HashUtil.HashType.SHA256 && expectedHash.equalsIgnoreCase(sha256);
+    }
+
+    private void completeFromCache(File targetFile, String sha256) {
+        log.fine("DownloadThread: using cached copy of " + url);
+        servedFromCache = true;
+        computedHashes.put(HashUtil.HashType.SHA256, sha256.toLowerCase(Locale.ROOT));
+        isRunning = false;
+        fireDownloadComplete(targetFile);
+    }
+
+    private void storeInCache(File targetFile) {
+        String sha256 = computedHashes.get(HashUtil.HashType.SHA256);
+        if (downloadCache == null || sha256 == null) {
+            return;
+        }
+        try {
+            downloadCache.store(url, targetFile, sha256, responseETag, responseLastModified);
+        }
+        catch (IOException e) {
+            // Not worth failing the download over:
+            log.log(Level.WARNING, "DownloadThread: unable to cache " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    private List<HashUtil.HashType> getHashTypesToCompute() {
+        List<HashUtil.HashType> hashTypes = new ArrayList<>();
+        if (expectedHashType != null) {
+            hashTypes.add(expectedHashType);
+        }
+        if (downloadCache != null && expectedHashType != HashUtil.HashType.SHA256) {
+            hashTypes.add(HashUtil.HashType.SHA256);
+        }
+        return hashTypes;
+    }
+
+    private String describeHashMismatch() {
+        return expectedHashType + " mismatch for " + url + ": expected " + expectedHash
+                + " but got " + computedHashes.get(expectedHashType);
+    }
+
+    /**
+     * Downloads the whole file (or the remainder of it, if resuming) over a single connection
+     * into the given part file, hashing it on the way. If a cache entry is given, the request is
+     * made conditional on the content having changed since, and this returns false if it hasn't.
+     */
+    private boolean downloadSingleStream(File partFile, boolean allowResume, DownloadCache.Entry cached)
+            throws IOException, InterruptedException {
+        // We can only resume if we know which version of the remote file the part file came from:
+        String validator = (allowResume && resumeEnabled && partFile.isFile()) ? readValidator(partFile) : null;
+        long existingBytes = validator == null ? 0 : partFile.length();
+        HttpRequest.Builder builder = newRequestBuilder();
+        if (existingBytes > 0) {
+            log.fine("DownloadThread: attempting to resume " + url + " from byte " + existingBytes);
+            builder.header("Range", "bytes=" + existingBytes + "-");
+            builder.header("If-Range", validator);
+        }
+        else if (cached != null) {
+            if (cached.etag() != null) {
+                builder.header("If-None-Match", cached.etag());
+            }
+            if (cached.lastModified() != null) {
+                builder.header("If-Modified-Since", cached.lastModified());
+            }
+        }
+        HttpResponse<InputStream> response = httpClient.send(builder.GET().build(),
+                                                             HttpResponse.BodyHandlers.ofInputStream());
+        int statusCode = response.statusCode();
+        long offset;
+        long totalLength;
+        if (statusCode == 304 && cached != null && existingBytes == 0) {
+            response.body().close();
+            return false;
+        }
+        else if (existingBytes > 0 && statusCode == 206) {
+            ContentRange range = ContentRange.parse(response.headers().firstValue("Content-Range").orElse(null));
+            if (range == null || range.start() != existingBytes) {
+                // Not the range we asked for - don't try to be clever, just start over:
+                response.body().close();
+                return downloadSingleStream(partFile, false, cached);
+            }
+            offset = existingBytes;
+            totalLength = range.total();
+        }
+        else if (existingBytes > 0 && statusCode == 416) {
+            // Nothing left to download if the part file is already the full size:
+            response.body().close();
+            ContentRange range = ContentRange.parse(response.headers().firstValue("Content-Range").orElse(null));
+            if (range != null && range.total() == existingBytes) {
+                Map<HashUtil.HashType, MessageDigest> digests = createDigests();
+                hashExistingBytes(partFile, existingBytes, digests);
+                recordHashes(digests);
+                return true;
+            }
+            return downloadSingleStream(partFile, false, cached);
+        }
+        else if (statusCode == 200) {
+            // This includes a server telling us (via If-Range) that the file has changed:
+            if (existingBytes > 0) {
+                log.fine("DownloadThread: server sent all of " + url + ", starting over");
+            }
+            offset = 0;
+            totalLength = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+        }
+        else {
+            response.body().close();
+            throw new DownloadFailure(describeStatusCode(statusCode));
+        }
+        responseETag = response.headers().firstValue("ETag").orElse(null);
+        responseLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        Map<HashUtil.HashType, MessageDigest> digests = createDigests();
+        if (offset > 0 && !digests.isEmpty()) {
+            hashExistingBytes(partFile, offset, digests);
+        }
+
+        // From here on, whatever we write is worth keeping if we're allowed to resume,
+        // as long as we can tell later on whether it's still current:
+        partFileResumable = resumeEnabled && writeValidator(partFile);
+        long downloaded = offset;
+        try (InputStream in = response.body();
+             FileChannel channel = FileChannel.open(partFile.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.position(offset);
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSizeFor(totalLength < 0 ? -1 : totalLength - offset));
+            long lastUpdateTime = System.currentTimeMillis();
+            int bytesRead;
+            while ((bytesRead = in.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                buffer.position(0).limit(bytesRead);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                for (MessageDigest digest : digests.values()) {
+                    digest.update(buffer.array(), 0, bytesRead);
+                }
+                downloaded += bytesRead;
+
+                // Avoid spamming progress messages, send at most four per second:
+                long currentTime = System.currentTimeMillis();
+                if ((currentTime - lastUpdateTime) > PROGRESS_INTERVAL_MS) {
+                    fireDownloadProgress(downloaded, totalLength);
+                    lastUpdateTime = currentTime;
+                }
+
+                // Check for kill requests:
+                if (isKilled) {
+                    throw new DownloadFailure("Download was killed by requestor.");
+                }
+            }
+        }
+
+        if (totalLength >= 0 && downloaded < totalLength) {
+            throw new DownloadFailure("Connection closed after " + downloaded + " of " + totalLength
+                                              + " bytes: " + url);
+        }
+        recordHashes(digests);
+        return true;
+    }
+
+    private Map<HashUtil.HashType, MessageDigest> createDigests() {
+        Map<HashUtil.HashType, MessageDigest> digests = new EnumMap<>(HashUtil.HashType.class);
+        for (HashUtil.HashType hashType : getHashTypesToCompute()) {
+            digests.put(hashType, HashUtil.getMessageDigest(hashType));
+        }
+        return digests;
+    }
+
+    private void recordHashes(Map<HashUtil.HashType, MessageDigest> digests) {
+        for (Map.Entry<HashUtil.HashType, MessageDigest> entry : digests.entrySet()) {
+            computedHashes.put(entry.getKey(), HashUtil.byteArrayToHexString(entry.getValue().digest()));
+        }
+    }
+
+    /**
+     * Feeds the first byteCount bytes of an existing part file into the given digests, so that
+     * a resumed download can carry on hashing from where it picks up.
+     */
+    private void hashExistingBytes(File partFile, long byteCount, Map<HashUtil.HashType, MessageDigest> digests)
+            throws IOException {
+        if (digests.isEmpty()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSizeFor(byteCount));
+            long remaining = byteCount;
+            while (remaining > 0) {
+                buffer.clear().limit((int)Math.min(buffer.capacity(), remaining));
+                int bytesRead = channel.read(buffer);
+                if (bytesRead < 0) {
+                    break;
+                }
+                for (MessageDigest digest : digests.values()) {
+                    digest.update(buffer.array(), 0, bytesRead);
+                }
+                remaining -= bytesRead;
+            }
+        }
+    }
+
+    /**
+     * Sends a HEAD request to find out how big the file is and whether the server will serve
+     * byte ranges of it. Returns the content length if ranges are supported, otherwise -1.
+     */
+    private long probeRangeSupport() throws InterruptedException {
+        try {
+            HttpRequest request = newRequestBuilder().method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                return -1;
+            }
+            responseETag = response.headers().firstValue("ETag").orElse(null);
+            responseLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            boolean acceptsRanges = response.headers()
+                                            .firstValue("Accept-Ranges")
+                                            .map(value -> value.toLowerCase(Locale.ROOT).contains("bytes"))
+                                            .orElse(false);
+            return acceptsRanges ? response.headers().firstValueAsLong("Content-Length").orElse(-1L) : -1;
+        }
+        catch (IOException e) {
+            // Lots of servers don't like HEAD requests. We'll just use a single connection:
+            log.fine("DownloadThread: HEAD request failed for " + url + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Splits the download into byte ranges that are fetched concurrently and written directly
+     * into their final position in the part file. Progress is reported from this thread.
+     * The chunks run on a pool of at most maxParallelChunks threads belonging to this download,
+     * rather than the DownloadManager's pool, which may be fully occupied by downloads waiting
+     * on their own chunks.
+     */
+    private void downloadInChunks(File partFile, long contentLength) throws IOException, InterruptedException {
+        int chunkCount = (int)Math.min(maxParallelChunks, contentLength / MIN_CHUNK_SIZE);
+        long chunkSize = (contentLength + chunkCount - 1) / chunkCount;
+        log.fine("DownloadThread: downloading " + url + " in " + chunkCount + " parallel chunks");
+
+        // Chunks arrive out of order, so this part file can't be resumed even if there was one:
+        deleteValidator(partFile);
+        AtomicLong downloaded = new AtomicLong();
+        AtomicBoolean abort = new AtomicBoolean();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService chunkExecutor = Executors.newFixedThreadPool(chunkCount, r -> {
+            Thread thread = new Thread(r, "DownloadThread-chunk-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(partFile.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                final long start = i * chunkSize;
+                final long end = Math.min(contentLength, start + chunkSize) - 1;
+                chunks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        downloadChunk(channel, start, end, downloaded, abort);
+                    }
+                    catch (IOException e) {
+                        abort.set(true);
+                        throw new CompletionException(e);
+                    }
+                    catch (InterruptedException e) {
+                        abort.set(true);
+                        Thread.currentThread().interrupt();
+                        throw new CompletionException(e);
+                    }
+                }, chunkExecutor));
+            }
+
+            // Wait for all chunks, reporting progress and watching for kill requests as we go:
+            CompletableFuture<Void> all = CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]));
+            while (true) {
+                try {
+                    all.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    break;
+                }
+                catch (TimeoutException e) {
+                    fireDownloadProgress(downloaded.get(), contentLength);
+                    if (isKilled) {
+                        abort.set(true);
+                        all.handle((result, error) -> null).join();
+                        throw new DownloadFailure("Download was killed by requestor.");
+                    }
+                }
+                catch (InterruptedException e) {
+                    abort.set(true);
+                    throw e;
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+                    if (cause instanceof IOException ioe) {
+                        throw ioe;
+                    }
+                    if (cause instanceof InterruptedException ie) {
+                        throw ie;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        }
+        finally {
+            chunkExecutor.shutdownNow();
+        }
+    }
+
+    private void downloadChunk(FileChannel channel, long start, long end, AtomicLong downloaded, AtomicBoolean abort)
+            throws IOException, InterruptedException {
+        // Make sure every chunk comes from the same version of the file that the HEAD request saw:
+        HttpRequest.Builder builder = newRequestBuilder().header("Range", "bytes=" + start + "-" + end);
+        if (isStrongETag(responseETag)) {
+            builder.header("If-Match", responseETag);
+        }
+        else if (responseLastModified != null) {
+            builder.header("If-Unmodified-Since", responseLastModified);
+        }
+        HttpResponse<InputStream> response = httpClient.send(builder.GET().build(),
+                                                             HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream in = response.body()) {
+            if (response.statusCode() == 412) {
+                throw new DownloadFailure("Remote file changed during parallel download: " + url);
+            }
+            if (response.statusCode() != 206) {
+                throw new DownloadFailure(response.statusCode() == 200
+                                                  ? "Server ignored range request for parallel download: " + url
+                                                  : describeStatusCode(response.statusCode()));
+            }
+            ContentRange range = ContentRange.parse(response.headers().firstValue("Content-Range").orElse(null));
+            if (range == null || range.start() != start) {
+                throw new DownloadFailure("Server returned an unexpected range for parallel download: " + url);
+            }
+
+            long position = start;
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSizeFor(end - start + 1));
+            int bytesRead;
+            while (!abort.get() && (bytesRead = in.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                buffer.position(0).limit(bytesRead);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+                downloaded.addAndGet(bytesRead);
+            }
+            if (!abort.get() && position != end + 1) {
+                throw new DownloadFailure("Connection closed during parallel download: " + url);
+            }
+        }
+    }
+
+    private HttpRequest.Builder newRequestBuilder() throws IOException {
+        try {
+            return HttpRequest.newBuilder()
+                              .uri(url.toURI())
+                              .timeout(Duration.ofSeconds(DownloadManager.DOWNLOAD_TIMEOUT_SECONDS));
+        }
+        catch (URISyntaxException e) {
+            throw new DownloadFailure("Invalid URL format: " + url + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the part file after a failure, unless it holds data we can resume from later.
+     */
+    private void discardPartFile(File partFile) {
+        if (partFileResumable && partFile.length() > 0) {
+            log.fine("DownloadThread: keeping partial download " + partFile.getAbsolutePath());
+            return;
+        }
+        if (partFile.exists() && !partFile.delete()) {
+            log.warning("DownloadThread: unable to delete partial download " + partFile.getAbsolutePath());
+        }
+        deleteValidator(partFile);
+    }
+
+    /**
+     * Only strong ETags can be used with If-Range and If-Match; weak ones start with "W/".
+     */
+    private static boolean isStrongETag(String etag) {
+        return etag != null && !etag.startsWith("W/");
+    }
+
+    private static File getValidatorFile(File partFile) {
+        return new File(partFile.getPath() + VALIDATOR_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the ETag or Last-Modified value stored alongside the given part file, or null
+     * if there isn't one.
+     */
+    private String readValidator(File partFile) {
+        File validatorFile = getValidatorFile(partFile);
+        if (!validatorFile.isFile()) {
+            log.fine("DownloadThread: no validator for partial download " + partFile.getAbsolutePath());
+            return null;
+        }
+        try {
+            String validator = Files.readString(validatorFile.toPath(), StandardCharsets.UTF_8).trim();
+            return validator.isEmpty() ? null : validator;
+        }
+        catch (IOException e) {
+            log.log(Level.WARNING, "DownloadThread: unable to read " + validatorFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the validator from the last response alongside the given part file, preferring a
+     * strong ETag over the Last-Modified date. Returns false if the server gave us neither,
+     * or if it couldn't be written; the part file can't safely be resumed in that case.
+     */
+    private boolean writeValidator(File partFile) {
+        String validator = isStrongETag(responseETag) ? responseETag : responseLastModified;
+        if (validator == null) {
+            deleteValidator(partFile);
+            return false;
+        }
+        try {
+            Files.writeString(getValidatorFile(partFile).toPath(), validator, StandardCharsets.UTF_8);
+            return true;
+        }
+        catch (IOException e) {
+            log.log(Level.WARNING, "DownloadThread: unable to store validator for " + url, e);
+            deleteValidator(partFile);
+            return false;
+        }
+    }
+
+    private void deleteValidator(File partFile) {
+        File validatorFile = getValidatorFile(partFile);
+        if (validatorFile.exists() && !validatorFile.delete()) {
+            log.warning("DownloadThread: unable to delete " + validatorFile.getAbsolutePath());
+        }
+    }
+
+    private String describeStatusCode(int statusCode) {
+        if (statusCode == 404) {
+            return "404 File not found: " + url;
+        }
+        else if (statusCode >= 400 && statusCode < 500) {
+            return statusCode + " Client error: " + url;
+        }
+        else if (statusCode >= 500) {
+            return statusCode + " Server error: " + url;
+        }
+        return "Unexpected status code " + statusCode + ": " + url;
+    }
+
+    /**
+     * Picks a read buffer size based on how much we expect to read: small downloads don't
+     * need a big buffer, and big downloads make far fewer system calls with one.
+     */
+    private static int bufferSizeFor(long expectedBytes) {
+        if (expectedBytes < 0) {
+            return MIN_BUFFER_SIZE;
+        }
+        return (int)Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, expectedBytes / 16));
     }
 
     private void fireDownloadBegins() {
@@ -265,4 +945,56 @@ public class DownloadThread implements Runnable {
             listener.downloadComplete(this, url, targetFile);
         }
     }
+
+    /**
+     * A download failure whose message is already suitable for reporting to listeners as-is.
+     */
+    private static class DownloadFailure extends IOException {
+        DownloadFailure(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The parsed value of a Content-Range response header. Unknown values are -1.
+     *
+     * @param start The first byte in the range.
+     * @param end   The last byte in the range (inclusive).
+     * @param total The full size of the remote file.
+     */
+    record ContentRange(long start, long end, long total) {
+
+        /**
+         * Parses a header value of the form "bytes start-end/total" or "bytes *&#47;total".
+         * Returns null if the header is missing or malformed.
+         */
+        static ContentRange parse(String header) {
+            if (header == null || !header.trim().toLowerCase(Locale.ROOT).startsWith("bytes")) {
+                return null;
+            }
+            String value = header.trim().substring(5).trim();
+            int slash = value.indexOf('/');
+            if (slash < 0) {
+                return null;
+            }
+            try {
+                String rangePart = value.substring(0, slash).trim();
+                String totalPart = value.substring(slash + 1).trim();
+                long total = "*".equals(totalPart) ? -1 : Long.parseLong(totalPart);
+                if ("*".equals(rangePart)) {
+                    return new ContentRange(-1, -1, total);
+                }
+                int dash = rangePart.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                return new ContentRange(Long.parseLong(rangePart.substring(0, dash).trim()),
+                                        Long.parseLong(rangePart.substring(dash + 1).trim()),
+                                        total);
+            }
+            catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,564 @@
+package ca.corbett.extras.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An optional in-memory index of every file and directory under a single root directory,
+ * for applications that search the same directory trees over and over again. Queries
+ * like findFiles() and findSubdirectories() are answered from the index, without touching
+ * the disk, and are therefore very fast even for huge trees. The index records the name,
+ * size, last modified time, and extension of each file.
+ * <p>
+ * <b>Keeping the index current</b> - call refresh() to bring the index up to date. The first
+ * refresh scans the whole tree (in parallel, via FileTreeWalker). After that, refresh()
+ * only checks the last modified time of each directory, and re-reads just the directories
+ * that have changed. Adding, removing, or renaming a file changes the last modified time of
+ * the directory that contains it, so this is enough to pick up new and deleted files.
+ * Note however that changing the contents of an existing file does NOT change the directory's
+ * last modified time, so the size and last modified time recorded for existing files may
+ * be out of date until their directory changes for some other reason.
+ * </p>
+ * <p>
+ * For even less disk activity, call startWatching(). The index will then watch every
+ * directory via the shared WatchHub, and refresh() will only re-read the directories that
+ * have reported changes, without checking any of the others. If the WatchService overflows,
+ * the next refresh() falls back to checking every directory.
+ * </p>
+ * <p>
+ * <b>Persistence</b> - the index can be written to a compact (gzipped binary) file with
+ * save(), and read back with load(), so that the full scan doesn't need to be repeated each
+ * time your application starts. Call refresh() after loading to pick up anything that changed
+ * while your application was not running.
+ * </p>
+ * <p>
+ * <b>EXAMPLE USAGE</b>
+ * </p>
+ * <pre>
+ * FileIndex index = indexFile.exists() ? FileIndex.load(indexFile) : new FileIndex(libraryDir);
+ * index.refresh();
+ * List&lt;File&gt; images = index.findFiles(List.of("jpg", "png"), true);
+ * ...
+ * index.save(indexFile);
+ * </pre>
+ * <p>
+ * All methods in this class are thread safe.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class FileIndex {
+
+    private static final Logger log = Logger.getLogger(FileIndex.class.getName());
+
+    private static final int FILE_MAGIC = 0x53584649; // "SXFI"
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * Directory timestamps on some filesystems are only accurate to a second or two. If a
+     * directory was modified within this window before we scanned it, a second change in
+     * the same tick wouldn't move its timestamp, so we re-read such directories on the next
+     * refresh regardless.
+     */
+    private static final long TIMESTAMP_GRANULARITY_MS = 2000;
+
+    /**
+     * Information about one indexed file.
+     *
+     * @param name         The file name, without any path.
+     * @param extension    The lower case extension, without the dot, or an empty string if none.
+     * @param size         The file size in bytes.
+     * @param lastModified The last modified time in epoch milliseconds.
+     */
+    public record FileRecord(String name, String extension, long size, long lastModified) {
+    }
+
+    /**
+     * The indexed contents of one directory.
+     */
+    private static class DirectoryRecord {
+        private long lastModified;
+        private boolean mayBeStale;
+        private final List<FileRecord> files = new ArrayList<>();
+        private final Set<String> subdirectories = new HashSet<>();
+    }
+
+    private final Path rootDir;
+
+    /**
+     * Keyed by path relative to rootDir, always using '/' as the separator, with "" for rootDir itself.
+     */
+    private final Map<String, DirectoryRecord> directories = new HashMap<>();
+    private boolean fullyScanned;
+
+    private WatchHub.Subscription watchSubscription;
+    private final Set<String> changedDirectories = new HashSet<>();
+    private boolean watchOverflowed;
+
+    /**
+     * Creates a new, empty index for the given root directory. Nothing is read from disk
+     * until refresh() is invoked.
+     */
+    public FileIndex(File rootDir) {
+        if (rootDir == null) {
+            throw new IllegalArgumentException("rootDir cannot be null");
+        }
+        this.rootDir = rootDir.getAbsoluteFile().toPath();
+    }
+
+    public File getRootDir() {
+        return rootDir.toFile();
+    }
+
+    /**
+     * Returns the total number of files in the index.
+     */
+    public synchronized int getFileCount() {
+        int count = 0;
+        for (DirectoryRecord dir : directories.values()) {
+            count += dir.files.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total number of directories in the index, including the root directory.
+     */
+    public synchronized int getDirectoryCount() {
+        return directories.size();
+    }
+
+    /**
+     * Brings the index up to date with the disk, reading only the directories that have
+     * changed since the last refresh (or everything, if this is the first refresh).
+     * See the class documentation for details.
+     */
+    public synchronized void refresh() {
+        if (!Files.isDirectory(rootDir)) {
+            directories.clear();
+            fullyScanned = false;
+            return;
+        }
+
+        if (!fullyScanned) {
+            directories.clear();
+            indexSubtree("");
+            fullyScanned = true;
+            return;
+        }
+
+        if (watchSubscription != null && !watchOverflowed) {
+            refreshChangedDirectories();
+            return;
+        }
+
+        // Note that we don't clear changedDirectories here. A change that is reported after we've
+        // already checked its directory would otherwise be lost. Re-reading those is cheap.
+        watchOverflowed = false;
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push("");
+        while (!pending.isEmpty()) {
+            String relativePath = pending.pop();
+            DirectoryRecord dir = directories.get(relativePath);
+            if (dir == null) {
+                continue;
+            }
+            long lastModified = lastModified(relativePath);
+            if (lastModified != dir.lastModified || dir.mayBeStale) {
+                rescanDirectory(relativePath);
+                dir = directories.get(relativePath);
+                if (dir == null) {
+                    continue;
+                }
+            }
+            for (String subdir : dir.subdirectories) {
+                pending.push(child(relativePath, subdir));
+            }
+        }
+    }
+
+    /**
+     * Returns all indexed files that match any of the given extensions. If the list of extensions
+     * is null or empty, all files are returned. The returned list is sorted in the same way
+     * as FileSystemUtil.findFiles().
+     *
+     * @param extensions A list of file extensions (eg "jpg") to search for.
+     * @param recursive  If false, only files directly in the root directory are returned.
+     */
+    public List<File> findFiles(List<String> extensions, boolean recursive) {
+        return findFilesInternal(extensions, recursive, false);
+    }
+
+    /**
+     * Returns all indexed files that do NOT match any of the given extensions. If the list of
+     * extensions is null or empty, all files are returned. The returned list is sorted in the same
+     * way as FileSystemUtil.findFilesExcluding().
+     *
+     * @param extensions A list of file extensions (eg "jpg") to exclude from the search.
+     * @param recursive  If false, only files directly in the root directory are returned.
+     */
+    public List<File> findFilesExcluding(List<String> extensions, boolean recursive) {
+        return findFilesInternal(extensions, recursive, true);
+    }
+
+    /**
+     * Returns all indexed subdirectories of the root directory (not including the root
+     * directory itself), sorted in the same way as FileSystemUtil.findSubdirectories().
+     *
+     * @param recursive If false, only the immediate subdirectories of the root are returned.
+     */
+    public synchronized List<File> findSubdirectories(boolean recursive) {
+        List<File> results = new ArrayList<>();
+        for (String relativePath : directories.keySet()) {
+            if (relativePath.isEmpty() || (!recursive && relativePath.contains("/"))) {
+                continue;
+            }
+            results.add(resolve(relativePath).toFile());
+        }
+        results.sort(new FileNameComparator());
+        return results;
+    }
+
+    /**
+     * Returns the indexed information for the given file, or null if it is not in the index.
+     */
+    public synchronized FileRecord getFileRecord(File file) {
+        Path path = file.getAbsoluteFile().toPath();
+        if (!path.startsWith(rootDir) || path.equals(rootDir)) {
+            return null;
+        }
+        DirectoryRecord dir = directories.get(relativize(path.getParent()));
+        if (dir == null) {
+            return null;
+        }
+        String name = path.getFileName().toString();
+        for (FileRecord record : dir.files) {
+            if (record.name().equals(name)) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts watching every indexed directory for changes via the shared WatchHub, so that
+     * subsequent calls to refresh() only need to re-read the directories that actually
+     * changed. Does nothing if we are already watching. The index is refreshed as part of
+     * this call, to catch up on anything that changed before watching began.
+     *
+     * @throws IOException If the root directory can't be watched.
+     */
+    public synchronized void startWatching() throws IOException {
+        if (watchSubscription != null) {
+            return;
+        }
+        watchSubscription = WatchHub.getShared().watchDirectory(rootDir, true, this::pathChanged);
+
+        // Now that we're watching, catch up on anything that happened before we started:
+        watchOverflowed = true;
+        refresh();
+    }
+
+    /**
+     * Stops watching for changes. Subsequent calls to refresh() will go back to checking
+     * the last modified time of every directory.
+     */
+    public synchronized void stopWatching() {
+        if (watchSubscription == null) {
+            return;
+        }
+        watchSubscription.close();
+        watchSubscription = null;
+
+        // We don't know what happened since the last event, so check everything next time:
+        watchOverflowed = true;
+    }
+
+    public synchronized boolean isWatching() {
+        return watchSubscription != null;
+    }
+
+    /**
+     * Writes the contents of this index to the given file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    public synchronized void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file.toPath()))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(rootDir.toString());
+            out.writeBoolean(fullyScanned);
+            out.writeInt(directories.size());
+            for (Map.Entry<String, DirectoryRecord> entry : directories.entrySet()) {
+                DirectoryRecord dir = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(dir.lastModified);
+                out.writeBoolean(dir.mayBeStale);
+                out.writeInt(dir.subdirectories.size());
+                for (String subdir : dir.subdirectories) {
+                    out.writeUTF(subdir);
+                }
+                out.writeInt(dir.files.size());
+                for (FileRecord record : dir.files) {
+                    out.writeUTF(record.name());
+                    out.writeLong(record.size());
+                    out.writeLong(record.lastModified());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an index that was previously written with save(). The returned index reflects
+     * the disk as of the time it was saved; call refresh() to bring it up to date.
+     *
+     * @throws IOException If the file can't be read, or isn't a FileIndex file.
+     */
+    public static FileIndex load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a FileIndex file: " + file.getAbsolutePath());
+            }
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported FileIndex version " + version + ": " + file.getAbsolutePath());
+            }
+            FileIndex index = new FileIndex(Paths.get(in.readUTF()).toFile());
+            index.fullyScanned = in.readBoolean();
+            int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                String relativePath = in.readUTF();
+                DirectoryRecord dir = new DirectoryRecord();
+                dir.lastModified = in.readLong();
+                dir.mayBeStale = in.readBoolean();
+                int subdirCount = in.readInt();
+                for (int j = 0; j < subdirCount; j++) {
+                    dir.subdirectories.add(in.readUTF());
+                }
+                int fileCount = in.readInt();
+                for (int j = 0; j < fileCount; j++) {
+                    String name = in.readUTF();
+                    dir.files.add(new FileRecord(name, extensionOf(name), in.readLong(), in.readLong()));
+                }
+                index.directories.put(relativePath, dir);
+            }
+            return index;
+        }
+    }
+
+    private synchronized List<File> findFilesInternal(List<String> extensions, boolean recursive,
+                                                      boolean invertSearch) {
+        if (watchSubscription != null && !changedDirectories.isEmpty()) {
+            refreshChangedDirectories();
+        }
+
+        Set<String> extSet = FileSystemUtil.normalizeExtensionsToSet(extensions);
+
+        // The common case is simple extensions like ".jpg", which we can match against each
+        // record's precomputed extension with a set lookup. Compound ones like ".tar.gz" need
+        // to be matched against the full name instead.
+        Set<String> simpleExtensions = new HashSet<>();
+        boolean allSimple = true;
+        for (String ext : extSet) {
+            if (ext.indexOf('.', 1) >= 0) {
+                allSimple = false;
+                break;
+            }
+            simpleExtensions.add(ext.substring(1));
+        }
+
+        List<File> results = new ArrayList<>();
+        for (Map.Entry<String, DirectoryRecord> entry : directories.entrySet()) {
+            if (!recursive && !entry.getKey().isEmpty()) {
+                continue;
+            }
+            Path dir = null;
+            for (FileRecord record : entry.getValue().files) {
+                boolean matches = extSet.isEmpty() || (allSimple
+                        ? simpleExtensions.contains(record.extension()) != invertSearch
+                        : FileSystemUtil.extensionMatches(record.name(), extSet, invertSearch));
+                if (matches) {
+                    if (dir == null) {
+                        dir = resolve(entry.getKey());
+                    }
+                    results.add(dir.resolve(record.name()).toFile());
+                }
+            }
+        }
+        FileSystemUtil.sortFiles(results);
+        return results;
+    }
+
+    private void refreshChangedDirectories() {
+        List<String> changed = new ArrayList<>(changedDirectories);
+        changedDirectories.clear();
+        for (String relativePath : changed) {
+            if (directories.containsKey(relativePath)) {
+                rescanDirectory(relativePath);
+            }
+        }
+    }
+
+    /**
+     * Scans the given directory and everything beneath it, adding it all to the index.
+     */
+    private void indexSubtree(String relativePath) {
+        final Path subtreeRoot = resolve(relativePath);
+        final long scanTime = System.currentTimeMillis();
+        final Map<String, DirectoryRecord> found = new HashMap<>();
+        DirectoryRecord top = newDirectoryRecord(lastModified(relativePath), scanTime);
+        found.put(relativePath, top);
+
+        new FileTreeWalker(subtreeRoot)
+                .setIncludeDirectories(true)
+                .walk((path, attributes) -> {
+                    String parent = relativize(path.getParent());
+                    DirectoryRecord parentRecord = found.computeIfAbsent(parent, k -> new DirectoryRecord());
+                    String name = path.getFileName().toString();
+                    if (attributes.isDirectory()) {
+                        parentRecord.subdirectories.add(name);
+                        DirectoryRecord dir = found.computeIfAbsent(child(parent, name), k -> new DirectoryRecord());
+                        dir.lastModified = attributes.lastModifiedTime().toMillis();
+                        dir.mayBeStale = scanTime - dir.lastModified < TIMESTAMP_GRANULARITY_MS;
+                    }
+                    else {
+                        parentRecord.files.add(newFileRecord(name, attributes));
+                    }
+                    return true;
+                });
+
+        directories.putAll(found);
+    }
+
+    /**
+     * Re-reads a single directory. Any new subdirectories are indexed in full, and any removed
+     * subdirectories are dropped from the index along with everything beneath them.
+     */
+    private void rescanDirectory(String relativePath) {
+        Path dir = resolve(relativePath);
+        if (!Files.isDirectory(dir)) {
+            removeSubtree(relativePath);
+            return;
+        }
+
+        long scanTime = System.currentTimeMillis();
+        DirectoryRecord updated = newDirectoryRecord(lastModified(relativePath), scanTime);
+        new FileTreeWalker(dir)
+                .setRecursive(false)
+                .setIncludeDirectories(true)
+                .walk((path, attributes) -> {
+                    String name = path.getFileName().toString();
+                    if (attributes.isDirectory()) {
+                        updated.subdirectories.add(name);
+                    }
+                    else {
+                        updated.files.add(newFileRecord(name, attributes));
+                    }
+                    return true;
+                });
+
+        DirectoryRecord previous = directories.put(relativePath, updated);
+        Set<String> previousSubdirs = previous == null ? Set.of() : previous.subdirectories;
+        for (String subdir : previousSubdirs) {
+            if (!updated.subdirectories.contains(subdir)) {
+                removeSubtree(child(relativePath, subdir));
+            }
+        }
+        for (String subdir : updated.subdirectories) {
+            if (!previousSubdirs.contains(subdir)) {
+                indexSubtree(child(relativePath, subdir));
+            }
+        }
+    }
+
+    private void removeSubtree(String relativePath) {
+        String prefix = relativePath + "/";
+        Iterator<String> iterator = directories.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (key.equals(relativePath) || key.startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Invoked by the WatchHub (on its dispatcher thread) when something changes in our tree.
+     */
+    private synchronized void pathChanged(Path path, WatchEvent.Kind<?> kind) {
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            watchOverflowed = true;
+            return;
+        }
+        Path parent = path.getParent();
+        if (parent != null && parent.startsWith(rootDir)) {
+            changedDirectories.add(relativize(parent));
+        }
+    }
+
+    private DirectoryRecord newDirectoryRecord(long lastModified, long scanTime) {
+        DirectoryRecord dir = new DirectoryRecord();
+        dir.lastModified = lastModified;
+        dir.mayBeStale = scanTime - lastModified < TIMESTAMP_GRANULARITY_MS;
+        return dir;
+    }
+
+    private static FileRecord newFileRecord(String name, BasicFileAttributes attributes) {
+        return new FileRecord(name, extensionOf(name), attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private long lastModified(String relativePath) {
+        try {
+            return Files.getLastModifiedTime(resolve(relativePath)).toMillis();
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private Path resolve(String relativePath) {
+        return relativePath.isEmpty() ? rootDir : rootDir.resolve(relativePath);
+    }
+
+    private String relativize(Path path) {
+        String relative = rootDir.relativize(path).toString();
+        return File.separatorChar == '/' ? relative : relative.replace(File.separatorChar, '/');
+    }
+
+    private static String child(String parent, String name) {
+        return parent.isEmpty() ? name : parent + "/" + name;
+    }
+}
@@ -3,6 +3,7 @@ package ca.corbett.extras.io;
 import ca.corbett.extras.progress.SimpleProgressWorker;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -11,8 +12,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
- * A handy utility class that can wrap the various find methods in FileSystemUtil
- * in the form of a worker thread that can be easily wired up to a MultiProgressDialog.
+ * A handy utility class that can wrap a FileTreeWalker search (the engine behind the
+ * various find methods in FileSystemUtil) in the form of a worker thread that can be easily wired up to a MultiProgressDialog.
  * This saves a modest amount of work for client applications that just want to find
  * files in a thread-safe way (that is, without blocking the UI thread).
  * <p>
@@ -174,12 +175,18 @@ public class FileScannerThread extends SimpleProgressWorker {
         return this;
     }
 
+    /**
+     * Walks the tree, reporting each matching file in a progress update as soon as it is found,
+     * so that the search can be canceled at any point. Because the walk is never done up front
+     * just to count the files, the total step count isn't known: progressBegins() is fired once
+     * with a total of 1, and each progress update gives the number of matches so far.
+     * The results are sorted as with FileSystemUtil.sortFiles() once the walk completes.
+     */
     @Override
     public void run() {
         // We don't know how many files there are to scan, and finding out
         // is a costly operation. So, we fire a progressBegins event just
-        // to get the progress dialog to show up. We'll correct it with
-        // a second progressBegins event once we have an idea of what we're up against.
+        // to get the progress dialog to show up, and then report matches as we find them.
         fireProgressBegins(1);
 
         // Special-case stupid input:
@@ -193,20 +200,20 @@ public class FileScannerThread extends SimpleProgressWorker {
         results.clear();
         boolean wasCanceled = false;
         try {
-            // Find ALL files, unfiltered. We'll filter them ourselves.
-            List<File> files = FileSystemUtil.findFiles(rootDir, recursive);
-            fireProgressBegins(files.size());
-
-            int currentStep = 0;
-            for (File file : files) {
-                if (fileMatches(file)) {
-                    results.add(file);
-                }
-
-                if (!fireProgressUpdate(currentStep++, file.getName())) {
-                    wasCanceled = true;
-                    break;
-                }
+            // The extension matching is done by the walker, in parallel. Our listener only
+            // sees matches, one at a time, and stops the walk if the caller cancels:
+            Set<String> extensions = Set.copyOf(extensionsToMatch);
+            boolean inverted = invertSearch;
+            wasCanceled = !new FileTreeWalker(rootDir.toPath())
+                    .setRecursive(recursive)
+                    .setFilter((path, attributes) -> fileMatches(path, extensions, inverted))
+                    .walk((path, attributes) -> {
+                        File file = path.toFile();
+                        results.add(file);
+                        return fireProgressUpdate(results.size() - 1, file.getName());
+                    });
+            if (!wasCanceled) {
+                FileSystemUtil.sortFiles(results);
             }
         }
 
@@ -237,34 +244,15 @@ public class FileScannerThread extends SimpleProgressWorker {
     }
 
     /**
-     * Basically duplicating the logic from FileSystemUtil's findFilesRecurse() method,
-     * but without the FileSearchListener nonsense. Our main search loop handles firing
+     * Decides whether the given file should be included in the results, based on the given
+     * extension list and whether the search is inverted. This is invoked from the walker's
+     * threads, so it only looks at what it is given. Our walk listener handles firing
      * progress events and checking for user cancellation.
      *
-     * @param file The file to consider.
+     * @param path The file to consider.
      * @return True if the file should be added to the results list, false to ignore it.
      */
-    private boolean fileMatches(File file) {
-        String filename = file.getName().toLowerCase(java.util.Locale.ROOT);
-        // if any extensions match, it's a hit:
-        boolean fileMatched = false;
-        for (String ext : extensionsToMatch) {
-            if (filename.endsWith(ext)) {
-                fileMatched = true;
-                break; // Found match, no need to check other extensions
-            }
-        }
-
-        // Special handling for empty extension list: if it's empty, we consider it a match for all files:
-        if (extensionsToMatch.isEmpty()) {
-            // If it's a regular, non-inverted search, empty list means "match everything".
-            // If it's an inverted search, empty list means "exclude nothing".
-            // "fileMatched" will be interpreted correctly in either case by the logic below.
-            fileMatched = !invertSearch;
-        }
-
-        // If the file matched an extension and our search is not inverted, it's a hit:
-        // OR if the file did NOT match any extension and our search IS inverted, it's a hit:
-        return ((fileMatched && !invertSearch) || (!fileMatched && invertSearch));
+    private static boolean fileMatches(Path path, Set<String> extensions, boolean inverted) {
+        return FileSystemUtil.extensionMatches(path.getFileName().toString(), extensions, inverted);
     }
 }
@@ -5,19 +5,35 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Provides a number of handy static utility methods for working with files and directories.
@@ -29,6 +45,11 @@ import java.util.regex.Pattern;
  */
 public class FileSystemUtil {
 
+    /**
+     * The most bytes we encode at a time when writing text through a FileChannel.
+     */
+    private static final int WRITE_CHUNK_SIZE = 256 * 1024;
+
     protected static final Pattern INVALID_CHARS = Pattern.compile("[^a-zA-Z0-9.-]");
     protected static final Pattern LEADING_DOTS = Pattern.compile("^\\.+");
     protected static final Pattern WINDOWS_RESERVED = Pattern.compile(
@@ -130,58 +151,61 @@ public class FileSystemUtil {
     }
 
     /**
-     * Internally invoked as needed from findFiles to recurse through a directory structure.
+     * Internally invoked as needed from findFiles to walk a directory structure. The walk is
+     * done in parallel by FileTreeWalker, and the given listener (if any) is notified of each
+     * match as it is found. Matches will arrive in no particular order, and the returned
+     * list is unsorted.
      */
     protected static List<File> findFilesRecurse(final File rootDir,
                                                final boolean recursive,
                                                final Set<String> extSet,
                                                final FileSearchListener listener,
                                                final boolean invertSearch) {
-        File[] children = rootDir.listFiles();
-        if (children == null) {
-            return new ArrayList<>();
-        }
-
         List<File> fileList = new ArrayList<>();
+        if (rootDir == null) {
+            return fileList;
+        }
 
-        for (File child : children) {
-            if (child.isDirectory() && recursive) {
-                fileList.addAll(findFilesRecurse(child, recursive, extSet, listener, invertSearch));
-            }
-            else if (child.isFile()) {
-                String filename = child.getName().toLowerCase();
-
-                // if any extensions match, it's a hit:
-                boolean fileMatched = false;
-                for (String ext : extSet) {
-                    if (filename.endsWith(ext)) {
-                        fileMatched = true;
-                        break; // Found match, no need to check other extensions
+        new FileTreeWalker(rootDir.toPath())
+                .setRecursive(recursive)
+                .setFilter((path, attributes) -> extensionMatches(path.getFileName().toString(), extSet, invertSearch))
+                .walk((path, attributes) -> {
+                    File file = path.toFile();
+                    if (listener != null && !listener.fileFound(file)) { // give caller a chance to cancel
+                        return false;
                     }
-                }
+                    fileList.add(file);
+                    return true;
+                });
 
-                // Special handling for empty extension list: if extSet is empty, we consider it a match for all files:
-                if (extSet.isEmpty()) {
-                    // If it's a regular, non-inverted search, empty list means "match everything".
-                    // If it's an inverted search, empty list means "exclude nothing".
-                    // "fileMatched" will be interpreted correctly in either case by the logic below.
-                    fileMatched = !invertSearch;
-                }
+        return fileList; // No sorting in helper method
+    }
 
-                // If the file matched an extension and our search is not inverted, it's a hit:
-                // OR if the file did NOT match any extension and our search IS inverted, it's a hit:
-                if ((fileMatched && !invertSearch) || (!fileMatched && invertSearch)) {
-                    if (listener != null) {
-                        if (!listener.fileFound(child)) { // give caller a chance to cancel
-                            break;
-                        }
-                    }
-                    fileList.add(child);
-                }
+    /**
+     * Reports whether the given filename should be included in a search for the given set
+     * of normalized extensions (see normalizeExtensionsToSet()).
+     */
+    static boolean extensionMatches(String filename, Set<String> extSet, boolean invertSearch) {
+        // Special handling for empty extension list: if extSet is empty, we consider it a match for all files.
+        // If it's a regular, non-inverted search, empty list means "match everything".
+        // If it's an inverted search, empty list means "exclude nothing".
+        if (extSet.isEmpty()) {
+            return true;
+        }
+
+        // if any extensions match, it's a hit:
+        filename = filename.toLowerCase(Locale.ROOT);
+        boolean fileMatched = false;
+        for (String ext : extSet) {
+            if (filename.endsWith(ext)) {
+                fileMatched = true;
+                break; // Found match, no need to check other extensions
             }
         }
 
-        return fileList; // No sorting in helper method
+        // If the file matched an extension and our search is not inverted, it's a hit:
+        // OR if the file did NOT match any extension and our search IS inverted, it's a hit:
+        return fileMatched != invertSearch;
     }
 
     /**
@@ -267,6 +291,70 @@ public class FileSystemUtil {
         return result;
     }
 
+    /**
+     * Returns a lazy Stream of all files in the given directory (and optionally all of its
+     * subdirectories) that match one of the given extensions. If the list of extensions is
+     * null or empty, all files are returned. Unlike findFiles(), nothing is collected up front:
+     * directories are only read as the Stream is consumed, so short-circuiting operations
+     * like limit() or findFirst() will stop the search as soon as they are satisfied.
+     * <p>
+     * The returned Stream holds open directory handles until it is exhausted, so it
+     * should be closed with try-with-resources:
+     * </p>
+     * <pre>
+     * try (Stream&lt;Path&gt; images = FileSystemUtil.streamFiles(dir, true, List.of("jpg", "png"), false)) {
+     *     List&lt;Path&gt; firstFew = images.limit(200).toList();
+     * }
+     * </pre>
+     *
+     * @param rootDir    The root directory for the search. If it doesn't exist, the Stream will be empty.
+     * @param recursive  Indicates whether to search sub directories also or not.
+     * @param extensions A list of file extensions (eg "jpg") to search for.
+     * @param sorted     If true, files will be returned in the same order that sortFiles() would put them in.
+     *                   Otherwise, they will be returned in whatever order the filesystem provides them.
+     * @return A lazy Stream of matching files.
+     */
+    public static Stream<Path> streamFiles(final File rootDir,
+                                           final boolean recursive,
+                                           final List<String> extensions,
+                                           final boolean sorted) {
+        return streamFilesInternal(rootDir, recursive, extensions, sorted, false);
+    }
+
+    /**
+     * Returns a lazy Stream of all files in the given directory (and optionally all of its
+     * subdirectories) that do NOT match any of the given extensions. If the list of extensions
+     * is null or empty, all files are returned. See streamFiles() for more details.
+     *
+     * @param rootDir    The root directory for the search. If it doesn't exist, the Stream will be empty.
+     * @param recursive  Indicates whether to search sub directories also or not.
+     * @param extensions A list of file extensions (eg "jpg") to exclude from the search.
+     * @param sorted     If true, files will be returned in the same order that sortFiles() would put them in.
+     * @return A lazy Stream of non-matching files.
+     */
+    public static Stream<Path> streamFilesExcluding(final File rootDir,
+                                                    final boolean recursive,
+                                                    final List<String> extensions,
+                                                    final boolean sorted) {
+        return streamFilesInternal(rootDir, recursive, extensions, sorted, true);
+    }
+
+    private static Stream<Path> streamFilesInternal(final File rootDir,
+                                                    final boolean recursive,
+                                                    final List<String> extensions,
+                                                    final boolean sorted,
+                                                    final boolean invertSearch) {
+        if (rootDir == null) {
+            return Stream.empty();
+        }
+        final Set<String> extSet = normalizeExtensionsToSet(extensions);
+        return new FileTreeWalker(rootDir.toPath())
+                .setRecursive(recursive)
+                .setSorted(sorted)
+                .setFilter((path, attributes) -> extensionMatches(path.getFileName().toString(), extSet, invertSearch))
+                .stream();
+    }
+
     /**
      * Shorthand for findFiles without specifying a progress callback.
      * See findFiles(File,boolean,FileSearchListener) for details.
@@ -380,26 +468,33 @@ public class FileSystemUtil {
      * @param fileList The list of files to sort. Will be sorted in place.
      */
     public static void sortFiles(List<File> fileList) {
-        fileList.sort(new Comparator<File>() {
-            @Override
-            public int compare(File o1, File o2) {
-                String name1 = o1.getAbsolutePath().toLowerCase();
-                String name2 = o2.getAbsolutePath().toLowerCase();
-                return name1.compareTo(name2);
-            }
+        // Compute each sort key once up front, rather than twice per comparison:
+        SortableFile[] sortable = new SortableFile[fileList.size()];
+        int i = 0;
+        for (File file : fileList) {
+            sortable[i++] = new SortableFile(file.getAbsolutePath().toLowerCase(Locale.ROOT), file);
+        }
+        Arrays.sort(sortable, Comparator.comparing(SortableFile::sortKey));
 
-        });
+        ListIterator<File> iterator = fileList.listIterator();
+        for (SortableFile entry : sortable) {
+            iterator.next();
+            iterator.set(entry.file());
+        }
+    }
+
+    private record SortableFile(String sortKey, File file) {
     }
 
     /**
      * Reads the contents of the given text file into a single String, which will include
-     * line delimiters as present in the file. No check on file size or content is done here,
+     * line delimiters exactly as present in the file. No check on file size or content is done here,
      * so us with caution... larger files may cause problems. By default, we assume
      * a charset of UTF-8 (a pretty safe default), but you can use readFileToString(File,String)
      * to override that.
      * <p>
      * If you prefer to iterate over the lines in the file one by one, use
-     * readFileLines() instead.
+     * readFileLines() instead, or streamFileLines() for very large files.
      *
      * @param in Any text file.
      * @return The contents of the file as one single String including line delimiters.
@@ -411,11 +506,12 @@ public class FileSystemUtil {
 
     /**
      * Reads the contents of the given text file into a single String using the given Charset.
-     * This will include line delimiters as present in the file. No check on file size or
-     * content is done here, so us with caution... larger files may cause problems.
+     * This will include line delimiters exactly as present in the file. The file is decoded
+     * straight into the resulting String, without building an intermediate list of lines.
+     * No check on file size is done here, so use with caution... larger files may cause problems.
      * <p>
      * If you prefer to iterate over the lines in the file one by one, use
-     * readFileLines() instead.
+     * readFileLines() instead, or streamFileLines() for very large files.
      *
      * @param in      Any text file.
      * @param charset The name of the charset to use.
@@ -423,21 +519,7 @@ public class FileSystemUtil {
      * @throws IOException If something goes wrong.
      */
     public static String readFileToString(File in, String charset) throws IOException {
-        List<String> lines = readFileLines(in, charset);
-        StringBuilder sb = new StringBuilder();
-        for (String line : lines) {
-            sb.append(line);
-            sb.append(System.lineSeparator());
-        }
-
-        // Remove the last line separator that we added above:
-        if (!lines.isEmpty()) {
-            if (!lines.get(lines.size() - 1).isEmpty()) { // only if the line had content
-                sb.delete(sb.length() - System.lineSeparator().length(), sb.length());
-            }
-        }
-
-        return sb.toString();
+        return Files.readString(in.toPath(), Charset.forName(charset));
     }
 
     /**
@@ -475,6 +557,54 @@ public class FileSystemUtil {
         return Files.readAllLines(in.toPath(), Charset.forName(charset));
     }
 
+    /**
+     * Returns a lazily-populated Stream of the lines in the given file, with line delimiters
+     * stripped out, using a charset of UTF-8. Only a small buffer of the file is held in memory
+     * at any time, so this is the way to go for very large log or data files.
+     * The returned Stream holds the file open, so use it in a try-with-resources block.
+     *
+     * @param in Any text file.
+     * @return A Stream of lines from the file.
+     * @throws IOException If the file can't be opened.
+     */
+    public static Stream<String> streamFileLines(File in) throws IOException {
+        return streamFileLines(in, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Returns a lazily-populated Stream of the lines in the given file, with line delimiters
+     * stripped out, using the given charset. The returned Stream holds the file open, so use
+     * it in a try-with-resources block.
+     *
+     * @param in      Any text file.
+     * @param charset The name of the charset to use.
+     * @return A Stream of lines from the file.
+     * @throws IOException If the file can't be opened.
+     */
+    public static Stream<String> streamFileLines(File in, String charset) throws IOException {
+        return Files.lines(in.toPath(), Charset.forName(charset));
+    }
+
+    /**
+     * Maps the given file into memory, read-only. The contents are paged in by the operating
+     * system as they are accessed, rather than copied onto the java heap, which makes this
+     * suitable for scanning very large files. The mapping remains valid until the returned
+     * buffer is garbage collected; the file itself doesn't need to stay open. Files larger than
+     * Integer.MAX_VALUE bytes can't be mapped in a single buffer.
+     *
+     * @param in Any file.
+     * @return A read-only buffer over the file's contents.
+     * @throws IOException If the file can't be opened, or is too large.
+     */
+    public static MappedByteBuffer mapFile(File in) throws IOException {
+        try (FileChannel channel = FileChannel.open(in.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to map: " + in.getAbsolutePath());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
     /**
      * Reads the contents of the given InputStream as one big String and returns it.
      * If the InputStream is considerably large, this operation may consume time and memory
@@ -532,7 +662,40 @@ public class FileSystemUtil {
      * @throws IOException If something goes wrong
      */
     public static void writeStringToFile(String str, File out, String charset) throws IOException {
-        Files.write(out.toPath(), str.getBytes(charset));
+        try (FileChannel channel = FileChannel.open(out.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeChars(str, channel, Charset.forName(charset));
+        }
+    }
+
+    /**
+     * Writes the given String to the given File in such a way that the file is never seen
+     * half-written: the String goes into a temporary file in the same directory, which
+     * then replaces the target file in a single atomic rename (where the file system allows it).
+     * If anything goes wrong, the original file is left untouched. Uses UTF-8.
+     *
+     * @param str Any String
+     * @param out Any writable File
+     * @throws IOException If something goes wrong
+     */
+    public static void writeStringToFileAtomically(String str, File out) throws IOException {
+        writeStringToFileAtomically(str, out, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Writes the given String to the given File atomically, using the given charset.
+     * See writeStringToFileAtomically(String, File).
+     *
+     * @param str     Any String
+     * @param out     Any writable File
+     * @param charset The name of the charset to use.
+     * @throws IOException If something goes wrong
+     */
+    public static void writeStringToFileAtomically(String str, File out, String charset) throws IOException {
+        Charset cs = Charset.forName(charset);
+        writeAtomically(out, channel -> writeChars(str, channel, cs));
     }
 
     /**
@@ -560,6 +723,160 @@ public class FileSystemUtil {
         Files.write(out.toPath(), lines, Charset.forName(charset));
     }
 
+    /**
+     * Writes the given lines to the given output file atomically, using UTF-8 and the System
+     * line delimiter. See writeStringToFileAtomically(String, File).
+     *
+     * @param lines A List of Strings.
+     * @param out   Any writable File. Will be replaced if it exists.
+     * @throws IOException If something goes wrong.
+     */
+    public static void writeLinesToFileAtomically(List<String> lines, File out) throws IOException {
+        writeLinesToFileAtomically(lines, out, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Writes the given lines to the given output file atomically, using the given charset and the
+     * System line delimiter. See writeStringToFileAtomically(String, File).
+     *
+     * @param lines   A List of Strings.
+     * @param out     Any writable File. Will be replaced if it exists.
+     * @param charset The Charset to use.
+     * @throws IOException If something goes wrong.
+     */
+    public static void writeLinesToFileAtomically(List<String> lines, File out, String charset) throws IOException {
+        Charset cs = Charset.forName(charset);
+        writeAtomically(out, channel -> {
+            CharsetEncoder encoder = newReplacingEncoder(cs);
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK_SIZE);
+            for (String line : lines) {
+                encodeInto(line, encoder, buffer, channel, false);
+                encodeInto(System.lineSeparator(), encoder, buffer, channel, false);
+            }
+            encodeInto("", encoder, buffer, channel, true);
+        });
+    }
+
+    /**
+     * Moves the given source file over the given target, replacing it if it exists. The move is
+     * atomic if the file system supports that (generally true within a single file system),
+     * so that other readers see either the old file or the new one, never a mixture.
+     * Otherwise, this falls back to a regular replacing move.
+     *
+     * @param source The file to move.
+     * @param target Where to move it.
+     * @throws IOException If the move fails.
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Something that writes content into a FileChannel.
+     */
+    @FunctionalInterface
+    private interface ChannelWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Invokes the given writer on a temporary file next to the given target, flushes it to disk,
+     * and then moves it over the target. The temporary file is removed if anything fails.
+     * If the target already exists, its POSIX permissions (where supported) are carried over
+     * to the new file. Otherwise, the new file gets the same default permissions as any other
+     * newly created file.
+     */
+    private static void writeAtomically(File out, ChannelWriter writer) throws IOException {
+        Path target = out.toPath().toAbsolutePath();
+        Path tempFile = createSiblingFile(target);
+        try {
+            if (Files.exists(target) && Files.getFileStore(target).supportsFileAttributeView("posix")) {
+                Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(target));
+            }
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                writer.write(channel);
+                channel.force(true);
+            }
+            moveAtomically(tempFile, target);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Creates a new, empty file with a unique name in the same directory as the given target.
+     * Unlike Files.createTempFile(), which restricts the file to its owner, this leaves the
+     * file with the default permissions for the directory.
+     */
+    private static Path createSiblingFile(Path target) throws IOException {
+        while (true) {
+            String suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong());
+            Path candidate = target.resolveSibling("." + target.getFileName() + "." + suffix + ".tmp");
+            try {
+                return Files.createFile(candidate);
+            }
+            catch (FileAlreadyExistsException ignored) {
+                // Unlikely, but just pick another name
+            }
+        }
+    }
+
+    /**
+     * Encodes the given characters into the given channel a chunk at a time, so that we never
+     * hold an encoded copy of the whole String in memory. Unmappable characters are replaced,
+     * the same as String.getBytes() would do.
+     */
+    private static void writeChars(CharSequence chars, FileChannel channel, Charset charset) throws IOException {
+        CharsetEncoder encoder = newReplacingEncoder(charset);
+        long estimate = (long)(chars.length() * (double)encoder.maxBytesPerChar());
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.max(64, Math.min(WRITE_CHUNK_SIZE, estimate)));
+        encodeInto(chars, encoder, buffer, channel, true);
+    }
+
+    private static CharsetEncoder newReplacingEncoder(Charset charset) {
+        return charset.newEncoder()
+                      .onMalformedInput(CodingErrorAction.REPLACE)
+                      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Encodes the given characters with the given encoder, writing the buffer out to the channel
+     * each time it fills up. If endOfInput is true, the encoder is flushed and the buffer is
+     * written out completely.
+     */
+    private static void encodeInto(CharSequence chars, CharsetEncoder encoder, ByteBuffer buffer,
+                                   FileChannel channel, boolean endOfInput) throws IOException {
+        CharBuffer input = CharBuffer.wrap(chars);
+        CoderResult result;
+        do {
+            result = encoder.encode(input, buffer, endOfInput);
+            if (result.isOverflow()) {
+                drain(buffer, channel);
+            }
+        } while (result.isOverflow());
+
+        if (endOfInput) {
+            while (encoder.flush(buffer).isOverflow()) {
+                drain(buffer, channel);
+            }
+            drain(buffer, channel);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
     /**
      * Given a count of bytes, returns a human-readable String representation of it.
      */
@@ -0,0 +1,578 @@
+package ca.corbett.extras.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The scanning engine behind the findFiles methods in FileSystemUtil (and therefore also
+ * behind FileScannerThread). Directories are read with NIO DirectoryStreams, and the
+ * attributes of each entry are read once, instead of the separate isDirectory() and isFile()
+ * calls that java.io.File needs. Each subdirectory is scanned as its own task on a
+ * ForkJoinPool, so that large trees (especially on network mounts, where each directory
+ * read is slow) are scanned in parallel.
+ * <p>
+ * Matching paths are handed to a PathListener as soon as they are found, rather than
+ * collected into a list first. The walk happens on several threads at once, so paths will
+ * arrive in no particular order. But, the PathListener is never invoked by more than one
+ * thread at a time, so it doesn't need to be thread safe. Returning false from the
+ * PathListener cancels the walk.
+ * </p>
+ * <p>
+ * Symbolic links are followed, consistent with java.io.File. Each directory is only
+ * visited once, so a link that points back up the tree won't send the walk into a loop.
+ * Directories that can't be read are silently skipped.
+ * </p>
+ * <p>
+ * <b>Streaming results</b> - if you only need the first few matches, or want to feed matches
+ * into some other processing, use stream() instead of walk(). The returned Stream is lazy:
+ * directories are only read as the Stream is consumed, so a Stream that is short-circuited
+ * (for example, with limit() or findFirst()) stops reading the disk as soon as it is done.
+ * Streams are read on a single thread, and hold open directory handles until they are
+ * exhausted, so they should be closed with try-with-resources.
+ * </p>
+ * <p>
+ * <b>Sorting</b> - setSorted(true) makes the walk report paths in the same order that
+ * FileSystemUtil.sortFiles() would put them in (case-insensitive by full path), without
+ * having to collect and sort the entire result set first. Each directory is read and sorted
+ * as it is reached, using a sort key that is computed once per entry. Sorted walks always
+ * run on a single thread.
+ * </p>
+ * <p>
+ * <b>EXAMPLE USAGE</b>
+ * </p>
+ * <pre>
+ * List&lt;Path&gt; bigFiles = new ArrayList&lt;&gt;();
+ * new FileTreeWalker(rootDir.toPath())
+ *     .setFilter((path, attributes) -&gt; attributes.size() &gt; 1_000_000)
+ *     .walk((path, attributes) -&gt; bigFiles.add(path));
+ * </pre>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class FileTreeWalker {
+
+    private static final Logger log = Logger.getLogger(FileTreeWalker.class.getName());
+
+    /**
+     * Directory reads are mostly waiting on I/O rather than the CPU, so by default we use
+     * at least a few threads even on machines with few cores.
+     */
+    public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Receives each matching path as it is found during a walk.
+     */
+    @FunctionalInterface
+    public interface PathListener {
+
+        /**
+         * Invoked for each path that matches the walk criteria.
+         *
+         * @param path       The matching path.
+         * @param attributes The attributes of that path, as read during the walk.
+         * @return True to keep going, or false to cancel the walk.
+         */
+        boolean pathFound(Path path, BasicFileAttributes attributes);
+    }
+
+    private final Path rootDir;
+    private boolean recursive;
+    private boolean includeFiles;
+    private boolean includeDirectories;
+    private BiPredicate<Path, BasicFileAttributes> filter;
+    private int parallelism;
+    private boolean sorted;
+
+    public FileTreeWalker(Path rootDir) {
+        this.rootDir = rootDir;
+        this.recursive = true;
+        this.includeFiles = true;
+        this.includeDirectories = false;
+        this.filter = null;
+        this.parallelism = DEFAULT_PARALLELISM;
+        this.sorted = false;
+    }
+
+    public Path getRootDir() {
+        return rootDir;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Decides whether the walk should include subdirectories, or just rootDir itself.
+     * By default, all walks are recursive.
+     */
+    public FileTreeWalker setRecursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+
+    public boolean isIncludeFiles() {
+        return includeFiles;
+    }
+
+    /**
+     * Decides whether regular files are reported to the PathListener. True by default.
+     */
+    public FileTreeWalker setIncludeFiles(boolean includeFiles) {
+        this.includeFiles = includeFiles;
+        return this;
+    }
+
+    public boolean isIncludeDirectories() {
+        return includeDirectories;
+    }
+
+    /**
+     * Decides whether directories (not including rootDir itself) are reported to the
+     * PathListener. False by default. Note that this only affects what is reported;
+     * recursive walks always descend into every subdirectory regardless.
+     */
+    public FileTreeWalker setIncludeDirectories(boolean includeDirectories) {
+        this.includeDirectories = includeDirectories;
+        return this;
+    }
+
+    /**
+     * Sets an optional filter that paths must pass in order to be reported to the PathListener.
+     * Unlike the PathListener, the filter is invoked from many threads at once, so it must be
+     * thread safe. Doing the matching here rather than in the PathListener allows it to happen
+     * in parallel. Null (the default) means all paths are reported.
+     */
+    public FileTreeWalker setFilter(BiPredicate<Path, BasicFileAttributes> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of threads to use for the walk. A value of 1 will walk
+     * the tree on the calling thread.
+     */
+    public FileTreeWalker setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Decides whether paths should be reported in sorted order (case-insensitive by full path).
+     * False by default. Sorted walks are always single-threaded.
+     */
+    public FileTreeWalker setSorted(boolean sorted) {
+        this.sorted = sorted;
+        return this;
+    }
+
+    /**
+     * Walks the tree, handing each matching path to the given listener as it is found.
+     * This method blocks until the walk is complete or canceled.
+     *
+     * @param listener Receives matching paths. Return false from it to cancel the walk.
+     * @return True if the walk completed, or false if it was canceled by the listener.
+     */
+    public boolean walk(PathListener listener) {
+        if (rootDir == null || !Files.isDirectory(rootDir)) {
+            return true;
+        }
+
+        if (sorted) {
+            try (PathIterator iterator = new PathIterator()) {
+                while (iterator.hasNext()) {
+                    BasicFileAttributes attributes = iterator.nextAttributes;
+                    if (!listener.pathFound(iterator.next(), attributes)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        WalkState state = new WalkState(listener);
+        markVisited(rootDir, null, state.visitedDirs);
+        if (parallelism == 1 || !recursive) {
+            walkDirectory(rootDir, state);
+        }
+        else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new DirectoryTask(rootDir, state));
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+        return !state.canceled;
+    }
+
+    /**
+     * Returns a lazy, single-threaded Stream of all matching paths. Directories are only read
+     * as the Stream is consumed. The Stream should be closed when you are done with it, to
+     * release any directory handles that are still open:
+     * <pre>
+     * try (Stream&lt;Path&gt; stream = walker.stream()) {
+     *     List&lt;Path&gt; firstHundred = stream.limit(100).toList();
+     * }
+     * </pre>
+     */
+    public Stream<Path> stream() {
+        PathIterator iterator = new PathIterator();
+        Spliterator<Path> spliterator = Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /**
+     * Walks the tree and returns all matching paths, in no particular order
+     * (unless setSorted(true) has been set).
+     */
+    public List<Path> collect() {
+        List<Path> results = new ArrayList<>();
+        walk((path, attributes) -> results.add(path));
+        return results;
+    }
+
+    /**
+     * Sequential walk, for non-recursive or single-threaded walks.
+     */
+    private void walkDirectory(Path dir, WalkState state) {
+        for (Path subdir : scanDirectory(dir, state)) {
+            if (state.canceled) {
+                return;
+            }
+            walkDirectory(subdir, state);
+        }
+    }
+
+    /**
+     * Reads a single directory, reporting any matching entries, and returns the
+     * subdirectories that should be walked next (which will be empty if we're not recursive).
+     */
+    private List<Path> scanDirectory(Path dir, WalkState state) {
+        List<Path> subdirs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                if (state.canceled) {
+                    break;
+                }
+
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                }
+                catch (IOException | SecurityException e) {
+                    // Most likely a broken symbolic link. java.io.File would treat this as
+                    // neither a file nor a directory, so we skip it too:
+                    continue;
+                }
+
+                if (attributes.isDirectory()) {
+                    if (includeDirectories && accept(child, attributes)) {
+                        state.report(child, attributes);
+                    }
+                    if (recursive && markVisited(child, attributes, state.visitedDirs)) {
+                        subdirs.add(child);
+                    }
+                }
+                else if (attributes.isRegularFile() && includeFiles && accept(child, attributes)) {
+                    state.report(child, attributes);
+                }
+            }
+        }
+        catch (IOException | SecurityException | DirectoryIteratorException e) {
+            log.log(Level.FINE, "FileTreeWalker: skipping unreadable directory " + dir, e);
+        }
+        return subdirs;
+    }
+
+    private boolean accept(Path path, BasicFileAttributes attributes) {
+        return filter == null || filter.test(path, attributes);
+    }
+
+    /**
+     * Records the given directory as visited, and returns false if it was already visited
+     * (which can only happen if a symbolic link points somewhere we've already been).
+     */
+    private static boolean markVisited(Path dir, BasicFileAttributes attributes, Set<Object> visitedDirs) {
+        Object key;
+        try {
+            if (attributes == null) {
+                attributes = Files.readAttributes(dir, BasicFileAttributes.class);
+            }
+            key = attributes.fileKey();
+        }
+        catch (IOException | SecurityException e) {
+            key = null;
+        }
+        if (key == null) {
+            // Not all filesystems provide a file key. Fall back to the real path:
+            try {
+                key = dir.toRealPath();
+            }
+            catch (IOException | SecurityException e) {
+                key = dir.toAbsolutePath().normalize();
+            }
+        }
+        return visitedDirs.add(key);
+    }
+
+    /**
+     * Returns the key that a directory entry is sorted by. A trailing separator is appended
+     * to directory names, so that sorting each directory's entries and then walking depth-first
+     * gives exactly the same order as sorting everything by full path.
+     */
+    static String sortKey(Path path, BasicFileAttributes attributes) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return attributes.isDirectory() ? name + path.getFileSystem().getSeparator() : name;
+    }
+
+    /**
+     * A single directory entry, along with the attributes that were read for it.
+     */
+    private record Entry(Path path, BasicFileAttributes attributes, String sortKey) {
+    }
+
+    /**
+     * A directory that a PathIterator is part way through. The stream is null if the
+     * directory was read in full up front (for sorting), as it will already be closed.
+     */
+    private record OpenDirectory(Iterator<Entry> entries, DirectoryStream<Path> stream) {
+    }
+
+    /**
+     * Lazily walks the tree depth-first, one directory entry at a time. Each directory
+     * on the current path from rootDir is held open on a stack, so the number of open
+     * directory handles is limited to the depth of the tree.
+     */
+    private class PathIterator implements Iterator<Path>, Closeable {
+        private final Deque<OpenDirectory> stack = new ArrayDeque<>();
+        private final Set<Object> visitedDirs = new HashSet<>();
+        private boolean started;
+        private Path next;
+        private BasicFileAttributes nextAttributes;
+
+        @Override
+        public boolean hasNext() {
+            if (!started) {
+                // Don't touch the disk until someone actually asks for something:
+                started = true;
+                if (rootDir != null && Files.isDirectory(rootDir)) {
+                    markVisited(rootDir, null, visitedDirs);
+                    push(rootDir);
+                }
+            }
+
+            while (next == null && !stack.isEmpty()) {
+                Entry entry = nextEntry(stack.peek().entries());
+                if (entry == null) {
+                    pop();
+                    continue;
+                }
+
+                Path child = entry.path();
+                BasicFileAttributes attributes = entry.attributes();
+                if (attributes.isDirectory()) {
+                    if (includeDirectories && accept(child, attributes)) {
+                        next = child;
+                        nextAttributes = attributes;
+                    }
+                    if (recursive && markVisited(child, attributes, visitedDirs)) {
+                        push(child);
+                    }
+                }
+                else if (attributes.isRegularFile() && includeFiles && accept(child, attributes)) {
+                    next = child;
+                    nextAttributes = attributes;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path result = next;
+            next = null;
+            nextAttributes = null;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            started = true;
+            while (!stack.isEmpty()) {
+                pop();
+            }
+        }
+
+        private Entry nextEntry(Iterator<Entry> entries) {
+            try {
+                return entries.hasNext() ? entries.next() : null;
+            }
+            catch (DirectoryIteratorException e) {
+                log.log(Level.FINE, "FileTreeWalker: error reading directory", e);
+                return null;
+            }
+        }
+
+        private void push(Path dir) {
+            try {
+                DirectoryStream<Path> directoryStream = Files.newDirectoryStream(dir);
+                if (sorted) {
+                    // Read the whole directory and sort it now, so we can close it right away:
+                    List<Entry> entries = new ArrayList<>();
+                    try (directoryStream) {
+                        for (Path child : directoryStream) {
+                            Entry entry = readEntry(child);
+                            if (entry != null) {
+                                entries.add(entry);
+                            }
+                        }
+                    }
+                    entries.sort((a, b) -> a.sortKey().compareTo(b.sortKey()));
+                    stack.push(new OpenDirectory(entries.iterator(), null));
+                }
+                else {
+                    Iterator<Path> children = directoryStream.iterator();
+                    stack.push(new OpenDirectory(new Iterator<>() {
+                        private Entry pending;
+
+                        @Override
+                        public boolean hasNext() {
+                            while (pending == null && children.hasNext()) {
+                                pending = readEntry(children.next());
+                            }
+                            return pending != null;
+                        }
+
+                        @Override
+                        public Entry next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry entry = pending;
+                            pending = null;
+                            return entry;
+                        }
+                    }, directoryStream));
+                }
+            }
+            catch (IOException | SecurityException | DirectoryIteratorException e) {
+                log.log(Level.FINE, "FileTreeWalker: skipping unreadable directory " + dir, e);
+            }
+        }
+
+        private void pop() {
+            DirectoryStream<Path> directoryStream = stack.pop().stream();
+            if (directoryStream != null) {
+                try {
+                    directoryStream.close();
+                }
+                catch (IOException e) {
+                    log.log(Level.FINE, "FileTreeWalker: error closing directory stream", e);
+                }
+            }
+        }
+
+        /**
+         * Reads the attributes of a single entry, or returns null if they can't be read.
+         */
+        private Entry readEntry(Path child) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                return new Entry(child, attributes, sorted ? sortKey(child, attributes) : null);
+            }
+            catch (IOException | SecurityException e) {
+                return null; // Broken symbolic link, most likely
+            }
+        }
+    }
+
+    /**
+     * Scans one directory, and then forks off a new task for each of its subdirectories.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+        private final WalkState state;
+
+        DirectoryTask(Path dir, WalkState state) {
+            this.dir = dir;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            List<Path> subdirs = scanDirectory(dir, state);
+            if (subdirs.isEmpty() || state.canceled) {
+                return;
+            }
+            List<DirectoryTask> tasks = new ArrayList<>(subdirs.size());
+            for (Path subdir : subdirs) {
+                tasks.add(new DirectoryTask(subdir, state));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * State shared by all tasks in a single walk.
+     */
+    private static class WalkState {
+        private final PathListener listener;
+        private final Set<Object> visitedDirs = ConcurrentHashMap.newKeySet();
+        private volatile boolean canceled;
+
+        WalkState(PathListener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void report(Path path, BasicFileAttributes attributes) {
+            if (canceled) {
+                return;
+            }
+            if (!listener.pathFound(path, attributes)) {
+                canceled = true;
+            }
+        }
+    }
+}
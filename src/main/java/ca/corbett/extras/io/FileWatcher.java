@@ -1,20 +1,13 @@
 package ca.corbett.extras.io;
 
+import ca.corbett.extras.crypt.HashUtil;
+
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.ClosedWatchServiceException;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,9 +25,11 @@ import java.util.logging.Logger;
  * via a temp-file rename) into a single callback invocation.
  * </p>
  * <p>
- * The watcher runs on dedicated daemon threads and never blocks the Swing EDT.
- * The supplied callback is invoked directly on the debouncer thread; callers
- * that need to update Swing components should wrap their callback with
+ * All FileWatchers share the threads and WatchService of the shared {@link WatchHub},
+ * so watching hundreds of files costs no more threads than watching one, and files
+ * in the same directory share a single directory registration. The watcher never
+ * blocks the Swing EDT. The supplied callback is invoked directly on the hub's timer
+ * thread; callers that need to update Swing components should wrap their callback with
  * {@link javax.swing.SwingUtilities#invokeLater}.
  * </p>
  * <p>
@@ -45,6 +40,17 @@ import java.util.logging.Logger;
  * event arrives.
  * </p>
  * <p>
+ * <b>Content verification:</b> Optionally, with {@link #setContentVerificationEnabled(boolean)},
+ * the watcher remembers the size, last modified time, and a content hash of the file, and
+ * checks them before invoking the callback. Events that didn't actually change the file's
+ * contents (an editor re-saving identical content, a touch, an OVERFLOW false positive, and
+ * so on) are then silently dropped. This is useful when the callback does something expensive,
+ * like reloading a large properties file. It also offers an alternative to the timing-based
+ * ignoreSelfTriggeredChanges(): call {@link #markCurrentContentAsSeen()} after your application
+ * has finished writing the file, and the resulting events will be recognized as no-ops,
+ * however late they arrive.
+ * </p>
+ * <p>
  * <b>A note about OVERFLOW events:</b> If the native event queue gets too
  * full, we may receive an OVERFLOW event here, which means "something changed
  * in the directory, but we don't know exactly what". This code takes a
@@ -72,12 +78,24 @@ public class FileWatcher {
     private final File watchedFile;
     private final Runnable onChange;
 
-    private WatchService watchService;
-    private ScheduledExecutorService debouncer;
-    private final AtomicReference<ScheduledFuture<?>> pendingEvent = new AtomicReference<>();
-    private volatile Thread watchThread;
+    private volatile WatchHub.Subscription subscription;
     private volatile boolean running;
     private volatile long suppressUntil = 0;
+    private volatile boolean contentVerificationEnabled;
+    private FileState lastSeenState; // guarded by this
+
+    /**
+     * The last seen state of the watched file, for content verification.
+     */
+    private record FileState(boolean exists, long size, long lastModified, byte[] hash) {
+        boolean sameContentAs(FileState other) {
+            if (!exists || !other.exists) {
+                return exists == other.exists;
+            }
+            // A null hash means we couldn't read the file, so we can't vouch for it:
+            return hash != null && size == other.size && Arrays.equals(hash, other.hash);
+        }
+    }
 
     /**
      * Creates a new FileWatcher that will watch the given file.
@@ -112,67 +130,38 @@ public class FileWatcher {
     /**
      * Starts watching the file. Does nothing if the watcher is already running.
      *
-     * @throws IOException if the underlying {@link WatchService} cannot be created or
-     *                     if the parent directory cannot be registered.
+     * @throws IOException if the parent directory cannot be registered.
      */
-    public void start() throws IOException {
-        if (running) {
+    public synchronized void start() throws IOException {
+        if (isRunning()) {
             return;
         }
-        try {
-            watchService = FileSystems.getDefault().newWatchService();
-            debouncer = Executors.newSingleThreadScheduledExecutor(r -> {
-                Thread t = new Thread(r, "FileWatcher-debouncer-" + watchedFile.getName());
-                t.setDaemon(true);
-                return t;
-            });
-            Path dir = watchedFile.getParentFile().toPath();
-            dir.register(watchService,
-                         StandardWatchEventKinds.ENTRY_MODIFY,
-                         StandardWatchEventKinds.ENTRY_DELETE,
-                         StandardWatchEventKinds.ENTRY_CREATE);
-            running = true;
-            watchThread = new Thread(this::watchLoop, "FileWatcher-" + watchedFile.getName());
-            watchThread.setDaemon(true);
-            watchThread.start();
-            log.fine("FileWatcher started for: " + watchedFile.getAbsolutePath());
-        }
-        catch (IOException e) {
-            stop(); // clean up any partially-initialized resources
-            throw e;
+        if (contentVerificationEnabled) {
+            markCurrentContentAsSeen();
         }
+        subscription = WatchHub.getShared().watchFile(watchedFile.toPath(), DEBOUNCE_DELAY_MS, this::changeDetected);
+        running = true;
+        log.fine("FileWatcher started for: " + watchedFile.getAbsolutePath());
     }
 
     /**
-     * Returns true if this watcher is currently active.
+     * Returns true if this watcher is currently active. A watcher stops on its own
+     * if the directory containing the watched file is deleted.
      */
     public boolean isRunning() {
-        return running;
+        WatchHub.Subscription current = subscription;
+        return running && current != null && current.isActive();
     }
 
     /**
      * Stops watching the file and releases all associated resources.
      * Safe to call even if the watcher was never started.
      */
-    public void stop() {
+    public synchronized void stop() {
         running = false;
-        ScheduledFuture<?> pending = pendingEvent.getAndSet(null);
-        if (pending != null) {
-            pending.cancel(false);
-        }
-        if (watchService != null) {
-            try {
-                watchService.close();
-            }
-            catch (IOException e) {
-                log.log(Level.WARNING, "Error closing WatchService for: " + watchedFile.getAbsolutePath(), e);
-            }
-        }
-        if (debouncer != null) {
-            debouncer.shutdownNow();
-        }
-        if (watchThread != null) {
-            watchThread.interrupt();
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
         }
         log.fine("FileWatcher stopped for: " + watchedFile.getAbsolutePath());
     }
@@ -200,107 +189,96 @@ public class FileWatcher {
             throw new IllegalArgumentException("suppressDurationMs must be positive");
         }
         suppressUntil = System.currentTimeMillis() + suppressDurationMs;
-        ScheduledFuture<?> pending = pendingEvent.getAndSet(null);
-        if (pending != null) {
-            pending.cancel(false);
+        WatchHub.Subscription current = subscription;
+        if (current != null) {
+            current.cancelPending();
         }
     }
 
-    // -------------------------------------------------------------------------
-    // Internal implementation
-    // -------------------------------------------------------------------------
-
-    private void watchLoop() {
-        try {
-            while (running) {
-                WatchKey key;
-                try {
-                    key = watchService.take();
-                }
-                catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-                catch (ClosedWatchServiceException e) {
-                    break;
-                }
+    public boolean isContentVerificationEnabled() {
+        return contentVerificationEnabled;
+    }
 
-                for (WatchEvent<?> event : key.pollEvents()) {
-                    WatchEvent.Kind<?> kind = event.kind();
-                    if (kind == StandardWatchEventKinds.OVERFLOW) {
-                        // *something* just changed in the directory under watch,
-                        // but unfortunately we don't know what. It might have been
-                        // some other file, or it might have been the one we're watching.
-                        // Our options are:
-                        //   1) ignore it, and possibly miss a relevant change
-                        //   2) treat it as a change to our file, even though it might not have been.
-                        // Neither option is great, but the safest option is 2,
-                        // so we will schedule a callback just in case.
-                        Logger.getLogger(FileWatcher.class.getName()).log(Level.WARNING,
-                                "WatchService overflow for watched file {0} in directory {1}; events may have been lost. "
-                                        + "Scheduling a callback conservatively.",
-                                new Object[]{watchedFile.getAbsolutePath(), key.watchable()});
-                        scheduleDebounced();
-                        continue; // OVERFLOW events have no context, so let's avoid an NPE in the code below.
-                    }
+    /**
+     * Enables or disables content verification (disabled by default). When enabled, the callback
+     * is only invoked if the file's existence, size, or content hash differs from the last time
+     * we looked. See the class documentation for details. If the watcher is already running,
+     * the current state of the file becomes the baseline for future comparisons.
+     */
+    public void setContentVerificationEnabled(boolean enabled) {
+        this.contentVerificationEnabled = enabled;
+        if (enabled && running) {
+            markCurrentContentAsSeen();
+        }
+    }
 
-                    @SuppressWarnings("unchecked")
-                    WatchEvent<Path> pathEvent = (WatchEvent<Path>)event;
-                    Path changedPath = ((Path)key.watchable()).resolve(pathEvent.context());
+    /**
+     * Records the current state of the file as "seen", so that it won't be reported as a change.
+     * Call this after your application has finished writing the file itself. This only has an
+     * effect when content verification is enabled.
+     */
+    public synchronized void markCurrentContentAsSeen() {
+        lastSeenState = readFileState(lastSeenState);
+    }
 
-                    if (changedPath.toAbsolutePath().equals(watchedFile.toPath().toAbsolutePath())) {
-                        scheduleDebounced();
-                    }
-                }
+    // -------------------------------------------------------------------------
+    // Internal implementation
+    // -------------------------------------------------------------------------
 
-                if (!key.reset()) {
-                    break;
-                }
-            }
-        }
-        finally {
-            cleanupAfterWatchLoopExit();
+    /**
+     * Invoked by the WatchHub once a burst of changes to our file has settled.
+     */
+    private void changeDetected() {
+        if (running && System.currentTimeMillis() >= suppressUntil && contentChanged()) {
+            onChange.run();
         }
     }
 
-    private void cleanupAfterWatchLoopExit() {
-        running = false;
-
-        ScheduledFuture<?> pending = pendingEvent.getAndSet(null);
-        if (pending != null) {
-            pending.cancel(false);
+    /**
+     * If content verification is enabled, compares the file against its last seen state, and
+     * remembers its current state for next time. Always returns true if verification is disabled.
+     */
+    private synchronized boolean contentChanged() {
+        if (!contentVerificationEnabled) {
+            return true;
         }
+        FileState previous = lastSeenState;
+        FileState current = readFileState(previous);
+        lastSeenState = current;
+        return previous == null || !current.sameContentAs(previous);
+    }
 
-        debouncer.shutdownNow();
-
+    /**
+     * Reads the current state of the watched file, including its content hash. If the size and
+     * timestamp are exactly the same as the previous state, the previous hash is reused.
+     */
+    private FileState readFileState(FileState previous) {
+        BasicFileAttributes attributes;
         try {
-            watchService.close();
+            attributes = Files.readAttributes(watchedFile.toPath(), BasicFileAttributes.class);
         }
-        catch (IOException | ClosedWatchServiceException ignored) {
-            // Already closed or no further cleanup possible.
+        catch (NoSuchFileException e) {
+            return new FileState(false, 0, 0, null);
         }
-    }
-
-    private void scheduleDebounced() {
-        if (!running) {
-            return;
+        catch (IOException e) {
+            // Can't tell, so we'll have to assume it changed:
+            log.log(Level.FINE, "FileWatcher: unable to read " + watchedFile.getAbsolutePath(), e);
+            return new FileState(true, -1, -1, null);
         }
-        ScheduledFuture<?> old = pendingEvent.getAndSet(null);
-        if (old != null) {
-            old.cancel(false);
+
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (previous != null && previous.exists() && previous.hash() != null
+                && previous.lastModified() == lastModified && previous.size() == size) {
+            // Nothing has touched the file at all (an OVERFLOW, for example), so skip the hash:
+            return previous;
         }
         try {
-            long remainingSuppressMillis = Math.max(0L, suppressUntil - System.currentTimeMillis());
-            long suppressUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingSuppressMillis);
-            ScheduledFuture<?> next = debouncer.schedule(() -> {
-                if (running && System.nanoTime() >= suppressUntilNanos) {
-                    onChange.run();
-                }
-            }, DEBOUNCE_DELAY_MS, TimeUnit.MILLISECONDS);
-            pendingEvent.set(next);
+            return new FileState(true, size, lastModified, HashUtil.getHash(HashUtil.HashType.MD5, watchedFile));
         }
-        catch (RejectedExecutionException ignored) {
-            // Executor was shut down concurrently; nothing to schedule.
+        catch (IOException e) {
+            log.log(Level.FINE, "FileWatcher: unable to hash " + watchedFile.getAbsolutePath(), e);
+            return new FileState(true, -1, -1, null);
         }
     }
 }
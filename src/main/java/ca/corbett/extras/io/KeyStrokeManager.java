@@ -11,11 +11,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -62,9 +64,27 @@ import java.util.logging.Logger;
 public class KeyStrokeManager {
     private static final Logger log = Logger.getLogger(KeyStrokeManager.class.getName());
 
+    /**
+     * The number of bits in the key code filter. Key codes are hashed into this many slots,
+     * so it only needs to be big enough to keep collisions rare among bound keys.
+     */
+    private static final int KEY_CODE_FILTER_BITS = 1024;
+
     private boolean isDisposed = false;
     private final Set<Window> windows = new HashSet<>();
+
+    // The handler lists are copy-on-write so that the dispatcher can iterate them without
+    // copying or locking. Registration is rare; key presses are not.
     private final Map<KeyStroke, List<Action>> keyMap = new ConcurrentHashMap<>();
+
+    // Reverse index of keyMap, so that per-action lookups don't have to scan every keystroke.
+    // Both maps are only modified while holding this manager's lock.
+    private final Map<Action, Set<KeyStroke>> actionMap = new ConcurrentHashMap<>();
+
+    // One bit per (hashed) key code that has at least one handler, so that the dispatcher can
+    // reject the vast majority of key presses without building a KeyStroke at all.
+    private volatile long[] keyCodeFilter = new long[KEY_CODE_FILTER_BITS / Long.SIZE];
+
     private boolean isEnabled;
     private boolean warnIfMultipleHandlers = false;
     private final KeyEventDispatcher keyDispatcher = new CustomKeyDispatcher();
@@ -94,10 +114,12 @@ public class KeyStrokeManager {
      * Can safely be called multiple times; subsequent calls after the first will have no effect.
      * </p>
      */
-    public void dispose() {
+    public synchronized void dispose() {
         KeyboardFocusManager manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
         manager.removeKeyEventDispatcher(keyDispatcher);
         keyMap.clear();
+        actionMap.clear();
+        rebuildKeyCodeFilter();
         windows.clear();
         isDisposed = true;
     }
@@ -214,15 +236,12 @@ public class KeyStrokeManager {
      * @param action The action to search for.
      * @return A List of KeyStrokes assigned to the action. Empty if none found.
      */
-    public List<KeyStroke> getKeyStrokesForAction(Action action) {
-        List<KeyStroke> keyStrokes = new ArrayList<>();
-        for (KeyStroke key : keyMap.keySet()) {
-            List<Action> actions = keyMap.get(key);
-            if (actions != null && actions.contains(action)) {
-                keyStrokes.add(key);
-            }
+    public synchronized List<KeyStroke> getKeyStrokesForAction(Action action) {
+        if (action == null) {
+            return new ArrayList<>();
         }
-        return keyStrokes;
+        Set<KeyStroke> keyStrokes = actionMap.get(action);
+        return keyStrokes != null ? new ArrayList<>(keyStrokes) : new ArrayList<>();
     }
 
     /**
@@ -256,13 +275,13 @@ public class KeyStrokeManager {
      * Removes all registered keyboard shortcuts and their associated actions.
      * This will also clear the accelerator keys from all associated Actions.
      */
-    public KeyStrokeManager clear() {
-        for (List<Action> actions : keyMap.values()) {
-            for (Action action : actions) {
-                setActionAccelerator(action, null);
-            }
+    public synchronized KeyStrokeManager clear() {
+        for (Action action : actionMap.keySet()) {
+            setActionAccelerator(action, null);
         }
         keyMap.clear();
+        actionMap.clear();
+        rebuildKeyCodeFilter();
         return this;
     }
 
@@ -280,7 +299,7 @@ public class KeyStrokeManager {
      * @return true if the action has at least one registered shortcut, false otherwise
      */
     public boolean isRegistered(Action action) {
-        return !getKeyStrokesForAction(action).isEmpty();
+        return action != null && actionMap.containsKey(action);
     }
 
     /**
@@ -307,7 +326,8 @@ public class KeyStrokeManager {
      * @return true if at least one action is registered for the KeyStroke, false otherwise
      */
     public boolean hasHandlers(KeyStroke keyStroke) {
-        return !getActionsForKeyStroke(keyStroke).isEmpty();
+        List<Action> actions = keyStroke == null ? null : keyMap.get(keyStroke);
+        return actions != null && !actions.isEmpty();
     }
 
     /**
@@ -410,7 +430,7 @@ public class KeyStrokeManager {
      * @param action    the action to execute when the keyStroke is pressed
      * @return this manager, for fluent-style method chaining
      */
-    public KeyStrokeManager registerHandler(KeyStroke keyStroke, Action action) {
+    public synchronized KeyStrokeManager registerHandler(KeyStroke keyStroke, Action action) {
         if (keyStroke == null || action == null) {
             throw new IllegalArgumentException("registerHandler: keyStroke and action must not be null.");
         }
@@ -420,7 +440,9 @@ public class KeyStrokeManager {
         boolean alreadyHasHandlers = existingHandlers != null && !existingHandlers.isEmpty();
 
         // Okay, we can register it now.
-        keyMap.computeIfAbsent(keyStroke, k -> new ArrayList<>()).add(action);
+        keyMap.computeIfAbsent(keyStroke, k -> new CopyOnWriteArrayList<>()).add(action);
+        actionMap.computeIfAbsent(action, a -> new LinkedHashSet<>()).add(keyStroke);
+        setKeyCodeFilterBit(keyCodeFilter, keyStroke.getKeyCode());
 
         // If warning is enabled and we just added a second (or more) handler, log a warning
         if (warnIfMultipleHandlers && alreadyHasHandlers) {
@@ -494,16 +516,19 @@ public class KeyStrokeManager {
      * @param action The action to unregister.
      * @return this manager, for fluent-style method chaining
      */
-    public KeyStrokeManager unregisterHandler(Action action) {
-        List<KeyStroke> assignedKeyStrokes = getKeyStrokesForAction(action);
-        for (KeyStroke keyStroke : assignedKeyStrokes) {
-            List<Action> actions = keyMap.get(keyStroke);
-            if (actions != null) {
-                actions.remove(action);
-                if (actions.isEmpty()) {
-                    keyMap.remove(keyStroke);
+    public synchronized KeyStrokeManager unregisterHandler(Action action) {
+        Set<KeyStroke> assignedKeyStrokes = action == null ? null : actionMap.remove(action);
+        if (assignedKeyStrokes != null) {
+            for (KeyStroke keyStroke : assignedKeyStrokes) {
+                List<Action> actions = keyMap.get(keyStroke);
+                if (actions != null) {
+                    actions.removeIf(action::equals);
+                    if (actions.isEmpty()) {
+                        keyMap.remove(keyStroke);
+                    }
                 }
             }
+            rebuildKeyCodeFilter();
         }
 
         // Remove the accelerator from the Action:
@@ -535,12 +560,22 @@ public class KeyStrokeManager {
      * @return this manager, for fluent-style method chaining
      * @throws IllegalArgumentException if the given keyStroke is null
      */
-    public KeyStrokeManager unregisterHandler(KeyStroke keyStroke) {
+    public synchronized KeyStrokeManager unregisterHandler(KeyStroke keyStroke) {
         if (keyStroke == null) {
             throw new IllegalArgumentException("keyStroke must not be null");
         }
         List<Action> actions = keyMap.remove(keyStroke);
         if (actions != null) {
+            for (Action action : actions) {
+                Set<KeyStroke> keyStrokes = actionMap.get(action);
+                if (keyStrokes != null) {
+                    keyStrokes.remove(keyStroke);
+                    if (keyStrokes.isEmpty()) {
+                        actionMap.remove(action);
+                    }
+                }
+            }
+            rebuildKeyCodeFilter();
             for (Action action : actions) {
                 // Only adjust the accelerator if it currently matches this keyStroke.
                 Object currentValue = action.getValue(Action.ACCELERATOR_KEY);
@@ -577,7 +612,7 @@ public class KeyStrokeManager {
      * @return this manager, for fluent-style method chaining
      * @throws IllegalArgumentException if the given newShortcut string is invalid
      */
-    public KeyStrokeManager reassignHandler(Action action, String newKeyStroke) {
+    public synchronized KeyStrokeManager reassignHandler(Action action, String newKeyStroke) {
         // We should validate the keyStroke first, so we don't unregister the action if the new shortcut is invalid:
         KeyStroke ks = parseKeyStroke(newKeyStroke);
         if (ks == null) {
@@ -603,12 +638,40 @@ public class KeyStrokeManager {
      * @param newKeyStroke The new keyboard shortcut string (e.g., "ctrl+P", "F5"). Must be valid!
      * @return this manager, for fluent-style method chaining
      */
-    public KeyStrokeManager reassignHandler(Action action, KeyStroke newKeyStroke) {
+    public synchronized KeyStrokeManager reassignHandler(Action action, KeyStroke newKeyStroke) {
         unregisterHandler(action);
         registerHandler(newKeyStroke, action);
         return this;
     }
 
+    /**
+     * Reports whether the given key code might have a handler registered, ignoring modifiers.
+     * A false result is definitive; a true result means the keyMap has to be checked.
+     * This is what lets the dispatcher ignore ordinary typing at almost no cost.
+     */
+    boolean isKeyCodeBound(int keyCode) {
+        int bit = keyCode & (KEY_CODE_FILTER_BITS - 1);
+        return (keyCodeFilter[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Recomputes the key code filter from scratch after handlers are removed.
+     * Bits can't simply be cleared, as other key codes may hash to the same slot.
+     * Must be called while holding this manager's lock.
+     */
+    private void rebuildKeyCodeFilter() {
+        long[] filter = new long[KEY_CODE_FILTER_BITS / Long.SIZE];
+        for (KeyStroke keyStroke : keyMap.keySet()) {
+            setKeyCodeFilterBit(filter, keyStroke.getKeyCode());
+        }
+        keyCodeFilter = filter;
+    }
+
+    private static void setKeyCodeFilterBit(long[] filter, int keyCode) {
+        int bit = keyCode & (KEY_CODE_FILTER_BITS - 1);
+        filter[bit >>> 6] |= 1L << bit;
+    }
+
     /**
      * Parses a string representation of a keyboard shortcut into a KeyStroke.
      * Supports formats like: "ctrl+P", "alt+F4", "ctrl+shift+S", "F5", etc.
@@ -918,64 +981,81 @@ public class KeyStrokeManager {
      */
     private class CustomKeyDispatcher implements KeyEventDispatcher {
 
-        private Optional<Window> getActiveWindowIfAny()
-        {
-            // Only a single window can be active at the same time, but even if there is more than one the event must be only called once
-            return windows.stream().filter(Window::isActive).findFirst();
+        /**
+         * Only a single window can be active at the same time, but even if there is more than one,
+         * the event must only be handled once. Returns null if none of our windows are active.
+         */
+        private Window getActiveWindowIfAny() {
+            for (Window window : windows) {
+                if (window.isActive()) {
+                    return window;
+                }
+            }
+            return null;
         }
 
+        /**
+         * This is invoked for every key event in the application, so the cheap checks come first,
+         * and nothing is allocated unless the keystroke actually has a handler.
+         */
         @Override
         public boolean dispatchKeyEvent(KeyEvent e) {
 
-            Optional<Window> activeWindow = getActiveWindowIfAny();
+            // Only process KEY_PRESSED events:
+            if (e.getID() != KeyEvent.KEY_PRESSED) {
+                return false;
+            }
 
             // Don't process if we're disabled:
             if (!isEnabled) {
                 return false;
             }
 
-            // Don't process if none of our windows are active
-            if (activeWindow.isEmpty()) {
+            // Most key presses are ordinary typing with nothing bound to them:
+            if (!isKeyCodeBound(e.getKeyCode())) {
                 return false;
             }
 
-            // Only process KEY_PRESSED events:
-            if (e.getID() != KeyEvent.KEY_PRESSED) {
+            // Don't process if none of our windows are active
+            Window activeWindow = getActiveWindowIfAny();
+            if (activeWindow == null) {
                 return false;
             }
 
-            // Create KeyStroke from the event:
+            // KeyStroke instances are cached by AWT, so this doesn't allocate for repeat presses:
             KeyStroke keyStroke = KeyStroke.getKeyStrokeForEvent(e);
-            String keyStrokeStr = keyStrokeToString(keyStroke);
-            log.fine("KeyStrokeManager: Key pressed: " + keyStrokeStr);
 
             // Check if we have a registered handler for that KeyStroke:
-            List<Action> actions = getActionsForKeyStroke(keyStroke);
-            if (actions != null && !actions.isEmpty()) {
-                synchronized(actions) {
-                    // Multiple handlers can be registered for the same shortcut:
-                    // (That's a bit wonky, but it can happen by accident if multiple
-                    //  application extensions happen to want the same shortcut.
-                    //  This conflict will be highlighted to the user in application
-                    //  settings, and they can remap one of the conflicting shortcuts
-                    //  to something else if desired).
-                    for (Action action : actions) {
-                        // Don't execute disabled actions:
-                        if (action.isEnabled()) {
-                            action.actionPerformed(new ActionEvent(activeWindow.get(),
-                                                                   ActionEvent.ACTION_PERFORMED,
-                                                                   keyStrokeStr));
-                        }
-                        else {
-                            log.info("KeyStrokeManager: action for shortcut " +
-                                             keyStrokeStr + " is disabled; not executing.");
-                        }
-                    }
-                    return true;
-                }
+            List<Action> actions = keyMap.get(keyStroke);
+            if (actions == null || actions.isEmpty()) {
+                return false;
             }
 
-            return false;
+            String keyStrokeStr = keyStrokeToString(keyStroke);
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("KeyStrokeManager: Key pressed: " + keyStrokeStr);
+            }
+
+            // Multiple handlers can be registered for the same shortcut:
+            // (That's a bit wonky, but it can happen by accident if multiple
+            //  application extensions happen to want the same shortcut.
+            //  This conflict will be highlighted to the user in application
+            //  settings, and they can remap one of the conflicting shortcuts
+            //  to something else if desired).
+            // The list is copy-on-write, so an action that unregisters itself here is safe.
+            for (Action action : actions) {
+                // Don't execute disabled actions:
+                if (action.isEnabled()) {
+                    action.actionPerformed(new ActionEvent(activeWindow,
+                                                           ActionEvent.ACTION_PERFORMED,
+                                                           keyStrokeStr));
+                }
+                else {
+                    log.info("KeyStrokeManager: action for shortcut " +
+                                     keyStrokeStr + " is disabled; not executing.");
+                }
+            }
+            return true;
         }
     }
 
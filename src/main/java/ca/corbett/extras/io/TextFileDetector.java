@@ -1,8 +1,18 @@
 package ca.corbett.extras.io;
-import java.io.BufferedInputStream;
+
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This utility class can be used to quickly "guess" if a file is likely a text file
@@ -11,23 +21,33 @@ import java.io.IOException;
  * in the first N bytes of the file, and if the ratio of non-printable characters
  * exceeds a certain threshold, it classifies the file as binary.
  * <p>
- * This detector works well for single-byte encodings (ASCII, UTF-8, ISO-8859-1, etc.)
+ * The isTextFile() methods work well for single-byte encodings (ASCII, UTF-8, ISO-8859-1, etc.)
  * but will classify UTF-16 and UTF-32 encoded files as binary due to their embedded
- * null bytes. For more comprehensive encoding detection, consider using a library like
+ * null bytes. The classify() methods go a little further: they also recognize UTF-16
+ * (with or without a byte order mark), and report which charset the sample appears to be in,
+ * so that callers can decode the file without having to open it a second time to guess.
+ * For more comprehensive encoding detection, consider using a library like
  * Apache Tika or ICU4J.
  * </p>
  * <p>The detection algorithm:</p>
  * <ul>
  *   <li>Reads a sample of bytes from the beginning of the file
- *   <li>Immediately rejects files containing null bytes (0x00)
+ *   <li>Immediately rejects files containing null bytes (0x00), unless they look like UTF-16
  *   <li>Counts non-printable control characters (excluding common whitespace)
  *   <li>Classifies as text if non-printable ratio is below threshold
  * </ul>
- * <p><b>USAGE:</b> There are three ways to use this class:</p>
+ * <p>
+ * All of this is done in a single pass over the sample: each byte is looked up in a table that
+ * sorts it into a character class, which drives both the control character count and a UTF-8
+ * validity check. Runs of plain printable ASCII are skipped eight bytes at a time.
+ * </p>
+ * <p><b>USAGE:</b> There are four ways to use this class:</p>
  *     <ol>
  *         <li>Use the static isTextFile(File) method with default settings.
  *         <li>Use the static isTextFile(File, int, double) method with custom sample size
  *         and threshold.
+ *         <li>Use the static classify(File) or classifyAll(List) methods to also get the charset,
+ *         or to classify a large batch of files concurrently.
  *         <li>Use the Builder class to configure and perform detection.
  *     </ol>
  * <p>
@@ -47,6 +67,46 @@ public class TextFileDetector {
 
     private static final int DEFAULT_SAMPLE_SIZE = 8192; // 8KB
     private static final double DEFAULT_THRESHOLD = 0.02; // 2%
+    private static final int DEFAULT_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * If at least this fraction of the byte pairs in a sample have a null in the same position
+     * (and almost none in the other), we treat the sample as BOM-less UTF-16.
+     */
+    private static final double UTF16_NULL_PAIR_RATIO = 0.25;
+
+    // Byte classes used by the lookup table:
+    private static final byte PRINTABLE = 0;
+    private static final byte CONTROL = 1;
+    private static final byte NUL = 2;
+    private static final byte CONTINUATION = 3;
+    private static final byte LEAD_2 = 4;
+    private static final byte LEAD_3 = 5;
+    private static final byte LEAD_4 = 6;
+    private static final byte INVALID = 7;
+
+    private static final byte[] BYTE_CLASSES = createByteClasses();
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+
+    /**
+     * The outcome of classifying a single file.
+     *
+     * @param file    The file that was classified.
+     * @param isText  True if the file appears to be text.
+     * @param charset The charset the sample appears to be encoded in, or null if the file is not
+     *                text (or could not be read). Pure ASCII samples report US-ASCII, valid UTF-8 with
+     *                non-ASCII characters reports UTF-8, and anything else single-byte reports
+     *                ISO-8859-1. UTF-16 is reported as UTF-16BE or UTF-16LE.
+     * @param error   If the file couldn't be read during a batch classification, the reason why. Otherwise null.
+     */
+    public record Result(File file, boolean isText, Charset charset, IOException error) {
+
+        public boolean isError() {
+            return error != null;
+        }
+    }
 
     /**
      * Detects if a file is likely a text file using default settings.
@@ -78,75 +138,383 @@ public class TextFileDetector {
      */
     public static boolean isTextFile(File file, int sampleSize, double nonPrintableThreshold)
             throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(sampleSize);
+        int bytesRead = readSample(file, buffer);
 
-        if (!file.exists() || !file.isFile()) {
-            throw new IllegalArgumentException("File does not exist or is not a regular file");
+        // Skip a byte order mark if present. UTF-16 content will still fail due to null bytes,
+        // but a file that holds nothing but a BOM is treated as text:
+        int startIndex = getByteOrderMarkLength(buffer, bytesRead);
+        if (startIndex >= bytesRead) {
+            return true;
         }
 
-        byte[] buffer = new byte[sampleSize];
-        int bytesRead;
+        // Null bytes are a strong indicator of binary content:
+        SampleStats stats = scan(buffer, startIndex, bytesRead);
+        return stats.nulls() == 0 && stats.isBelowThreshold(nonPrintableThreshold);
+    }
+
+    /**
+     * Classifies the given file as text or binary using default settings, and reports
+     * the charset it appears to be in.
+     *
+     * @param file the file to check
+     * @return The classification result.
+     * @throws IOException if an I/O error occurs
+     */
+    public static Result classify(File file) throws IOException {
+        return classify(file, DEFAULT_THRESHOLD, ByteBuffer.allocate(DEFAULT_SAMPLE_SIZE));
+    }
 
-        try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file))) {
-            bytesRead = is.read(buffer, 0, sampleSize);
+    /**
+     * Classifies all the given files using default settings. See classifyAll(List, int, double, int).
+     */
+    public static List<Result> classifyAll(List<File> files) {
+        return classifyAll(files, DEFAULT_SAMPLE_SIZE, DEFAULT_THRESHOLD, DEFAULT_PARALLELISM);
+    }
 
-            if (bytesRead == -1) {
-                return true; // Empty file is considered a text file
+    /**
+     * Classifies all the given files concurrently, which is much faster than checking them one
+     * at a time when there are a lot of them. Each worker thread reads its samples into a single
+     * reused direct buffer, so a batch of any size allocates only one buffer per thread. Files
+     * that can't be read don't stop the batch; they are returned as a Result with an error.
+     *
+     * @param files                 The files to classify.
+     * @param sampleSize            number of bytes to read from each file for analysis
+     * @param nonPrintableThreshold maximum ratio of non-printable characters (0.0 to 1.0)
+     * @param parallelism           how many threads to use
+     * @return One Result per input file, in the same order.
+     */
+    public static List<Result> classifyAll(List<File> files, int sampleSize, double nonPrintableThreshold,
+                                           int parallelism) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        Result[] results = new Result[files.size()];
+        AtomicInteger nextIndex = new AtomicInteger();
+        Runnable worker = () -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(sampleSize);
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < results.length) {
+                File file = files.get(index);
+                try {
+                    results[index] = classify(file, nonPrintableThreshold, buffer);
+                }
+                catch (IOException e) {
+                    results[index] = new Result(file, false, null, e);
+                }
+                catch (IllegalArgumentException e) {
+                    results[index] = new Result(file, false, null, new FileNotFoundException(e.getMessage()));
+                }
+                catch (RuntimeException e) {
+                    // Anything else (a SecurityException, say) is reported against this file alone:
+                    results[index] = new Result(file, false, null, new IOException(e.toString(), e));
+                }
             }
+        };
+
+        // The calling thread does its share of the work too:
+        int threadCount = Math.min(parallelism, results.length) - 1;
+        List<Thread> threads = new ArrayList<>(Math.max(threadCount, 0));
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(worker, "TextFileDetector-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
         }
+        worker.run();
 
-        // Skip UTF-8 BOM if present
-        int startIndex = 0;
-        if (bytesRead >= 3 &&
-                (buffer[0] & 0xFF) == 0xEF &&
-                (buffer[1] & 0xFF) == 0xBB &&
-                (buffer[2] & 0xFF) == 0xBF) {
-            startIndex = 3;
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
         }
-        // Skip UTF-16 BE BOM - this will fail due to null bytes, but we skip it anyway
-        else if (bytesRead >= 2 &&
-                (buffer[0] & 0xFF) == 0xFE &&
-                (buffer[1] & 0xFF) == 0xFF) {
-            startIndex = 2;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
-        // Skip UTF-16 LE BOM - this will fail due to null bytes, but we skip it anyway
-        else if (bytesRead >= 2 &&
-                (buffer[0] & 0xFF) == 0xFF &&
-                (buffer[1] & 0xFF) == 0xFE) {
-            startIndex = 2;
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Reads a sample of the given file into the given buffer (up to its capacity) and classifies it.
+     */
+    static Result classify(File file, double nonPrintableThreshold, ByteBuffer buffer) throws IOException {
+        int bytesRead = readSample(file, buffer);
+        boolean truncated = file.length() > bytesRead;
+
+        if (bytesRead == 0) {
+            return new Result(file, true, StandardCharsets.US_ASCII, null); // Empty file is considered a text file
         }
 
-        // If file contains only a BOM with no content, treat as text:
-        if (startIndex >= bytesRead) {
-            return true;
+        // Check for a byte order mark:
+        int b0 = buffer.get(0) & 0xFF;
+        int b1 = bytesRead >= 2 ? buffer.get(1) & 0xFF : -1;
+        if (bytesRead >= 3 && b0 == 0xEF && b1 == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            // The BOM is only a hint; if what follows isn't valid UTF-8, don't claim that it is:
+            SampleStats stats = scan(buffer, 3, bytesRead);
+            if (stats.nulls() > 0 || !stats.isBelowThreshold(nonPrintableThreshold)) {
+                return new Result(file, false, null, null);
+            }
+            return new Result(file, true,
+                              stats.isUtf8(truncated) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1, null);
+        }
+        if (b0 == 0xFE && b1 == 0xFF) {
+            return classifyUtf16(file, buffer, 2, bytesRead, true, nonPrintableThreshold);
+        }
+        if (b0 == 0xFF && b1 == 0xFE) {
+            return classifyUtf16(file, buffer, 2, bytesRead, false, nonPrintableThreshold);
         }
 
-        // Check for null bytes - strong indicator of binary content
-        for (int i = startIndex; i < bytesRead; i++) {
-            if (buffer[i] == 0) {
-                return false;
+        SampleStats stats = scan(buffer, 0, bytesRead);
+        if (stats.nulls() > 0) {
+            // Null bytes are a strong indicator of binary content, unless they all line up like UTF-16:
+            int pairs = bytesRead / 2;
+            if (pairs > 0 && stats.evenNulls() >= pairs * UTF16_NULL_PAIR_RATIO && stats.oddNulls() <= pairs / 100) {
+                return classifyUtf16(file, buffer, 0, bytesRead, true, nonPrintableThreshold);
             }
+            if (pairs > 0 && stats.oddNulls() >= pairs * UTF16_NULL_PAIR_RATIO && stats.evenNulls() <= pairs / 100) {
+                return classifyUtf16(file, buffer, 0, bytesRead, false, nonPrintableThreshold);
+            }
+            return new Result(file, false, null, null);
+        }
+        if (!stats.isBelowThreshold(nonPrintableThreshold)) {
+            return new Result(file, false, null, null);
         }
 
-        // Count non-printable characters
-        int nonPrintableCount = 0;
-        for (int i = startIndex; i < bytesRead; i++) {
-            byte b = buffer[i];
+        Charset charset;
+        if (stats.nonAscii() == 0) {
+            charset = StandardCharsets.US_ASCII;
+        }
+        else if (stats.isUtf8(truncated)) {
+            charset = StandardCharsets.UTF_8;
+        }
+        else {
+            charset = StandardCharsets.ISO_8859_1;
+        }
+        return new Result(file, true, charset, null);
+    }
 
-            // Check for control characters (0-31), excluding whitespace characters
-            if (b >= 0 && b < 32) {
-                // Allow common text control characters
-                if (b != '\n' && b != '\r' && b != '\t' && b != '\f') {
-                    nonPrintableCount++;
+    /**
+     * Reads a sample of the given file into the given buffer, up to its capacity, and returns
+     * the number of bytes read.
+     */
+    private static int readSample(File file, ByteBuffer buffer) throws IOException {
+        if (!file.exists() || !file.isFile()) {
+            throw new IllegalArgumentException("File does not exist or is not a regular file");
+        }
+
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading until the sample is full or we run out of file
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Returns the length of the UTF-8 or UTF-16 byte order mark at the start of the buffer,
+     * or 0 if there isn't one.
+     */
+    private static int getByteOrderMarkLength(ByteBuffer buffer, int bytesRead) {
+        int b0 = bytesRead >= 1 ? buffer.get(0) & 0xFF : -1;
+        int b1 = bytesRead >= 2 ? buffer.get(1) & 0xFF : -1;
+        if (bytesRead >= 3 && b0 == 0xEF && b1 == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            return 3;
+        }
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE)) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Counts the character classes in the given range of the buffer in a single pass.
+     * Eight bytes at a time are checked for being plain printable ASCII, and skipped if so;
+     * anything else is classified byte by byte through the lookup table. The byte after a lead
+     * byte is range-checked as well (Unicode Table 3-7), so that overlong encodings, surrogates
+     * and code points above U+10FFFF are not counted as valid UTF-8.
+     */
+    static SampleStats scan(ByteBuffer buffer, int start, int end) {
+        int controls = 0;
+        int nulls = 0;
+        int evenNulls = 0;
+        int oddNulls = 0;
+        int nonAscii = 0;
+        int pending = 0;
+        int low = 0x80;
+        int high = 0xBF;
+        boolean validUtf8 = true;
+
+        int i = start;
+        while (i < end) {
+            if (pending == 0 && i + Long.BYTES <= end) {
+                // A byte is printable ASCII if its high bit is clear and subtracting 0x20 doesn't
+                // borrow. Borrows can spill into the next byte, but only to give false negatives,
+                // which just send us down the byte-by-byte path:
+                long word = buffer.getLong(i);
+                if (((word | (word - SPACES)) & HIGH_BITS) == 0) {
+                    i += Long.BYTES;
+                    continue;
+                }
+            }
+
+            int b = buffer.get(i) & 0xFF;
+            byte byteClass = BYTE_CLASSES[b];
+            if (pending > 0) {
+                // The range is always within the continuation bytes, 0x80-0xBF:
+                if (b >= low && b <= high) {
+                    pending--;
+                    low = 0x80;
+                    high = 0xBF;
+                    i++;
+                    continue;
+                }
+                validUtf8 = false;
+                pending = 0;
+                low = 0x80;
+                high = 0xBF;
+            }
+            switch (byteClass) {
+                case CONTROL -> controls++;
+                case NUL -> {
+                    nulls++;
+                    if (((i - start) & 1) == 0) {
+                        evenNulls++;
+                    }
+                    else {
+                        oddNulls++;
+                    }
+                }
+                case LEAD_2 -> {
+                    pending = 1;
+                    nonAscii++;
+                }
+                case LEAD_3 -> {
+                    // E0 must be followed by A0-BF (no overlongs), ED by 80-9F (no surrogates):
+                    pending = 2;
+                    low = b == 0xE0 ? 0xA0 : 0x80;
+                    high = b == 0xED ? 0x9F : 0xBF;
+                    nonAscii++;
+                }
+                case LEAD_4 -> {
+                    // F0 must be followed by 90-BF (no overlongs), F4 by 80-8F (nothing past U+10FFFF):
+                    pending = 3;
+                    low = b == 0xF0 ? 0x90 : 0x80;
+                    high = b == 0xF4 ? 0x8F : 0xBF;
+                    nonAscii++;
+                }
+                case CONTINUATION, INVALID -> {
+                    validUtf8 = false;
+                    nonAscii++;
+                }
+                default -> {
+                    // printable
+                }
+            }
+            i++;
+        }
+        return new SampleStats(end - start, controls, nulls, evenNulls, oddNulls, nonAscii, validUtf8, pending);
+    }
+
+    /**
+     * Classifies the given range of the buffer as UTF-16 text in the given byte order, by counting
+     * control characters and broken surrogate pairs among its code units.
+     */
+    private static Result classifyUtf16(File file, ByteBuffer buffer, int start, int end, boolean bigEndian,
+                                        double nonPrintableThreshold) {
+        int units = (end - start) / 2;
+        if (units == 0) {
+            return new Result(file, true, bigEndian ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE, null);
+        }
+        ByteOrder originalOrder = buffer.order();
+        buffer.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int bad = 0;
+        boolean expectLowSurrogate = false;
+        for (int i = 0; i < units; i++) {
+            char c = buffer.getChar(start + i * 2);
+            if (expectLowSurrogate) {
+                expectLowSurrogate = false;
+                if (Character.isLowSurrogate(c)) {
+                    continue;
                 }
+                bad++;
+            }
+            if (Character.isHighSurrogate(c)) {
+                expectLowSurrogate = true;
+            }
+            else if (Character.isLowSurrogate(c) || c == 0
+                    || (c < 32 && c != '\n' && c != '\r' && c != '\t' && c != '\f')) {
+                bad++;
+            }
+        }
+        buffer.order(originalOrder);
+        boolean isText = (double)bad / units <= nonPrintableThreshold;
+        return new Result(file, isText,
+                          isText ? (bigEndian ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE) : null,
+                          null);
+    }
+
+    private static byte[] createByteClasses() {
+        byte[] classes = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            if (b == 0) {
+                classes[b] = NUL;
+            }
+            else if (b < 32) {
+                // Allow common text control characters
+                classes[b] = (b == '\n' || b == '\r' || b == '\t' || b == '\f') ? PRINTABLE : CONTROL;
+            }
+            else if (b < 0x80) {
+                classes[b] = PRINTABLE;
+            }
+            else if (b < 0xC0) {
+                classes[b] = CONTINUATION;
+            }
+            else if (b < 0xC2) {
+                classes[b] = INVALID; // overlong encodings of ASCII
+            }
+            else if (b < 0xE0) {
+                classes[b] = LEAD_2;
+            }
+            else if (b < 0xF0) {
+                classes[b] = LEAD_3;
+            }
+            else if (b < 0xF5) {
+                classes[b] = LEAD_4;
             }
-            // For bytes in the range 128-255, we're more lenient as they could be
-            // valid UTF-8 continuation bytes or extended ASCII
-            // Very high ratios of these would still fail the threshold check
+            else {
+                classes[b] = INVALID;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Counts gathered from a single pass over a sample.
+     */
+    record SampleStats(int length, int controls, int nulls, int evenNulls, int oddNulls, int nonAscii,
+                       boolean validUtf8, int pendingContinuations) {
+
+        boolean isBelowThreshold(double nonPrintableThreshold) {
+            return length == 0 || (double)controls / length <= nonPrintableThreshold;
         }
 
-        // Calculate the ratio and compare to threshold
-        double nonPrintableRatio = (double) nonPrintableCount / (bytesRead - startIndex);
-        return nonPrintableRatio <= nonPrintableThreshold;
+        /**
+         * Reports whether the sample is valid UTF-8. A multibyte sequence cut off by the end of
+         * the sample doesn't make it invalid, as long as the sample didn't reach the end of the file.
+         */
+        boolean isUtf8(boolean truncated) {
+            return validUtf8 && (pendingContinuations == 0 || truncated);
+        }
     }
 
     /**
@@ -155,6 +523,7 @@ public class TextFileDetector {
     public static class Builder {
         private int sampleSize = DEFAULT_SAMPLE_SIZE;
         private double threshold = DEFAULT_THRESHOLD;
+        private int parallelism = DEFAULT_PARALLELISM;
 
         public Builder sampleSize(int sampleSize) {
             if (sampleSize <= 0) {
@@ -172,8 +541,24 @@ public class TextFileDetector {
             return this;
         }
 
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be at least 1");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
         public boolean detect(File file) throws IOException {
             return isTextFile(file, sampleSize, threshold);
         }
+
+        public Result classify(File file) throws IOException {
+            return TextFileDetector.classify(file, threshold, ByteBuffer.allocate(sampleSize));
+        }
+
+        public List<Result> classifyAll(List<File> files) {
+            return TextFileDetector.classifyAll(files, sampleSize, threshold, parallelism);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,566 @@
+package ca.corbett.extras.io;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches any number of files and directories for changes, using a single WatchService per
+ * filesystem and a single dispatcher thread, no matter how many subscriptions there are.
+ * Applications that watch many files should use this (or FileWatcher, which is built on it)
+ * rather than creating a WatchService per file, which costs threads and native watch
+ * handles for each one.
+ * <p>
+ * <b>Subscriptions</b> - there are two kinds. watchFile() watches a single file, and
+ * invokes a Runnable when it is created, modified, or deleted. Rapid bursts of events
+ * (for example, from editors that truncate and then rewrite a file) are debounced into a
+ * single callback. watchDirectory() watches a directory, optionally including all of its
+ * subdirectories, and reports every individual event to a ChangeListener. Recursive
+ * subscriptions automatically pick up subdirectories that are created after the
+ * subscription is made. Close a subscription when you no longer need it.
+ * </p>
+ * <p>
+ * Directory registrations are shared: if 50 subscriptions all watch files in the same
+ * directory, that directory is only registered with the WatchService once, and is only
+ * unregistered when the last of those subscriptions is closed.
+ * </p>
+ * <p>
+ * <b>Threading</b> - ChangeListeners are invoked on the dispatcher thread, so they should
+ * return quickly. Debounced file callbacks are invoked on a single shared timer thread.
+ * Neither is the Swing EDT! If you need to update the UI from a callback, marshal it
+ * there with SwingUtilities.invokeLater().
+ * </p>
+ * <p>
+ * <b>OVERFLOW events</b> - if the native event queue overflows, we don't know what changed
+ * in the affected directory. File subscriptions in that directory are conservatively
+ * notified as if their file had changed, and ChangeListeners receive the OVERFLOW event
+ * kind along with the directory path.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class WatchHub {
+
+    private static final Logger log = Logger.getLogger(WatchHub.class.getName());
+
+    /**
+     * How long the dispatcher waits on a WatchService before checking for newly added
+     * filesystems or for the hub being closed.
+     */
+    private static final long POLL_INTERVAL_MS = 250;
+
+    private static WatchHub sharedInstance;
+
+    /**
+     * Receives individual change events from a directory subscription.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+
+        /**
+         * Invoked on the dispatcher thread for each change.
+         *
+         * @param path The path that changed. For OVERFLOW events, this is the directory
+         *             in which events were lost.
+         * @param kind One of the StandardWatchEventKinds.
+         */
+        void pathChanged(Path path, WatchEvent.Kind<?> kind);
+    }
+
+    /**
+     * One watched directory, shared by every subscription that needs it.
+     */
+    private static class Registration {
+        private final Path dir;
+        private final WatchKey key;
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+        Registration(Path dir, WatchKey key) {
+            this.dir = dir;
+            this.key = key;
+        }
+    }
+
+    private final Map<FileSystem, WatchService> watchServices = new HashMap<>();
+    private final Map<Path, Registration> registrations = new HashMap<>();
+    private final Map<WatchKey, Registration> registrationsByKey = new HashMap<>();
+    private final ScheduledThreadPoolExecutor timer;
+    private Thread dispatcherThread;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new, independent WatchHub. Most applications should just use getShared()
+     * instead. If you create your own, close() it when you're done with it.
+     */
+    public WatchHub() {
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "WatchHub-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns the application-wide shared WatchHub. Its threads are daemon threads,
+     * and are only started once something is actually watched.
+     */
+    public static synchronized WatchHub getShared() {
+        if (sharedInstance == null || sharedInstance.closed) {
+            sharedInstance = new WatchHub();
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Watches a single file for changes, including its creation and deletion. The file does not
+     * need to exist yet, but its parent directory does.
+     *
+     * @param file       The file to watch.
+     * @param debounceMs Events arriving within this many milliseconds of each other are coalesced
+     *                   into one callback. May be zero.
+     * @param onChange   Invoked (on the timer thread) once the file has changed and settled.
+     * @return A Subscription, which should be closed when no longer needed.
+     * @throws IOException If the parent directory can't be watched.
+     */
+    public Subscription watchFile(Path file, long debounceMs, Runnable onChange) throws IOException {
+        if (file == null || onChange == null) {
+            throw new IllegalArgumentException("file and onChange cannot be null");
+        }
+        Path target = file.toAbsolutePath().normalize();
+        if (target.getParent() == null) {
+            throw new IllegalArgumentException("file must have a parent directory");
+        }
+        if (debounceMs < 0) {
+            throw new IllegalArgumentException("debounceMs cannot be negative");
+        }
+        Subscription subscription = new Subscription(target, false, null, onChange, debounceMs);
+        subscribe(subscription, target.getParent());
+        return subscription;
+    }
+
+    /**
+     * Watches a directory (and optionally all of its subdirectories) for changes. Every
+     * individual event is reported to the given listener.
+     *
+     * @param dir       The directory to watch.
+     * @param recursive Whether to also watch all subdirectories, including ones created later.
+     * @param listener  Invoked (on the dispatcher thread) for each change.
+     * @return A Subscription, which should be closed when no longer needed.
+     * @throws IOException If the directory can't be watched.
+     */
+    public Subscription watchDirectory(Path dir, boolean recursive, ChangeListener listener) throws IOException {
+        if (dir == null || listener == null) {
+            throw new IllegalArgumentException("dir and listener cannot be null");
+        }
+        Path target = dir.toAbsolutePath().normalize();
+        Subscription subscription = new Subscription(target, recursive, listener, null, 0);
+        subscribe(subscription, target);
+        if (recursive) {
+            registerSubdirectories(subscription, target);
+        }
+        return subscription;
+    }
+
+    /**
+     * Returns the number of directories currently registered with a WatchService.
+     */
+    public synchronized int getRegisteredDirectoryCount() {
+        return registrations.size();
+    }
+
+    /**
+     * Returns the number of WatchServices currently open (at most one per filesystem).
+     */
+    synchronized int getWatchServiceCount() {
+        return watchServices.size();
+    }
+
+    /**
+     * Indicates whether the dispatcher thread is currently running.
+     */
+    synchronized boolean isDispatcherRunning() {
+        return dispatcherThread != null;
+    }
+
+    /**
+     * Closes all subscriptions and releases all WatchServices and threads. The shared
+     * instance should not normally be closed, but if it is, getShared() will create a new one.
+     */
+    public void close() {
+        List<Subscription> subscriptions = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Registration registration : registrations.values()) {
+                subscriptions.addAll(registration.subscriptions);
+            }
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        synchronized (this) {
+            for (WatchService service : watchServices.values()) {
+                try {
+                    service.close();
+                }
+                catch (IOException e) {
+                    log.log(Level.WARNING, "WatchHub: error closing WatchService", e);
+                }
+            }
+            watchServices.clear();
+            if (dispatcherThread != null) {
+                dispatcherThread.interrupt();
+                dispatcherThread = null;
+            }
+        }
+        timer.shutdownNow();
+    }
+
+    private synchronized void subscribe(Subscription subscription, Path dir) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("WatchHub has been closed.");
+        }
+        addRegistration(subscription, dir);
+    }
+
+    /**
+     * Registers the given directory for the given subscription, reusing an existing
+     * registration if there is one.
+     */
+    private synchronized void addRegistration(Subscription subscription, Path dir) throws IOException {
+        Registration registration = registrations.get(dir);
+        if (registration == null) {
+            WatchService service = watchServices.get(dir.getFileSystem());
+            if (service == null) {
+                service = dir.getFileSystem().newWatchService();
+                watchServices.put(dir.getFileSystem(), service);
+            }
+            WatchKey key = dir.register(service,
+                                        StandardWatchEventKinds.ENTRY_CREATE,
+                                        StandardWatchEventKinds.ENTRY_DELETE,
+                                        StandardWatchEventKinds.ENTRY_MODIFY);
+            registration = new Registration(dir, key);
+            registrations.put(dir, registration);
+            registrationsByKey.put(key, registration);
+            startDispatcher();
+        }
+        if (!registration.subscriptions.contains(subscription)) {
+            registration.subscriptions.add(subscription);
+            subscription.registeredDirs.add(dir);
+        }
+    }
+
+    /**
+     * Removes the given subscription from the given directory, unregistering the directory
+     * if no other subscriptions need it.
+     */
+    private synchronized void removeRegistration(Subscription subscription, Path dir) {
+        Registration registration = registrations.get(dir);
+        if (registration == null) {
+            return;
+        }
+        registration.subscriptions.remove(subscription);
+        if (registration.subscriptions.isEmpty()) {
+            registration.key.cancel();
+            registrations.remove(dir);
+            registrationsByKey.remove(registration.key);
+            releaseWatchServiceIfUnused(dir.getFileSystem());
+        }
+    }
+
+    /**
+     * Closes and forgets the WatchService for the given filesystem if nothing is registered
+     * with it any more. Once there are no WatchServices left, the dispatcher thread exits.
+     */
+    private synchronized void releaseWatchServiceIfUnused(FileSystem fileSystem) {
+        for (Path dir : registrations.keySet()) {
+            if (dir.getFileSystem().equals(fileSystem)) {
+                return;
+            }
+        }
+        WatchService service = watchServices.remove(fileSystem);
+        if (service == null) {
+            return;
+        }
+        try {
+            service.close();
+        }
+        catch (IOException e) {
+            log.log(Level.WARNING, "WatchHub: error closing WatchService", e);
+        }
+    }
+
+    private void registerSubdirectories(Subscription subscription, Path dir) {
+        new FileTreeWalker(dir)
+                .setIncludeFiles(false)
+                .setIncludeDirectories(true)
+                .setParallelism(1)
+                .walk((path, attributes) -> {
+                    if (!subscription.active) {
+                        return false;
+                    }
+                    try {
+                        addRegistration(subscription, path);
+                    }
+                    catch (IOException e) {
+                        log.log(Level.FINE, "WatchHub: unable to watch " + path, e);
+                    }
+                    return true;
+                });
+    }
+
+    private void startDispatcher() {
+        if (dispatcherThread == null) {
+            dispatcherThread = new Thread(this::dispatchLoop, "WatchHub-dispatcher");
+            dispatcherThread.setDaemon(true);
+            dispatcherThread.start();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!closed) {
+            List<WatchService> services;
+            synchronized (this) {
+                services = new ArrayList<>(watchServices.values());
+                if (services.isEmpty()) {
+                    dispatcherThread = null;
+                    return;
+                }
+            }
+
+            // With more than one filesystem, we take turns waiting on each:
+            long timeout = Math.max(1, POLL_INTERVAL_MS / services.size());
+            for (WatchService service : services) {
+                try {
+                    WatchKey key = service.poll(timeout, TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        dispatch(key);
+                        key = service.poll();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch (ClosedWatchServiceException e) {
+                    // Closed out from under us; the outer loop will notice.
+                }
+            }
+        }
+    }
+
+    private void dispatch(WatchKey key) {
+        Registration registration;
+        synchronized (this) {
+            registration = registrationsByKey.get(key);
+        }
+        List<WatchEvent<?>> events = key.pollEvents();
+        boolean valid = key.reset();
+        if (registration == null) {
+            return;
+        }
+
+        for (WatchEvent<?> event : events) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                log.log(Level.WARNING, "WatchService overflow in directory {0}; events may have been lost.",
+                        registration.dir);
+                for (Subscription subscription : registration.subscriptions) {
+                    subscription.deliver(registration.dir, kind, true);
+                }
+                continue;
+            }
+
+            Path changed = registration.dir.resolve((Path)event.context());
+            for (Subscription subscription : registration.subscriptions) {
+                subscription.deliver(changed, kind, false);
+                if (subscription.recursive
+                        && kind == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(changed)) {
+                    try {
+                        addRegistration(subscription, changed);
+                        registerSubdirectories(subscription, changed);
+                    }
+                    catch (IOException e) {
+                        log.log(Level.FINE, "WatchHub: unable to watch " + changed, e);
+                    }
+                }
+            }
+        }
+
+        if (!valid) {
+            // The directory is gone (or otherwise can't be watched any more):
+            List<Subscription> affected = new ArrayList<>(registration.subscriptions);
+            synchronized (this) {
+                registrations.remove(registration.dir);
+                registrationsByKey.remove(key);
+                for (Subscription subscription : affected) {
+                    subscription.registeredDirs.remove(registration.dir);
+                }
+                releaseWatchServiceIfUnused(registration.dir.getFileSystem());
+            }
+            for (Subscription subscription : affected) {
+                if (subscription.getWatchedDirectory().equals(registration.dir)) {
+                    subscription.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * A single file or directory subscription. Close it when you no longer need it.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Path target;
+        private final boolean recursive;
+        private final ChangeListener listener;
+        private final Runnable onChange;
+        private final long debounceNanos;
+        private final Set<Path> registeredDirs = new HashSet<>(); // guarded by WatchHub.this
+        private volatile boolean active = true;
+
+        // Debounce state, guarded by this:
+        private long deadlineNanos;
+        private boolean timerScheduled;
+
+        private Subscription(Path target, boolean recursive, ChangeListener listener, Runnable onChange,
+                             long debounceMs) {
+            this.target = target;
+            this.recursive = recursive;
+            this.listener = listener;
+            this.onChange = onChange;
+            this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMs);
+        }
+
+        /**
+         * Returns the watched file (for file subscriptions) or directory (for directory subscriptions).
+         */
+        public Path getTarget() {
+            return target;
+        }
+
+        /**
+         * Reports whether this subscription is still receiving events. A subscription becomes
+         * inactive when it is closed, or when the directory it watches is deleted.
+         */
+        public boolean isActive() {
+            return active;
+        }
+
+        /**
+         * Discards any debounced callback that is waiting to fire. This does not affect
+         * events that arrive after this call.
+         */
+        public synchronized void cancelPending() {
+            deadlineNanos = 0;
+        }
+
+        @Override
+        public void close() {
+            if (!active) {
+                return;
+            }
+            active = false;
+            synchronized (WatchHub.this) {
+                for (Path dir : new ArrayList<>(registeredDirs)) {
+                    removeRegistration(this, dir);
+                }
+                registeredDirs.clear();
+            }
+        }
+
+        private Path getWatchedDirectory() {
+            return listener == null ? target.getParent() : target;
+        }
+
+        private void deliver(Path path, WatchEvent.Kind<?> kind, boolean overflow) {
+            if (!active) {
+                return;
+            }
+            if (listener != null) {
+                try {
+                    listener.pathChanged(path, kind);
+                }
+                catch (RuntimeException e) {
+                    log.log(Level.WARNING, "WatchHub: ChangeListener threw an exception", e);
+                }
+            }
+            else if (overflow || path.equals(target)) {
+                scheduleDebounced();
+            }
+        }
+
+        /**
+         * Pushes the deadline back on every event, but only schedules a timer task when there
+         * isn't one already waiting. When the task fires before the (moved) deadline, it simply
+         * reschedules itself for the remainder, so bursts of events don't churn the timer queue.
+         */
+        private void scheduleDebounced() {
+            synchronized (this) {
+                deadlineNanos = System.nanoTime() + Math.max(1, debounceNanos);
+                if (timerScheduled) {
+                    return;
+                }
+                timerScheduled = true;
+            }
+            scheduleTimer(debounceNanos);
+        }
+
+        private void scheduleTimer(long delayNanos) {
+            try {
+                timer.schedule(this::timerFired, delayNanos, TimeUnit.NANOSECONDS);
+            }
+            catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    timerScheduled = false; // hub was closed
+                }
+            }
+        }
+
+        private void timerFired() {
+            synchronized (this) {
+                if (deadlineNanos == 0) {
+                    timerScheduled = false; // canceled
+                    return;
+                }
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining > 0) {
+                    scheduleTimer(remaining);
+                    return;
+                }
+                deadlineNanos = 0;
+                timerScheduled = false;
+            }
+            if (active) {
+                try {
+                    onChange.run();
+                }
+                catch (RuntimeException e) {
+                    log.log(Level.WARNING, "WatchHub: change callback threw an exception", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,772 @@
+package ca.corbett.extras.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A logging handler that writes log records to a file without making the logging thread
+ * wait for the disk. Intended to be used alongside LogConsoleHandler, so that an application
+ * gets both the in-memory LogConsole and a durable log file:
+ * <blockquote>
+ * handlers=ca.corbett.extras.logging.AsyncFileHandler,ca.corbett.extras.logging.LogConsoleHandler<br>
+ * ca.corbett.extras.logging.AsyncFileHandler.file=/var/log/myapp/myapp.log<br>
+ * ca.corbett.extras.logging.AsyncFileHandler.maxFileSize=10485760<br>
+ * ca.corbett.extras.logging.AsyncFileHandler.compress=true
+ * </blockquote>
+ * <p>
+ * publish() only puts the record into a bounded queue. A background writer thread takes
+ * records off the queue in batches, formats them, and writes each batch to the file with
+ * a single FileChannel write. Rotation happens on the writer thread too, and any gzip
+ * compression and deletion of old files happens on a separate thread, so neither holds up
+ * the writer for long. The writer thread is started by the first publish(), not by the
+ * constructor, so it never runs before the handler has been fully configured.
+ * </p>
+ * <h2>Rotation</h2>
+ * The log file is rotated when it would grow past the maximum file size, and/or when the
+ * rotation interval has passed, whichever comes first (either can be turned off). The old
+ * file is renamed with a timestamp suffix, such as myapp.log.20250131-235959, and optionally
+ * gzipped. Only the newest maxBackups rotated files are kept.
+ * <h2>When the queue is full</h2>
+ * If records are logged faster than they can be written, the queue fills up. What happens
+ * then is decided by the OverflowPolicy: the logging thread can wait for room (BLOCK), the
+ * record can be thrown away (DROP), or records below a given level can be thrown away while
+ * more important records wait for room (DROP_BELOW_LEVEL). The number of dropped records is
+ * noted in the log file.
+ * <h2>Configuration</h2>
+ * When created by the LogManager, this handler reads these properties from logging.properties,
+ * each prefixed with "ca.corbett.extras.logging.AsyncFileHandler.":
+ * <ul>
+ *     <li><b>level</b> - the handler level (default ALL)</li>
+ *     <li><b>formatter</b> - a Formatter class name (default java.util.logging.SimpleFormatter)</li>
+ *     <li><b>encoding</b> - the character set (default UTF-8)</li>
+ *     <li><b>file</b> - the log file (default application.log in the user's home directory)</li>
+ *     <li><b>capacity</b> - how many records the queue holds (default 8192)</li>
+ *     <li><b>maxFileSize</b> - rotate at this many bytes, or 0 for no limit (default 10 MB)</li>
+ *     <li><b>rotationMinutes</b> - rotate after this many minutes, or 0 to not (default 0)</li>
+ *     <li><b>maxBackups</b> - how many rotated files to keep (default 10)</li>
+ *     <li><b>compress</b> - whether to gzip rotated files (default false)</li>
+ *     <li><b>overflowPolicy</b> - BLOCK, DROP, or DROP_BELOW_LEVEL (default BLOCK)</li>
+ *     <li><b>overflowLevel</b> - the level for DROP_BELOW_LEVEL (default WARNING)</li>
+ * </ul>
+ * All of these can also be set programmatically.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public class AsyncFileHandler extends Handler {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+    public static final int DEFAULT_MAX_BACKUPS = 10;
+
+    /**
+     * The most records written out in one batch.
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * How long the writer waits for records before checking whether a timed rotation is due.
+     */
+    private static final long IDLE_POLL_MS = 1000;
+
+    private static final DateTimeFormatter ROTATION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String COMPRESSED_EXTENSION = ".gz";
+
+    /**
+     * What publish() does when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The logging thread waits until there is room. Nothing is lost.
+         */
+        BLOCK,
+
+        /**
+         * The record is thrown away. The logging thread never waits.
+         */
+        DROP,
+
+        /**
+         * Records below the overflow level are thrown away; records at or above it wait for room.
+         */
+        DROP_BELOW_LEVEL
+    }
+
+    /**
+     * Queued by flush() and close() so that they can wait for the writer to catch up.
+     */
+    private static final class Marker extends LogRecord {
+        final CountDownLatch written = new CountDownLatch(1);
+        final boolean isClose;
+
+        Marker(boolean isClose) {
+            super(Level.OFF, null);
+            this.isClose = isClose;
+        }
+    }
+
+    private final File file;
+    private final BlockingQueue<LogRecord> queue;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private final ExecutorService housekeeper;
+
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private volatile Level overflowLevel = Level.WARNING;
+    private volatile long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private volatile Duration rotationInterval = Duration.ZERO;
+    private volatile int maxBackups = DEFAULT_MAX_BACKUPS;
+    private volatile boolean compressRotatedFiles;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean writerStarted = new AtomicBoolean();
+    private volatile boolean writerStopped;
+
+    // Only touched by the writer thread:
+    private FileChannel channel;
+    private long fileSize;
+    private long fileOpenedMillis;
+
+    /**
+     * Creates an AsyncFileHandler configured from logging.properties, as described
+     * in the class documentation. This is the constructor the LogManager uses.
+     */
+    public AsyncFileHandler() {
+        this(getFileProperty(), getIntProperty("capacity", DEFAULT_CAPACITY));
+        setLevel(getLevelProperty("level", Level.ALL));
+        setFormatter(getFormatterProperty());
+        try {
+            setEncoding(getProperty("encoding", StandardCharsets.UTF_8.name()));
+        }
+        catch (UnsupportedEncodingException e) {
+            reportError("AsyncFileHandler: unsupported encoding", e, ErrorManager.GENERIC_FAILURE);
+        }
+        setMaxFileSize(getLongProperty("maxFileSize", DEFAULT_MAX_FILE_SIZE));
+        setRotationInterval(Duration.ofMinutes(getLongProperty("rotationMinutes", 0)));
+        setMaxBackups(getIntProperty("maxBackups", DEFAULT_MAX_BACKUPS));
+        setCompressRotatedFiles(Boolean.parseBoolean(getProperty("compress", "false")));
+        try {
+            setOverflowPolicy(OverflowPolicy.valueOf(getProperty("overflowPolicy", OverflowPolicy.BLOCK.name())));
+        }
+        catch (IllegalArgumentException e) {
+            reportError("AsyncFileHandler: unknown overflow policy", e, ErrorManager.GENERIC_FAILURE);
+        }
+        setOverflowLevel(getLevelProperty("overflowLevel", Level.WARNING));
+    }
+
+    /**
+     * Creates an AsyncFileHandler that writes to the given file, using a SimpleFormatter,
+     * with a queue of DEFAULT_CAPACITY records.
+     *
+     * @param file The log file. It is appended to if it already exists.
+     */
+    public AsyncFileHandler(File file) {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an AsyncFileHandler that writes to the given file, using a SimpleFormatter.
+     *
+     * @param file     The log file. It is appended to if it already exists.
+     * @param capacity How many records can be queued waiting to be written.
+     */
+    public AsyncFileHandler(File file, int capacity) {
+        if (file == null) {
+            throw new IllegalArgumentException("Log file cannot be null.");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.file = file.getAbsoluteFile();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        setFormatter(new SimpleFormatter());
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "AsyncFileHandler-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        housekeeper = executor;
+
+        writerThread = new Thread(this::writeLoop, "AsyncFileHandler-writer");
+        writerThread.setDaemon(true);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public AsyncFileHandler setOverflowPolicy(OverflowPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Overflow policy cannot be null.");
+        }
+        this.overflowPolicy = policy;
+        return this;
+    }
+
+    public Level getOverflowLevel() {
+        return overflowLevel;
+    }
+
+    /**
+     * Sets the level below which records are dropped when the queue is full, if the
+     * overflow policy is DROP_BELOW_LEVEL.
+     */
+    public AsyncFileHandler setOverflowLevel(Level level) {
+        if (level == null) {
+            throw new IllegalArgumentException("Overflow level cannot be null.");
+        }
+        this.overflowLevel = level;
+        return this;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Sets the size in bytes past which the log file is rotated, or 0 for no limit.
+     * A single batch of records bigger than this still goes in one file.
+     */
+    public AsyncFileHandler setMaxFileSize(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Max file size cannot be negative.");
+        }
+        this.maxFileSize = bytes;
+        return this;
+    }
+
+    public Duration getRotationInterval() {
+        return rotationInterval;
+    }
+
+    /**
+     * Sets how long a log file is written to before it is rotated, or Duration.ZERO to
+     * rotate on size only.
+     */
+    public AsyncFileHandler setRotationInterval(Duration interval) {
+        if (interval == null || interval.isNegative()) {
+            throw new IllegalArgumentException("Rotation interval cannot be null or negative.");
+        }
+        this.rotationInterval = interval;
+        return this;
+    }
+
+    public int getMaxBackups() {
+        return maxBackups;
+    }
+
+    /**
+     * Sets how many rotated log files are kept. The oldest are deleted beyond this.
+     */
+    public AsyncFileHandler setMaxBackups(int maxBackups) {
+        if (maxBackups < 0) {
+            throw new IllegalArgumentException("Max backups cannot be negative.");
+        }
+        this.maxBackups = maxBackups;
+        return this;
+    }
+
+    public boolean isCompressRotatedFiles() {
+        return compressRotatedFiles;
+    }
+
+    public AsyncFileHandler setCompressRotatedFiles(boolean compress) {
+        this.compressRotatedFiles = compress;
+        return this;
+    }
+
+    /**
+     * Returns how many records have been dropped because the queue was full, and haven't
+     * been reported in the log file yet.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Queues the given record to be written. Depending on the overflow policy, this may wait
+     * for room in the queue, or drop the record, if the queue is full.
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed.get() || writerStopped || !isLoggable(record)) {
+            return;
+        }
+
+        // The caller is worked out lazily from the stack, so it has to be done on this thread:
+        record.getSourceClassName();
+
+        if (writerStarted.compareAndSet(false, true)) {
+            writerThread.start();
+        }
+        if (queue.offer(record)) {
+            return;
+        }
+        OverflowPolicy policy = overflowPolicy;
+        if (policy == OverflowPolicy.DROP
+                || (policy == OverflowPolicy.DROP_BELOW_LEVEL && record.getLevel().intValue() < overflowLevel.intValue())) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        try {
+            if (!enqueue(record)) {
+                droppedCount.incrementAndGet();
+            }
+        }
+        catch (InterruptedException e) {
+            droppedCount.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until everything queued so far has been written to the file.
+     */
+    @Override
+    public void flush() {
+        if (closed.get() || writerStopped || !writerStarted.get() || Thread.currentThread() == writerThread) {
+            return;
+        }
+        Marker marker = new Marker(false);
+        try {
+            if (enqueue(marker)) {
+                marker.written.await();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out everything queued so far, closes the log file, and waits for any
+     * compression of rotated files to finish. Records published after this are ignored,
+     * and closing again does nothing.
+     */
+    @Override
+    public void close() throws SecurityException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (writerStarted.compareAndSet(false, true)) {
+            // Nothing was ever published, so there is no writer to wait for, and now there never will be:
+            writerStopped = true;
+            discardQueue();
+        }
+        Marker marker = new Marker(true);
+        try {
+            if (enqueue(marker)) {
+                marker.written.await();
+            }
+            writerThread.join();
+            housekeeper.shutdown();
+            housekeeper.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for room in the queue and adds the given record to it, unless the writer has
+     * stopped, in which case the record is thrown away.
+     *
+     * @return True if the record was queued.
+     */
+    private boolean enqueue(LogRecord record) throws InterruptedException {
+        while (!queue.offer(record, IDLE_POLL_MS, TimeUnit.MILLISECONDS)) {
+            if (writerStopped) {
+                return false;
+            }
+        }
+
+        // If the writer stopped in the meantime, nobody else will release what we just queued:
+        if (writerStopped) {
+            discardQueue();
+        }
+        return true;
+    }
+
+    /**
+     * Throws away everything in the queue, releasing anyone waiting on a flush or close marker.
+     * Invoked once the writer has stopped.
+     */
+    private void discardQueue() {
+        LogRecord record;
+        while ((record = queue.poll()) != null) {
+            if (record instanceof Marker marker) {
+                marker.written.countDown();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            writeUntilClosed();
+        }
+        catch (RuntimeException e) {
+            reportError("AsyncFileHandler: writer thread failed", e, ErrorManager.GENERIC_FAILURE);
+        }
+        finally {
+            writerStopped = true;
+            closeFile();
+            discardQueue();
+        }
+    }
+
+    private void writeUntilClosed() {
+        List<LogRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        StringBuilder text = new StringBuilder();
+        boolean running = true;
+        while (running) {
+            try {
+                LogRecord first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    rotateIfDue(0);
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                List<Marker> markers = new ArrayList<>();
+                try {
+                    long dropped = droppedCount.getAndSet(0);
+                    if (dropped > 0) {
+                        text.append("AsyncFileHandler: ").append(dropped)
+                            .append(" log record(s) dropped because the queue was full.")
+                            .append(System.lineSeparator());
+                    }
+                    for (LogRecord record : batch) {
+                        if (record instanceof Marker marker) {
+                            markers.add(marker);
+                            running &= !marker.isClose;
+                        }
+                        else {
+                            text.append(format(record));
+                        }
+                    }
+                    write(text);
+                    if (!running) {
+                        closeFile();
+                    }
+                }
+                finally {
+                    // Even if something went wrong, don't leave anyone waiting on this batch:
+                    text.setLength(0);
+                    batch.clear();
+                    markers.forEach(marker -> marker.written.countDown());
+                }
+            }
+            catch (InterruptedException e) {
+                // Nobody should be interrupting us; carry on until closed.
+            }
+        }
+    }
+
+    private String format(LogRecord record) {
+        try {
+            return getFormatter().format(record);
+        }
+        catch (RuntimeException e) {
+            reportError("AsyncFileHandler: unable to format log record", e, ErrorManager.FORMAT_FAILURE);
+            return "";
+        }
+    }
+
+    private void write(CharSequence text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        ByteBuffer bytes = getCharset().encode(text.toString());
+        try {
+            rotateIfDue(bytes.remaining());
+            openFile();
+            while (bytes.hasRemaining()) {
+                fileSize += channel.write(bytes);
+            }
+        }
+        catch (IOException e) {
+            reportError("AsyncFileHandler: unable to write to " + file, e, ErrorManager.WRITE_FAILURE);
+            closeFile();
+        }
+    }
+
+    private void openFile() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Path parent = file.toPath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        fileOpenedMillis = System.currentTimeMillis();
+        if (fileSize == 0) {
+            String head = getFormatter().getHead(this);
+            if (head != null && !head.isEmpty()) {
+                fileSize += channel.write(getCharset().encode(head));
+            }
+        }
+    }
+
+    private void closeFile() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            String tail = getFormatter().getTail(this);
+            if (tail != null && !tail.isEmpty()) {
+                channel.write(getCharset().encode(tail));
+            }
+            channel.close();
+        }
+        catch (IOException e) {
+            reportError("AsyncFileHandler: unable to close " + file, e, ErrorManager.CLOSE_FAILURE);
+        }
+        channel = null;
+    }
+
+    /**
+     * Rotates the log file if it has been open longer than the rotation interval, or if
+     * writing the given number of bytes would take it past the maximum size.
+     */
+    private void rotateIfDue(long bytesToWrite) {
+        if (channel == null) {
+            // The size limit also applies to a file left over from a previous run:
+            if (bytesToWrite == 0 || maxFileSize <= 0 || file.length() == 0
+                    || file.length() + bytesToWrite <= maxFileSize) {
+                return;
+            }
+        }
+        else {
+            long interval = rotationInterval.toMillis();
+            boolean tooOld = interval > 0 && fileSize > 0 && System.currentTimeMillis() - fileOpenedMillis >= interval;
+            boolean tooBig = maxFileSize > 0 && fileSize > 0 && fileSize + bytesToWrite > maxFileSize;
+            if (!tooOld && !tooBig) {
+                return;
+            }
+        }
+        closeFile();
+        try {
+            Path rotated = getRotatedPath();
+            Files.move(file.toPath(), rotated);
+            boolean compress = compressRotatedFiles;
+            housekeeper.execute(() -> {
+                if (compress) {
+                    compress(rotated);
+                }
+                deleteOldBackups();
+            });
+        }
+        catch (IOException e) {
+            reportError("AsyncFileHandler: unable to rotate " + file, e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    private Path getRotatedPath() {
+        String base = file.getName() + "." + LocalDateTime.now().format(ROTATION_SUFFIX);
+        Path rotated = file.toPath().resolveSibling(base);
+        for (int i = 1; Files.exists(rotated) || Files.exists(rotated.resolveSibling(base + COMPRESSED_EXTENSION)); i++) {
+            rotated = file.toPath().resolveSibling(base + "-" + i);
+        }
+        return rotated;
+    }
+
+    /**
+     * Invoked on the housekeeper thread to gzip a rotated log file.
+     */
+    private void compress(Path rotated) {
+        Path compressed = rotated.resolveSibling(rotated.getFileName() + COMPRESSED_EXTENSION);
+        try (InputStream in = Files.newInputStream(rotated);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            in.transferTo(out);
+        }
+        catch (IOException e) {
+            reportError("AsyncFileHandler: unable to compress " + rotated, e, ErrorManager.GENERIC_FAILURE);
+            try {
+                Files.deleteIfExists(compressed);
+            }
+            catch (IOException ignored) {
+                // Already reported.
+            }
+            return;
+        }
+        try {
+            Files.delete(rotated);
+        }
+        catch (IOException e) {
+            reportError("AsyncFileHandler: unable to delete " + rotated, e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    /**
+     * Invoked on the housekeeper thread to delete all but the newest maxBackups rotated files.
+     */
+    private void deleteOldBackups() {
+        List<Path> backups = getRotatedFiles();
+        for (int i = 0; i < backups.size() - maxBackups; i++) {
+            try {
+                Files.deleteIfExists(backups.get(i));
+            }
+            catch (IOException e) {
+                reportError("AsyncFileHandler: unable to delete " + backups.get(i), e, ErrorManager.GENERIC_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Returns the rotated log files in the log file's directory, oldest first.
+     */
+    List<Path> getRotatedFiles() {
+        List<Path> backups = new ArrayList<>();
+        String prefix = file.getName() + ".";
+        Path dir = file.toPath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return backups;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(prefix) && name.length() > prefix.length()
+                        && Character.isDigit(name.charAt(prefix.length()))) {
+                    backups.add(path);
+                }
+            }
+        }
+        catch (IOException e) {
+            reportError("AsyncFileHandler: unable to list " + dir, e, ErrorManager.GENERIC_FAILURE);
+        }
+        backups.sort(Comparator.comparing((Path path) -> getRotationStamp(path, prefix))
+                               .thenComparingInt(path -> getRotationCounter(path, prefix)));
+        return backups;
+    }
+
+    /**
+     * Returns the timestamp from a rotated file name, which sorts chronologically.
+     */
+    private static String getRotationStamp(Path path, String prefix) {
+        String suffix = getRotationSuffix(path, prefix);
+        int dash = suffix.indexOf('-', suffix.indexOf('-') + 1);
+        return dash < 0 ? suffix : suffix.substring(0, dash);
+    }
+
+    /**
+     * Returns the counter added to a rotated file name to tell apart files rotated in the
+     * same second, or 0 if there is none.
+     */
+    private static int getRotationCounter(Path path, String prefix) {
+        String suffix = getRotationSuffix(path, prefix);
+        int dash = suffix.indexOf('-', suffix.indexOf('-') + 1);
+        try {
+            return dash < 0 ? 0 : Integer.parseInt(suffix.substring(dash + 1));
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String getRotationSuffix(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(COMPRESSED_EXTENSION)) {
+            name = name.substring(0, name.length() - COMPRESSED_EXTENSION.length());
+        }
+        return name.substring(prefix.length());
+    }
+
+    private Charset getCharset() {
+        String encoding = getEncoding();
+        return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+    }
+
+    private static String getProperty(String name, String defaultValue) {
+        String value = LogManager.getLogManager().getProperty(AsyncFileHandler.class.getName() + "." + name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(getProperty(name, Integer.toString(defaultValue)));
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        try {
+            return Long.parseLong(getProperty(name, Long.toString(defaultValue)));
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Level getLevelProperty(String name, Level defaultValue) {
+        try {
+            return Level.parse(getProperty(name, defaultValue.getName()));
+        }
+        catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+
+    private static File getFileProperty() {
+        String path = getProperty("file", null);
+        return path == null ? new File(System.getProperty("user.home"), "application.log") : new File(path);
+    }
+
+    private static Formatter getFormatterProperty() {
+        String className = getProperty("formatter", null);
+        if (className != null) {
+            try {
+                return (Formatter)ClassLoader.getSystemClassLoader().loadClass(className)
+                                             .getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | ClassCastException e) {
+                // Fall back to the default, same as the JDK handlers do.
+            }
+        }
+        return new SimpleFormatter();
+    }
+}
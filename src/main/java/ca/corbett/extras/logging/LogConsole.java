@@ -8,14 +8,13 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSpinner;
-import javax.swing.JTextPane;
+import javax.swing.JTextField;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Style;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyleContext;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
@@ -29,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,6 +60,23 @@ import java.util.logging.Logger;
  * are provided as conveniences, or you can add your own theme by creating and configuring
  * an instance of this class.
  * </p>
+ * <p>
+ * Only the log messages that are actually on screen are ever styled and painted, so
+ * switching themes is instant, even with a long history. The messages shown can be
+ * filtered by log level and by text, via the controls at the top of the window or
+ * via setFilter().
+ * </p>
+ * <p>
+ * append() can be invoked from any thread, and never blocks. Messages are handed off through
+ * a lock-free queue, and added to the history on the EDT at most once per frame, so that a
+ * burst of log messages costs the UI one line index update and one repaint per frame rather
+ * than one per message.
+ * </p>
+ * <p>
+ * Each message is styled and filtered as a whole, so each one starts on a line of its own.
+ * A message without a trailing line break is not joined up with the next one: if you build
+ * a line out of several append() calls, it will show up as several lines.
+ * </p>
  *
  * @author <a href="https://github.com/scorbo2">scorbo2</a>
  * @since 2023-03-17
@@ -69,17 +86,40 @@ public final class LogConsole extends JFrame implements ChangeListener {
     private static final Logger log = Logger.getLogger(LogConsole.class.getName());
 
     /**
-     * How many log messages to store in memory, or 0 for no limit.
+     * How many log messages to store in memory, or 0 for DEFAULT_LOG_LIMIT. Once the
+     * limit is reached, each new message pushes out the oldest one.
      */
     public static int LOG_LIMIT = 0;
 
-    private final List<LogConsoleListener> listeners = new ArrayList<>();
+    /**
+     * How many log messages are stored in memory if LOG_LIMIT is not set.
+     */
+    public static final int DEFAULT_LOG_LIMIT = 100_000;
+
+    /**
+     * How often, in milliseconds, newly appended messages are written out to the console.
+     */
+    private static final int FLUSH_INTERVAL_MS = 16;
+
+    /**
+     * The most messages written out in one go, so that a huge burst can't freeze the UI.
+     * Anything left over is written out on the next frame.
+     */
+    private static final int MAX_MESSAGES_PER_FLUSH = 10_000;
+
+    /**
+     * The choices in the level filter combo box, from least to most restrictive.
+     */
+    private static final Level[] FILTER_LEVELS = {Level.ALL, Level.FINEST, Level.FINER, Level.FINE, Level.CONFIG,
+            Level.INFO, Level.WARNING, Level.SEVERE};
 
-    private final List<String> logHistory = new ArrayList<>(1000);
-    private final List<Level> logLevelHistory = new ArrayList<>(1000);
+    private final MpscQueue<LogHistory.Entry> incoming = new MpscQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Timer flushTimer;
 
-    private final List<String> logQueue = new ArrayList<>(1000);
-    private final List<Level> logLevelQueue = new ArrayList<>(1000);
+    private final List<LogConsoleListener> listeners = new ArrayList<>();
+
+    private final LogHistory history = new LogHistory(getLogLimit());
 
     private final Map<String, LogConsoleTheme> registeredThemes = new HashMap<>();
     private String currentThemeName;
@@ -87,10 +127,13 @@ public final class LogConsole extends JFrame implements ChangeListener {
 
     private static LogConsole instance;
 
-    private final JTextPane textPane;
+    private final LogConsoleView logView;
     private DefaultComboBoxModel<String> comboBoxModel;
     private JComboBox<String> comboBox;
     private JSpinner fontSizeSpinner;
+    private JComboBox<String> filterLevelComboBox;
+    private JTextField filterTextField;
+    private boolean syncingFilterControls;
 
     private final ItemListener itemListener = new ItemListener() {
         @Override
@@ -102,14 +145,13 @@ public final class LogConsole extends JFrame implements ChangeListener {
 
     private LogConsole() {
         super("Log console");
-        textPane = new JTextPane();
-        textPane.setEditable(false);
+        logView = new LogConsoleView(history);
         setSize(new Dimension(640, 480));
         setMinimumSize(new Dimension(200, 100));
         setResizable(true);
         setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
         setLayout(new BorderLayout());
-        JScrollPane scrollPane = new JScrollPane(textPane);
+        JScrollPane scrollPane = new JScrollPane(logView);
         add(scrollPane, BorderLayout.CENTER);
         add(buildButtonPanel(), BorderLayout.NORTH);
 
@@ -118,6 +160,9 @@ public final class LogConsole extends JFrame implements ChangeListener {
         registerTheme("Paper", LogConsoleTheme.createPaperStyledTheme(), false);
 
         switchTheme(LogConsoleTheme.DEFAULT_STYLE_NAME);
+
+        flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flush());
+        flushTimer.setRepeats(false);
     }
 
     public void addLogConsoleListener(LogConsoleListener listener) {
@@ -252,13 +297,7 @@ public final class LogConsole extends JFrame implements ChangeListener {
         comboBox.setSelectedItem(themeName);
         comboBox.addItemListener(itemListener);
 
-        for (String styleName : currentTheme.getStyleNames()) {
-            LogConsoleStyle style = currentTheme.getStyle(styleName);
-            setNamedStyle(styleName, style);
-        }
-
-        // Re-render with new style:
-        styleChanged();
+        logView.setTheme(currentTheme);
 
         fireThemeChangedEvent(themeName);
 
@@ -282,22 +321,45 @@ public final class LogConsole extends JFrame implements ChangeListener {
      * Removes all log messages from the console.
      */
     public void clear() {
-        logHistory.clear();
-        logLevelHistory.clear();
-        textPane.setText("");
+        history.clear();
+        logView.historyChanged();
+    }
+
+    /**
+     * Shows only log messages at or above the given level, and containing the given text
+     * (ignoring case). The filter applies to the whole history, not just new messages.
+     *
+     * @param minimumLevel The lowest level to show, or null to show all levels.
+     * @param text         The text that messages must contain, or null or blank to show all messages.
+     */
+    public void setFilter(Level minimumLevel, String text) {
+        LogFilter filter = new LogFilter(minimumLevel, text);
+
+        // Bring the controls in line without their listeners each applying a partial filter,
+        // so that the history is only filtered once:
+        syncingFilterControls = true;
+        try {
+            filterLevelComboBox.setSelectedItem(filter.getMinimumLevel() == null
+                                                        ? Level.ALL.getName()
+                                                        : filter.getMinimumLevel().getName());
+            if (!filterTextField.getText().equals(filter.getText())) {
+                filterTextField.setText(filter.getText());
+            }
+        }
+        finally {
+            syncingFilterControls = false;
+        }
+        logView.setFilter(filter);
     }
 
     @Override
     public void setVisible(boolean visible) {
         super.setVisible(visible);
 
-        // If becoming visible, dequeue all queued-up log messages and write them out:
+        // If becoming visible, catch up on everything that was appended while we were hidden:
         if (visible) {
-            for (int i = 0; i < logQueue.size(); i++) {
-                append(logQueue.get(i), logLevelQueue.get(i));
-            }
-            logQueue.clear();
-            logLevelQueue.clear();
+            flush();
+            logView.historyChanged();
         }
     }
 
@@ -305,100 +367,56 @@ public final class LogConsole extends JFrame implements ChangeListener {
      * Appends a log message to this console with the given log level. Intended to be
      * invoked by LogConsoleHandler automatically when log messages are received, but can
      * also be invoked manually if you are not using the usual java.util.logging mechanism.
+     * <p>
+     * This method is safe to invoke from any thread, and returns immediately. The message
+     * shows up in the console on the next frame, starting on a new line whether or not the
+     * previous message ended with a line break.
+     * </p>
      *
      * @param msg   The message to log.
      * @param level The log level.
      */
     public void append(String msg, Level level) {
-        // If we're visible, process it now:
-        if (isVisible()) {
-            logHistory.add(msg);
-            logLevelHistory.add(level);
-
-            LogConsoleStyle consoleStyle = currentTheme.getMatchingStyle(msg, level);
-            String styleName = currentTheme.getStyleName(consoleStyle);
-            Style textPaneStyle = textPane.getStyle(styleName);
-            if (textPaneStyle == null) {
-                textPaneStyle = textPane.getStyle(LogConsoleTheme.DEFAULT_STYLE_NAME);
-            }
-
-            try {
-                textPane.getDocument().insertString(textPane.getDocument().getLength(), msg, textPaneStyle);
-                textPane.setCaretPosition(textPane.getDocument().getLength());
-            }
-            catch (BadLocationException ble) {
-                // Irony of ironies... where does the LogConsole log errors if it can't log to itself?
-                log.log(Level.WARNING, "LogConsole.append: failed to append log message to text pane", ble);
-            }
-
-            // Cleanup if required:
-            if (LOG_LIMIT > 0) {
-                while (logHistory.size() > LOG_LIMIT) {
-                    logHistory.remove(0);
-                    logLevelHistory.remove(0);
-                }
-            }
+        if (msg == null) {
+            return;
         }
-
-        // Otherwise, queue it up for later (saves processing time if LogConsole not visible):
-        else {
-            logQueue.add(msg);
-            logLevelQueue.add(level);
-
-            // Cleanup if required:
-            if (LOG_LIMIT > 0) {
-                while (logQueue.size() > LOG_LIMIT) {
-                    logQueue.remove(0);
-                    logLevelQueue.remove(0);
-                }
-            }
+        incoming.offer(new LogHistory.Entry(msg, level, System.currentTimeMillis()));
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushTimer.start();
         }
     }
 
     /**
-     * Invoked internally to set font style properties for the named style.
-     * The named style will be created if it does not yet exist.
-     *
-     * @param styleName    The name of the style to create or update.
-     * @param consoleStyle The LogConsoleStyle instance to use for styling.
+     * Invoked on the EDT by the flush timer to move everything appended since the last flush
+     * into the history, and update the view if we're visible. If we're not visible, the view
+     * catches up when we next become visible (saves processing time if LogConsole not visible).
      */
-    private void setNamedStyle(String styleName, LogConsoleStyle consoleStyle) {
-        Style def = StyleContext.getDefaultStyleContext().getStyle(StyleContext.DEFAULT_STYLE);
-        Style style = textPane.getStyle(styleName);
-        if (style == null) {
-            style = textPane.addStyle(styleName, def);
+    private void flush() {
+        // Clear the flag before draining, so that anything appended from here on schedules another flush:
+        flushScheduled.set(false);
+        List<LogHistory.Entry> batch = new ArrayList<>();
+        incoming.drainTo(batch, MAX_MESSAGES_PER_FLUSH);
+        if (!incoming.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            flushTimer.start();
         }
-        StyleConstants.setFontFamily(style, consoleStyle.getFontFamilyName());
-        StyleConstants.setFontSize(style, consoleStyle.getFontPointSize());
-        StyleConstants.setForeground(style, consoleStyle.getFontColor());
-        if (consoleStyle.getFontBgColor() != null) {
-            StyleConstants.setBackground(style, consoleStyle.getFontBgColor());
+        if (batch.isEmpty()) {
+            return;
         }
-        StyleConstants.setBold(style, consoleStyle.isBold());
-        StyleConstants.setItalic(style, consoleStyle.isItalic());
-        StyleConstants.setUnderline(style, consoleStyle.isUnderline());
-    }
 
-    /**
-     * Removes all content and re-appends it to pick up any style changes (fonts, colours, etc).
-     */
-    private void styleChanged() {
-        // Setting the background on a JTextPane is not supported on
-        // some look and feel implementations, most notably Nimbus.
-        // Therefore, this will look like ass on those l&fs.
-        textPane.setBackground(currentTheme.getDefaultBgColor());
-        textPane.setText("");
-
-        // Copy the lists to iterate over because append() will add to the master lists.
-        List<String> logCopy = new ArrayList<>(logHistory);
-        List<Level> levelCopy = new ArrayList<>(logLevelHistory);
-        logHistory.clear();
-        logLevelHistory.clear();
-        for (int i = 0; i < logCopy.size(); i++) {
-            append(logCopy.get(i), levelCopy.get(i));
+        if (history.getCapacity() != getLogLimit()) {
+            history.setCapacity(getLogLimit());
+        }
+        for (LogHistory.Entry entry : batch) {
+            history.add(entry);
         }
 
-        // TODO update font size spinner
+        if (isVisible()) {
+            logView.historyChanged();
+        }
+    }
+
+    private static int getLogLimit() {
+        return LOG_LIMIT > 0 ? LOG_LIMIT : DEFAULT_LOG_LIMIT;
     }
 
     /**
@@ -417,7 +435,7 @@ public final class LogConsole extends JFrame implements ChangeListener {
 
         JButton button = new JButton("Copy all to clipboard");
         button.addActionListener(e -> Toolkit.getDefaultToolkit().getSystemClipboard()
-                                             .setContents(new StringSelection(textPane.getText()), null));
+                                             .setContents(new StringSelection(logView.getText()), null));
         panel.add(button);
 
         button = new JButton("Clear");
@@ -433,18 +451,61 @@ public final class LogConsole extends JFrame implements ChangeListener {
             fireFontSizeChangedEvent((Integer)fontSizeSpinner.getValue());
         });
 
+        panel.add(new JLabel("  Show:"));
+        String[] levelNames = new String[FILTER_LEVELS.length];
+        for (int i = 0; i < FILTER_LEVELS.length; i++) {
+            levelNames[i] = FILTER_LEVELS[i].getName();
+        }
+        filterLevelComboBox = new JComboBox<>(levelNames);
+        filterLevelComboBox.setEditable(false);
+        filterLevelComboBox.addItemListener(e -> {
+            if (e.getStateChange() == ItemEvent.SELECTED) {
+                applyFilter();
+            }
+        });
+        panel.add(filterLevelComboBox);
+
+        panel.add(new JLabel("  Filter:"));
+        filterTextField = new JTextField(12);
+        filterTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        panel.add(filterTextField);
+
         return panel;
     }
 
-    @Override
-    public void stateChanged(ChangeEvent e) {
-        for (String styleName : currentTheme.getStyleNames()) {
-            LogConsoleStyle style = currentTheme.getStyle(styleName);
-            setNamedStyle(styleName, style);
+    /**
+     * Invoked internally when the filter controls change.
+     */
+    private void applyFilter() {
+        if (syncingFilterControls) {
+            return;
         }
+        Level level = Level.parse((String)filterLevelComboBox.getSelectedItem());
+        LogFilter filter = new LogFilter(level, filterTextField.getText());
+        if (filter.getMinimumLevel() != logView.getFilter().getMinimumLevel()
+                || !filter.getText().equals(logView.getFilter().getText())) {
+            logView.setFilter(filter);
+        }
+    }
 
-        // Re-render with new style:
-        styleChanged();
+    @Override
+    public void stateChanged(ChangeEvent e) {
+        logView.styleChanged();
     }
 
     private void fireThemeChangedEvent(String newTheme) {
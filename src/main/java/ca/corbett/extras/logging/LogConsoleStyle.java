@@ -79,6 +79,7 @@ public final class LogConsoleStyle {
      */
     public void setLogLevel(Level logLevel) {
         this.logLevel = logLevel;
+        fireChangeEvent();
     }
 
     /**
@@ -103,6 +104,7 @@ public final class LogConsoleStyle {
     public void setLogToken(String logToken, boolean isCaseSensitive) {
         this.logToken = logToken == null ? "" : logToken;
         this.logTokenIsCaseSensitive = isCaseSensitive;
+        fireChangeEvent();
     }
 
     public boolean isLogTokenCaseSensitive() {
@@ -46,6 +46,11 @@ import java.util.logging.Logger;
  * <li>If no style matches, either by log token or by log level, then the default style
  * will be used for that log message.</li>
  * </ul>
+ * <p>
+ * The styles are compiled into a matcher that checks every style's log token and log level
+ * in a single pass over the log message. The matcher is rebuilt the first time it's needed
+ * after the theme changes.
+ * </p>
  * <h2>Persisting a custom style</h2>
  * LogConsoleTheme (and also LogConsoleStyle) extend ConfigObject, so they can be easily
  * persisted to disk using a FileBasedProperties instance. It is recommended to use a
@@ -65,6 +70,7 @@ public final class LogConsoleTheme extends AbstractProperty implements ChangeLis
     private final List<ChangeListener> changeListeners = new ArrayList<>();
     private final Map<String, LogConsoleStyle> logStyles = new HashMap<>();
     private Color defaultBgColor;
+    private volatile LogStyleMatcher matcher;
 
     /**
      * Creates a plain theme with black text on a white background, and no
@@ -88,6 +94,7 @@ public final class LogConsoleTheme extends AbstractProperty implements ChangeLis
         LogConsoleStyle defaultStyle = new LogConsoleStyle();
         defaultStyle.addChangeListener(this);
         logStyles.put(DEFAULT_STYLE_NAME, defaultStyle);
+        matcher = null;
     }
 
     /**
@@ -300,15 +307,9 @@ public final class LogConsoleTheme extends AbstractProperty implements ChangeLis
             return null;
         }
 
-        String foundName = null;
-        for (String name : getStyleNames()) {
-            if (style == logStyles.get(name)) {
-                foundName = name;
-                break;
-            }
-        }
-
-        return foundName;
+        LogStyleMatcher currentMatcher = getMatcher();
+        int index = currentMatcher.indexOf(style);
+        return index == -1 ? null : currentMatcher.getName(index);
     }
 
     /**
@@ -343,59 +344,26 @@ public final class LogConsoleTheme extends AbstractProperty implements ChangeLis
      * @return A LogConsoleStyle from this theme that matches the given parameters.
      */
     public LogConsoleStyle getMatchingStyle(String logMsg, Level logLevel) {
-        LogConsoleStyle matchingStyle = null;
-
-        List<String> styleNames = getStyleNames();
-        for (String styleName : styleNames) {
-            LogConsoleStyle style = logStyles.get(styleName);
-
-            // Skip default style... this will be matched by default if nothing else hits:
-            if (style == matchingStyle) {
-                continue;
-            }
-
-            // If this style has no matchers, ignore it (this is what the default style is for):
-            String styleLogToken = style.getLogToken() == null ? "" : style.getLogToken();
-            Level styleLogLevel = style.getLogLevel();
-            if (styleLogToken.isEmpty() && styleLogLevel == null) {
-                continue;
-            }
-
-            // Adjust for case sensitivity if needed:
-            String message = logMsg == null ? "" : logMsg;
-            if (!style.isLogTokenCaseSensitive()) {
-                message = message.toLowerCase();
-                styleLogToken = styleLogToken.toLowerCase();
-            }
-
-            // If both are set, then both must match:
-            if (!styleLogToken.isEmpty() && styleLogLevel != null) {
-                if (styleLogLevel.equals(logLevel) && message.contains(styleLogToken)) {
-                    matchingStyle = style; // unconditional overwrite of any previous match
-                    break;
-                }
-            }
-
-            // Check log token only:
-            if (!styleLogToken.isEmpty()) {
-                if (message.contains(styleLogToken)) {
-                    matchingStyle = style; // unconditional overwrite of any previous match
-                    break;
-                }
-            }
+        LogStyleMatcher currentMatcher = getMatcher();
+        return currentMatcher.getStyle(currentMatcher.match(logMsg, logLevel));
+    }
 
-            // Check log level only:
-            if (styleLogLevel != null) {
-                if (styleLogLevel.equals(logLevel)) {
-                    // This is a "weaker" match, so don't overwrite a previous match if one exists:
-                    if (matchingStyle == null) {
-                        matchingStyle = style;
-                    }
-                }
+    /**
+     * Returns the compiled matcher for our current styles, compiling it first if the
+     * theme has changed since it was last needed.
+     */
+    LogStyleMatcher getMatcher() {
+        LogStyleMatcher currentMatcher = matcher;
+        if (currentMatcher == null) {
+            List<String> names = getStyleNames();
+            List<LogConsoleStyle> styles = new ArrayList<>(names.size());
+            for (String name : names) {
+                styles.add(logStyles.get(name));
             }
+            currentMatcher = new LogStyleMatcher(names, styles);
+            matcher = currentMatcher;
         }
-
-        return matchingStyle == null ? getStyle(DEFAULT_STYLE_NAME) : matchingStyle;
+        return currentMatcher;
     }
 
     /**
@@ -403,6 +371,7 @@ public final class LogConsoleTheme extends AbstractProperty implements ChangeLis
      * so they can update as needed.
      */
     private void fireChangeEvent() {
+        matcher = null;
         for (ChangeListener listener : new ArrayList<>(changeListeners)) {
             ChangeEvent event = new ChangeEvent(this);
             listener.stateChanged(event);
@@ -442,8 +411,10 @@ public final class LogConsoleTheme extends AbstractProperty implements ChangeLis
         for (String name : styleNames) {
             LogConsoleStyle style = new LogConsoleStyle();
             style.loadFromProps(props, pfx + name + ".");
+            style.addChangeListener(this);
             logStyles.put(name, style);
         }
+        matcher = null;
     }
 
     @Override
@@ -0,0 +1,408 @@
+package ca.corbett.extras.logging;
+
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Map;
+
+/**
+ * Displays the contents of a LogHistory, styled by a LogConsoleTheme. Only the lines that
+ * are actually on screen are ever styled or painted: the view keeps a LogLineIndex that
+ * records where each line is within the history, and at paint time looks up just the lines
+ * inside the clip area. There is no document holding a copy of the whole history, so
+ * switching themes or font sizes only means rebuilding a handful of fonts and repainting,
+ * no matter how many messages there are.
+ * <p>
+ * The view can be filtered by log level and by text. Filtering re-reads the history
+ * once, which is quick, as only line positions are recorded, not text.
+ * </p>
+ * <p>
+ * Lines can be selected with the mouse (shift-click extends the selection) and copied
+ * with ctrl+C. Ctrl+A selects everything. Everything here happens on the EDT.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class LogConsoleView extends JComponent implements Scrollable {
+
+    private static final String TAB_SPACES = "    ";
+
+    /**
+     * The font and colours for one style, built once per theme change.
+     */
+    private record LineStyle(Font font, Color foreground, Color background, boolean underline) {
+    }
+
+    private final LogHistory history;
+    private final LogLineIndex lines = new LogLineIndex();
+    private LogConsoleTheme theme;
+    private LogFilter filter = LogFilter.NONE;
+    private long nextSequenceToIndex;
+
+    private LogStyleMatcher matcher;
+    private LineStyle[] lineStyles;
+    private int lineHeight = 1;
+    private int ascent;
+    private int charWidth = 1;
+
+    private int selectionAnchor = -1;
+    private int selectionLead = -1;
+
+    LogConsoleView(LogHistory history) {
+        this.history = history;
+        this.nextSequenceToIndex = history.getFirstSequence();
+        setOpaque(true);
+        setFocusable(true);
+        setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (!SwingUtilities.isLeftMouseButton(e) || lines.size() == 0) {
+                    return;
+                }
+                requestFocusInWindow();
+                int line = getLineAt(e.getY());
+                if (!e.isShiftDown() || selectionAnchor < 0) {
+                    selectionAnchor = line;
+                }
+                selectionLead = line;
+                repaint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (!SwingUtilities.isLeftMouseButton(e) || selectionAnchor < 0) {
+                    return;
+                }
+                selectionLead = getLineAt(e.getY());
+                scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                repaint();
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+
+        getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_C, InputEvent.CTRL_DOWN_MASK), "copy");
+        getInputMap(WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_A, InputEvent.CTRL_DOWN_MASK), "selectAll");
+        getActionMap().put("copy", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String text = getSelectedText();
+                if (!text.isEmpty()) {
+                    Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text), null);
+                }
+            }
+        });
+        getActionMap().put("selectAll", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                selectAll();
+            }
+        });
+    }
+
+    void setTheme(LogConsoleTheme theme) {
+        this.theme = theme;
+        styleChanged();
+    }
+
+    /**
+     * Must be invoked whenever the theme's styles change. Fonts and colours are rebuilt,
+     * and the view is repainted.
+     */
+    void styleChanged() {
+        updateStyles();
+        revalidate();
+        repaint();
+    }
+
+    LogFilter getFilter() {
+        return filter;
+    }
+
+    void setFilter(LogFilter filter) {
+        this.filter = filter == null ? LogFilter.NONE : filter;
+        reindex();
+    }
+
+    /**
+     * Returns the number of lines currently on display (after filtering).
+     */
+    int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * Brings the view up to date with the history: lines for evicted entries are dropped,
+     * and lines for new entries are added, if they pass the filter. If the view was
+     * scrolled to the end, it stays scrolled to the end.
+     */
+    void historyChanged() {
+        boolean wasAtEnd = isScrolledToEnd();
+        int lineCount = lines.size();
+        int removed = lines.removeEntriesBefore(history.getFirstSequence());
+        long sequence = Math.max(nextSequenceToIndex, history.getFirstSequence());
+        for (; sequence < history.getNextSequence(); sequence++) {
+            LogHistory.Entry entry = history.getBySequence(sequence);
+            if (filter.accepts(entry)) {
+                lines.addEntry(sequence, entry.message());
+            }
+        }
+        nextSequenceToIndex = sequence;
+
+        if (removed > 0 && selectionAnchor >= 0) {
+            selectionAnchor = Math.max(0, selectionAnchor - removed);
+            selectionLead = Math.max(0, selectionLead - removed);
+            if (lines.size() == 0) {
+                clearSelection();
+            }
+        }
+        if (removed > 0 || lines.size() != lineCount) {
+            revalidate();
+            if (wasAtEnd) {
+                scrollToEnd();
+            }
+            else if (removed > 0 && getParent() instanceof JViewport viewport) {
+                // Keep the same lines in view as the ones above them disappear:
+                Rectangle visible = getVisibleRect();
+                viewport.setViewPosition(new Point(visible.x, Math.max(0, visible.y - removed * lineHeight)));
+            }
+        }
+        repaint();
+    }
+
+    /**
+     * Forgets all lines and re-reads the whole history.
+     */
+    void reindex() {
+        lines.clear();
+        clearSelection();
+        nextSequenceToIndex = history.getFirstSequence();
+        historyChanged();
+        scrollToEnd();
+    }
+
+    /**
+     * Returns the text of every line on display.
+     */
+    String getText() {
+        return getText(0, lines.size() - 1);
+    }
+
+    /**
+     * Returns the text of the selected lines, or an empty string if nothing is selected.
+     */
+    String getSelectedText() {
+        if (selectionAnchor < 0) {
+            return "";
+        }
+        return getText(Math.min(selectionAnchor, selectionLead), Math.max(selectionAnchor, selectionLead));
+    }
+
+    void selectAll() {
+        if (lines.size() > 0) {
+            selectionAnchor = 0;
+            selectionLead = lines.size() - 1;
+            repaint();
+        }
+    }
+
+    void clearSelection() {
+        selectionAnchor = -1;
+        selectionLead = -1;
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        long height = (long)lines.size() * lineHeight + insets.top + insets.bottom;
+        return new Dimension(lines.getMaxLineLength() * charWidth + insets.left + insets.right,
+                             (int)Math.min(Integer.MAX_VALUE, height));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D)g.create();
+        try {
+            Map<?, ?> desktopHints = (Map<?, ?>)Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (desktopHints != null) {
+                g2.addRenderingHints(desktopHints);
+            }
+            else {
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            }
+
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            g2.setColor(getBackground());
+            g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+            if (lines.size() == 0 || theme == null) {
+                return;
+            }
+            if (theme.getMatcher() != matcher) {
+                // The theme was changed without telling us:
+                updateStyles();
+                revalidate();
+            }
+
+            Insets insets = getInsets();
+            int first = Math.max(0, (clip.y - insets.top) / lineHeight);
+            int last = Math.min(lines.size() - 1, (clip.y + clip.height - insets.top) / lineHeight);
+            int selectionStart = selectionAnchor < 0 ? -1 : Math.min(selectionAnchor, selectionLead);
+            int selectionEnd = selectionAnchor < 0 ? -1 : Math.max(selectionAnchor, selectionLead);
+            Color selectionBackground = UIManager.getColor("TextArea.selectionBackground");
+            Color selectionForeground = UIManager.getColor("TextArea.selectionForeground");
+
+            for (int line = first; line <= last; line++) {
+                long sequence = lines.getSequence(line);
+                if (sequence < history.getFirstSequence()) {
+                    continue; // evicted, and historyChanged() hasn't been invoked yet
+                }
+                LogHistory.Entry entry = history.getBySequence(sequence);
+                LineStyle style = lineStyles[matcher.match(entry.message(), entry.level())];
+                boolean selected = line >= selectionStart && line <= selectionEnd;
+                int y = insets.top + line * lineHeight;
+
+                Color background = selected && selectionBackground != null ? selectionBackground : style.background();
+                if (background != null) {
+                    g2.setColor(background);
+                    g2.fillRect(clip.x, y, clip.width, lineHeight);
+                }
+
+                String text = entry.message().substring(lines.getStart(line), lines.getEnd(line));
+                if (text.indexOf('\t') >= 0) {
+                    text = text.replace("\t", TAB_SPACES);
+                }
+                g2.setFont(style.font());
+                g2.setColor(selected && selectionForeground != null ? selectionForeground : style.foreground());
+                g2.drawString(text, insets.left, y + ascent);
+                if (style.underline()) {
+                    int width = g2.getFontMetrics().stringWidth(text);
+                    g2.drawLine(insets.left, y + ascent + 1, insets.left + width, y + ascent + 1);
+                }
+            }
+        }
+        finally {
+            g2.dispose();
+        }
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? lineHeight : charWidth;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport viewport && viewport.getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport viewport && viewport.getHeight() > getPreferredSize().height;
+    }
+
+    private String getText(int firstLine, int lastLine) {
+        StringBuilder sb = new StringBuilder();
+        for (int line = firstLine; line <= lastLine; line++) {
+            long sequence = lines.getSequence(line);
+            if (sequence >= history.getFirstSequence()) {
+                sb.append(history.getBySequence(sequence).message(), lines.getStart(line), lines.getEnd(line));
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private int getLineAt(int y) {
+        int line = (y - getInsets().top) / lineHeight;
+        return Math.max(0, Math.min(lines.size() - 1, line));
+    }
+
+    private boolean isScrolledToEnd() {
+        Rectangle visible = getVisibleRect();
+        return visible.height == 0 || visible.y + visible.height >= getHeight() - lineHeight;
+    }
+
+    private void scrollToEnd() {
+        // Lay out now, so that we know our new height before scrolling:
+        Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+        if (scrollPane != null) {
+            scrollPane.validate();
+        }
+        Rectangle visible = getVisibleRect();
+        scrollRectToVisible(new Rectangle(visible.x, Math.max(0, getHeight() - 1), 1, 1));
+    }
+
+    /**
+     * Builds the font and colours for each style in the theme, and works out the line height
+     * that fits the tallest of them. The theme throws its matcher away whenever it changes,
+     * so if the theme's matcher isn't the one we built our styles from, they're out of date.
+     */
+    private void updateStyles() {
+        if (theme == null) {
+            lineStyles = null;
+            return;
+        }
+        setBackground(theme.getDefaultBgColor());
+        matcher = theme.getMatcher();
+        lineStyles = new LineStyle[matcher.getStyleCount()];
+        lineHeight = 1;
+        ascent = 0;
+        charWidth = 1;
+        for (int i = 0; i < lineStyles.length; i++) {
+            LogConsoleStyle style = matcher.getStyle(i);
+            int fontStyle = (style.isBold() ? Font.BOLD : Font.PLAIN) | (style.isItalic() ? Font.ITALIC : Font.PLAIN);
+            Font font = new Font(style.getFontFamilyName(), fontStyle, style.getFontPointSize());
+            lineStyles[i] = new LineStyle(font, style.getFontColor(), style.getFontBgColor(), style.isUnderline());
+
+            FontMetrics metrics = getFontMetrics(font);
+            lineHeight = Math.max(lineHeight, metrics.getHeight());
+            ascent = Math.max(ascent, metrics.getAscent());
+            charWidth = Math.max(charWidth, metrics.charWidth('W'));
+        }
+    }
+}
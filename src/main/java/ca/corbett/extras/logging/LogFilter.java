@@ -0,0 +1,56 @@
+package ca.corbett.extras.logging;
+
+import java.util.logging.Level;
+
+/**
+ * Decides which log messages a LogConsoleView shows: those at or above a minimum level,
+ * and containing some text (ignoring case). Either condition can be left off.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class LogFilter {
+
+    static final LogFilter NONE = new LogFilter(null, null);
+
+    private final Level minimumLevel;
+    private final String text;
+
+    /**
+     * @param minimumLevel The lowest level to show, or null to show all levels.
+     * @param text         Text that messages must contain, ignoring case, or null or blank to show all messages.
+     */
+    LogFilter(Level minimumLevel, String text) {
+        this.minimumLevel = minimumLevel == Level.ALL ? null : minimumLevel;
+        this.text = text == null || text.isBlank() ? "" : text;
+    }
+
+    Level getMinimumLevel() {
+        return minimumLevel;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    boolean isEmpty() {
+        return minimumLevel == null && text.isEmpty();
+    }
+
+    boolean accepts(LogHistory.Entry entry) {
+        if (minimumLevel != null && (entry.level() == null || entry.level().intValue() < minimumLevel.intValue())) {
+            return false;
+        }
+        return text.isEmpty() || containsIgnoreCase(entry.message(), text);
+    }
+
+    private static boolean containsIgnoreCase(String message, String text) {
+        int last = message.length() - text.length();
+        for (int i = 0; i <= last; i++) {
+            if (message.regionMatches(true, i, text, 0, text.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
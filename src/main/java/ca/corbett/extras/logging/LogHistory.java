@@ -0,0 +1,139 @@
+package ca.corbett.extras.logging;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+
+/**
+ * A fixed-capacity ring buffer of log messages, used by LogConsole to remember what it has
+ * been sent. Adding a message is O(1), and once the buffer is full, each new message evicts
+ * the oldest one, also in O(1). Memory use is fixed by the capacity, no matter how long the
+ * application runs.
+ * <p>
+ * Entries are indexed from 0 (the oldest) to size() - 1 (the newest). Each entry is also
+ * given a sequence number when it's added, which never changes and is never reused, so that
+ * an entry can still be found after older entries have been evicted. This class is not
+ * thread safe; LogConsole only uses it on the EDT.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class LogHistory {
+
+    /**
+     * One log message, along with its level and the time it was appended, in epoch millis.
+     */
+    record Entry(String message, Level level, long timestamp) {
+    }
+
+    private Entry[] entries;
+    private int head; // index of the oldest entry
+    private int size;
+    private long firstSequence; // sequence number of the oldest entry
+
+    LogHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        entries = new Entry[capacity];
+    }
+
+    int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Changes the capacity. If the new capacity is smaller than the current size,
+     * the oldest entries are discarded.
+     */
+    void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        if (capacity == entries.length) {
+            return;
+        }
+        int newSize = Math.min(size, capacity);
+        Entry[] newEntries = new Entry[capacity];
+        for (int i = 0; i < newSize; i++) {
+            newEntries[i] = get(size - newSize + i);
+        }
+        entries = newEntries;
+        head = 0;
+        firstSequence += size - newSize;
+        size = newSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds the given entry as the newest one.
+     *
+     * @return The oldest entry, if it had to be evicted to make room, otherwise null.
+     */
+    Entry add(Entry entry) {
+        if (size < entries.length) {
+            entries[(head + size) % entries.length] = entry;
+            size++;
+            return null;
+        }
+        Entry evicted = entries[head];
+        entries[head] = entry;
+        head = (head + 1) % entries.length;
+        firstSequence++;
+        return evicted;
+    }
+
+    /**
+     * Returns the entry at the given index, where 0 is the oldest entry.
+     */
+    Entry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return entries[(head + index) % entries.length];
+    }
+
+    /**
+     * Returns the sequence number of the oldest entry. If the history is empty, this is
+     * the sequence number the next entry will get.
+     */
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Returns the sequence number the next entry will get.
+     */
+    long getNextSequence() {
+        return firstSequence + size;
+    }
+
+    /**
+     * Returns the entry with the given sequence number.
+     *
+     * @throws IndexOutOfBoundsException If that entry has been evicted, or doesn't exist yet.
+     */
+    Entry getBySequence(long sequence) {
+        if (sequence < firstSequence || sequence >= firstSequence + size) {
+            throw new IndexOutOfBoundsException("No entry with sequence " + sequence);
+        }
+        return get((int)(sequence - firstSequence));
+    }
+
+    /**
+     * Removes all entries. Sequence numbers carry on from where they were.
+     */
+    void clear() {
+        Arrays.fill(entries, null);
+        head = 0;
+        firstSequence += size;
+        size = 0;
+    }
+}
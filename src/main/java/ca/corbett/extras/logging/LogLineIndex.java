@@ -0,0 +1,128 @@
+package ca.corbett.extras.logging;
+
+/**
+ * The lines on display in a LogConsoleView, in order. Each line is recorded as the sequence
+ * number of the LogHistory entry it belongs to, plus the start and end of the line within
+ * that entry's message, so that no text is copied. A message that spans several lines
+ * contributes one line per line break.
+ * <p>
+ * Lines are stored in growable ring buffers of primitives: appending lines to the end and
+ * dropping them from the start (as their entries are evicted from the history) are both
+ * O(1) per line, and nothing is allocated per line. Not thread safe; used only on the EDT.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class LogLineIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] sequences = new long[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private int maxLineLength;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the length of the longest line ever added, since the last clear().
+     */
+    int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    long getSequence(int line) {
+        return sequences[slot(line)];
+    }
+
+    int getStart(int line) {
+        return starts[slot(line)];
+    }
+
+    int getEnd(int line) {
+        return ends[slot(line)];
+    }
+
+    /**
+     * Adds the lines of the given message. A trailing line break doesn't start another
+     * line, and a trailing carriage return is left off the end of each line.
+     */
+    void addEntry(long sequence, String message) {
+        int start = 0;
+        int newline;
+        while ((newline = message.indexOf('\n', start)) >= 0) {
+            addLine(sequence, message, start, newline);
+            start = newline + 1;
+        }
+        if (start < message.length() || start == 0) {
+            addLine(sequence, message, start, message.length());
+        }
+    }
+
+    /**
+     * Drops lines from the start, for as long as they belong to an entry older than the
+     * given sequence number.
+     *
+     * @return The number of lines dropped.
+     */
+    int removeEntriesBefore(long sequence) {
+        int removed = 0;
+        while (size > 0 && sequences[head] < sequence) {
+            head = (head + 1) % sequences.length;
+            size--;
+            removed++;
+        }
+        return removed;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+        maxLineLength = 0;
+    }
+
+    private void addLine(long sequence, String message, int start, int end) {
+        // Leave any carriage return from a \r\n line break off the end of the line:
+        if (end > start && message.charAt(end - 1) == '\r') {
+            end--;
+        }
+        if (size == sequences.length) {
+            grow();
+        }
+        int slot = (head + size) % sequences.length;
+        sequences[slot] = sequence;
+        starts[slot] = start;
+        ends[slot] = end;
+        size++;
+        maxLineLength = Math.max(maxLineLength, end - start);
+    }
+
+    private void grow() {
+        int capacity = sequences.length * 2;
+        long[] newSequences = new long[capacity];
+        int[] newStarts = new int[capacity];
+        int[] newEnds = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            newSequences[i] = sequences[slot];
+            newStarts[i] = starts[slot];
+            newEnds[i] = ends[slot];
+        }
+        sequences = newSequences;
+        starts = newStarts;
+        ends = newEnds;
+        head = 0;
+    }
+
+    private int slot(int line) {
+        if (line < 0 || line >= size) {
+            throw new IndexOutOfBoundsException("Line " + line + " out of bounds for size " + size);
+        }
+        return (head + line) % sequences.length;
+    }
+}
@@ -0,0 +1,265 @@
+package ca.corbett.extras.logging;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+/**
+ * An immutable snapshot of the styles in a LogConsoleTheme, compiled so that the matching
+ * style for a log message can be found in a single pass over the message, no matter how
+ * many styles the theme has. LogConsoleTheme builds one of these on demand, and throws it
+ * away whenever the theme changes.
+ * <p>
+ * The log tokens of all styles are compiled into an Aho-Corasick automaton (two, actually:
+ * one for case-sensitive tokens and one for case-insensitive tokens, which are folded to
+ * lower case up front). Both automatons are fed each character of the message in turn,
+ * so every token in every style is checked in one pass. Log levels are looked up in a
+ * sorted table. The rules are the same as described in LogConsoleTheme: the first style
+ * (in style name order) whose log token appears in the message wins; failing that, the
+ * first style whose log level matches the message wins; failing that, the default style.
+ * </p>
+ * <p>
+ * Instances are immutable, and so are safe to use from any thread.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class LogStyleMatcher {
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final String[] names;
+    private final LogConsoleStyle[] styles;
+    private final Automaton caseSensitiveTokens;
+    private final Automaton caseInsensitiveTokens;
+    private final int firstTokenStyle;
+    private final int[] levelValues;
+    private final int[] levelStyles;
+
+    /**
+     * Compiles the given styles. Order matters: the first matching style wins, and
+     * the first style is returned if nothing matches.
+     *
+     * @param names  The style names, with the default style first, and the rest sorted by name.
+     * @param styles The styles, in the same order as the names.
+     */
+    LogStyleMatcher(List<String> names, List<LogConsoleStyle> styles) {
+        if (names.isEmpty() || names.size() != styles.size()) {
+            throw new IllegalArgumentException("There must be one name for each style, and at least one style.");
+        }
+        this.names = names.toArray(new String[0]);
+        this.styles = styles.toArray(new LogConsoleStyle[0]);
+
+        Automaton.Builder caseSensitive = new Automaton.Builder();
+        Automaton.Builder caseInsensitive = new Automaton.Builder();
+        Map<Integer, Integer> levels = new TreeMap<>();
+        int firstToken = NO_MATCH;
+        for (int i = 0; i < this.styles.length; i++) {
+            LogConsoleStyle style = this.styles[i];
+            String token = style.getLogToken() == null ? "" : style.getLogToken();
+            if (!token.isEmpty()) {
+                if (style.isLogTokenCaseSensitive()) {
+                    caseSensitive.add(token, i);
+                }
+                else {
+                    caseInsensitive.add(fold(token), i);
+                }
+                firstToken = Math.min(firstToken, i);
+            }
+            if (style.getLogLevel() != null) {
+                levels.putIfAbsent(style.getLogLevel().intValue(), i);
+            }
+        }
+        caseSensitiveTokens = caseSensitive.isEmpty() ? null : caseSensitive.build();
+        caseInsensitiveTokens = caseInsensitive.isEmpty() ? null : caseInsensitive.build();
+        firstTokenStyle = firstToken;
+
+        levelValues = new int[levels.size()];
+        levelStyles = new int[levels.size()];
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : levels.entrySet()) {
+            levelValues[index] = entry.getKey();
+            levelStyles[index] = entry.getValue();
+            index++;
+        }
+    }
+
+    int getStyleCount() {
+        return styles.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    LogConsoleStyle getStyle(int index) {
+        return styles[index];
+    }
+
+    /**
+     * Returns the index of the given style, or -1 if it's not one of ours.
+     */
+    int indexOf(LogConsoleStyle style) {
+        for (int i = 0; i < styles.length; i++) {
+            if (styles[i] == style) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the style that best matches the given message and level,
+     * which is 0 (the default style) if nothing matches.
+     */
+    int match(String message, Level level) {
+        int best = NO_MATCH;
+        if (message != null && firstTokenStyle != NO_MATCH) {
+            int sensitiveState = 0;
+            int insensitiveState = 0;
+            // No point carrying on once the first style with a token has matched:
+            for (int i = 0; i < message.length() && best > firstTokenStyle; i++) {
+                char c = message.charAt(i);
+                if (caseSensitiveTokens != null) {
+                    sensitiveState = caseSensitiveTokens.next(sensitiveState, c);
+                    best = Math.min(best, caseSensitiveTokens.output[sensitiveState]);
+                }
+                if (caseInsensitiveTokens != null) {
+                    insensitiveState = caseInsensitiveTokens.next(insensitiveState, fold(c));
+                    best = Math.min(best, caseInsensitiveTokens.output[insensitiveState]);
+                }
+            }
+        }
+        if (best != NO_MATCH) {
+            return best;
+        }
+
+        if (level != null) {
+            int index = Arrays.binarySearch(levelValues, level.intValue());
+            if (index >= 0) {
+                return levelStyles[index];
+            }
+        }
+        return 0;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static String fold(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * An Aho-Corasick automaton over a set of tokens. Each state's transitions are held
+     * in a sorted array and searched with a binary search; a missing transition falls
+     * back along the failure links. Each state records the lowest style index of any
+     * token that ends there, including tokens that are suffixes of it.
+     */
+    private static final class Automaton {
+        private final char[][] edgeChars;
+        private final int[][] edgeTargets;
+        private final int[] failure;
+        private final int[] output;
+
+        private Automaton(char[][] edgeChars, int[][] edgeTargets, int[] failure, int[] output) {
+            this.edgeChars = edgeChars;
+            this.edgeTargets = edgeTargets;
+            this.failure = failure;
+            this.output = output;
+        }
+
+        int next(int state, char c) {
+            while (true) {
+                int index = Arrays.binarySearch(edgeChars[state], c);
+                if (index >= 0) {
+                    return edgeTargets[state][index];
+                }
+                if (state == 0) {
+                    return 0;
+                }
+                state = failure[state];
+            }
+        }
+
+        private static final class Builder {
+            private final List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+            private final List<Integer> outputs = new ArrayList<>();
+
+            Builder() {
+                newState();
+            }
+
+            boolean isEmpty() {
+                return edges.size() == 1;
+            }
+
+            void add(String token, int styleIndex) {
+                int state = 0;
+                for (int i = 0; i < token.length(); i++) {
+                    Integer target = edges.get(state).get(token.charAt(i));
+                    if (target == null) {
+                        target = newState();
+                        edges.get(state).put(token.charAt(i), target);
+                    }
+                    state = target;
+                }
+                outputs.set(state, Math.min(outputs.get(state), styleIndex));
+            }
+
+            Automaton build() {
+                int count = edges.size();
+                char[][] edgeChars = new char[count][];
+                int[][] edgeTargets = new int[count][];
+                int[] failure = new int[count];
+                int[] output = new int[count];
+                for (int state = 0; state < count; state++) {
+                    TreeMap<Character, Integer> stateEdges = edges.get(state);
+                    edgeChars[state] = new char[stateEdges.size()];
+                    edgeTargets[state] = new int[stateEdges.size()];
+                    int index = 0;
+                    for (Map.Entry<Character, Integer> edge : stateEdges.entrySet()) {
+                        edgeChars[state][index] = edge.getKey();
+                        edgeTargets[state][index] = edge.getValue();
+                        index++;
+                    }
+                    output[state] = outputs.get(state);
+                }
+
+                // Breadth-first, so that every state's failure target is finished before the state itself:
+                Automaton automaton = new Automaton(edgeChars, edgeTargets, failure, output);
+                Deque<Integer> queue = new ArrayDeque<>();
+                for (int target : edgeTargets[0]) {
+                    queue.add(target);
+                }
+                while (!queue.isEmpty()) {
+                    int state = queue.poll();
+                    for (int i = 0; i < edgeChars[state].length; i++) {
+                        int target = edgeTargets[state][i];
+                        failure[target] = automaton.next(failure[state], edgeChars[state][i]);
+                        output[target] = Math.min(output[target], output[failure[target]]);
+                        queue.add(target);
+                    }
+                }
+                return automaton;
+            }
+
+            private int newState() {
+                edges.add(new TreeMap<>());
+                outputs.add(NO_MATCH);
+                return edges.size() - 1;
+            }
+        }
+    }
+}
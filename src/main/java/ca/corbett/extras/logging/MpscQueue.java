@@ -0,0 +1,91 @@
+package ca.corbett.extras.logging;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded, lock-free queue for many producer threads and a single consumer thread.
+ * Producers never block and never contend on a lock: adding an element is one atomic swap.
+ * LogConsole uses this to accept log messages from any thread, while draining them only
+ * on the EDT.
+ * <p>
+ * offer() may be invoked from any thread. Every other method must only be invoked from
+ * the one consumer thread. An element whose offer() is still in progress may not be visible
+ * to the consumer yet, in which case it will be seen on the next drain.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class MpscQueue<E> {
+
+    private static final class Node<E> {
+        E value;
+        volatile Node<E> next;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The most recently added node. Producers swap themselves in here.
+     */
+    private final AtomicReference<Node<E>> head;
+
+    /**
+     * The node before the oldest element. Only the consumer touches this.
+     */
+    private Node<E> tail;
+
+    MpscQueue() {
+        Node<E> stub = new Node<>(null);
+        head = new AtomicReference<>(stub);
+        tail = stub;
+    }
+
+    /**
+     * Adds the given element to the queue. Safe to invoke from any thread.
+     */
+    void offer(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element cannot be null.");
+        }
+        Node<E> node = new Node<>(element);
+        Node<E> previous = head.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Removes and returns the oldest element, or null if there isn't one.
+     */
+    E poll() {
+        Node<E> next = tail.next;
+        if (next == null) {
+            return null;
+        }
+        E value = next.value;
+        next.value = null;
+        tail = next;
+        return value;
+    }
+
+    /**
+     * Moves up to maxElements elements, oldest first, into the given collection.
+     *
+     * @return The number of elements moved.
+     */
+    int drainTo(Collection<? super E> target, int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return tail.next == null;
+    }
+}
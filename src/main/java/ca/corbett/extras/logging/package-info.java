@@ -33,5 +33,9 @@
  * is the same method that the logging facilities would use to add a new log message.
  * This allows you to use LogConsole even if you have no logging setup at all. In this case,
  * you don't even need to set up the LogConsoleHandler as it will not be needed.
+ * <h2>Writing a log file</h2>
+ * AsyncFileHandler can be listed in "handlers" alongside LogConsoleHandler to also write
+ * log messages to a file. It writes on a background thread, so logging never waits for
+ * the disk, and it can rotate the file by size or age and gzip the old files.
  */
 package ca.corbett.extras.logging;
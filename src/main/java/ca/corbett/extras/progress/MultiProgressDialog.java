@@ -14,6 +14,7 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.BevelBorder;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
@@ -27,8 +28,8 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Replacement for Java's ProgressMonitor class, which is a bit limiting.
@@ -51,6 +52,11 @@ import java.util.TimerTask;
  * these termination events will result in the progress dialog remaining open indefinitely.
  * </p>
  * <p>
+ * If your major steps are independent of each other, extend ParallelProgressWorker instead.
+ * It runs the major steps at the same time and fires the progress events for you, showing
+ * their combined progress, throughput, and time remaining.
+ * </p>
+ * <p>
  * When you have your worker class ready, create an instance of MultiProgressDialog,
  * and invoke its runWorker() method, passing in an instance of your worker class.
  * If you wish to set other options (documented below), do so before invoking runWorker().
@@ -59,6 +65,12 @@ import java.util.TimerTask;
  * MultiProgressDialog instances can be re-used, but be sure to invoke resetProgress()
  * in between each usage to reset the progress bars.
  * </p>
+ * <p>
+ * Your worker can fire progress events as often as it likes - once per file over a million
+ * files is fine. The dialog only remembers the latest progress, and refreshes itself from
+ * that about 30 times per second, so frequent updates won't flood the Swing event queue.
+ * Each update still returns right away with whether the user has canceled.
+ * </p>
  * <h2>Other options</h2>
  * <ul>
  *     <li>You can set an initial show delay on the dialog, so that it will only appear
@@ -128,12 +140,23 @@ public final class MultiProgressDialog extends JDialog {
     }
 
     static final int LABEL_LENGTH_CUTOFF = 50;
+
+    /**
+     * How often, in milliseconds, the latest progress from the worker is copied to the dialog.
+     */
+    static final int SAMPLE_INTERVAL_MS = 33;
+
+    /**
+     * Numbers the threads started by runWorker(), so that they can be told apart in a thread dump.
+     */
+    private static final AtomicInteger workerThreadCount = new AtomicInteger();
+
     private LabelField majorProgressLabel;
     private LabelField minorProgressLabel;
     private JProgressBar majorProgressBar;
     private JProgressBar minorProgressBar;
     private long initialShowDelayMS;
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     private TruncationMode truncationMode;
     private volatile String formatString = DEFAULT_PROGRESS_FORMAT;
 
@@ -215,7 +238,7 @@ public final class MultiProgressDialog extends JDialog {
         // other listener is trying showing a popup (for example, to report on the results of the operation).
         // Our priority listener will kill the timer, which avoids that problem.
         worker.addPriorityProgressListener(new MultiProgressHandler(this, initialShowDelayMS, disposeWhenComplete));
-        new Thread(worker).start();
+        startWorkerThread(worker);
     }
 
     /**
@@ -240,7 +263,7 @@ public final class MultiProgressDialog extends JDialog {
         // otherwise, the timer on the dialog may force it visible even if some other handler is showing a popup
         // Our listener will kill the timer, which avoids that problem as long as our listener is invoked first.
         worker.addPriorityProgressListener(new SimpleProgressHandler(this, initialShowDelayMS, disposeWhenComplete));
-        new Thread(worker).start();
+        startWorkerThread(worker);
     }
 
     /**
@@ -465,6 +488,15 @@ public final class MultiProgressDialog extends JDialog {
         this.truncationMode = (truncationMode != null) ? truncationMode : TruncationMode.END;
     }
 
+    /**
+     * Runs the given worker on a new thread of its own. It isn't a daemon thread, so that an
+     * application won't exit partway through a worker's task, and it isn't pooled, so that
+     * nothing is left holding the JVM open once the task is done.
+     */
+    private static void startWorkerThread(Runnable worker) {
+        new Thread(worker, "MultiProgressDialog-worker-" + workerThreadCount.incrementAndGet()).start();
+    }
+
     /**
      * Invoked internally to lay out the form.
      */
@@ -543,23 +575,73 @@ public final class MultiProgressDialog extends JDialog {
     }
 
     /**
-     * Used internally to wire up a MultiProgressWorker to the UI elements in this progress
-     * dialog, so that we can show current progress.
+     * Used internally to show the progress reported by a worker. The worker's progress events
+     * are written into a ProgressState as they happen, and a Swing timer copies the latest
+     * state to the dialog once per frame, so there's only ever one pending update for the EDT
+     * to deal with, no matter how quickly the worker reports progress. The same timer shows
+     * the dialog once the initial show delay has passed.
      */
-    private static class MultiProgressHandler extends MultiProgressAdapter {
+    private static class ProgressSampler {
 
         private final MultiProgressDialog progressDialog;
         private final long initialShowDelayMS;
         private final boolean disposeWhenComplete;
-        private long startTimeMS;
-        private int totalMajorSteps;
-        private int totalMinorSteps;
-        private boolean isFinished;
-
-        public MultiProgressHandler(MultiProgressDialog ownerDialog, long initialShowDelay, boolean disposeWhenComplete) {
+        private final ProgressState state = new ProgressState();
+        private final AtomicBoolean isStarted = new AtomicBoolean();
+        private final Timer timer;
+        private volatile long startTimeMS;
+        private volatile boolean isFinished;
+
+        // Only touched on the EDT:
+        private long shownVersion = -1;
+        private int shownTotalMajorSteps = -1;
+        private int shownTotalMinorSteps = -1;
+
+        ProgressSampler(MultiProgressDialog ownerDialog, long initialShowDelay, boolean disposeWhenComplete) {
             this.progressDialog = ownerDialog;
             this.initialShowDelayMS = initialShowDelay;
             this.disposeWhenComplete = disposeWhenComplete;
+            this.timer = new Timer(SAMPLE_INTERVAL_MS, e -> sample());
+        }
+
+        ProgressState getState() {
+            return state;
+        }
+
+        boolean shouldContinue() {
+            return !progressDialog.isCanceled();
+        }
+
+        /**
+         * Invoked from the worker thread when progress begins (or, if the worker never fires
+         * progressBegins, on its first update) to start sampling.
+         */
+        void start() {
+            if (isStarted.compareAndSet(false, true)) {
+                startTimeMS = System.currentTimeMillis();
+                SwingUtilities.invokeLater(() -> {
+                    if (!isFinished) {
+                        sample();
+                        timer.start();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Invoked from the worker thread when progress is complete or canceled.
+         */
+        void finish() {
+            isFinished = true;
+            SwingUtilities.invokeLater(() -> {
+                timer.stop();
+                if (disposeWhenComplete) {
+                    progressDialog.dispose();
+                }
+                else {
+                    progressDialog.setVisible(false);
+                }
+            });
         }
 
         private long getElapsedTime() {
@@ -575,73 +657,89 @@ public final class MultiProgressDialog extends JDialog {
             }
         }
 
-        @Override
-        public void progressBegins(int totalMajorSteps) {
-            this.startTimeMS = System.currentTimeMillis();
-            this.totalMajorSteps = totalMajorSteps;
-            SwingUtilities.invokeLater(() -> {
+        /**
+         * Invoked on the EDT by our timer to copy the latest progress to the dialog.
+         */
+        private void sample() {
+            if (isFinished) {
+                return;
+            }
+            showDialogIfNeeded();
+            long version = state.getVersion();
+            if (version == shownVersion) {
+                return;
+            }
+            shownVersion = version;
+
+            int totalMajorSteps = state.getTotalMajorSteps();
+            if (totalMajorSteps != shownTotalMajorSteps) {
                 progressDialog.setMajorProgressBounds(0, totalMajorSteps);
-                showDialogIfNeeded();
-            });
-            if (initialShowDelayMS > 0) {
-                // We'll check this on each progress update, but if there's a very
-                // long-running step, we still want to show the progress dialog after our configured delay:
-                new Timer().schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        SwingUtilities.invokeLater(() -> showDialogIfNeeded());
-                    }
-                }, initialShowDelayMS);
+                shownTotalMajorSteps = totalMajorSteps;
+            }
+            int majorStep = state.getMajorStep();
+            if (majorStep >= 0) {
+                progressDialog.setMajorProgress(majorStep + 1, progressDialog.formatMessage(state.getMajorMessage(),
+                                                                                            majorStep + 1,
+                                                                                            totalMajorSteps));
+            }
+
+            int totalMinorSteps = state.getTotalMinorSteps();
+            if (totalMinorSteps != shownTotalMinorSteps) {
+                progressDialog.setMinorProgressBounds(0, totalMinorSteps);
+                shownTotalMinorSteps = totalMinorSteps;
             }
+            int minorStep = state.getMinorStep();
+            if (minorStep >= 0) {
+                progressDialog.setMinorProgress(minorStep + 1, progressDialog.formatMessage(state.getMinorMessage(),
+                                                                                            minorStep + 1,
+                                                                                            totalMinorSteps));
+            }
+            else {
+                progressDialog.setMinorProgress(0, "");
+            }
+        }
+    }
+
+    /**
+     * Used internally to wire up a MultiProgressWorker to the UI elements in this progress
+     * dialog, so that we can show current progress.
+     */
+    private static class MultiProgressHandler extends MultiProgressAdapter {
+
+        private final ProgressSampler sampler;
+
+        public MultiProgressHandler(MultiProgressDialog ownerDialog, long initialShowDelay, boolean disposeWhenComplete) {
+            this.sampler = new ProgressSampler(ownerDialog, initialShowDelay, disposeWhenComplete);
+        }
+
+        @Override
+        public void progressBegins(int totalMajorSteps) {
+            sampler.getState().begin(totalMajorSteps);
+            sampler.start();
         }
 
         @Override
         public boolean majorProgressUpdate(int majorStep, int totalMinorSteps, String message) {
-            this.totalMinorSteps = totalMinorSteps;
-            String formatted = progressDialog.formatMessage(message, majorStep + 1, totalMajorSteps);
-            SwingUtilities.invokeLater(() -> {
-                showDialogIfNeeded();
-                progressDialog.setMinorProgressBounds(0, totalMinorSteps);
-                progressDialog.setMajorProgress(majorStep + 1, formatted);
-                progressDialog.setMinorProgress(0, "");
-            });
-            return !progressDialog.isCanceled();
+            sampler.getState().majorUpdate(majorStep, totalMinorSteps, message);
+            sampler.start();
+            return sampler.shouldContinue();
         }
 
         @Override
         public boolean minorProgressUpdate(int majorStep, int minorStep, String message) {
-            String formatted = progressDialog.formatMessage(message, minorStep + 1, totalMinorSteps);
-            SwingUtilities.invokeLater(() -> {
-                showDialogIfNeeded();
-                progressDialog.setMinorProgress(minorStep + 1, formatted);
-            });
-            return !progressDialog.isCanceled();
+            sampler.getState().minorUpdate(minorStep, message);
+            sampler.start();
+            return sampler.shouldContinue();
         }
 
         @Override
         public void progressComplete() {
-            isFinished = true;
-            SwingUtilities.invokeLater(() -> {
-                if (disposeWhenComplete) {
-                    progressDialog.dispose();
-                }
-                else {
-                    progressDialog.setVisible(false);
-                }
-            });
+            sampler.finish();
         }
 
         @Override
         public void progressCanceled() {
-            isFinished = true;
-            SwingUtilities.invokeLater(() -> {
-                if (disposeWhenComplete) {
-                    progressDialog.dispose();
-                }
-                else {
-                    progressDialog.setVisible(false);
-                }
-            });
+            sampler.finish();
         }
     }
 
@@ -650,87 +748,34 @@ public final class MultiProgressDialog extends JDialog {
      * dialog, so we can show current progress.
      */
     private static class SimpleProgressHandler extends SimpleProgressAdapter {
-        private final MultiProgressDialog progressDialog;
-        private final long initialShowDelayMS;
-        private final boolean disposeWhenComplete;
-        private long startTimeMS;
-        private int totalSteps;
-        private boolean isFinished;
 
-        public SimpleProgressHandler(MultiProgressDialog ownerDialog, long initialShowDelay, boolean disposeWhenComplete) {
-            this.progressDialog = ownerDialog;
-            this.initialShowDelayMS = initialShowDelay;
-            this.disposeWhenComplete = disposeWhenComplete;
-        }
-
-        private long getElapsedTime() {
-            return System.currentTimeMillis() - startTimeMS;
-        }
+        private final ProgressSampler sampler;
 
-        private void showDialogIfNeeded() {
-            if (progressDialog.isVisible() || isFinished) {
-                return;
-            }
-            if (initialShowDelayMS <= 0 || getElapsedTime() > initialShowDelayMS) {
-                progressDialog.setVisible(true);
-            }
+        public SimpleProgressHandler(MultiProgressDialog ownerDialog, long initialShowDelay, boolean disposeWhenComplete) {
+            this.sampler = new ProgressSampler(ownerDialog, initialShowDelay, disposeWhenComplete);
         }
 
         @Override
         public void progressBegins(int totalSteps) {
-            this.totalSteps = totalSteps;
-            this.startTimeMS = System.currentTimeMillis();
-            SwingUtilities.invokeLater(() -> {
-                progressDialog.setMajorProgressBounds(0, totalSteps);
-                showDialogIfNeeded();
-            });
-            if (initialShowDelayMS > 0) {
-                // We'll check this on each progress update, but if there's a very
-                // long-running step, we still want to show the progress dialog after our configured delay:
-                new Timer().schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        SwingUtilities.invokeLater(() -> showDialogIfNeeded());
-                    }
-                }, initialShowDelayMS);
-            }
+            sampler.getState().begin(totalSteps);
+            sampler.start();
         }
 
         @Override
         public boolean progressUpdate(int currentStep, String message) {
-            String formatted = progressDialog.formatMessage(message, currentStep + 1, totalSteps);
-            SwingUtilities.invokeLater(() -> {
-                showDialogIfNeeded();
-                progressDialog.setMajorProgress(currentStep + 1, formatted);
-                progressDialog.setMinorProgress(0, "");
-            });
-            return !progressDialog.isCanceled();
+            sampler.getState().majorUpdate(currentStep, 0, message);
+            sampler.start();
+            return sampler.shouldContinue();
         }
 
         @Override
         public void progressComplete() {
-            isFinished = true;
-            SwingUtilities.invokeLater(() -> {
-                if (disposeWhenComplete) {
-                    progressDialog.dispose();
-                }
-                else {
-                    progressDialog.setVisible(false);
-                }
-            });
+            sampler.finish();
         }
 
         @Override
         public void progressCanceled() {
-            isFinished = true;
-            SwingUtilities.invokeLater(() -> {
-                if (disposeWhenComplete) {
-                    progressDialog.dispose();
-                }
-                else {
-                    progressDialog.setVisible(false);
-                }
-            });
+            sampler.finish();
         }
     }
 }
@@ -1,7 +1,6 @@
 package ca.corbett.extras.progress;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Represents some generic worker thread that performs a complex task (major steps and minor steps),
@@ -32,41 +31,56 @@ import java.util.List;
  */
 public abstract class MultiProgressWorker implements Runnable {
 
-    private final List<MultiProgressListener> listeners = new ArrayList<>();
+    private static final MultiProgressListener[] NO_LISTENERS = new MultiProgressListener[0];
+
+    /**
+     * Copied on write, so that firing an event (which may happen millions of times per
+     * operation) is just a loop over whatever array is current, with no locking or copying.
+     */
+    private volatile MultiProgressListener[] listeners = NO_LISTENERS;
 
     /**
      * This is invoked internally by MultiProgressDialog to ensure that its listener fires
      * before any other. This is necessary to avoid problems with initialShowDelay on the dialog.
      */
-    void addPriorityProgressListener(MultiProgressListener listener) {
-        if (listeners.isEmpty()) {
-            addProgressListener(listener);
-            return;
-        }
-        listeners.add(0, listener);
+    synchronized void addPriorityProgressListener(MultiProgressListener listener) {
+        MultiProgressListener[] newListeners = new MultiProgressListener[listeners.length + 1];
+        newListeners[0] = listener;
+        System.arraycopy(listeners, 0, newListeners, 1, listeners.length);
+        listeners = newListeners;
     }
 
-    public void addProgressListener(MultiProgressListener listener) {
-        listeners.add(listener);
+    public synchronized void addProgressListener(MultiProgressListener listener) {
+        MultiProgressListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        listeners = newListeners;
     }
 
-    public void removeProgressListener(MultiProgressListener listener) {
-        listeners.remove(listener);
+    public synchronized void removeProgressListener(MultiProgressListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                MultiProgressListener[] newListeners = new MultiProgressListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, newListeners, 0, i);
+                System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                listeners = newListeners;
+                return;
+            }
+        }
     }
 
-    public void clearProgressListeners() {
-        listeners.clear();
+    public synchronized void clearProgressListeners() {
+        listeners = NO_LISTENERS;
     }
 
     protected void fireProgressBegins(int totalMajorSteps) {
-        for (MultiProgressListener listener : new ArrayList<>(listeners)) {
+        for (MultiProgressListener listener : listeners) {
             listener.progressBegins(totalMajorSteps);
         }
     }
 
     protected boolean fireMajorProgressUpdate(int majorStep, int totalMinorSteps, String message) {
         boolean shouldContinue = true;
-        for (MultiProgressListener listener : new ArrayList<>(listeners)) {
+        for (MultiProgressListener listener : listeners) {
             shouldContinue = shouldContinue && listener.majorProgressUpdate(majorStep, totalMinorSteps, message);
         }
         return shouldContinue;
@@ -74,7 +88,7 @@ public abstract class MultiProgressWorker implements Runnable {
 
     public boolean fireMinorProgressUpdate(int majorStep, int minorStep, String message) {
         boolean shouldContinue = true;
-        for (MultiProgressListener listener : new ArrayList<>(listeners)) {
+        for (MultiProgressListener listener : listeners) {
             shouldContinue = shouldContinue && listener.minorProgressUpdate(majorStep, minorStep, message);
         }
         return shouldContinue;
@@ -82,7 +96,7 @@ public abstract class MultiProgressWorker implements Runnable {
 
     public boolean fireProgressError(String errorSource, String errorDetails) {
         boolean shouldContinue = true;
-        for (MultiProgressListener listener : new ArrayList<>(listeners)) {
+        for (MultiProgressListener listener : listeners) {
             shouldContinue = shouldContinue && listener.progressError(errorSource, errorDetails);
         }
         return shouldContinue;
@@ -90,13 +104,13 @@ public abstract class MultiProgressWorker implements Runnable {
     }
 
     public void fireProgressComplete() {
-        for (MultiProgressListener listener : new ArrayList<>(listeners)) {
+        for (MultiProgressListener listener : listeners) {
             listener.progressComplete();
         }
     }
 
     public void fireProgressCanceled() {
-        for (MultiProgressListener listener : new ArrayList<>(listeners)) {
+        for (MultiProgressListener listener : listeners) {
             listener.progressCanceled();
         }
     }
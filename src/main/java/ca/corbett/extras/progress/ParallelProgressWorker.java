@@ -0,0 +1,345 @@
+package ca.corbett.extras.progress;
+
+import ca.corbett.extras.logging.Stopwatch;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A MultiProgressWorker whose major steps are independent of each other, and so can run
+ * at the same time. Rather than implementing run(), extend this class and implement
+ * getMajorStepCount(), getMinorStepCount(), and runMajorStep(). Then hand it to
+ * MultiProgressDialog.runWorker() like any other MultiProgressWorker.
+ * <p>
+ * The major steps are run on a pool of threads (or on virtual threads, if the parallelism
+ * is 0). Each step reports its progress through the Subtask it is given, by invoking
+ * minorStepComplete() as each of its minor steps is done. This only bumps a striped
+ * counter, so it is cheap no matter how many threads are doing it at once. Meanwhile,
+ * the thread that invoked run() adds up the counters a few times a second and fires the
+ * usual progress events to listeners:
+ * </p>
+ * <ul>
+ *     <li><b>majorProgressUpdate</b> - at the start, and whenever a major step finishes.
+ *     The major step is the number of steps finished so far (so the dialog reads something
+ *     like "[4 of 10] 3 running"), and the total minor steps is the total across all major steps.</li>
+ *     <li><b>minorProgressUpdate</b> - with the minor steps finished so far across all major
+ *     steps, and a message showing throughput and time remaining, such as "1520/s, about 42s left".</li>
+ * </ul>
+ * All events are fired from the thread that invoked run(), one at a time, except for
+ * fireProgressError(), which may be fired from any step's thread (never two at once).
+ * <p>
+ * <b>Cancellation</b> - if any listener returns false from a progress update or error,
+ * the worker is canceled: no more major steps are started, and Subtask.minorStepComplete()
+ * and Subtask.isCanceled() tell the steps that are running to stop. Once they have all
+ * stopped, fireProgressCanceled() is fired. Otherwise, fireProgressComplete() is fired
+ * once every major step is done.
+ * </p>
+ * <p>
+ * If a major step throws an exception, it is reported with fireProgressError(), and the
+ * other steps carry on unless a listener returns false.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+public abstract class ParallelProgressWorker extends MultiProgressWorker {
+
+    /**
+     * How often, in milliseconds, aggregated progress is fired to listeners.
+     */
+    static final long REPORT_INTERVAL_MS = 100;
+
+    private final int parallelism;
+    private final LongAdder completedMinorSteps = new LongAdder();
+    private final AtomicInteger completedMajorSteps = new AtomicInteger();
+    private final AtomicInteger runningMajorSteps = new AtomicInteger();
+    private final Object errorLock = new Object();
+    private volatile boolean isCanceled;
+
+    /**
+     * Creates a worker that runs up to one major step per available processor at a time.
+     */
+    protected ParallelProgressWorker() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a worker that runs up to the given number of major steps at a time.
+     *
+     * @param parallelism How many major steps to run at a time, or 0 to run each major step
+     *                    on its own virtual thread. Virtual threads suit steps that spend
+     *                    most of their time waiting on I/O.
+     */
+    protected ParallelProgressWorker(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Parallelism cannot be negative.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns how many major steps run at a time, or 0 if each runs on its own virtual thread.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns how many major steps there are. Invoked once, at the start of run().
+     */
+    protected abstract int getMajorStepCount();
+
+    /**
+     * Returns how many minor steps the given major step has. Invoked once per major step,
+     * at the start of run(), to work out the total amount of work.
+     */
+    protected abstract int getMinorStepCount(int majorStep);
+
+    /**
+     * Performs the given major step. This is invoked on a pool thread, at the same time as
+     * other major steps, so it must be safe to do so. Invoke subtask.minorStepComplete()
+     * as each minor step is done, and stop as soon as it returns false.
+     *
+     * @param majorStep The major step to perform (0-based).
+     * @param subtask   For reporting progress and checking for cancellation.
+     * @throws Exception Reported to listeners via fireProgressError().
+     */
+    protected abstract void runMajorStep(int majorStep, Subtask subtask) throws Exception;
+
+    /**
+     * Indicates whether this worker has been canceled, either by cancel() or by a listener
+     * returning false from a progress event.
+     */
+    public boolean isCanceled() {
+        return isCanceled;
+    }
+
+    /**
+     * Cancels this worker. Major steps that haven't started won't be, and running steps
+     * will be told to stop the next time they invoke Subtask.minorStepComplete().
+     */
+    public void cancel() {
+        isCanceled = true;
+    }
+
+    /**
+     * Reports the given error to listeners, and cancels this worker if any of them return false.
+     * Safe to invoke from any thread; errors are reported one at a time.
+     */
+    @Override
+    public boolean fireProgressError(String errorSource, String errorDetails) {
+        synchronized (errorLock) {
+            if (!super.fireProgressError(errorSource, errorDetails)) {
+                cancel();
+            }
+        }
+        return !isCanceled;
+    }
+
+    /**
+     * Runs all the major steps and reports their aggregated progress, returning when
+     * they are all done or the worker is canceled.
+     */
+    @Override
+    public final void run() {
+        isCanceled = false;
+        completedMinorSteps.reset();
+        completedMajorSteps.set(0);
+        runningMajorSteps.set(0);
+
+        int majorStepCount = getMajorStepCount();
+        long totalMinorSteps = 0;
+        for (int i = 0; i < majorStepCount; i++) {
+            totalMinorSteps += Math.max(getMinorStepCount(i), 0);
+        }
+        int reportedTotalMinorSteps = (int)Math.min(totalMinorSteps, Integer.MAX_VALUE);
+
+        fireProgressBegins(majorStepCount);
+        if (majorStepCount > 0 && !fireMajorProgressUpdate(0, reportedTotalMinorSteps, getMajorMessage())) {
+            cancel();
+        }
+
+        CountDownLatch finished = new CountDownLatch(majorStepCount);
+        ExecutorService executor = createExecutor();
+        try {
+            for (int i = 0; i < majorStepCount; i++) {
+                final int majorStep = i;
+                executor.execute(() -> {
+                    try {
+                        runMajorStepIfNotCanceled(majorStep);
+                    }
+                    finally {
+                        finished.countDown();
+                    }
+                });
+            }
+            executor.shutdown();
+            reportUntilFinished(finished, majorStepCount, totalMinorSteps, reportedTotalMinorSteps);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        if (isCanceled) {
+            fireProgressCanceled();
+        }
+        else {
+            fireProgressComplete();
+        }
+    }
+
+    private void runMajorStepIfNotCanceled(int majorStep) {
+        if (isCanceled) {
+            return;
+        }
+        runningMajorSteps.incrementAndGet();
+        try {
+            runMajorStep(majorStep, new Subtask());
+        }
+        catch (Exception e) {
+            String details = e.getMessage() != null ? e.getMessage() : e.toString();
+            fireProgressError(getClass().getSimpleName() + " step " + (majorStep + 1), details);
+        }
+        finally {
+            runningMajorSteps.decrementAndGet();
+            completedMajorSteps.incrementAndGet();
+        }
+    }
+
+    /**
+     * Invoked on the thread that invoked run() to fire aggregated progress to listeners
+     * until all the major steps are done (or skipped, if canceled).
+     */
+    private void reportUntilFinished(CountDownLatch finished, int majorStepCount, long totalMinorSteps,
+                                     int reportedTotalMinorSteps) {
+        long startTime = System.currentTimeMillis();
+        int reportedMajorSteps = 0;
+        boolean done = false;
+        while (!done) {
+            try {
+                done = finished.await(REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                // Treat an interrupt as a request to cancel, and wait for the running steps to stop:
+                cancel();
+                Thread.currentThread().interrupt();
+                awaitUninterruptibly(finished);
+                return;
+            }
+            if (done || isCanceled) {
+                continue;
+            }
+
+            // Something is fired on every tick, even if nothing has changed, so that a
+            // listener that wants to cancel gets the chance to say so:
+            int majorSteps = Math.min(completedMajorSteps.get(), majorStepCount - 1);
+            long minorSteps = Math.min(completedMinorSteps.sum(), totalMinorSteps);
+            boolean shouldContinue = true;
+            if (majorSteps != reportedMajorSteps || minorSteps == 0) {
+                reportedMajorSteps = majorSteps;
+                shouldContinue = fireMajorProgressUpdate(majorSteps, reportedTotalMinorSteps, getMajorMessage());
+            }
+            if (shouldContinue && minorSteps > 0) {
+                String message = formatThroughput(minorSteps, totalMinorSteps, System.currentTimeMillis() - startTime);
+                shouldContinue = fireMinorProgressUpdate(majorSteps, (int)Math.min(minorSteps - 1, Integer.MAX_VALUE),
+                                                         message);
+            }
+            if (!shouldContinue) {
+                cancel();
+            }
+        }
+    }
+
+    private String getMajorMessage() {
+        return runningMajorSteps.get() + " running";
+    }
+
+    private ExecutorService createExecutor() {
+        if (parallelism == 0) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ParallelProgressWorker-worker-", 1)
+                                                            .factory());
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ParallelProgressWorker-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(parallelism, threadFactory);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean done = false;
+        while (!done) {
+            try {
+                latch.await();
+                done = true;
+            }
+            catch (InterruptedException ignored) {
+                // We already know; keep waiting.
+            }
+        }
+    }
+
+    /**
+     * Describes the rate of progress and the estimated time remaining, along the lines
+     * of "1520/s, about 42s left".
+     *
+     * @param completed     How many minor steps are done.
+     * @param total         How many minor steps there are in all.
+     * @param elapsedMillis How long the work has been running.
+     */
+    static String formatThroughput(long completed, long total, long elapsedMillis) {
+        if (completed <= 0 || elapsedMillis <= 0) {
+            return "";
+        }
+        double perSecond = completed * 1000.0 / elapsedMillis;
+        String rate = perSecond >= 10 ? Long.toString(Math.round(perSecond)) : String.format(Locale.ROOT, "%.1f", perSecond);
+        long remaining = Math.max(total - completed, 0);
+        long remainingMillis = Math.round(remaining * (double)elapsedMillis / completed);
+        return rate + "/s, about " + Stopwatch.formatTimeValue(remainingMillis) + " left";
+    }
+
+    /**
+     * Handed to each major step, to report its progress and check for cancellation.
+     * Safe to use from the major step's thread, or any threads it starts itself.
+     */
+    public final class Subtask {
+
+        private Subtask() {
+        }
+
+        /**
+         * Records that one minor step is done.
+         *
+         * @return False if the worker has been canceled, and this major step should stop.
+         */
+        public boolean minorStepComplete() {
+            completedMinorSteps.increment();
+            return !isCanceled;
+        }
+
+        /**
+         * Records that the given number of minor steps are done.
+         *
+         * @return False if the worker has been canceled, and this major step should stop.
+         */
+        public boolean minorStepsComplete(int count) {
+            completedMinorSteps.add(count);
+            return !isCanceled;
+        }
+
+        /**
+         * Indicates whether the worker has been canceled, and this major step should stop.
+         */
+        public boolean isCanceled() {
+            return isCanceled;
+        }
+    }
+}
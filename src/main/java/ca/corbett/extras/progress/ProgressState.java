@@ -0,0 +1,104 @@
+package ca.corbett.extras.progress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latest progress reported by a worker, as shown by MultiProgressDialog. The worker
+ * thread writes each update straight into these fields, and the dialog samples them on a
+ * Swing timer a few dozen times a second. Updates that arrive between two samples simply
+ * overwrite each other: only the latest values ever make it to the screen, so a worker can
+ * report progress as often as it likes without flooding the EDT, and without allocating
+ * anything per update.
+ * <p>
+ * The fields are written and read independently, so a sample taken in the middle of an
+ * update may mix old and new values. That is harmless here, because the next sample
+ * (a frame later) will pick up the rest of the update.
+ * </p>
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ * @since swing-extras 3.1
+ */
+final class ProgressState {
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile int totalMajorSteps;
+    private volatile int majorStep = -1;
+    private volatile String majorMessage = "";
+    private volatile int totalMinorSteps;
+    private volatile int minorStep = -1;
+    private volatile String minorMessage = "";
+
+    /**
+     * Invoked from the worker thread when progress begins.
+     */
+    void begin(int totalMajorSteps) {
+        this.totalMajorSteps = totalMajorSteps;
+        this.majorStep = -1;
+        this.majorMessage = "";
+        this.totalMinorSteps = 0;
+        this.minorStep = -1;
+        this.minorMessage = "";
+        version.incrementAndGet();
+    }
+
+    /**
+     * Invoked from the worker thread when a new major step starts. This also resets
+     * the minor progress.
+     */
+    void majorUpdate(int majorStep, int totalMinorSteps, String message) {
+        this.totalMinorSteps = totalMinorSteps;
+        this.minorStep = -1;
+        this.minorMessage = "";
+        this.majorMessage = message == null ? "" : message;
+        this.majorStep = majorStep;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Invoked from the worker thread as each minor step within the current major step starts.
+     */
+    void minorUpdate(int minorStep, String message) {
+        this.minorMessage = message == null ? "" : message;
+        this.minorStep = minorStep;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Goes up by one with every update, so that a sampler can tell whether anything has
+     * changed since it last looked.
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    int getTotalMajorSteps() {
+        return totalMajorSteps;
+    }
+
+    /**
+     * Returns the current major step (0-based), or -1 if none has started yet.
+     */
+    int getMajorStep() {
+        return majorStep;
+    }
+
+    String getMajorMessage() {
+        return majorMessage;
+    }
+
+    int getTotalMinorSteps() {
+        return totalMinorSteps;
+    }
+
+    /**
+     * Returns the current minor step (0-based), or -1 if none has started yet in
+     * the current major step.
+     */
+    int getMinorStep() {
+        return minorStep;
+    }
+
+    String getMinorMessage() {
+        return minorMessage;
+    }
+}
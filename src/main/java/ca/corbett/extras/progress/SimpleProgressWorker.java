@@ -1,7 +1,6 @@
 package ca.corbett.extras.progress;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Represents some generic worker thread that performs a simple task, and can be subscribed
@@ -35,41 +34,56 @@ import java.util.List;
  */
 public abstract class SimpleProgressWorker implements Runnable {
 
-    private final List<SimpleProgressListener> listeners = new ArrayList<>();
+    private static final SimpleProgressListener[] NO_LISTENERS = new SimpleProgressListener[0];
+
+    /**
+     * Copied on write, so that firing an event (which may happen millions of times per
+     * operation) is just a loop over whatever array is current, with no locking or copying.
+     */
+    private volatile SimpleProgressListener[] listeners = NO_LISTENERS;
 
     /**
      * This is invoked internally by MultiProgressDialog to ensure that its listener fires
      * before any other. This is necessary to avoid problems with initialShowDelay on the dialog.
      */
-    void addPriorityProgressListener(SimpleProgressListener listener) {
-        if (listeners.isEmpty()) {
-            addProgressListener(listener);
-            return;
-        }
-        listeners.add(0, listener);
+    synchronized void addPriorityProgressListener(SimpleProgressListener listener) {
+        SimpleProgressListener[] newListeners = new SimpleProgressListener[listeners.length + 1];
+        newListeners[0] = listener;
+        System.arraycopy(listeners, 0, newListeners, 1, listeners.length);
+        listeners = newListeners;
     }
 
-    public void addProgressListener(SimpleProgressListener listener) {
-        listeners.add(listener);
+    public synchronized void addProgressListener(SimpleProgressListener listener) {
+        SimpleProgressListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        listeners = newListeners;
     }
 
-    public void removeProgressListener(SimpleProgressListener listener) {
-        listeners.remove(listener);
+    public synchronized void removeProgressListener(SimpleProgressListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                SimpleProgressListener[] newListeners = new SimpleProgressListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, newListeners, 0, i);
+                System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                listeners = newListeners;
+                return;
+            }
+        }
     }
 
-    public void clearProgressListeners() {
-        listeners.clear();
+    public synchronized void clearProgressListeners() {
+        listeners = NO_LISTENERS;
     }
 
     protected void fireProgressBegins(int totalMajorSteps) {
-        for (SimpleProgressListener listener : new ArrayList<>(listeners)) {
+        for (SimpleProgressListener listener : listeners) {
             listener.progressBegins(totalMajorSteps);
         }
     }
 
     protected boolean fireProgressUpdate(int currentStep, String message) {
         boolean shouldContinue = true;
-        for (SimpleProgressListener listener : new ArrayList<>(listeners)) {
+        for (SimpleProgressListener listener : listeners) {
             shouldContinue = shouldContinue && listener.progressUpdate(currentStep, message);
         }
         return shouldContinue;
@@ -77,7 +91,7 @@ public abstract class SimpleProgressWorker implements Runnable {
 
     protected boolean fireProgressError(String errorSource, String errorDetails) {
         boolean shouldContinue = true;
-        for (SimpleProgressListener listener : new ArrayList<>(listeners)) {
+        for (SimpleProgressListener listener : listeners) {
             shouldContinue = shouldContinue && listener.progressError(errorSource, errorDetails);
         }
         return shouldContinue;
@@ -85,13 +99,13 @@ public abstract class SimpleProgressWorker implements Runnable {
     }
 
     protected void fireProgressComplete() {
-        for (SimpleProgressListener listener : new ArrayList<>(listeners)) {
+        for (SimpleProgressListener listener : listeners) {
             listener.progressComplete();
         }
     }
 
     public void fireProgressCanceled() {
-        for (SimpleProgressListener listener : new ArrayList<>(listeners)) {
+        for (SimpleProgressListener listener : listeners) {
             listener.progressCanceled();
         }
     }
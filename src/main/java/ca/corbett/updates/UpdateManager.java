@@ -4,6 +4,7 @@ import ca.corbett.extensions.ui.ExtensionManagerDialog;
 import ca.corbett.extras.crypt.SignatureUtil;
 import ca.corbett.extras.image.ImageUtil;
 import ca.corbett.extras.io.DownloadAdapter;
+import ca.corbett.extras.io.DownloadCache;
 import ca.corbett.extras.io.DownloadManager;
 import ca.corbett.extras.io.DownloadThread;
 import com.google.gson.JsonSyntaxException;
@@ -155,6 +156,15 @@ public class UpdateManager {
         updateSources.setAllowSnapshots(allow);
     }
 
+    /**
+     * Optionally sets a DownloadCache for this UpdateManager to use, so that manifests, jars,
+     * signatures and screenshots that haven't changed on the server are not downloaded again.
+     * Pass null to disable caching (the default).
+     */
+    public void setDownloadCache(DownloadCache cache) {
+        downloadManager.setDownloadCache(cache);
+    }
+
     /**
      * Register to receive notifications from this UpdateManager as various remote resources are downloaded.
      */
@@ -1,19 +1,26 @@
 package ca.corbett.extras.dirtree;
 
+import ca.corbett.extras.io.WatchHub;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
+import javax.swing.SwingUtilities;
+import javax.swing.tree.TreePath;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 class DirTreeTest {
 
@@ -286,4 +293,350 @@ class DirTreeTest {
         assertTrue(tree.getShowHidden());
         assertTrue(tree.getShowHiddenDirs());
     }
+
+    @Test
+    public void dirTreeNode_constructor_shouldNotProbeFilesystem(@TempDir Path tempDir) {
+        // GIVEN an empty directory:
+        // WHEN we create a node for it:
+        DirTreeNode node = new DirTreeNode(tempDir.toFile(), true, false, null);
+
+        // THEN it should be assumed expandable until it is probed:
+        assertFalse(node.isProbed());
+        assertFalse(node.isLeaf());
+        assertTrue(node.getAllowsChildren());
+
+        // AND probing it should give the real answer:
+        assertFalse(node.hasChildren());
+        assertTrue(node.isProbed());
+        assertTrue(node.isLeaf());
+    }
+
+    @Test
+    public void dirTreeNode_hasChildren_ignoresHiddenDirectoriesWhenHidden(@TempDir Path tempDir) {
+        // GIVEN a directory whose only subdirectory is hidden:
+        assertTrue(new File(tempDir.toFile(), ".hidden").mkdir());
+
+        // WHEN we probe it with and without showHidden:
+        DirTreeNode showingHidden = new DirTreeNode(tempDir.toFile(), true, false, null);
+        DirTreeNode notShowingHidden = new DirTreeNode(tempDir.toFile(), false, false, null);
+
+        // THEN only the node that shows hidden directories should have children:
+        assertTrue(showingHidden.hasChildren());
+        assertFalse(notShowingHidden.hasChildren());
+    }
+
+    @Test
+    public void dirTreeNode_listChildren_shouldNotAttachChildren(@TempDir Path tempDir) throws IOException {
+        // GIVEN a directory with a file and a subdirectory:
+        assertTrue(new File(tempDir.toFile(), "b_dir").mkdir());
+        assertTrue(new File(tempDir.toFile(), "a_file.txt").createNewFile());
+        DirTreeNode node = new DirTreeNode(tempDir.toFile(), true, true, null);
+
+        // WHEN we list its children:
+        List<DirTreeNode> children = node.listChildren();
+
+        // THEN directories should come before files:
+        assertEquals(2, children.size());
+        assertEquals("b_dir", children.get(0).getDir().getName());
+        assertEquals("a_file.txt", children.get(1).getDir().getName());
+
+        // AND nothing should have been added to the node yet:
+        assertEquals(0, node.getChildCount());
+        assertFalse(node.isChildrenLoaded());
+
+        // AND applying them should mark the node as loaded:
+        assertTrue(node.applyChildren(children));
+        assertTrue(node.isChildrenLoaded());
+        assertEquals(2, node.getChildCount());
+        assertFalse(node.applyChildren(children));
+    }
+
+    @Test
+    public void dirTree_expand_shouldLoadChildrenInBackground(@TempDir Path tempDir) throws Exception {
+        // GIVEN a DirTree locked to a directory with a subdirectory that has children:
+        File subDir = new File(tempDir.toFile(), "subdir");
+        assertTrue(new File(subDir, "child1").mkdirs());
+        assertTrue(new File(subDir, "child2").mkdirs());
+        DirTree tree = new DirTree(tempDir.toFile());
+        DirTreeNode root = (DirTreeNode)tree.getTree().getModel().getRoot();
+        DirTreeNode subDirNode = (DirTreeNode)root.getChildAt(0);
+        assertFalse(subDirNode.isChildrenLoaded());
+
+        // WHEN we expand the subdirectory node:
+        SwingUtilities.invokeAndWait(() -> tree.getTree().expandPath(new TreePath(subDirNode.getPath())));
+
+        // THEN its children should eventually replace the loading placeholder:
+        waitOnEdt(subDirNode::isChildrenLoaded);
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals(2, subDirNode.getChildCount());
+            assertEquals("child1", ((DirTreeNode)subDirNode.getChildAt(0)).getDir().getName());
+            assertEquals("child2", ((DirTreeNode)subDirNode.getChildAt(1)).getDir().getName());
+        });
+    }
+
+    @Test
+    public void dirTreeNode_createProbe_shouldNotTouchNode(@TempDir Path tempDir) {
+        // GIVEN an unprobed node for a directory with a subdirectory:
+        assertTrue(new File(tempDir.toFile(), "subdir").mkdir());
+        DirTreeNode node = new DirTreeNode(tempDir.toFile(), false, false, null);
+
+        // WHEN we run a probe created from it:
+        boolean result = node.createProbe().getAsBoolean();
+
+        // THEN the probe should find children without marking the node as probed:
+        assertTrue(result);
+        assertFalse(node.isProbed());
+
+        // AND handing the result back should do that:
+        node.setProbeResult(result);
+        assertTrue(node.isProbed());
+        assertTrue(node.hasChildren());
+    }
+
+    @Test
+    public void reload_shouldOnlyInvalidateOwnListings(@TempDir Path tempDir) throws Exception {
+        // GIVEN cached listings for a DirTree's directory and for an unrelated directory:
+        File mine = new File(tempDir.toFile(), "mine");
+        File other = new File(tempDir.toFile(), "other");
+        assertTrue(mine.mkdir() && other.mkdir());
+        DirTree tree = new DirTree(mine);
+        DirListingCache cache = DirListingCache.getShared();
+        cache.getListing(mine);
+        cache.getListing(other);
+        assertTrue(new File(mine, "newDir").mkdir());
+
+        // WHEN the DirTree is reloaded:
+        SwingUtilities.invokeAndWait(tree::reload);
+
+        // THEN its own directory should be listed afresh, and the other listing left alone:
+        assertEquals(1, cache.getListing(mine).size());
+        assertNotNull(cache.getCachedListing(other));
+    }
+
+    @Test
+    public void setWatchFilesystem_withCreatedAndDeletedDirs_shouldUpdateTree(@TempDir Path tempDir) throws Exception {
+        // GIVEN a watched DirTree locked to an empty directory:
+        WatchHub hub = new WatchHub();
+        try {
+            DirTree tree = new DirTree(tempDir.toFile());
+            SwingUtilities.invokeAndWait(() -> tree.setWatchHub(hub).setWatchFilesystem(true));
+            DirTreeNode root = (DirTreeNode)tree.getTree().getModel().getRoot();
+
+            // WHEN directories are created outside the tree:
+            assertTrue(new File(tempDir.toFile(), "beta").mkdir());
+            assertTrue(new File(tempDir.toFile(), "alpha").mkdir());
+
+            // THEN they should show up, in order, without a reload:
+            waitOnEdt(() -> root.getChildCount() == 2);
+            SwingUtilities.invokeAndWait(() -> {
+                assertEquals("alpha", ((DirTreeNode)root.getChildAt(0)).getDir().getName());
+                assertEquals("beta", ((DirTreeNode)root.getChildAt(1)).getDir().getName());
+            });
+
+            // AND deleting one should remove just that node:
+            DirTreeNode beta = (DirTreeNode)root.getChildAt(1);
+            assertTrue(new File(tempDir.toFile(), "alpha").delete());
+            waitOnEdt(() -> root.getChildCount() == 1);
+            SwingUtilities.invokeAndWait(() -> assertEquals(beta, root.getChildAt(0)));
+        }
+        finally {
+            hub.close();
+        }
+    }
+
+    @Test
+    public void setWatchFilesystem_withExpandAndCollapse_shouldWatchOnlyExpandedDirs(@TempDir Path tempDir)
+            throws Exception {
+        // GIVEN a watched DirTree with a subdirectory:
+        File subDir = new File(tempDir.toFile(), "subdir");
+        assertTrue(new File(subDir, "child").mkdirs());
+        WatchHub hub = new WatchHub();
+        try {
+            DirTree tree = new DirTree(tempDir.toFile());
+            SwingUtilities.invokeAndWait(() -> tree.setWatchHub(hub).setWatchFilesystem(true));
+            DirTreeNode root = (DirTreeNode)tree.getTree().getModel().getRoot();
+            DirTreeNode subDirNode = (DirTreeNode)root.getChildAt(0);
+            TreePath subDirPath = new TreePath(subDirNode.getPath());
+            int[] count = new int[1];
+            SwingUtilities.invokeAndWait(() -> count[0] = tree.getWatcher().getWatchedDirectoryCount());
+            assertEquals(1, count[0]); // just the root
+
+            // WHEN we expand the subdirectory:
+            SwingUtilities.invokeAndWait(() -> tree.getTree().expandPath(subDirPath));
+
+            // THEN it should be watched too:
+            SwingUtilities.invokeAndWait(() -> count[0] = tree.getWatcher().getWatchedDirectoryCount());
+            assertEquals(2, count[0]);
+
+            // AND changes inside it should be picked up once its children are loaded:
+            assertTrue(new File(subDir, "another").mkdir());
+            waitOnEdt(() -> subDirNode.isChildrenLoaded() && subDirNode.getChildCount() == 2);
+
+            // WHEN we collapse it again:
+            SwingUtilities.invokeAndWait(() -> tree.getTree().collapsePath(subDirPath));
+
+            // THEN its watch should be dropped:
+            SwingUtilities.invokeAndWait(() -> count[0] = tree.getWatcher().getWatchedDirectoryCount());
+            assertEquals(1, count[0]);
+
+            // AND turning watching off should drop the rest:
+            SwingUtilities.invokeAndWait(() -> tree.setWatchFilesystem(false));
+            SwingUtilities.invokeAndWait(() -> count[0] = tree.getWatcher().getWatchedDirectoryCount());
+            assertEquals(0, count[0]);
+        }
+        finally {
+            hub.close();
+        }
+    }
+
+    @Test
+    public void selectAndScrollToAsync_withDeepPath_shouldSelectTarget(@TempDir Path tempDir) throws Exception {
+        // GIVEN a DirTree locked to a directory with a deeply nested subdirectory:
+        File target = tempDir.toFile();
+        for (int i = 0; i < 10; i++) {
+            target = new File(target, "level" + i);
+        }
+        assertTrue(target.mkdirs());
+        DirTree tree = new DirTree(tempDir.toFile());
+
+        // WHEN we navigate to it asynchronously:
+        File finalTarget = target;
+        Boolean[] found = new Boolean[1];
+        SwingUtilities.invokeAndWait(() -> tree.selectAndScrollToAsync(finalTarget)
+                                               .thenAccept(result -> found[0] = result));
+        waitOnEdt(() -> found[0] != null);
+
+        // THEN it should have been found and selected, with every ancestor loaded along the way:
+        assertTrue(found[0]);
+        SwingUtilities.invokeAndWait(() -> assertEquals(finalTarget, tree.getCurrentDir()));
+    }
+
+    @Test
+    public void selectAndScrollToAsync_withSupersedingRequest_shouldAbandonFirst(@TempDir Path tempDir)
+            throws Exception {
+        // GIVEN a DirTree with two subdirectories:
+        File first = new File(tempDir.toFile(), "first");
+        File second = new File(tempDir.toFile(), "second");
+        assertTrue(first.mkdir());
+        assertTrue(second.mkdir());
+        DirTree tree = new DirTree(tempDir.toFile());
+
+        // WHEN we request two navigations back to back:
+        // (the two may complete in either order, so each result is kept separately)
+        Boolean[] found = new Boolean[2];
+        SwingUtilities.invokeAndWait(() -> {
+            tree.selectAndScrollToAsync(first).thenAccept(result -> found[0] = result);
+            tree.selectAndScrollToAsync(second).thenAccept(result -> found[1] = result);
+        });
+        waitOnEdt(() -> found[0] != null && found[1] != null);
+
+        // THEN only the second one should have been applied:
+        assertFalse(found[0]);
+        assertTrue(found[1]);
+        SwingUtilities.invokeAndWait(() -> assertEquals(second, tree.getCurrentDir()));
+    }
+
+    @Test
+    public void selectAndScrollToAsync_withMissingDir_shouldCompleteWithFalse(@TempDir Path tempDir)
+            throws Exception {
+        DirTree tree = new DirTree(tempDir.toFile());
+        Boolean[] found = new Boolean[1];
+        SwingUtilities.invokeAndWait(() -> tree.selectAndScrollToAsync(new File(tempDir.toFile(), "nope"))
+                                               .thenAccept(result -> found[0] = result));
+        waitOnEdt(() -> found[0] != null);
+        assertFalse(found[0]);
+    }
+
+    @Test
+    public void dirListingCache_withFreshListing_shouldNotRelist(@TempDir Path tempDir) throws Exception {
+        // GIVEN a cache with a listing of a directory:
+        DirListingCache cache = new DirListingCache(TimeUnit.MINUTES.toMillis(1), 16);
+        assertTrue(new File(tempDir.toFile(), "one").mkdir());
+        assertEquals(1, cache.getListing(tempDir.toFile()).size());
+
+        // WHEN the directory changes behind the cache's back:
+        assertTrue(new File(tempDir.toFile(), "two").mkdir());
+
+        // THEN the cached listing should still be returned:
+        assertEquals(1, cache.getListing(tempDir.toFile()).size());
+
+        // AND invalidating it should pick up the change:
+        cache.invalidate(tempDir.toFile());
+        List<DirListingCache.Entry> entries = cache.getListing(tempDir.toFile());
+        assertEquals(2, entries.size());
+        assertTrue(entries.get(0).isDirectory());
+    }
+
+    @Test
+    public void dirListingCache_withExpiredListing_shouldRelist(@TempDir Path tempDir) throws Exception {
+        DirListingCache cache = new DirListingCache(1, 16);
+        assertTrue(new File(tempDir.toFile(), "one").mkdir());
+        assertEquals(1, cache.getListing(tempDir.toFile()).size());
+
+        assertTrue(new File(tempDir.toFile(), "two").mkdir());
+        Thread.sleep(20);
+
+        assertNull(cache.getCachedListing(tempDir.toFile()));
+        assertEquals(2, cache.getListing(tempDir.toFile()).size());
+    }
+
+    @Test
+    public void dirListingCache_withInvalidationDuringListing_shouldNotCacheStaleListing(@TempDir Path tempDir) {
+        // GIVEN a listing that was started before its directory was invalidated:
+        DirListingCache cache = new DirListingCache(TimeUnit.MINUTES.toMillis(1), 16);
+        File a = new File(tempDir.toFile(), "a");
+        File b = new File(tempDir.toFile(), "b");
+        assertTrue(a.mkdir() && b.mkdir());
+        long startGeneration = cache.getGeneration();
+        cache.invalidate(a);
+
+        // WHEN the listings are stored afterward:
+        cache.store(a, List.of(), startGeneration);
+        cache.store(b, List.of(), startGeneration);
+
+        // THEN only the directory that wasn't invalidated in the meantime should be cached:
+        assertNull(cache.getCachedListing(a));
+        assertNotNull(cache.getCachedListing(b));
+
+        // AND a clear() should make every listing in progress stale:
+        startGeneration = cache.getGeneration();
+        cache.clear();
+        cache.store(b, List.of(), startGeneration);
+        assertNull(cache.getCachedListing(b));
+    }
+
+    @Test
+    public void dirListingCache_withTooManyDirs_shouldEvictOldest(@TempDir Path tempDir) {
+        DirListingCache cache = new DirListingCache(TimeUnit.MINUTES.toMillis(1), 2);
+        File a = new File(tempDir.toFile(), "a");
+        File b = new File(tempDir.toFile(), "b");
+        File c = new File(tempDir.toFile(), "c");
+        assertTrue(a.mkdir() && b.mkdir() && c.mkdir());
+
+        cache.getListing(a);
+        cache.getListing(b);
+        cache.getListing(c);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.getCachedListing(a));
+        assertNotNull(cache.getCachedListing(c));
+    }
+
+    /**
+     * Polls the given condition on the EDT until it is true, or fails after a few seconds.
+     */
+    private static void waitOnEdt(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        boolean[] result = new boolean[1];
+        while (true) {
+            SwingUtilities.invokeAndWait(() -> result[0] = condition.getAsBoolean());
+            if (result[0]) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for the tree to update");
+            }
+            Thread.sleep(20);
+        }
+    }
 }
@@ -0,0 +1,96 @@
+package ca.corbett.extras.gradient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the GradientRasterizer class.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ */
+public class GradientRasterizerTest {
+
+    @AfterEach
+    public void tearDown() {
+        GradientRasterizer.setMaxCacheEntries(GradientRasterizer.DEFAULT_CACHE_SIZE);
+        GradientRasterizer.clearCache();
+    }
+
+    @Test
+    public void rasterize_horizontalLinear_shouldRunFromColor1ToColor2() {
+        Gradient gradient = new Gradient(GradientType.HORIZONTAL_LINEAR, Color.BLACK, Color.WHITE);
+        int[] pixels = new int[100 * 10];
+
+        GradientRasterizer.rasterize(gradient, pixels, 100, 10);
+
+        int left = pixels[0] & 0xFF;
+        int middle = pixels[50] & 0xFF;
+        int right = pixels[99] & 0xFF;
+        assertTrue(left < middle && middle < right);
+        assertEquals(pixels[0], pixels[9 * 100]); // every row is the same
+    }
+
+    @Test
+    public void rasterize_parallelAndSequential_shouldMatch() {
+        for (GradientType type : GradientType.values()) {
+            Gradient gradient = new Gradient(type, Color.RED, Color.BLUE);
+            int[] sequential = new int[120 * 80];
+            int[] parallel = new int[120 * 80];
+
+            GradientRasterizer.rasterize(gradient, sequential, 120, 80, false);
+            GradientRasterizer.rasterize(gradient, parallel, 120, 80, true);
+
+            for (int i = 0; i < sequential.length; i++) {
+                assertEquals(sequential[i], parallel[i], "Mismatch for " + type + " at index " + i);
+            }
+        }
+    }
+
+    @Test
+    public void rasterize_bufferTooSmall_shouldThrow() {
+        Gradient gradient = Gradient.createDefault();
+        assertThrows(IllegalArgumentException.class, () -> GradientRasterizer.rasterize(gradient, new int[10], 10, 10));
+    }
+
+    @Test
+    public void createImage_withTranslucentColor_shouldUseAlpha() {
+        Gradient opaque = new Gradient(GradientType.CIRCLE, Color.RED, Color.BLUE);
+        Gradient translucent = new Gradient(GradientType.CIRCLE, new Color(255, 0, 0, 128), Color.BLUE);
+
+        assertEquals(BufferedImage.TYPE_INT_RGB, GradientRasterizer.createImage(opaque, 10, 10).getType());
+        assertEquals(BufferedImage.TYPE_INT_ARGB, GradientRasterizer.createImage(translucent, 10, 10).getType());
+    }
+
+    @Test
+    public void getCachedImage_sameGradientAndSize_shouldReturnSameInstance() {
+        Gradient gradient = new Gradient(GradientType.STAR, Color.RED, Color.BLUE);
+
+        BufferedImage first = GradientRasterizer.getCachedImage(gradient, 50, 40);
+        BufferedImage second = GradientRasterizer.getCachedImage(new Gradient(GradientType.STAR, Color.RED, Color.BLUE),
+                                                                 50, 40);
+        BufferedImage differentSize = GradientRasterizer.getCachedImage(gradient, 51, 40);
+
+        assertSame(first, second);
+        assertNotSame(first, differentSize);
+    }
+
+    @Test
+    public void getCachedImage_withCacheDisabled_shouldReturnNewInstances() {
+        GradientRasterizer.setMaxCacheEntries(0);
+        Gradient gradient = Gradient.createDefault();
+
+        BufferedImage first = GradientRasterizer.getCachedImage(gradient, 20, 20);
+        BufferedImage second = GradientRasterizer.getCachedImage(gradient, 20, 20);
+
+        assertNotSame(first, second);
+    }
+}
@@ -0,0 +1,71 @@
+package ca.corbett.extras.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogoBatchGeneratorTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void constructor_withZeroThreads_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new LogoBatchGenerator(0));
+    }
+
+    @Test
+    public void generate_withInMemoryJobs_shouldReturnImagesInOrder() throws Exception {
+        List<LogoBatchGenerator.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            LogoProperty preset = new LogoProperty("test.logo" + i);
+            preset.setLogoWidth(100 + (i * 10));
+            preset.setLogoHeight(40);
+            jobs.add(new LogoBatchGenerator.Job("Logo " + i, preset));
+        }
+
+        List<LogoBatchGenerator.Result> results = new LogoBatchGenerator(3).generate(jobs);
+
+        assertEquals(jobs.size(), results.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            LogoBatchGenerator.Result result = results.get(i);
+            assertTrue(result.isSuccess());
+            assertSame(jobs.get(i), result.job());
+            assertNotNull(result.image());
+            assertEquals(100 + (i * 10), result.image().getWidth());
+            assertTrue(result.renderTimeNanos() > 0);
+        }
+    }
+
+    @Test
+    public void generate_withOutputFiles_shouldSaveAndNotRetainImages() throws Exception {
+        LogoProperty preset = new LogoProperty("test.logo");
+        preset.setAutoSize(true);
+        File jpgFile = new File(tempDir, "logo.jpg");
+        File pngFile = new File(tempDir, "logo.png");
+        List<LogoBatchGenerator.Job> jobs = List.of(new LogoBatchGenerator.Job("Hello", preset, jpgFile),
+                                                    new LogoBatchGenerator.Job("Hello", preset, pngFile));
+        List<LogoBatchGenerator.Result> streamed = new ArrayList<>();
+
+        new LogoBatchGenerator(2).generate(jobs, streamed::add);
+
+        assertEquals(2, streamed.size());
+        for (LogoBatchGenerator.Result result : streamed) {
+            assertTrue(result.isSuccess());
+            assertNull(result.image());
+        }
+        assertTrue(jpgFile.length() > 0);
+        assertTrue(pngFile.length() > 0);
+        assertEquals(preset.getLogoWidth(), ImageUtil.loadImage(pngFile).getWidth());
+    }
+}
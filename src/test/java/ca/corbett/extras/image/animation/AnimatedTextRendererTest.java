@@ -0,0 +1,110 @@
+package ca.corbett.extras.image.animation;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the AnimatedTextRenderer class.
+ *
+ * @author <a href="https://github.com/scorbo2">scorbo2</a>
+ */
+public class AnimatedTextRendererTest {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog. ".repeat(10);
+
+    @Test
+    public void incrementalRendering_defaultsToOff() {
+        AnimatedTextRenderer renderer = new AnimatedTextRenderer(400, 300, TEXT);
+        assertFalse(renderer.isIncrementalRendering());
+    }
+
+    @Test
+    public void showAllText_incrementalMode_matchesFullRender() {
+        AnimatedTextRenderer full = new AnimatedTextRenderer(400, 300, TEXT, 1000);
+        AnimatedTextRenderer incremental = new AnimatedTextRenderer(400, 300, TEXT, 1000);
+        incremental.setIncrementalRendering(true);
+
+        full.updateTextAnimation();
+        incremental.updateTextAnimation();
+        full.showAllText();
+        incremental.showAllText();
+
+        assertTrue(incremental.isAnimationComplete());
+        assertImagesEqual(full.getBuffer(), incremental.getBuffer());
+    }
+
+    @Test
+    public void resetAnimation_incrementalMode_clearsBuffer() {
+        AnimatedTextRenderer renderer = new AnimatedTextRenderer(400, 300, TEXT, 1000,
+                                                                 AnimatedTextRenderer.DEFAULT_FONT,
+                                                                 Color.WHITE, Color.BLACK);
+        renderer.setIncrementalRendering(true);
+        renderer.updateTextAnimation();
+        renderer.showAllText();
+
+        renderer.resetAnimation();
+
+        BufferedImage buffer = renderer.getBuffer();
+        for (int x = 0; x < buffer.getWidth(); x++) {
+            for (int y = 0; y < buffer.getHeight(); y++) {
+                assertEquals(Color.BLACK.getRGB(), buffer.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void wrapText_eitherMode_shouldBreakAtSamePlaces() {
+        // GIVEN the same text rendered in both modes, at a width that forces wrapping:
+        AnimatedTextRenderer full = new AnimatedTextRenderer(257, 300, TEXT, 1000);
+        AnimatedTextRenderer incremental = new AnimatedTextRenderer(257, 300, TEXT, 1000);
+        incremental.setIncrementalRendering(true);
+
+        // WHEN the text is laid out:
+        full.updateTextAnimation();
+        incremental.updateTextAnimation();
+
+        // THEN both should wrap it into the same lines:
+        assertTrue(full.wrappedLines.size() > 1);
+        assertEquals(full.wrappedLines, incremental.wrappedLines);
+    }
+
+    @Test
+    public void wrapText_defaultMode_shouldBreakByAdvanceWidth() {
+        // GIVEN text rendered in the default mode, at a width that forces wrapping:
+        AnimatedTextRenderer renderer = new AnimatedTextRenderer(257, 300, TEXT, 1000);
+        Font font = AnimatedTextRenderer.DEFAULT_FONT;
+        FontRenderContext frc = renderer.bufferGraphics.getFontRenderContext();
+        int maxWidth = 257 - renderer.padding * 2;
+
+        // WHEN the text is laid out:
+        renderer.updateTextAnimation();
+
+        // THEN each line should fit by advance, and the next word should not have fit on it:
+        List<String> lines = renderer.wrappedLines;
+        assertTrue(lines.size() > 1);
+        for (int i = 0; i < lines.size() - 1; i++) {
+            String nextWord = lines.get(i + 1).split(" ")[0];
+            assertTrue(font.getStringBounds(lines.get(i), frc).getWidth() <= maxWidth);
+            assertTrue(font.getStringBounds(lines.get(i) + " " + nextWord, frc).getWidth() > maxWidth);
+        }
+    }
+
+    private static void assertImagesEqual(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "Pixel mismatch at " + x + "," + y);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ca.corbett.extras.image.animation;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JPanel;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompositingSurfaceTest {
+
+    @Test
+    public void draw_withUndisplayableComponent_shouldFallBackToBufferedImage() {
+        CompositingSurface surface = new CompositingSurface((g, w, h) -> {
+            g.setColor(Color.RED);
+            g.fillRect(0, 0, w, h);
+        });
+        BufferedImage target = drawOnce(surface, 1f);
+
+        assertFalse(surface.isAccelerated());
+        assertEquals(Color.RED.getRGB(), target.getRGB(5, 5));
+    }
+
+    @Test
+    public void draw_multipleFrames_shouldOnlyRenderContentOnce() {
+        AtomicInteger renderCount = new AtomicInteger();
+        CompositingSurface surface = new CompositingSurface((g, w, h) -> renderCount.incrementAndGet());
+
+        drawOnce(surface, 0.25f);
+        drawOnce(surface, 0.5f);
+        drawOnce(surface, 0.75f);
+
+        assertEquals(1, renderCount.get());
+    }
+
+    @Test
+    public void invalidate_shouldRenderContentAgain() {
+        AtomicInteger renderCount = new AtomicInteger();
+        CompositingSurface surface = new CompositingSurface((g, w, h) -> renderCount.incrementAndGet());
+
+        drawOnce(surface, 1f);
+        surface.invalidate();
+        drawOnce(surface, 1f);
+
+        assertEquals(2, renderCount.get());
+    }
+
+    @Test
+    public void draw_withZeroOpacity_shouldNotRender() {
+        AtomicInteger renderCount = new AtomicInteger();
+        CompositingSurface surface = new CompositingSurface((g, w, h) -> renderCount.incrementAndGet());
+
+        drawOnce(surface, 0f);
+
+        assertEquals(0, renderCount.get());
+        assertNull(surface.getBackingImage());
+    }
+
+    private static BufferedImage drawOnce(CompositingSurface surface, float opacity) {
+        JPanel panel = new JPanel();
+        panel.setSize(20, 20);
+        BufferedImage target = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        surface.draw(g, panel, opacity);
+        g.dispose();
+        return target;
+    }
+}
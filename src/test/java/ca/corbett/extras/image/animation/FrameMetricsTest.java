@@ -0,0 +1,111 @@
+package ca.corbett.extras.image.animation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameMetricsTest {
+
+    @Test
+    public void frameCompleted_shouldSumPhasesIntoHistogram() {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.recordPhase(FrameMetrics.Phase.UPDATE, 1_000_000);
+        metrics.recordPhase(FrameMetrics.Phase.EFFECT, 2_500_000);
+        metrics.frameCompleted();
+
+        FrameMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(1, snapshot.frameCount());
+        assertEquals(3.5, snapshot.averageFrameMillis(), 0.0001);
+        assertEquals(3.5, snapshot.maxFrameMillis(), 0.0001);
+        assertEquals(1.0, snapshot.getAveragePhaseMillis(FrameMetrics.Phase.UPDATE), 0.0001);
+        assertEquals(0.0, snapshot.getAveragePhaseMillis(FrameMetrics.Phase.CONTENT), 0.0001);
+
+        // 3.5ms falls into the [2, 4) bucket:
+        assertEquals(1, snapshot.histogram()[2]);
+        assertEquals(FrameMetrics.getHistogramBucketBounds().length + 1, snapshot.histogram().length);
+    }
+
+    @Test
+    public void frameCompleted_withSlowFrame_shouldUseOverflowBucket() {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.recordPhase(FrameMetrics.Phase.EFFECT, 250_000_000);
+        metrics.frameCompleted();
+
+        long[] histogram = metrics.getSnapshot().histogram();
+        assertEquals(1, histogram[histogram.length - 1]);
+    }
+
+    @Test
+    public void frameCompleted_withLongGap_shouldCountDroppedFrames() throws Exception {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.setTargetFps(100); // 10ms per frame
+        metrics.frameCompleted();
+        Thread.sleep(60);
+        metrics.frameCompleted();
+
+        assertEquals(2, metrics.getSnapshot().frameCount());
+        assertTrue(metrics.getSnapshot().droppedFrames() >= 4);
+    }
+
+    @Test
+    public void pause_shouldNotCountIdleGapAsDropped() throws Exception {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.setTargetFps(100);
+        metrics.frameCompleted();
+        metrics.pause();
+        Thread.sleep(60);
+        metrics.frameCompleted();
+
+        assertEquals(0, metrics.getSnapshot().droppedFrames());
+    }
+
+    @Test
+    public void setEnabled_withFalse_shouldIgnoreFrames() {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.setEnabled(false);
+        metrics.recordPhase(FrameMetrics.Phase.UPDATE, 1_000_000);
+        metrics.frameCompleted();
+
+        assertEquals(0, metrics.getSnapshot().frameCount());
+    }
+
+    @Test
+    public void reset_shouldClearEverything() {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.recordPhase(FrameMetrics.Phase.UPDATE, 1_000_000);
+        metrics.frameCompleted();
+        metrics.reset();
+
+        FrameMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(0, snapshot.frameCount());
+        assertEquals(0.0, snapshot.maxFrameMillis());
+        assertEquals(0, snapshot.histogram()[0]);
+    }
+
+    @Test
+    public void setTargetFps_withInvalidValue_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameMetrics("test").setTargetFps(0));
+    }
+
+    @Test
+    public void toLines_withCommaDecimalLocale_shouldStillUseDots() {
+        FrameMetrics metrics = new FrameMetrics("test");
+        metrics.recordPhase(FrameMetrics.Phase.UPDATE, 1_500_000);
+        metrics.frameCompleted();
+        Locale original = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            List<String> lines = metrics.getSnapshot().toLines();
+            assertEquals("frame: avg 1.50ms  max 1.50ms", lines.get(2));
+            assertTrue(lines.get(3).startsWith("update 1.50ms"), lines.get(3));
+        }
+        finally {
+            Locale.setDefault(original);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ca.corbett.extras.io;
+
+import ca.corbett.extras.crypt.HashUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadCache cache;
+    private File downloadedFile;
+    private String sha256;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        cache = new DownloadCache(tempDir.resolve("cache").toFile());
+        downloadedFile = tempDir.resolve("downloaded.txt").toFile();
+        Files.writeString(downloadedFile.toPath(), "Hello, cache!");
+        sha256 = HashUtil.getHashString(HashUtil.HashType.SHA256, downloadedFile);
+    }
+
+    @Test
+    public void getEntry_withUnknownUrl_shouldReturnNull() throws Exception {
+        assertNull(cache.getEntry(new URL("http://example.com/nothing.txt")));
+        assertFalse(cache.contains(sha256));
+    }
+
+    @Test
+    public void store_withDownloadedFile_shouldCreateEntry() throws Exception {
+        // WHEN we store a download:
+        URL url = new URL("http://example.com/hello.txt");
+        cache.store(url, downloadedFile, sha256, "\"abc\"", "Sat, 01 Jan 2022 00:00:00 GMT");
+
+        // THEN we should be able to get it back:
+        DownloadCache.Entry entry = cache.getEntry(url);
+        assertNotNull(entry);
+        assertEquals(url.toString(), entry.url().toString());
+        assertEquals(sha256, entry.sha256());
+        assertEquals(downloadedFile.length(), entry.size());
+        assertEquals("\"abc\"", entry.etag());
+        assertEquals("Sat, 01 Jan 2022 00:00:00 GMT", entry.lastModified());
+        assertTrue(cache.contains(sha256));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void store_withSameContentFromTwoUrls_shouldStoreContentOnce() throws Exception {
+        cache.store(new URL("http://example.com/a.txt"), downloadedFile, sha256, null, null);
+        cache.store(new URL("http://mirror.example.com/a.txt"), downloadedFile, sha256, null, null);
+
+        assertEquals(2, cache.getEntryCount());
+        try (var files = Files.walk(tempDir.resolve("cache").resolve("objects"))) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    public void copyTo_withCachedContent_shouldCopy() throws Exception {
+        cache.store(new URL("http://example.com/hello.txt"), downloadedFile, sha256, null, null);
+        File target = tempDir.resolve("copy.txt").toFile();
+
+        assertTrue(cache.copyTo(sha256.toUpperCase(), target));
+        assertEquals("Hello, cache!", Files.readString(target.toPath(), StandardCharsets.UTF_8));
+        assertFalse(cache.copyTo("00".repeat(32), tempDir.resolve("other.txt").toFile()));
+    }
+
+    @Test
+    public void remove_withCachedUrl_shouldForgetIt() throws Exception {
+        URL url = new URL("http://example.com/hello.txt");
+        cache.store(url, downloadedFile, sha256, null, null);
+
+        cache.remove(url);
+
+        assertNull(cache.getEntry(url));
+        assertTrue(cache.contains(sha256));
+    }
+
+    @Test
+    public void clear_withCachedContent_shouldRemoveEverything() throws Exception {
+        URL url = new URL("http://example.com/hello.txt");
+        cache.store(url, downloadedFile, sha256, null, null);
+
+        cache.clear();
+
+        assertNull(cache.getEntry(url));
+        assertFalse(cache.contains(sha256));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void store_withInvalidHash_shouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> cache.store(new URL("http://example.com/x"), downloadedFile, "not-a-hash", null, null));
+    }
+}
@@ -1,17 +1,41 @@
 package ca.corbett.extras.io;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ca.corbett.extras.crypt.HashUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static ca.corbett.extras.testutils.TestConstants.TEST_DOMAIN;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DownloadManagerTest {
@@ -195,4 +219,631 @@ class DownloadManagerTest {
         assertEquals("", DownloadManager.getFilenameComponent("/slash/at/end/"));
         assertEquals("cowabunga", DownloadManager.getFilenameComponent("/cowabunga"));
     }
+
+    @Test
+    public void downloadFile_withLocalServer_shouldDownloadAndRemovePartFile(@TempDir Path tempDir) throws Exception {
+        // GIVEN a local server with a file on it:
+        byte[] content = randomBytes(300_000);
+        try (TestServer server = new TestServer(content)) {
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download it:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN it should arrive intact, with no partial file left behind:
+            assertTrue(listener.await());
+            assertEquals(1, listener.completed.size());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            assertFalse(Files.exists(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION)));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withPartialFile_shouldResumeWithRangeRequest(@TempDir Path tempDir) throws Exception {
+        // GIVEN a partial download left over from a previous attempt:
+        byte[] content = randomBytes(300_000);
+        Files.write(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION),
+                    Arrays.copyOf(content, 100_000));
+        writeValidator(tempDir, "data.bin", "\"v1\"");
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download the file again:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN only the remainder should have been fetched:
+            assertTrue(listener.await());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            assertEquals("bytes=100000-", server.lastRangeHeader);
+            assertEquals(200_000, server.bytesServed.get());
+            assertFalse(Files.exists(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION
+                                                             + DownloadThread.VALIDATOR_FILE_EXTENSION)));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withPartialFileOfOlderVersion_shouldStartOver(@TempDir Path tempDir) throws Exception {
+        // GIVEN a partial download of a version of the file that the server no longer has:
+        byte[] content = randomBytes(300_000);
+        byte[] oldContent = content.clone();
+        for (int i = 0; i < oldContent.length; i++) {
+            oldContent[i] = (byte)~oldContent[i];
+        }
+        Files.write(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION),
+                    Arrays.copyOf(oldContent, 100_000));
+        writeValidator(tempDir, "data.bin", "\"v1\"");
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v2\"";
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download the file again:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN the whole of the new version should have been fetched instead of a mix of both:
+            assertTrue(listener.await());
+            assertEquals(1, listener.completed.size());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            assertEquals(content.length, server.bytesServed.get());
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withPartialFileAndNoValidator_shouldStartOver(@TempDir Path tempDir) throws Exception {
+        // GIVEN a partial download with no record of which version it came from:
+        byte[] content = randomBytes(300_000);
+        Files.write(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION), new byte[100_000]);
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download the file:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN it should not have been trusted for a range request:
+            assertTrue(listener.await());
+            assertEquals(0, server.rangeRequests.get());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withPartialFileAndNoRangeSupport_shouldStartOver(@TempDir Path tempDir) throws Exception {
+        // GIVEN a partial download, and a server that ignores Range requests:
+        byte[] content = randomBytes(300_000);
+        Files.write(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION), new byte[100_000]);
+        try (TestServer server = new TestServer(content)) {
+            server.supportRanges = false;
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download the file:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN the partial file should have been overwritten with the full content:
+            assertTrue(listener.await());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withDroppedConnection_shouldKeepPartFileForResume(@TempDir Path tempDir) throws Exception {
+        // GIVEN a server that will drop the connection part way through the first request:
+        byte[] content = randomBytes(1_000_000);
+        Path partFile = tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION);
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            server.dropAfterBytes = 400_000;
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we try to download it:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN it should fail, but leave a partial file behind:
+            assertTrue(listener.await());
+            assertEquals(1, listener.failed.get());
+            assertFalse(Files.exists(tempDir.resolve("data.bin")));
+            assertTrue(Files.exists(partFile));
+            assertEquals("\"v1\"", Files.readString(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION
+                                                                            + DownloadThread.VALIDATOR_FILE_EXTENSION)));
+            long partialSize = Files.size(partFile);
+
+            // AND a second attempt should pick up where the first one left off:
+            server.dropAfterBytes = -1;
+            server.bytesServed.set(0);
+            listener = new LatchListener(1);
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+            assertTrue(listener.await());
+            assertEquals(1, listener.completed.size());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            assertEquals(content.length - partialSize, server.bytesServed.get());
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withResumeDisabled_shouldDeletePartFileOnFailure(@TempDir Path tempDir) throws Exception {
+        // GIVEN a server that will drop the connection, and a manager with resume disabled:
+        byte[] content = randomBytes(1_000_000);
+        try (TestServer server = new TestServer(content)) {
+            server.dropAfterBytes = 400_000;
+            DownloadManager localManager = new DownloadManager().setResumeEnabled(false);
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN the download fails:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN nothing should be left behind:
+            assertTrue(listener.await());
+            assertEquals(1, listener.failed.get());
+            assertFalse(Files.exists(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION)));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withParallelChunks_shouldFetchRanges(@TempDir Path tempDir) throws Exception {
+        // GIVEN a large-ish file and a manager configured for parallel chunks:
+        byte[] content = randomBytes(2_000_000);
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            DownloadManager localManager = new DownloadManager()
+                    .setMaxParallelChunks(4)
+                    .setParallelChunkThreshold(0);
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download it:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+
+            // THEN it should have been fetched as four ranges and reassembled correctly:
+            assertTrue(listener.await());
+            assertEquals(1, listener.completed.size());
+            assertEquals(4, server.rangeRequests.get());
+            assertEquals("\"v1\"", server.lastIfMatchHeader);
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("data.bin")));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withPerHostLimit_shouldNotExceedLimit(@TempDir Path tempDir) throws Exception {
+        // GIVEN a slow server and a manager allowing two downloads per host:
+        byte[] content = randomBytes(10_000);
+        try (TestServer server = new TestServer(content)) {
+            server.delayMs = 200;
+            DownloadManager localManager = new DownloadManager(4, 2);
+            LatchListener listener = new LatchListener(6);
+
+            // WHEN we queue up six downloads:
+            for (int i = 0; i < 6; i++) {
+                localManager.downloadFile(server.url("file" + i + ".bin"), tempDir.toFile(), listener);
+            }
+
+            // THEN they should all complete, but never more than two at a time:
+            assertTrue(listener.await());
+            assertEquals(6, listener.completed.size());
+            assertTrue(server.maxConcurrentRequests.get() <= 2,
+                       "Max concurrent was " + server.maxConcurrentRequests.get());
+            assertFalse(localManager.isDownloadInProgress());
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void stopAllDownloads_withScheduledButNotStartedDownload_shouldFail(@TempDir Path tempDir) throws Exception {
+        // GIVEN a download that a worker has picked up but not yet started:
+        byte[] content = randomBytes(10_000);
+        try (TestServer server = new TestServer(content)) {
+            StallingManager localManager = new StallingManager();
+            LatchListener listener = new LatchListener(1);
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), listener);
+            assertTrue(localManager.started.await(5, TimeUnit.SECONDS));
+            assertTrue(localManager.isDownloadInProgress());
+
+            // WHEN we stop everything before it gets going:
+            localManager.stopAllDownloads();
+            localManager.release.countDown();
+
+            // THEN it should report failure rather than going ahead:
+            assertTrue(listener.await());
+            assertEquals(1, listener.failed.get());
+            assertTrue(listener.completed.isEmpty());
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void stopAllDownloads_withQueuedDownloads_shouldFailAll(@TempDir Path tempDir) throws Exception {
+        // GIVEN a slow server and a manager that only runs one download at a time:
+        byte[] content = randomBytes(10_000);
+        try (TestServer server = new TestServer(content)) {
+            server.delayMs = 500;
+            DownloadManager localManager = new DownloadManager(1, 1);
+            LatchListener listener = new LatchListener(3);
+            for (int i = 0; i < 3; i++) {
+                localManager.downloadFile(server.url("file" + i + ".bin"), tempDir.toFile(), listener);
+            }
+            assertTrue(localManager.getQueuedDownloadCount() >= 2);
+
+            // WHEN we stop everything:
+            localManager.stopAllDownloads();
+
+            // THEN every download should report failure:
+            assertTrue(listener.await());
+            assertEquals(3, listener.failed.get());
+            assertTrue(listener.completed.isEmpty());
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void close_withQueuedDownloads_shouldFailAll(@TempDir Path tempDir) throws Exception {
+        // GIVEN a slow server and a manager with downloads waiting in its queue:
+        byte[] content = randomBytes(10_000);
+        try (TestServer server = new TestServer(content)) {
+            server.delayMs = 500;
+            DownloadManager localManager = new DownloadManager(1, 1);
+            LatchListener listener = new LatchListener(3);
+            for (int i = 0; i < 3; i++) {
+                localManager.downloadFile(server.url("file" + i + ".bin"), tempDir.toFile(), listener);
+            }
+            assertTrue(localManager.getQueuedDownloadCount() >= 2);
+
+            // WHEN we close the manager:
+            localManager.close();
+
+            // THEN every download should report failure, including those that never left the queue:
+            assertTrue(listener.await());
+            assertEquals(3, listener.failed.get());
+            assertTrue(listener.completed.isEmpty());
+        }
+    }
+
+    @Test
+    public void downloadFile_afterClose_shouldThrow() throws Exception {
+        DownloadManager localManager = new DownloadManager();
+        localManager.close();
+        assertThrows(IllegalStateException.class,
+                     () -> localManager.downloadFile(new URL("http://localhost/x.bin"), null));
+    }
+
+    @Test
+    public void downloadFile_withCacheAndUnchangedFile_shouldNotTransferAgain(@TempDir Path tempDir) throws Exception {
+        // GIVEN a server that sends ETags, and a manager with a cache:
+        byte[] content = randomBytes(200_000);
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            DownloadManager localManager = new DownloadManager()
+                    .setDownloadCache(new DownloadCache(tempDir.resolve("cache").toFile()));
+            File firstDir = Files.createDirectory(tempDir.resolve("first")).toFile();
+            File secondDir = Files.createDirectory(tempDir.resolve("second")).toFile();
+            LatchListener listener = new LatchListener(1);
+            localManager.downloadFile(server.url("data.bin"), firstDir, listener);
+            assertTrue(listener.await());
+            assertFalse(listener.completedThreads.get(0).isServedFromCache());
+
+            // WHEN we download the same URL again:
+            listener = new LatchListener(1);
+            localManager.downloadFile(server.url("data.bin"), secondDir, listener);
+
+            // THEN the server should have answered 304 and the content should come from the cache:
+            assertTrue(listener.await());
+            assertTrue(listener.completedThreads.get(0).isServedFromCache());
+            assertEquals(content.length, server.bytesServed.get());
+            assertArrayEquals(content, Files.readAllBytes(secondDir.toPath().resolve("data.bin")));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withCachedCopyNotMatchingExpectedHash_shouldTransferAgain(@TempDir Path tempDir)
+            throws Exception {
+        // GIVEN a cached copy of a file, and a server that changes the file without changing its ETag:
+        byte[] content = randomBytes(50_000);
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            DownloadManager localManager = new DownloadManager()
+                    .setDownloadCache(new DownloadCache(tempDir.resolve("cache").toFile()));
+            File firstDir = Files.createDirectory(tempDir.resolve("first")).toFile();
+            File secondDir = Files.createDirectory(tempDir.resolve("second")).toFile();
+            LatchListener listener = new LatchListener(1);
+            localManager.downloadFile(server.url("data.bin"), firstDir, listener);
+            assertTrue(listener.await());
+            for (int i = 0; i < content.length; i++) {
+                content[i] = (byte)~content[i];
+            }
+            byte[] newContent = content.clone();
+            String newSha256 = HashUtil.getHashString(HashUtil.HashType.SHA256, newContent);
+
+            // WHEN we download it again, expecting the new content's hash:
+            listener = new LatchListener(1);
+            localManager.downloadFile(server.url("data.bin"), secondDir, newSha256, listener);
+
+            // THEN the stale cached copy should not be used, and the new content should be downloaded:
+            assertTrue(listener.await());
+            assertEquals(0, listener.failed.get());
+            assertFalse(listener.completedThreads.get(0).isServedFromCache());
+            assertEquals(content.length * 2L, server.bytesServed.get());
+            assertArrayEquals(newContent, Files.readAllBytes(secondDir.toPath().resolve("data.bin")));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withCachedExpectedHash_shouldSkipNetwork(@TempDir Path tempDir) throws Exception {
+        // GIVEN some content that has already been downloaded into the cache:
+        byte[] content = randomBytes(50_000);
+        String sha256 = HashUtil.getHashString(HashUtil.HashType.SHA256, content);
+        try (TestServer server = new TestServer(content)) {
+            DownloadManager localManager = new DownloadManager()
+                    .setDownloadCache(new DownloadCache(tempDir.resolve("cache").toFile()));
+            LatchListener listener = new LatchListener(1);
+            localManager.downloadFile(server.url("a.bin"), tempDir.toFile(), listener);
+            assertTrue(listener.await());
+            assertEquals(sha256, listener.completedThreads.get(0).getComputedHash(HashUtil.HashType.SHA256));
+            int requestsSoFar = server.requests.get();
+
+            // WHEN we ask for the same content from a different URL, giving its hash:
+            listener = new LatchListener(1);
+            localManager.downloadFile(server.url("b.bin"), tempDir.toFile(), sha256, listener);
+
+            // THEN it should come straight from the cache:
+            assertTrue(listener.await());
+            assertTrue(listener.completedThreads.get(0).isServedFromCache());
+            assertEquals(requestsSoFar, server.requests.get());
+            assertArrayEquals(content, Files.readAllBytes(tempDir.resolve("b.bin")));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withWrongExpectedHash_shouldFailAndLeaveNothing(@TempDir Path tempDir) throws Exception {
+        byte[] content = randomBytes(50_000);
+        try (TestServer server = new TestServer(content)) {
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we download with a hash that doesn't match:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), "00".repeat(32), listener);
+
+            // THEN it should fail, and nothing should be left behind:
+            assertTrue(listener.await());
+            assertEquals(1, listener.failed.get());
+            assertFalse(Files.exists(tempDir.resolve("data.bin")));
+            assertFalse(Files.exists(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION)));
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void downloadFile_withExpectedHashAndResume_shouldVerifyWholeFile(@TempDir Path tempDir) throws Exception {
+        // GIVEN a partial download and the hash of the complete file:
+        byte[] content = randomBytes(300_000);
+        String sha256 = HashUtil.getHashString(HashUtil.HashType.SHA256, content);
+        Files.write(tempDir.resolve("data.bin" + DownloadThread.PARTIAL_FILE_EXTENSION),
+                    Arrays.copyOf(content, 120_000));
+        writeValidator(tempDir, "data.bin", "\"v1\"");
+        try (TestServer server = new TestServer(content)) {
+            server.etag = "\"v1\"";
+            DownloadManager localManager = new DownloadManager();
+            LatchListener listener = new LatchListener(1);
+
+            // WHEN we resume the download:
+            localManager.downloadFile(server.url("data.bin"), tempDir.toFile(), sha256, listener);
+
+            // THEN the hash should cover the resumed bytes as well as the new ones:
+            assertTrue(listener.await());
+            assertEquals(1, listener.completed.size());
+            assertEquals(180_000, server.bytesServed.get());
+            localManager.close();
+        }
+    }
+
+    @Test
+    public void parseContentRange() {
+        DownloadThread.ContentRange range = DownloadThread.ContentRange.parse("bytes 100-199/1000");
+        assertNotNull(range);
+        assertEquals(100, range.start());
+        assertEquals(199, range.end());
+        assertEquals(1000, range.total());
+
+        range = DownloadThread.ContentRange.parse("bytes */500");
+        assertNotNull(range);
+        assertEquals(-1, range.start());
+        assertEquals(500, range.total());
+
+        assertNull(DownloadThread.ContentRange.parse(null));
+        assertNull(DownloadThread.ContentRange.parse("bytes 1-x/10"));
+        assertNull(DownloadThread.ContentRange.parse("items 1-2/10"));
+    }
+
+    private static void writeValidator(Path dir, String filename, String validator) throws IOException {
+        Files.writeString(dir.resolve(filename + DownloadThread.PARTIAL_FILE_EXTENSION
+                                              + DownloadThread.VALIDATOR_FILE_EXTENSION), validator);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A DownloadManager whose downloads stall on their worker thread, before they begin,
+     * until released. Its downloads aren't tracked as in progress once they begin.
+     */
+    private static class StallingManager extends DownloadManager {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public DownloadThread createDownloadThread(URL url, File targetDir, DownloadListener listener) {
+            DownloadThread thread = new DownloadThread(HttpClient.newHttpClient(), url, targetDir) {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.run();
+                }
+            };
+            thread.addDownloadListener(listener);
+            return thread;
+        }
+    }
+
+    /**
+     * Counts down once per finished download, whether it succeeded or failed.
+     */
+    private static class LatchListener extends DownloadAdapter {
+        private final CountDownLatch latch;
+        private final List<File> completed = new ArrayList<>();
+        private final List<DownloadThread> completedThreads = new ArrayList<>();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        LatchListener(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(20, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void downloadFailed(DownloadThread thread, URL url, String errorMsg) {
+            failed.incrementAndGet();
+            latch.countDown();
+        }
+
+        @Override
+        public synchronized void downloadComplete(DownloadThread thread, URL url, File result) {
+            completed.add(result);
+            completedThreads.add(thread);
+            latch.countDown();
+        }
+    }
+
+    /**
+     * A minimal local http server that serves the same content at every path, with optional
+     * Range support, artificial latency, and dropped connections.
+     */
+    private static class TestServer implements AutoCloseable {
+        private final byte[] content;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicLong bytesServed = new AtomicLong();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger rangeRequests = new AtomicInteger();
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+        private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        private volatile boolean supportRanges = true;
+        private volatile long delayMs;
+        private volatile long dropAfterBytes = -1;
+        private volatile String lastRangeHeader;
+        private volatile String etag;
+        private volatile String lastIfMatchHeader;
+
+        TestServer(byte[] content) throws IOException {
+            this.content = content;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        URL url(String name) throws Exception {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/" + name);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            int concurrent = concurrentRequests.incrementAndGet();
+            maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+            try {
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+                requests.incrementAndGet();
+                if (supportRanges) {
+                    exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                }
+                if (etag != null) {
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        exchange.sendResponseHeaders(304, -1);
+                        return;
+                    }
+                }
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Content-Length", Long.toString(content.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+
+                String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+                if (ifMatch != null) {
+                    lastIfMatchHeader = ifMatch;
+                    if (!ifMatch.equals(etag)) {
+                        exchange.sendResponseHeaders(412, -1);
+                        return;
+                    }
+                }
+
+                int start = 0;
+                int end = content.length - 1;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                boolean partial = supportRanges && range != null && (ifRange == null || ifRange.equals(etag));
+                if (partial) {
+                    lastRangeHeader = range;
+                    rangeRequests.incrementAndGet();
+                    String[] parts = range.substring("bytes=".length()).split("-", -1);
+                    start = Integer.parseInt(parts[0]);
+                    if (!parts[1].isEmpty()) {
+                        end = Math.min(end, Integer.parseInt(parts[1]));
+                    }
+                    if (start >= content.length) {
+                        exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                        exchange.sendResponseHeaders(416, -1);
+                        return;
+                    }
+                    exchange.getResponseHeaders().set("Content-Range",
+                                                      "bytes " + start + "-" + end + "/" + content.length);
+                }
+                int length = end - start + 1;
+                exchange.sendResponseHeaders(partial ? 206 : 200, length);
+                int toSend = dropAfterBytes >= 0 ? (int)Math.min(length, dropAfterBytes) : length;
+                OutputStream out = exchange.getResponseBody();
+                out.write(content, start, toSend);
+                out.flush();
+                bytesServed.addAndGet(toSend);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                concurrentRequests.decrementAndGet();
+                exchange.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
 }
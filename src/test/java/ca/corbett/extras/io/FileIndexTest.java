@@ -0,0 +1,133 @@
+package ca.corbett.extras.io;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileIndexTest {
+
+    @TempDir
+    private File tempDir;
+
+    private File libraryDir;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        libraryDir = new File(tempDir, "library");
+        File subdir1 = new File(libraryDir, "subdir1");
+        File subsubdir = new File(subdir1, "subsubdir");
+        File subdir2 = new File(libraryDir, "subdir2");
+        subsubdir.mkdirs();
+        subdir2.mkdirs();
+        FileSystemUtil.writeStringToFile("hello", new File(libraryDir, "top.txt"));
+        FileSystemUtil.writeStringToFile("", new File(subdir1, "image1.JPG"));
+        FileSystemUtil.writeStringToFile("", new File(subdir2, "image2.png"));
+        FileSystemUtil.writeStringToFile("", new File(subsubdir, "archive.tar.gz"));
+    }
+
+    @Test
+    public void refresh_withNewIndex_shouldMatchFindFiles() {
+        FileIndex index = new FileIndex(libraryDir);
+        index.refresh();
+
+        assertEquals(4, index.getFileCount());
+        assertEquals(4, index.getDirectoryCount());
+        assertEquals(FileSystemUtil.findFiles(libraryDir, true), index.findFiles(null, true));
+        assertEquals(FileSystemUtil.findFiles(libraryDir, false), index.findFiles(null, false));
+        assertEquals(FileSystemUtil.findSubdirectories(libraryDir, true), index.findSubdirectories(true));
+    }
+
+    @Test
+    public void findFiles_withExtensions_shouldMatchFindFiles() {
+        FileIndex index = new FileIndex(libraryDir);
+        index.refresh();
+
+        List<String> extensions = List.of("jpg", "PNG");
+        assertEquals(FileSystemUtil.findFiles(libraryDir, true, extensions), index.findFiles(extensions, true));
+        assertEquals(FileSystemUtil.findFilesExcluding(libraryDir, true, extensions),
+                     index.findFilesExcluding(extensions, true));
+        assertEquals(1, index.findFiles(List.of(".tar.gz"), true).size());
+    }
+
+    @Test
+    public void refresh_afterChanges_shouldPickThemUp() throws Exception {
+        FileIndex index = new FileIndex(libraryDir);
+        index.refresh();
+
+        FileSystemUtil.writeStringToFile("", new File(libraryDir, "subdir2/new.png"));
+        File newDir = new File(libraryDir, "newdir/nested");
+        newDir.mkdirs();
+        FileSystemUtil.writeStringToFile("", new File(newDir, "deep.png"));
+        new File(libraryDir, "subdir1/subsubdir/archive.tar.gz").delete();
+        new File(libraryDir, "subdir1/subsubdir").delete();
+        index.refresh();
+
+        assertEquals(FileSystemUtil.findFiles(libraryDir, true), index.findFiles(null, true));
+        assertEquals(FileSystemUtil.findSubdirectories(libraryDir, true), index.findSubdirectories(true));
+    }
+
+    @Test
+    public void getFileRecord_withIndexedFile_shouldReturnDetails() {
+        FileIndex index = new FileIndex(libraryDir);
+        index.refresh();
+
+        FileIndex.FileRecord record = index.getFileRecord(new File(libraryDir, "top.txt"));
+        assertNotNull(record);
+        assertEquals("txt", record.extension());
+        assertEquals(5, record.size());
+        assertNull(index.getFileRecord(new File(libraryDir, "nope.txt")));
+    }
+
+    @Test
+    public void saveAndLoad_shouldRoundTrip() throws Exception {
+        FileIndex index = new FileIndex(libraryDir);
+        index.refresh();
+        File indexFile = new File(tempDir, "index.dat");
+
+        index.save(indexFile);
+        FileIndex loaded = FileIndex.load(indexFile);
+
+        assertEquals(index.getRootDir(), loaded.getRootDir());
+        assertEquals(index.findFiles(null, true), loaded.findFiles(null, true));
+        assertEquals(index.findSubdirectories(true), loaded.findSubdirectories(true));
+        assertEquals(index.getFileRecord(new File(libraryDir, "top.txt")),
+                     loaded.getFileRecord(new File(libraryDir, "top.txt")));
+    }
+
+    @Test
+    public void load_withGarbageFile_shouldThrow() throws Exception {
+        File garbage = new File(tempDir, "garbage.dat");
+        FileSystemUtil.writeStringToFile("not an index", garbage);
+        assertThrows(IOException.class, () -> FileIndex.load(garbage));
+    }
+
+    @Test
+    public void startWatching_withChanges_shouldPickThemUp() throws Exception {
+        FileIndex index = new FileIndex(libraryDir);
+        index.startWatching();
+        try {
+            FileSystemUtil.writeStringToFile("", new File(libraryDir, "subdir1/watched.jpg"));
+
+            // WatchService latency varies a lot by platform, so give it a while:
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (index.findFiles(List.of("jpg"), true).size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, index.findFiles(List.of("jpg"), true).size());
+            assertTrue(index.isWatching());
+        }
+        finally {
+            index.stopWatching();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -67,8 +68,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should have returned all files:
         assertEquals(6, thread.getResults().size());
@@ -88,9 +89,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        //   (actually receives this twice - once for the indeterminate step, then again with the count):
-        Mockito.verify(listener, Mockito.times(2)).progressBegins(1);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener, Mockito.times(1)).progressBegins(1);
 
         // AND the thread should have returned our single top-level file:
         assertEquals(1, thread.getResults().size());
@@ -110,11 +110,20 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should have returned only the .txt files:
         assertEquals(4, thread.getResults().size());
+
+        // AND there should have been one progress update per match, as each was found:
+        Mockito.verify(listener, Mockito.times(4)).progressUpdate(Mockito.anyInt(), Mockito.anyString());
+        Mockito.verify(listener).progressUpdate(Mockito.eq(3), Mockito.anyString());
+
+        // AND the results should be sorted, the same as FileSystemUtil.findFiles() would return them:
+        List<File> sorted = new ArrayList<>(thread.getResults());
+        FileSystemUtil.sortFiles(sorted);
+        assertEquals(sorted, thread.getResults());
     }
 
     @Test
@@ -130,8 +139,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should have returned only the non-.txt files:
         assertEquals(2, thread.getResults().size());
@@ -149,8 +158,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should have returned all files (since we're inverting an empty filter):
         assertEquals(6, thread.getResults().size());
@@ -168,8 +177,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should have returned all .txt and .log files:
         assertEquals(6, thread.getResults().size());
@@ -187,8 +196,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should have returned no files (since none match the filter):
         assertEquals(0, thread.getResults().size());
@@ -205,8 +214,8 @@ class FileScannerThreadTest {
         // WHEN we simulate running the thread:
         thread.run();
 
-        // THEN our listener should have been notified of the progress beginning with the correct total:
-        Mockito.verify(listener).progressBegins(6);
+        // THEN our listener should have been notified of the progress beginning (the total isn't known up front):
+        Mockito.verify(listener).progressBegins(1);
 
         // AND the thread should only receive one result, since the search was canceled
         //     immediately after finding the first file:
@@ -6,16 +6,24 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Unit tests for FileSystemUtil.
@@ -228,6 +236,51 @@ public class FileSystemUtilTest {
         //   input A,a,B,b would get sorted as A,B,a,b but should be A,a,B,b
     }
 
+    @Test
+    public void testSortFiles_withTurkishLocale_shouldSortSameAsRootLocale() {
+        // GIVEN names that sort differently when lower-cased with Turkish rules (I -> dotless i):
+        List<File> fileList = new ArrayList<>();
+        fileList.add(new File("ib"));
+        fileList.add(new File("Ia"));
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            // WHEN we sort them under a Turkish default locale:
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            FileSystemUtil.sortFiles(fileList);
+        }
+        finally {
+            Locale.setDefault(defaultLocale);
+        }
+
+        // THEN they should sort the same as anywhere else:
+        assertEquals("Ia", fileList.get(0).getName());
+        assertEquals("ib", fileList.get(1).getName());
+    }
+
+    @Test
+    public void testStreamFiles_withSorted_shouldMatchFindFiles() {
+        List<File> expected = FileSystemUtil.findFiles(testDir, true, "txt");
+        List<File> actual = new ArrayList<>();
+        try (Stream<Path> stream = FileSystemUtil.streamFiles(testDir, true, List.of("txt"), true)) {
+            stream.forEach(path -> actual.add(path.toFile()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testStreamFilesExcluding_withMatchingExtension_shouldBeEmpty() {
+        try (Stream<Path> stream = FileSystemUtil.streamFilesExcluding(testDir, true, List.of("txt"), false)) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    public void testStreamFiles_withLimit_shouldReturnOnlyThatMany() {
+        try (Stream<Path> stream = FileSystemUtil.streamFiles(testDir, true, null, false)) {
+            assertEquals(2, stream.limit(2).count());
+        }
+    }
+
     @Test
     public void testReadFileToString_withInputOutput_shouldSucceed() throws Exception {
         File tmpFile = File.createTempFile("util", ".txt");
@@ -256,6 +309,119 @@ public class FileSystemUtilTest {
         }
     }
 
+    @Test
+    public void readFileToString_withWindowsLineEndingsAndTrailingNewline_shouldPreserveThem() throws Exception {
+        File tmpFile = new File(testDir, "crlf.txt");
+        String expected = "line 1\r\nline 2\r\n\r\n";
+        Files.writeString(tmpFile.toPath(), expected);
+
+        assertEquals(expected, FileSystemUtil.readFileToString(tmpFile));
+    }
+
+    @Test
+    public void streamFileLines_withMultipleLines_shouldStreamThem() throws Exception {
+        File tmpFile = new File(testDir, "lines.txt");
+        Files.writeString(tmpFile.toPath(), "one\ntwo\r\nthree");
+
+        try (Stream<String> lines = FileSystemUtil.streamFileLines(tmpFile)) {
+            assertEquals(List.of("one", "two", "three"), lines.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void mapFile_withTextFile_shouldExposeContents() throws Exception {
+        File tmpFile = new File(testDir, "mapped.txt");
+        Files.writeString(tmpFile.toPath(), "hello");
+
+        MappedByteBuffer buffer = FileSystemUtil.mapFile(tmpFile);
+
+        assertEquals(5, buffer.remaining());
+        assertEquals('h', buffer.get(0));
+        assertEquals('o', buffer.get(4));
+    }
+
+    @Test
+    public void writeStringToFile_withStringLargerThanOneChunk_shouldRoundTrip() throws Exception {
+        // GIVEN a string with multibyte characters that is much larger than the write chunk size:
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40_000; i++) {
+            sb.append("Line ").append(i).append(" with some ünïcödé and 日本語\n");
+        }
+        String expected = sb.toString();
+        File tmpFile = new File(testDir, "large.txt");
+
+        // WHEN we write it and read it back:
+        FileSystemUtil.writeStringToFile(expected, tmpFile);
+
+        // THEN it should be byte-for-byte what String.getBytes() would have produced:
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, tmpFile.length());
+        assertEquals(expected, FileSystemUtil.readFileToString(tmpFile));
+    }
+
+    @Test
+    public void writeStringToFile_withUnmappableCharacters_shouldReplaceThem() throws Exception {
+        File tmpFile = new File(testDir, "ascii.txt");
+        FileSystemUtil.writeStringToFile("caf\u00e9", tmpFile, "US-ASCII");
+        assertEquals("caf?", Files.readString(tmpFile.toPath(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void writeStringToFile_withShorterContent_shouldTruncate() throws Exception {
+        File tmpFile = new File(testDir, "truncate.txt");
+        FileSystemUtil.writeStringToFile("a much longer piece of text", tmpFile);
+        FileSystemUtil.writeStringToFile("short", tmpFile);
+        assertEquals("short", FileSystemUtil.readFileToString(tmpFile));
+    }
+
+    @Test
+    public void writeStringToFileAtomically_withExistingFile_shouldReplaceAndLeaveNoTempFiles() throws Exception {
+        File dir = new File(testDir, "atomic");
+        assertTrue(dir.mkdir());
+        File tmpFile = new File(dir, "config.properties");
+        FileSystemUtil.writeStringToFile("old contents that are longer", tmpFile);
+
+        FileSystemUtil.writeStringToFileAtomically("new contents", tmpFile);
+
+        assertEquals("new contents", FileSystemUtil.readFileToString(tmpFile));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void writeStringToFileAtomically_withExistingFile_shouldKeepPermissions() throws Exception {
+        File tmpFile = new File(testDir, "atomicPermissions.sh");
+        assumeTrue(Files.getFileStore(testDir.toPath()).supportsFileAttributeView("posix"));
+        FileSystemUtil.writeStringToFile("#!/bin/sh", tmpFile);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        Files.setPosixFilePermissions(tmpFile.toPath(), permissions);
+
+        FileSystemUtil.writeStringToFileAtomically("#!/bin/sh\necho hello", tmpFile);
+
+        assertEquals(permissions, Files.getPosixFilePermissions(tmpFile.toPath()));
+    }
+
+    @Test
+    public void writeStringToFileAtomically_withNewFile_shouldGetDefaultPermissions() throws Exception {
+        File plainFile = new File(testDir, "plain.txt");
+        File atomicFile = new File(testDir, "atomicNew.txt");
+        assumeTrue(Files.getFileStore(testDir.toPath()).supportsFileAttributeView("posix"));
+
+        FileSystemUtil.writeStringToFile("hello", plainFile);
+        FileSystemUtil.writeStringToFileAtomically("hello", atomicFile);
+
+        assertEquals(Files.getPosixFilePermissions(plainFile.toPath()),
+                     Files.getPosixFilePermissions(atomicFile.toPath()));
+    }
+
+    @Test
+    public void writeLinesToFileAtomically_withLines_shouldRoundTrip() throws Exception {
+        File tmpFile = new File(testDir, "atomicLines.txt");
+        List<String> lines = List.of("first", "", "third ✓");
+
+        FileSystemUtil.writeLinesToFileAtomically(lines, tmpFile);
+
+        assertEquals(lines, FileSystemUtil.readFileLines(tmpFile));
+    }
+
     @Test
     public void getPrintableSize_withVariousSizes_shouldReportNicely() {
         assertEquals("0 bytes", FileSystemUtil.getPrintableSize(0));
@@ -0,0 +1,153 @@
+package ca.corbett.extras.io;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileTreeWalkerTest {
+
+    @TempDir
+    private File tempDir;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        FileSystemUtil.writeStringToFile("", new File(tempDir, "topfile1.txt"));
+        for (int i = 0; i < 10; i++) {
+            File subdir = new File(tempDir, "subdir" + i);
+            File subsubdir = new File(subdir, "subsubdir");
+            subsubdir.mkdirs();
+            FileSystemUtil.writeStringToFile("", new File(subdir, "file" + i + ".txt"));
+            FileSystemUtil.writeStringToFile("", new File(subsubdir, "file" + i + ".log"));
+        }
+    }
+
+    @Test
+    public void walk_withDefaults_shouldFindAllFiles() {
+        List<Path> results = new FileTreeWalker(tempDir.toPath()).collect();
+
+        assertEquals(21, results.size());
+        assertEquals(21, new HashSet<>(results).size());
+    }
+
+    @Test
+    public void walk_withRecursiveFalse_shouldFindOnlyTopLevelFiles() {
+        List<Path> results = new FileTreeWalker(tempDir.toPath()).setRecursive(false).collect();
+
+        assertEquals(List.of(tempDir.toPath().resolve("topfile1.txt")), results);
+    }
+
+    @Test
+    public void walk_withDirectoriesOnly_shouldFindAllSubdirectories() {
+        List<Path> results = new FileTreeWalker(tempDir.toPath())
+                .setIncludeFiles(false)
+                .setIncludeDirectories(true)
+                .collect();
+
+        assertEquals(20, results.size());
+        for (Path path : results) {
+            assertTrue(Files.isDirectory(path));
+        }
+    }
+
+    @Test
+    public void walk_withFilter_shouldReportOnlyMatches() {
+        List<Path> results = new FileTreeWalker(tempDir.toPath())
+                .setFilter((path, attributes) -> path.getFileName().toString().endsWith(".log"))
+                .collect();
+
+        assertEquals(10, results.size());
+    }
+
+    @Test
+    public void walk_withSingleThread_shouldMatchParallelWalk() {
+        Set<Path> parallel = new HashSet<>(new FileTreeWalker(tempDir.toPath()).setParallelism(8).collect());
+        Set<Path> sequential = new HashSet<>(new FileTreeWalker(tempDir.toPath()).setParallelism(1).collect());
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void walk_withListenerCancellation_shouldStopEarly() {
+        List<Path> results = new ArrayList<>();
+        boolean completed = new FileTreeWalker(tempDir.toPath()).walk((path, attributes) -> {
+            results.add(path);
+            return results.size() < 3;
+        });
+
+        assertFalse(completed);
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    public void walk_withSymlinkLoop_shouldVisitEachDirectoryOnce() throws Exception {
+        Path subdir = tempDir.toPath().resolve("subdir0");
+        try {
+            Files.createSymbolicLink(subdir.resolve("loop"), tempDir.toPath());
+        }
+        catch (UnsupportedOperationException | IOException e) {
+            return; // symlinks not supported here; nothing to test
+        }
+
+        assertEquals(21, new FileTreeWalker(tempDir.toPath()).collect().size());
+    }
+
+    @Test
+    public void stream_withLimit_shouldStopEarly() {
+        try (Stream<Path> stream = new FileTreeWalker(tempDir.toPath()).stream()) {
+            assertEquals(5, stream.limit(5).count());
+        }
+    }
+
+    @Test
+    public void stream_withDefaults_shouldMatchWalk() {
+        Set<Path> walked = new HashSet<>(new FileTreeWalker(tempDir.toPath()).collect());
+        try (Stream<Path> stream = new FileTreeWalker(tempDir.toPath()).stream()) {
+            assertEquals(walked, stream.collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void stream_withSorted_shouldMatchSortFiles() throws Exception {
+        // Throw in some names that sort differently by path than by directory depth:
+        FileSystemUtil.writeStringToFile("", new File(tempDir, "subdir1-a.txt"));
+        FileSystemUtil.writeStringToFile("", new File(tempDir, "SUBDIR1.txt"));
+        List<File> expected = new ArrayList<>();
+        for (Path path : new FileTreeWalker(tempDir.toPath()).collect()) {
+            expected.add(path.toFile());
+        }
+        FileSystemUtil.sortFiles(expected);
+
+        List<File> actual = new ArrayList<>();
+        try (Stream<Path> stream = new FileTreeWalker(tempDir.toPath()).setSorted(true).stream()) {
+            stream.forEach(path -> actual.add(path.toFile()));
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void walk_withMissingRootDir_shouldFindNothing() {
+        assertTrue(new FileTreeWalker(tempDir.toPath().resolve("nope")).collect().isEmpty());
+    }
+
+    @Test
+    public void setParallelism_withZero_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new FileTreeWalker(tempDir.toPath()).setParallelism(0));
+    }
+}
@@ -187,6 +187,64 @@ class FileWatcherTest {
         assertThrows(IllegalArgumentException.class, () -> watcher.ignoreSelfTriggeredChanges(-1));
     }
 
+    // ---- content verification ----
+
+    @Test
+    void contentVerification_withIdenticalRewrite_shouldNotInvokeCallback() throws Exception {
+        // GIVEN a watched file with content verification enabled:
+        File file = File.createTempFile("fwt", ".txt", tempDir);
+        Files.writeString(file.toPath(), "same content");
+        AtomicInteger callCount = new AtomicInteger(0);
+
+        watcher = new FileWatcher(file, callCount::incrementAndGet);
+        watcher.setContentVerificationEnabled(true);
+        watcher.start();
+
+        // WHEN the file is rewritten with the exact same content:
+        Files.writeString(file.toPath(), "same content");
+
+        // THEN no callback should be fired:
+        Thread.sleep(FileWatcher.DEBOUNCE_DELAY_MS + 500);
+        assertEquals(0, callCount.get(), "Identical rewrite should not be reported");
+    }
+
+    @Test
+    void contentVerification_withRealChange_shouldInvokeCallback() throws Exception {
+        // GIVEN a watched file with content verification enabled:
+        File file = File.createTempFile("fwt", ".txt", tempDir);
+        Files.writeString(file.toPath(), "before");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        watcher = new FileWatcher(file, latch::countDown);
+        watcher.setContentVerificationEnabled(true);
+        watcher.start();
+
+        // WHEN the file content actually changes, keeping the same size:
+        Files.writeString(file.toPath(), "after!");
+
+        // THEN the callback should be invoked:
+        assertTrue(latch.await(3, TimeUnit.SECONDS), "Real content change should be reported");
+    }
+
+    @Test
+    void markCurrentContentAsSeen_afterSelfWrite_shouldNotInvokeCallback() throws Exception {
+        // GIVEN a watched file with content verification enabled:
+        File file = File.createTempFile("fwt", ".txt", tempDir);
+        AtomicInteger callCount = new AtomicInteger(0);
+
+        watcher = new FileWatcher(file, callCount::incrementAndGet);
+        watcher.setContentVerificationEnabled(true);
+        watcher.start();
+
+        // WHEN we write the file ourselves and then mark it as seen:
+        Files.writeString(file.toPath(), "self-written content");
+        watcher.markCurrentContentAsSeen();
+
+        // THEN no callback should be fired:
+        Thread.sleep(FileWatcher.DEBOUNCE_DELAY_MS + 500);
+        assertEquals(0, callCount.get(), "Self-written content should not be reported");
+    }
+
     // ---- stop ----
 
     @Test
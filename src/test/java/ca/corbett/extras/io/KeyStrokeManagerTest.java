@@ -774,6 +774,85 @@ class KeyStrokeManagerTest {
         assertNull(action3.getValue(Action.ACCELERATOR_KEY), "Action3 accelerator should be cleared after unregister");
     }
 
+    @Test
+    public void getKeyStrokesForAction_withMultipleKeyStrokes_shouldReturnInRegistrationOrder() {
+        // GIVEN an action registered to several keystrokes:
+        Action action = new AbstractAction("A") {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+            }
+        };
+        keyManager.registerHandler("ctrl+1", action);
+        keyManager.registerHandler("ctrl+2", action);
+        keyManager.registerHandler("ctrl+3", action);
+
+        // WHEN we look up its keystrokes:
+        List<KeyStroke> keyStrokes = keyManager.getKeyStrokesForAction(action);
+
+        // THEN they should come back in the order they were registered:
+        assertEquals(List.of(KeyStrokeManager.parseKeyStroke("ctrl+1"),
+                             KeyStrokeManager.parseKeyStroke("ctrl+2"),
+                             KeyStrokeManager.parseKeyStroke("ctrl+3")), keyStrokes);
+        assertTrue(keyManager.isRegistered(action));
+    }
+
+    @Test
+    public void unregisterHandler_withKeyStroke_shouldUpdateReverseIndex() {
+        // GIVEN an action registered to two keystrokes:
+        Action action = new AbstractAction("A") {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+            }
+        };
+        keyManager.registerHandler("ctrl+1", action);
+        keyManager.registerHandler("ctrl+2", action);
+
+        // WHEN we unregister one of those keystrokes:
+        keyManager.unregisterHandler("ctrl+1");
+
+        // THEN only the other keystroke should remain for that action:
+        assertEquals(List.of(KeyStrokeManager.parseKeyStroke("ctrl+2")), keyManager.getKeyStrokesForAction(action));
+
+        // AND unregistering the last one should leave the action unregistered:
+        keyManager.unregisterHandler("ctrl+2");
+        assertFalse(keyManager.isRegistered(action));
+        assertTrue(keyManager.getKeyStrokesForAction(action).isEmpty());
+    }
+
+    @Test
+    public void isKeyCodeBound_shouldTrackRegisteredKeyCodes() {
+        // GIVEN an empty manager:
+        Action action = new AbstractAction("A") {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+            }
+        };
+        assertFalse(keyManager.isKeyCodeBound(KeyEvent.VK_F5));
+
+        // WHEN we register and then unregister a handler:
+        keyManager.registerHandler("ctrl+F5", action);
+        boolean boundAfterRegister = keyManager.isKeyCodeBound(KeyEvent.VK_F5);
+        keyManager.unregisterHandler(action);
+
+        // THEN the fast path should reflect both changes:
+        assertTrue(boundAfterRegister);
+        assertFalse(keyManager.isKeyCodeBound(KeyEvent.VK_F5));
+    }
+
+    @Test
+    public void isKeyCodeBound_afterClear_shouldReturnFalse() {
+        // GIVEN some registered handlers:
+        keyManager.registerHandler("ctrl+A", e -> { });
+        keyManager.registerHandler("shift+Enter", e -> { });
+
+        // WHEN we clear the manager:
+        keyManager.clear();
+
+        // THEN no key codes should be considered bound:
+        assertFalse(keyManager.isKeyCodeBound(KeyEvent.VK_A));
+        assertFalse(keyManager.isKeyCodeBound(KeyEvent.VK_ENTER));
+    }
+
     /**
      * Custom log handler for testing warning messages.
      */
@@ -4,14 +4,21 @@ import ca.corbett.extras.logging.Stopwatch;
 import org.junit.jupiter.api.Test;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -245,6 +252,30 @@ class TextFileDetectorTest {
         assertTrue(isText);
     }
 
+    @Test
+    public void detectTextFile_withUtf16BomAndNothingElse_shouldDetectAsText() throws Exception {
+        // GIVEN a file that contains only a UTF-16 BOM and no other content:
+        File tempFile = createTempFile(new byte[]{(byte)0xFE, (byte)0xFF});
+
+        // WHEN we try to detect if it's a text file:
+        boolean isText = TextFileDetector.isTextFile(tempFile);
+
+        // THEN we should see that it is treated the same as the UTF-8 BOM case:
+        assertTrue(isText);
+    }
+
+    @Test
+    public void detectTextFile_withLatin1TextStartingWithBomBytes_shouldDetectAsText() throws Exception {
+        // GIVEN a Latin-1 file that happens to start with "ÿþ", which looks like a UTF-16LE BOM:
+        File tempFile = createTempFile("ÿþ is not a byte order mark here".getBytes(StandardCharsets.ISO_8859_1));
+
+        // WHEN we try to detect if it's a text file:
+        boolean isText = TextFileDetector.isTextFile(tempFile);
+
+        // THEN it should be text, since there are no null bytes after the "BOM":
+        assertTrue(isText);
+    }
+
     @Test
     public void builder_withConfigParameters_shouldApplySettings() throws Exception {
         // GIVEN a file with some binary characters:
@@ -267,4 +298,234 @@ class TextFileDetectorTest {
         // With 5 binary chars out of ~30 total chars, it's above 10% threshold, so should be detected as binary
         assertFalse(isText);
     }
+
+    @Test
+    public void classify_withAsciiFile_shouldReportAscii() throws Exception {
+        File tempFile = createTempFile("Hello there.".getBytes(StandardCharsets.US_ASCII));
+
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.US_ASCII, result.charset());
+    }
+
+    @Test
+    public void classify_withUtf8File_shouldReportUtf8() throws Exception {
+        File tempFile = createTempFile("Grüße aus Köln – ça va? 日本語".getBytes(StandardCharsets.UTF_8));
+
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.UTF_8, result.charset());
+    }
+
+    @Test
+    public void classify_withLatin1File_shouldReportLatin1() throws Exception {
+        File tempFile = createTempFile("Grüße aus Köln".getBytes(StandardCharsets.ISO_8859_1));
+
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.ISO_8859_1, result.charset());
+    }
+
+    @Test
+    public void classify_withUtf8SequenceCutOffBySample_shouldStillReportUtf8() throws Exception {
+        // GIVEN a UTF-8 file where a multibyte character straddles the end of the sample:
+        byte[] data = ("abcdefg" + "日本語".repeat(100)).getBytes(StandardCharsets.UTF_8);
+        File tempFile = createTempFile(data);
+
+        // WHEN we classify it with a sample size that cuts the second character in half:
+        TextFileDetector.Result result = new TextFileDetector.Builder().sampleSize(12).classify(tempFile);
+
+        // THEN it should still be considered valid UTF-8:
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.UTF_8, result.charset());
+    }
+
+    @Test
+    public void classify_withIllFormedUtf8_shouldNotReportUtf8() throws Exception {
+        // GIVEN sequences that look like UTF-8 but are ruled out by the second byte (Unicode Table 3-7):
+        byte[][] illFormed = {
+                {(byte)0xE0, (byte)0x80, (byte)0x80}, // overlong encoding
+                {(byte)0xED, (byte)0xA0, (byte)0x80}, // UTF-16 surrogate
+                {(byte)0xF0, (byte)0x80, (byte)0x80, (byte)0x80}, // overlong encoding
+                {(byte)0xF4, (byte)0x90, (byte)0x80, (byte)0x80} // above U+10FFFF
+        };
+        for (byte[] sequence : illFormed) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            data.write("Some text ".getBytes(StandardCharsets.US_ASCII));
+            data.write(sequence);
+            data.write(" more text".getBytes(StandardCharsets.US_ASCII));
+
+            // WHEN we classify it:
+            TextFileDetector.Result result = TextFileDetector.classify(createTempFile(data.toByteArray()));
+
+            // THEN it should not be reported as UTF-8:
+            assertTrue(result.isText());
+            assertEquals(StandardCharsets.ISO_8859_1, result.charset(), HexFormat.of().formatHex(sequence));
+        }
+    }
+
+    @Test
+    public void classify_withBoundaryUtf8_shouldReportUtf8() throws Exception {
+        // GIVEN the lowest and highest code points that those second-byte limits still allow:
+        String text = "\u0800 \uD7FF \uE000 \uD800\uDC00 \uDBFF\uDFFF";
+        File tempFile = createTempFile(text.getBytes(StandardCharsets.UTF_8));
+
+        // WHEN we classify it:
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        // THEN it should be UTF-8:
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.UTF_8, result.charset());
+    }
+
+    @Test
+    public void classify_withUtf8BomAndInvalidUtf8_shouldNotReportUtf8() throws Exception {
+        // GIVEN a file that starts with a UTF-8 BOM but continues in Latin-1:
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(new byte[]{(byte)0xEF, (byte)0xBB, (byte)0xBF});
+        data.write("Grüße aus Köln".getBytes(StandardCharsets.ISO_8859_1));
+        File tempFile = createTempFile(data.toByteArray());
+
+        // WHEN we classify it:
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        // THEN the BOM alone should not make it UTF-8:
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.ISO_8859_1, result.charset());
+    }
+
+    @Test
+    public void classify_withUtf16Bom_shouldReportUtf16() throws Exception {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(new byte[]{(byte)0xFE, (byte)0xFF});
+        data.write("Hello there, how are you?\n".getBytes(StandardCharsets.UTF_16BE));
+        File tempFile = createTempFile(data.toByteArray());
+
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.UTF_16BE, result.charset());
+
+        // The legacy method still treats it as binary:
+        assertFalse(TextFileDetector.isTextFile(tempFile));
+    }
+
+    @Test
+    public void classify_withUtf16LeWithoutBom_shouldReportUtf16Le() throws Exception {
+        File tempFile = createTempFile("Hello there, how are you?".getBytes(StandardCharsets.UTF_16LE));
+
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        assertTrue(result.isText());
+        assertEquals(StandardCharsets.UTF_16LE, result.charset());
+    }
+
+    @Test
+    public void classify_withBinaryFile_shouldReportNoCharset() throws Exception {
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        File tempFile = createTempFile(data);
+
+        TextFileDetector.Result result = TextFileDetector.classify(tempFile);
+
+        assertFalse(result.isText());
+        assertNull(result.charset());
+    }
+
+    @Test
+    public void classifyAll_withManyFiles_shouldReturnResultsInOrder() throws Exception {
+        // GIVEN a mix of text files, binary files, and a file that doesn't exist:
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            if (i % 2 == 0) {
+                files.add(createTempFile(("Text file " + i).getBytes(StandardCharsets.US_ASCII)));
+            }
+            else {
+                files.add(createTempFile(new byte[]{1, 2, 3, 0, 5, 6, (byte)i}));
+            }
+        }
+        File missing = new File(files.get(0).getParentFile(), "doesNotExist" + System.nanoTime());
+        files.add(missing);
+
+        // WHEN we classify them all at once:
+        List<TextFileDetector.Result> results = new TextFileDetector.Builder().parallelism(4).classifyAll(files);
+
+        // THEN each result should match its file:
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(files.get(i), results.get(i).file());
+            assertEquals(i % 2 == 0, results.get(i).isText());
+            assertFalse(results.get(i).isError());
+        }
+        assertTrue(results.get(50).isError());
+        assertFalse(results.get(50).isText());
+    }
+
+    @Test
+    public void classifyAll_withFileThatThrowsRuntimeException_shouldReportItAsError() throws Exception {
+        // GIVEN a batch with a file that throws something other than an IOException when we look at it:
+        File good = createTempFile("Some text".getBytes(StandardCharsets.US_ASCII));
+        File bad = new File(createTempFile("More text".getBytes(StandardCharsets.US_ASCII)).getPath()) {
+            @Override
+            public long length() {
+                throw new SecurityException("Access denied");
+            }
+        };
+
+        // WHEN we classify them all at once:
+        List<TextFileDetector.Result> results = TextFileDetector.classifyAll(List.of(bad, good), 1024, 0.02, 1);
+
+        // THEN the bad file should be reported as unreadable, and the rest of the batch should carry on:
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isError());
+        assertFalse(results.get(0).isText());
+        assertFalse(results.get(1).isError());
+        assertTrue(results.get(1).isText());
+    }
+
+    @Test
+    public void scan_withRandomText_shouldMatchByteByByteCount() {
+        // GIVEN mostly-printable random data sprinkled with control characters:
+        Random random = new Random(42);
+        byte[] data = new byte[10_000];
+        int expectedControls = 0;
+        for (int i = 0; i < data.length; i++) {
+            int r = random.nextInt(100);
+            if (r < 3) {
+                data[i] = (byte)(1 + random.nextInt(8)); // 0x01-0x08 are all non-whitespace controls
+                expectedControls++;
+            }
+            else if (r < 6) {
+                data[i] = '\n';
+            }
+            else {
+                data[i] = (byte)(32 + random.nextInt(95));
+            }
+        }
+
+        // WHEN we scan it, starting at an unaligned offset:
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int unalignedControls = 0;
+        for (int i = 0; i < 3; i++) {
+            if (data[i] > 0 && data[i] < 9) {
+                unalignedControls++;
+            }
+        }
+        TextFileDetector.SampleStats stats = TextFileDetector.scan(buffer, 3, data.length);
+
+        // THEN the word-at-a-time fast path shouldn't have missed anything:
+        assertEquals(expectedControls - unalignedControls, stats.controls());
+        assertEquals(0, stats.nonAscii());
+        assertTrue(stats.validUtf8());
+    }
+
+    private static File createTempFile(byte[] data) throws IOException {
+        File tempFile = File.createTempFile("detectTextFile", ".tmp");
+        tempFile.deleteOnExit();
+        Files.write(tempFile.toPath(), data);
+        return tempFile;
+    }
 }
@@ -0,0 +1,143 @@
+package ca.corbett.extras.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchHubTest {
+
+    @TempDir
+    File tempDir;
+
+    private WatchHub hub;
+
+    @BeforeEach
+    void setup() {
+        hub = new WatchHub();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+    }
+
+    @Test
+    void watchFile_withManyFilesInSameDirectory_shouldShareOneRegistration() throws Exception {
+        WatchHub.Subscription first = null;
+        for (int i = 0; i < 20; i++) {
+            WatchHub.Subscription subscription = hub.watchFile(new File(tempDir, "file" + i).toPath(), 0, () -> {
+            });
+            if (first == null) {
+                first = subscription;
+            }
+        }
+
+        assertEquals(1, hub.getRegisteredDirectoryCount());
+        first.close();
+        assertEquals(1, hub.getRegisteredDirectoryCount());
+        assertFalse(first.isActive());
+    }
+
+    @Test
+    void close_lastSubscription_shouldUnregisterDirectory() throws Exception {
+        WatchHub.Subscription a = hub.watchFile(new File(tempDir, "a").toPath(), 0, () -> {
+        });
+        WatchHub.Subscription b = hub.watchFile(new File(tempDir, "b").toPath(), 0, () -> {
+        });
+
+        a.close();
+        b.close();
+
+        assertEquals(0, hub.getRegisteredDirectoryCount());
+    }
+
+    @Test
+    void close_lastSubscription_shouldReleaseWatchServiceAndStopDispatcher() throws Exception {
+        WatchHub.Subscription a = hub.watchFile(new File(tempDir, "a").toPath(), 0, () -> {
+        });
+        assertEquals(1, hub.getWatchServiceCount());
+        assertTrue(hub.isDispatcherRunning());
+
+        a.close();
+
+        assertEquals(0, hub.getWatchServiceCount());
+        waitFor(() -> !hub.isDispatcherRunning());
+        assertFalse(hub.isDispatcherRunning());
+    }
+
+    @Test
+    void watchFile_withRapidChanges_shouldDebounceIntoOneCallback() throws Exception {
+        File file = new File(tempDir, "watched.txt");
+        AtomicInteger callCount = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        hub.watchFile(file.toPath(), 300, () -> {
+            callCount.incrementAndGet();
+            latch.countDown();
+        });
+
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(file.toPath(), "content " + i);
+            Thread.sleep(30);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(500);
+        assertEquals(1, callCount.get());
+    }
+
+    @Test
+    void watchDirectory_recursive_shouldSeeChangesInNewSubdirectories() throws Exception {
+        Set<Path> changed = ConcurrentHashMap.newKeySet();
+        File subdir = new File(tempDir, "existing");
+        subdir.mkdirs();
+        hub.watchDirectory(tempDir.toPath(), true, (path, kind) -> {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                changed.add(path);
+            }
+        });
+        assertEquals(2, hub.getRegisteredDirectoryCount());
+
+        File newDir = new File(tempDir, "created");
+        newDir.mkdirs();
+        waitFor(() -> hub.getRegisteredDirectoryCount() == 3);
+        File deepFile = new File(newDir, "deep.txt");
+        Files.writeString(deepFile.toPath(), "hello");
+
+        waitFor(() -> changed.contains(deepFile.toPath().toAbsolutePath()));
+        assertTrue(changed.contains(newDir.toPath().toAbsolutePath()));
+        assertTrue(changed.contains(deepFile.toPath().toAbsolutePath()));
+    }
+
+    @Test
+    void watchFile_afterClose_shouldThrow() {
+        hub.close();
+        assertThrows(IllegalStateException.class,
+                     () -> hub.watchFile(new File(tempDir, "x").toPath(), 0, () -> {
+                     }));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        // WatchService latency varies a lot by platform (polling implementations can take seconds):
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+}
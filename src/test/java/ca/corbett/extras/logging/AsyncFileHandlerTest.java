@@ -0,0 +1,295 @@
+package ca.corbett.extras.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncFileHandlerTest {
+
+    @Test
+    public void publish_withFlush_shouldWriteRecordsInOrder(@TempDir Path tempDir) throws IOException {
+        // GIVEN a handler writing one message per line:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file);
+        handler.setFormatter(new MessageFormatter());
+
+        // WHEN we publish some records and flush:
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        handler.flush();
+
+        // THEN they should all be in the file, in order:
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(100, lines.size());
+        assertEquals("message 0", lines.get(0));
+        assertEquals("message 99", lines.get(99));
+        handler.close();
+    }
+
+    @Test
+    public void publish_afterClose_shouldBeIgnored(@TempDir Path tempDir) throws IOException {
+        // GIVEN a closed handler:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file);
+        handler.setFormatter(new MessageFormatter());
+        handler.publish(new LogRecord(Level.INFO, "before"));
+        handler.close();
+
+        // WHEN we publish after closing:
+        handler.publish(new LogRecord(Level.INFO, "after"));
+        handler.flush();
+
+        // THEN only the first record should have been written:
+        assertEquals(List.of("before"), Files.readAllLines(file.toPath()));
+    }
+
+    @Test
+    public void publish_pastMaxFileSize_shouldRotateAndKeepMaxBackups(@TempDir Path tempDir) throws IOException {
+        // GIVEN a handler that rotates every 20 bytes and keeps two backups:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file)
+                .setMaxFileSize(20)
+                .setMaxBackups(2);
+        handler.setFormatter(new MessageFormatter());
+
+        // WHEN we write enough to rotate several times:
+        for (int i = 0; i < 5; i++) {
+            handler.publish(new LogRecord(Level.INFO, "0123456789abcdef"));
+            handler.flush();
+        }
+        handler.close();
+
+        // THEN the log file should hold only the latest record, and only two backups should be left:
+        assertEquals(List.of("0123456789abcdef"), Files.readAllLines(file.toPath()));
+        List<Path> backups = handler.getRotatedFiles();
+        assertEquals(2, backups.size());
+        for (Path backup : backups) {
+            assertEquals(List.of("0123456789abcdef"), Files.readAllLines(backup));
+        }
+    }
+
+    @Test
+    public void rotate_withCompression_shouldGzipRotatedFiles(@TempDir Path tempDir) throws IOException {
+        // GIVEN a handler that compresses rotated files:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file)
+                .setMaxFileSize(10)
+                .setCompressRotatedFiles(true);
+        handler.setFormatter(new MessageFormatter());
+
+        // WHEN the file is rotated:
+        handler.publish(new LogRecord(Level.INFO, "first line"));
+        handler.flush();
+        handler.publish(new LogRecord(Level.INFO, "second line"));
+        handler.close();
+
+        // THEN the rotated file should be gzipped, with the uncompressed copy removed:
+        List<Path> backups = handler.getRotatedFiles();
+        assertEquals(1, backups.size());
+        assertTrue(backups.get(0).toString().endsWith(".gz"));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(backups.get(0)))) {
+            assertEquals("first line" + System.lineSeparator(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of("second line"), Files.readAllLines(file.toPath()));
+    }
+
+    @Test
+    public void publish_withFullQueueAndDropPolicy_shouldDropAndReport(@TempDir Path tempDir) throws Exception {
+        // GIVEN a handler with a tiny queue, whose writer is stuck formatting the first record:
+        File file = tempDir.resolve("test.log").toFile();
+        BlockingFormatter formatter = new BlockingFormatter();
+        AsyncFileHandler handler = new AsyncFileHandler(file, 2)
+                .setOverflowPolicy(AsyncFileHandler.OverflowPolicy.DROP);
+        handler.setFormatter(formatter);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(formatter.started.await(5, TimeUnit.SECONDS));
+
+        // WHEN we publish more than the queue can hold:
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "extra " + i));
+        }
+
+        // THEN the overflow should be dropped without blocking, and reported in the file:
+        assertEquals(8, handler.getDroppedCount());
+        formatter.release.countDown();
+        handler.close();
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals("first", lines.get(0));
+        assertTrue(lines.get(1).contains("8 log record(s) dropped"));
+        assertEquals(List.of("extra 0", "extra 1"), lines.subList(2, 4));
+    }
+
+    @Test
+    public void publish_withDropBelowLevel_shouldKeepImportantRecords(@TempDir Path tempDir) throws Exception {
+        // GIVEN a full queue that only drops records below WARNING:
+        File file = tempDir.resolve("test.log").toFile();
+        BlockingFormatter formatter = new BlockingFormatter();
+        AsyncFileHandler handler = new AsyncFileHandler(file, 1)
+                .setOverflowPolicy(AsyncFileHandler.OverflowPolicy.DROP_BELOW_LEVEL)
+                .setOverflowLevel(Level.WARNING);
+        handler.setFormatter(formatter);
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(formatter.started.await(5, TimeUnit.SECONDS));
+        handler.publish(new LogRecord(Level.INFO, "queued"));
+
+        // WHEN we publish an unimportant record and then an important one:
+        handler.publish(new LogRecord(Level.FINE, "unimportant"));
+        Thread producer = new Thread(() -> handler.publish(new LogRecord(Level.SEVERE, "important")));
+        producer.start();
+
+        // THEN the unimportant one should be dropped, and the important one should wait for room:
+        assertEquals(1, handler.getDroppedCount());
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        formatter.release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        handler.close();
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertTrue(lines.contains("important"));
+        assertFalse(lines.contains("unimportant"));
+    }
+
+    @Test
+    public void close_calledAgainOrFollowedByFlush_shouldReturnImmediately(@TempDir Path tempDir) throws IOException {
+        // GIVEN a handler that has been closed:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file);
+        handler.setFormatter(new MessageFormatter());
+        handler.publish(new LogRecord(Level.INFO, "before"));
+        handler.close();
+
+        // WHEN we close it again and flush it:
+        // THEN neither should wait for a writer that is no longer running:
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            handler.close();
+            handler.flush();
+        });
+        assertEquals(List.of("before"), Files.readAllLines(file.toPath()));
+    }
+
+    @Test
+    public void publish_afterWriterFails_shouldNotBlock(@TempDir Path tempDir) {
+        // GIVEN a handler with a tiny queue, whose writer dies on the first record:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file, 1);
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex, int code) {
+                // Expected; keep the test output quiet.
+            }
+        });
+        handler.setFormatter(new MessageFormatter() {
+            @Override
+            public String getHead(Handler h) {
+                throw new IllegalStateException("Broken formatter");
+            }
+        });
+
+        // WHEN we keep publishing, flushing and closing with the BLOCK policy:
+        // THEN nothing should wait for the dead writer:
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 10; i++) {
+                handler.publish(new LogRecord(Level.INFO, "message " + i));
+            }
+            handler.flush();
+            handler.close();
+        });
+    }
+
+    @Test
+    public void constructor_shouldNotStartWriterUntilFirstPublish(@TempDir Path tempDir) throws IOException {
+        // GIVEN a handler that has been created and configured, but not used yet:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file);
+        handler.setFormatter(new MessageFormatter());
+
+        // WHEN we flush it:
+        handler.flush();
+
+        // THEN no file should have been created yet:
+        assertFalse(file.exists());
+
+        // AND the first record should start the writer with the configuration we gave it:
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        handler.flush();
+        assertEquals(List.of("first"), Files.readAllLines(file.toPath()));
+        handler.close();
+    }
+
+    @Test
+    public void close_withoutPublishing_shouldReturnImmediately(@TempDir Path tempDir) {
+        // GIVEN a handler that was never used:
+        File file = tempDir.resolve("test.log").toFile();
+        AsyncFileHandler handler = new AsyncFileHandler(file);
+
+        // WHEN we close it:
+        // THEN it shouldn't wait for a writer that was never started, and should ignore later records:
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            handler.close();
+            handler.publish(new LogRecord(Level.INFO, "after close"));
+            handler.flush();
+        });
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void setters_withInvalidValues_shouldThrow(@TempDir Path tempDir) {
+        AsyncFileHandler handler = new AsyncFileHandler(tempDir.resolve("test.log").toFile());
+        assertThrows(IllegalArgumentException.class, () -> handler.setMaxFileSize(-1));
+        assertThrows(IllegalArgumentException.class, () -> handler.setMaxBackups(-1));
+        assertThrows(IllegalArgumentException.class, () -> handler.setOverflowPolicy(null));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncFileHandler(null));
+        handler.close();
+    }
+
+    private static class MessageFormatter extends Formatter {
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage() + System.lineSeparator();
+        }
+    }
+
+    /**
+     * Holds up the writer thread on the first record it formats, until released.
+     */
+    private static class BlockingFormatter extends MessageFormatter {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String format(LogRecord record) {
+            started.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.format(record);
+        }
+    }
+}
@@ -130,6 +130,28 @@ public class LogConsoleThemeTest {
         assertEquals(customStyle1, theme.getMatchingStyle("foobar barfoo", Level.INFO));
     }
 
+    @Test
+    public void getMatchingStyle_afterStyleChanges_shouldUseNewMatchers() {
+        // GIVEN a theme that has already matched a message:
+        LogConsoleTheme theme = LogConsoleTheme.createDefaultStyledTheme();
+        LogConsoleStyle customStyle = new LogConsoleStyle();
+        theme.setStyle("custom", customStyle);
+        assertEquals(theme.getStyle(LogConsoleTheme.DEFAULT_STYLE_NAME), theme.getMatchingStyle("foobar", Level.INFO));
+
+        // WHEN one of its styles is given a new log token:
+        customStyle.setLogToken("foo", false);
+
+        // THEN the new token should be matched:
+        assertEquals(customStyle, theme.getMatchingStyle("FOObar", Level.INFO));
+
+        // WHEN the style is removed:
+        theme.removeStyle("custom");
+
+        // THEN it should no longer match:
+        assertEquals(theme.getStyle(LogConsoleTheme.DEFAULT_STYLE_NAME), theme.getMatchingStyle("foobar", Level.INFO));
+        assertEquals(theme.getStyle("Errors"), theme.getMatchingStyle("foobar", Level.SEVERE));
+    }
+
     private LogConsoleStyle createTestStyle() {
         LogConsoleStyle style = new LogConsoleStyle();
         style.setIsBold(true);
@@ -0,0 +1,155 @@
+package ca.corbett.extras.logging;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingConstants;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogConsoleViewTest {
+
+    @Test
+    public void historyChanged_shouldShowNewEntries() {
+        // GIVEN a view over a history with some entries:
+        LogHistory history = new LogHistory(100);
+        LogConsoleView view = createView(history);
+        add(history, "first\n", Level.INFO);
+        add(history, "second\nsecond, line 2\n", Level.WARNING);
+
+        // WHEN the view is told about them:
+        view.historyChanged();
+
+        // THEN their lines should be shown:
+        assertEquals(3, view.getLineCount());
+        assertEquals("first\nsecond\nsecond, line 2\n", view.getText());
+        assertEquals(3 * view.getScrollableUnitIncrement(null, SwingConstants.VERTICAL, 1)
+                             + view.getInsets().top + view.getInsets().bottom,
+                     view.getPreferredSize().height);
+    }
+
+    @Test
+    public void historyChanged_afterEviction_shouldDropEvictedLines() {
+        // GIVEN a view over a small history that has been shown:
+        LogHistory history = new LogHistory(2);
+        LogConsoleView view = createView(history);
+        add(history, "one\n", Level.INFO);
+        add(history, "two\n", Level.INFO);
+        view.historyChanged();
+
+        // WHEN more entries push the old ones out:
+        add(history, "three\n", Level.INFO);
+        add(history, "four\n", Level.INFO);
+        view.historyChanged();
+
+        // THEN only the surviving entries should be shown:
+        assertEquals("three\nfour\n", view.getText());
+    }
+
+    @Test
+    public void setFilter_shouldFilterWholeHistory() {
+        // GIVEN a view showing entries at several levels:
+        LogHistory history = new LogHistory(100);
+        LogConsoleView view = createView(history);
+        add(history, "fine detail\n", Level.FINE);
+        add(history, "Disk almost full\n", Level.WARNING);
+        add(history, "disk failed\n", Level.SEVERE);
+        add(history, "all good\n", Level.INFO);
+        view.historyChanged();
+
+        // WHEN we filter by level:
+        view.setFilter(new LogFilter(Level.WARNING, null));
+
+        // THEN only entries at that level or above should be shown:
+        assertEquals("Disk almost full\ndisk failed\n", view.getText());
+
+        // WHEN we filter by text:
+        view.setFilter(new LogFilter(null, "DISK"));
+
+        // THEN only entries containing that text, ignoring case, should be shown:
+        assertEquals("Disk almost full\ndisk failed\n", view.getText());
+
+        // WHEN we filter by both, and new entries arrive:
+        view.setFilter(new LogFilter(Level.SEVERE, "disk"));
+        add(history, "disk on fire\n", Level.SEVERE);
+        add(history, "disk is fine\n", Level.INFO);
+        view.historyChanged();
+
+        // THEN new entries should be filtered too:
+        assertEquals("disk failed\ndisk on fire\n", view.getText());
+
+        // WHEN we remove the filter:
+        view.setFilter(LogFilter.NONE);
+
+        // THEN everything should be back:
+        assertEquals(6, view.getLineCount());
+    }
+
+    @Test
+    public void getSelectedText_shouldReturnSelectedLines() {
+        LogHistory history = new LogHistory(100);
+        LogConsoleView view = createView(history);
+        add(history, "one\ntwo\n", Level.INFO);
+        view.historyChanged();
+        assertEquals("", view.getSelectedText());
+        view.selectAll();
+        assertEquals("one\ntwo\n", view.getSelectedText());
+        view.clearSelection();
+        assertEquals("", view.getSelectedText());
+    }
+
+    @Test
+    public void styleChanged_shouldPickUpNewFontSize() {
+        // GIVEN a view with some content:
+        LogHistory history = new LogHistory(100);
+        LogConsoleTheme theme = LogConsoleTheme.createDefaultStyledTheme();
+        LogConsoleView view = new LogConsoleView(history);
+        view.setTheme(theme);
+        add(history, "one\n", Level.INFO);
+        view.historyChanged();
+        int smallHeight = view.getPreferredSize().height;
+
+        // WHEN the theme's font size goes up:
+        theme.setFontPointSize(36);
+        view.styleChanged();
+
+        // THEN the lines should get taller:
+        assertTrue(view.getPreferredSize().height > smallHeight);
+    }
+
+    @Test
+    public void paint_shouldNotFail() {
+        // GIVEN a view with styled content:
+        LogHistory history = new LogHistory(100);
+        LogConsoleView view = createView(history);
+        add(history, "plain\n", Level.INFO);
+        add(history, "warning\twith a tab\n", Level.WARNING);
+        add(history, "error\n", Level.SEVERE);
+        view.historyChanged();
+        view.selectAll();
+        view.setSize(view.getPreferredSize());
+
+        // WHEN we paint it:
+        BufferedImage image = new BufferedImage(Math.max(1, view.getWidth()), Math.max(1, view.getHeight()),
+                                                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        view.paint(g);
+        g.dispose();
+
+        // THEN something should have been drawn in the background colour:
+        assertEquals(view.getBackground().getRGB(), image.getRGB(0, 0));
+    }
+
+    private static LogConsoleView createView(LogHistory history) {
+        LogConsoleView view = new LogConsoleView(history);
+        view.setTheme(LogConsoleTheme.createDefaultStyledTheme());
+        return view;
+    }
+
+    private static void add(LogHistory history, String message, Level level) {
+        history.add(new LogHistory.Entry(message, level, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,140 @@
+package ca.corbett.extras.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogHistoryTest {
+
+    @Test
+    public void add_belowCapacity_shouldEvictNothing() {
+        // GIVEN a history with room for three entries:
+        LogHistory history = new LogHistory(3);
+
+        // WHEN we add three:
+        // THEN nothing should be evicted, and they should be indexed oldest first:
+        assertNull(history.add(entry("one")));
+        assertNull(history.add(entry("two")));
+        assertNull(history.add(entry("three")));
+        assertEquals(3, history.size());
+        assertEquals("one", history.get(0).message());
+        assertEquals("three", history.get(2).message());
+    }
+
+    @Test
+    public void add_atCapacity_shouldEvictOldest() {
+        // GIVEN a full history:
+        LogHistory history = new LogHistory(3);
+        history.add(entry("one"));
+        history.add(entry("two"));
+        history.add(entry("three"));
+
+        // WHEN we add more:
+        LogHistory.Entry evicted1 = history.add(entry("four"));
+        LogHistory.Entry evicted2 = history.add(entry("five"));
+
+        // THEN the oldest should be pushed out, one at a time:
+        assertEquals("one", evicted1.message());
+        assertEquals("two", evicted2.message());
+        assertEquals(3, history.size());
+        assertEquals("three", history.get(0).message());
+        assertEquals("four", history.get(1).message());
+        assertEquals("five", history.get(2).message());
+    }
+
+    @Test
+    public void get_outOfBounds_shouldThrow() {
+        LogHistory history = new LogHistory(3);
+        history.add(entry("one"));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.get(-1));
+    }
+
+    @Test
+    public void setCapacity_smaller_shouldKeepNewest() {
+        // GIVEN a history that has wrapped around:
+        LogHistory history = new LogHistory(4);
+        for (int i = 1; i <= 6; i++) {
+            history.add(entry("msg" + i));
+        }
+
+        // WHEN we shrink it:
+        history.setCapacity(2);
+
+        // THEN only the newest entries should remain:
+        assertEquals(2, history.getCapacity());
+        assertEquals(2, history.size());
+        assertEquals("msg5", history.get(0).message());
+        assertEquals("msg6", history.get(1).message());
+    }
+
+    @Test
+    public void setCapacity_larger_shouldKeepEverything() {
+        // GIVEN a history that has wrapped around:
+        LogHistory history = new LogHistory(3);
+        for (int i = 1; i <= 5; i++) {
+            history.add(entry("msg" + i));
+        }
+
+        // WHEN we grow it and add more:
+        history.setCapacity(5);
+        assertNull(history.add(entry("msg6")));
+
+        // THEN everything should still be there, in order:
+        assertEquals(4, history.size());
+        assertEquals("msg3", history.get(0).message());
+        assertEquals("msg6", history.get(3).message());
+    }
+
+    @Test
+    public void clear_shouldEmptyHistory() {
+        LogHistory history = new LogHistory(3);
+        history.add(entry("one"));
+        history.clear();
+        assertTrue(history.isEmpty());
+        assertNull(history.add(entry("two")));
+        assertEquals("two", history.get(0).message());
+    }
+
+    @Test
+    public void getBySequence_shouldFindEntriesAfterEviction() {
+        // GIVEN a history that has evicted some entries:
+        LogHistory history = new LogHistory(3);
+        for (int i = 0; i < 5; i++) {
+            history.add(entry("msg" + i));
+        }
+
+        // WHEN we look entries up by sequence number:
+        // THEN the surviving ones should be found, and the evicted ones should not:
+        assertEquals(2, history.getFirstSequence());
+        assertEquals(5, history.getNextSequence());
+        assertEquals("msg2", history.getBySequence(2).message());
+        assertEquals("msg4", history.getBySequence(4).message());
+        assertThrows(IndexOutOfBoundsException.class, () -> history.getBySequence(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.getBySequence(5));
+
+        // WHEN we shrink and then clear it:
+        history.setCapacity(1);
+        assertEquals(4, history.getFirstSequence());
+        history.clear();
+
+        // THEN sequence numbers should carry on where they left off:
+        assertEquals(5, history.getFirstSequence());
+        history.add(entry("msg5"));
+        assertEquals("msg5", history.getBySequence(5).message());
+    }
+
+    @Test
+    public void constructor_withZeroCapacity_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new LogHistory(0));
+    }
+
+    private static LogHistory.Entry entry(String message) {
+        return new LogHistory.Entry(message, Level.INFO, System.currentTimeMillis());
+    }
+}
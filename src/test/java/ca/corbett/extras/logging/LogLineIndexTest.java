@@ -0,0 +1,84 @@
+package ca.corbett.extras.logging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogLineIndexTest {
+
+    @Test
+    public void addEntry_withMultipleLines_shouldAddOneLinePerLine() {
+        // GIVEN a two-line message, as SimpleFormatter produces:
+        LogLineIndex index = new LogLineIndex();
+        String message = "Jan 01 com.example.Foo bar\nINFO: hello\n";
+
+        // WHEN we add it:
+        index.addEntry(7, message);
+
+        // THEN there should be two lines, without the line breaks:
+        assertEquals(2, index.size());
+        assertEquals(7, index.getSequence(0));
+        assertEquals("Jan 01 com.example.Foo bar", message.substring(index.getStart(0), index.getEnd(0)));
+        assertEquals("INFO: hello", message.substring(index.getStart(1), index.getEnd(1)));
+        assertEquals("Jan 01 com.example.Foo bar".length(), index.getMaxLineLength());
+    }
+
+    @Test
+    public void addEntry_withCarriageReturns_shouldLeaveThemOff() {
+        LogLineIndex index = new LogLineIndex();
+        String message = "one\r\ntwo\r\n";
+        index.addEntry(0, message);
+        assertEquals(2, index.size());
+        assertEquals("one", message.substring(index.getStart(0), index.getEnd(0)));
+        assertEquals("two", message.substring(index.getStart(1), index.getEnd(1)));
+    }
+
+    @Test
+    public void addEntry_withEmptyMessage_shouldAddOneEmptyLine() {
+        LogLineIndex index = new LogLineIndex();
+        index.addEntry(0, "");
+        assertEquals(1, index.size());
+        assertEquals(0, index.getEnd(0) - index.getStart(0));
+    }
+
+    @Test
+    public void addEntry_withEntriesMissingTrailingLineBreaks_shouldStartEachOnItsOwnLine() {
+        // GIVEN a line built up out of several appends:
+        LogLineIndex index = new LogLineIndex();
+
+        // WHEN we add them:
+        index.addEntry(0, "Loading...");
+        index.addEntry(1, " done\n");
+
+        // THEN they should not be joined together:
+        assertEquals(2, index.size());
+        assertEquals(0, index.getSequence(0));
+        assertEquals(1, index.getSequence(1));
+    }
+
+    @Test
+    public void removeEntriesBefore_shouldDropOldestLines() {
+        // GIVEN lines from several entries, enough to make the index grow and wrap:
+        LogLineIndex index = new LogLineIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.addEntry(i, "line a\nline b\n");
+        }
+
+        // WHEN we drop the lines of the oldest entries:
+        int removed = index.removeEntriesBefore(2000);
+
+        // THEN only the lines of the newer entries should remain:
+        assertEquals(4000, removed);
+        assertEquals(2000, index.size());
+        assertEquals(2000, index.getSequence(0));
+        assertEquals(2999, index.getSequence(1999));
+
+        // AND we should be able to keep adding after wrapping:
+        for (int i = 3000; i < 5000; i++) {
+            index.addEntry(i, "line c\n");
+        }
+        assertEquals(4000, index.size());
+        assertEquals(2000, index.getSequence(0));
+        assertEquals(4999, index.getSequence(3999));
+    }
+}
@@ -0,0 +1,133 @@
+package ca.corbett.extras.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogStyleMatcherTest {
+
+    @Test
+    public void match_withNothingMatching_shouldReturnDefault() {
+        LogStyleMatcher matcher = compile(style(null, false, Level.SEVERE), style("boom", true, null));
+        assertEquals(0, matcher.match("all quiet", Level.INFO));
+        assertEquals(0, matcher.match(null, null));
+    }
+
+    @Test
+    public void match_withOverlappingTokens_shouldReturnFirstStyleInOrder() {
+        // GIVEN styles whose tokens overlap, where a later style's token contains an earlier one's:
+        LogStyleMatcher matcher = compile(style("she", true, null),
+                                          style("he", true, null),
+                                          style("hers", true, null));
+
+        // WHEN a message contains several of them:
+        // THEN the first style in order should win, even if its token ends later:
+        assertEquals(1, matcher.match("ushers", Level.INFO));
+        assertEquals(2, matcher.match("xhers", Level.INFO));
+        assertEquals(2, matcher.match("hers only", Level.INFO));
+    }
+
+    @Test
+    public void match_withCaseInsensitiveToken_shouldIgnoreCase() {
+        LogStyleMatcher matcher = compile(style("Error", false, null), style("Fatal", true, null));
+        assertEquals(1, matcher.match("an ERROR occurred", Level.INFO));
+        assertEquals(0, matcher.match("a FATAL thing", Level.INFO));
+        assertEquals(2, matcher.match("a Fatal thing", Level.INFO));
+    }
+
+    @Test
+    public void match_withTokenAndLevel_shouldPreferTokenOverLevel() {
+        // GIVEN a level-only style that comes before a token-only style:
+        LogStyleMatcher matcher = compile(style(null, false, Level.WARNING), style("disk", false, null));
+
+        // WHEN a warning mentions the token:
+        // THEN the token match should win over the level match:
+        assertEquals(2, matcher.match("disk full", Level.WARNING));
+        assertEquals(1, matcher.match("cpu hot", Level.WARNING));
+    }
+
+    @Test
+    public void match_shouldAgreeWithLinearScan() {
+        // GIVEN a bunch of random themes and messages over a small alphabet, so that tokens collide often:
+        Random random = new Random(42);
+        Level[] levels = {null, Level.INFO, Level.WARNING, Level.SEVERE};
+        for (int round = 0; round < 200; round++) {
+            List<LogConsoleStyle> styles = new ArrayList<>();
+            styles.add(style(null, false, null));
+            int styleCount = 1 + random.nextInt(8);
+            for (int i = 0; i < styleCount; i++) {
+                String token = random.nextInt(4) == 0 ? null : randomString(random, 1 + random.nextInt(3));
+                styles.add(style(token, random.nextBoolean(), levels[random.nextInt(levels.length)]));
+            }
+            LogStyleMatcher matcher = compile(styles.subList(1, styles.size()).toArray(new LogConsoleStyle[0]));
+
+            // WHEN we match messages:
+            // THEN the result should be the same as checking each style in turn:
+            for (int i = 0; i < 50; i++) {
+                String message = randomString(random, random.nextInt(12));
+                Level level = levels[random.nextInt(levels.length)];
+                assertEquals(linearScan(styles, message, level), matcher.match(message, level),
+                             "message \"" + message + "\" at " + level);
+            }
+        }
+    }
+
+    /**
+     * Checks each style in turn, as LogConsoleTheme did before it had a compiled matcher.
+     */
+    private static int linearScan(List<LogConsoleStyle> styles, String message, Level level) {
+        int weakMatch = -1;
+        for (int i = 0; i < styles.size(); i++) {
+            LogConsoleStyle style = styles.get(i);
+            String token = style.getLogToken();
+            if (!token.isEmpty()) {
+                boolean found = style.isLogTokenCaseSensitive()
+                        ? message.contains(token)
+                        : message.toLowerCase().contains(token.toLowerCase());
+                if (found) {
+                    return i;
+                }
+            }
+            if (style.getLogLevel() != null && style.getLogLevel().equals(level) && weakMatch == -1) {
+                weakMatch = i;
+            }
+        }
+        return weakMatch == -1 ? 0 : weakMatch;
+    }
+
+    private static String randomString(Random random, int length) {
+        String alphabet = "abAB";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compiles the given styles, preceded by a default style with no matchers.
+     */
+    private static LogStyleMatcher compile(LogConsoleStyle... styles) {
+        List<String> names = new ArrayList<>();
+        List<LogConsoleStyle> list = new ArrayList<>();
+        names.add(LogConsoleTheme.DEFAULT_STYLE_NAME);
+        list.add(new LogConsoleStyle());
+        for (int i = 0; i < styles.length; i++) {
+            names.add("style" + i);
+            list.add(styles[i]);
+        }
+        return new LogStyleMatcher(names, list);
+    }
+
+    private static LogConsoleStyle style(String token, boolean caseSensitive, Level level) {
+        LogConsoleStyle style = new LogConsoleStyle();
+        style.setLogToken(token, caseSensitive);
+        style.setLogLevel(level);
+        return style;
+    }
+}
@@ -0,0 +1,110 @@
+package ca.corbett.extras.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscQueueTest {
+
+    @Test
+    public void poll_withEmptyQueue_shouldReturnNull() {
+        MpscQueue<String> queue = new MpscQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void poll_shouldReturnElementsInOrder() {
+        // GIVEN a queue with a few elements:
+        MpscQueue<String> queue = new MpscQueue<>();
+        queue.offer("one");
+        queue.offer("two");
+        queue.offer("three");
+
+        // WHEN we poll them:
+        // THEN they should come out in the order they went in:
+        assertEquals("one", queue.poll());
+        assertEquals("two", queue.poll());
+        assertEquals("three", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void drainTo_shouldRespectMaxElements() {
+        // GIVEN a queue with ten elements:
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+
+        // WHEN we drain at most four of them:
+        List<Integer> drained = new ArrayList<>();
+        int count = queue.drainTo(drained, 4);
+
+        // THEN only the four oldest should be taken:
+        assertEquals(4, count);
+        assertEquals(List.of(0, 1, 2, 3), drained);
+        assertEquals(4, queue.poll());
+    }
+
+    @Test
+    public void offer_withNull_shouldThrow() {
+        MpscQueue<String> queue = new MpscQueue<>();
+        assertThrows(IllegalArgumentException.class, () -> queue.offer(null));
+    }
+
+    @Test
+    public void offer_fromManyThreads_shouldLoseNothing() throws Exception {
+        // GIVEN several producer threads, each adding a numbered run of elements:
+        final int producers = 4;
+        final int perProducer = 20_000;
+        MpscQueue<int[]> queue = new MpscQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(new int[]{producer, i});
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // WHEN we consume concurrently until everything has arrived:
+        start.countDown();
+        int[] nextExpected = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int[] element = queue.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // THEN each producer's elements should arrive in the order they were added:
+            assertEquals(nextExpected[element[0]], element[1]);
+            nextExpected[element[0]]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
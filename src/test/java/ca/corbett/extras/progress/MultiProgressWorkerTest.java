@@ -0,0 +1,91 @@
+package ca.corbett.extras.progress;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiProgressWorkerTest {
+
+    @Test
+    public void addPriorityProgressListener_shouldBeNotifiedFirst() {
+        // GIVEN a worker with a regular listener and a priority listener:
+        List<String> calls = new ArrayList<>();
+        MultiProgressWorker worker = new TestWorker();
+        worker.addProgressListener(new RecordingListener("regular", calls, true));
+        worker.addPriorityProgressListener(new RecordingListener("priority", calls, true));
+
+        // WHEN we fire an event:
+        worker.fireMinorProgressUpdate(0, 0, "test");
+
+        // THEN the priority listener should hear about it first:
+        assertEquals(List.of("priority", "regular"), calls);
+    }
+
+    @Test
+    public void fireMinorProgressUpdate_withCancelingListener_shouldStopAndReturnFalse() {
+        // GIVEN a worker whose first listener wants to cancel:
+        List<String> calls = new ArrayList<>();
+        MultiProgressWorker worker = new TestWorker();
+        worker.addProgressListener(new RecordingListener("cancel", calls, false));
+        worker.addProgressListener(new RecordingListener("other", calls, true));
+
+        // WHEN we fire an event:
+        boolean shouldContinue = worker.fireMinorProgressUpdate(0, 0, "test");
+
+        // THEN the worker should be told to stop, and later listeners should not be asked:
+        assertFalse(shouldContinue);
+        assertEquals(List.of("cancel"), calls);
+    }
+
+    @Test
+    public void removeProgressListener_duringEvent_shouldNotAffectCurrentEvent() {
+        // GIVEN a listener that removes another listener while handling an event:
+        List<String> calls = new ArrayList<>();
+        MultiProgressWorker worker = new TestWorker();
+        RecordingListener second = new RecordingListener("second", calls, true);
+        worker.addProgressListener(new RecordingListener("first", calls, true) {
+            @Override
+            public boolean minorProgressUpdate(int majorStep, int minorStep, String message) {
+                worker.removeProgressListener(second);
+                return super.minorProgressUpdate(majorStep, minorStep, message);
+            }
+        });
+        worker.addProgressListener(second);
+
+        // WHEN we fire two events:
+        assertTrue(worker.fireMinorProgressUpdate(0, 0, "one"));
+        assertTrue(worker.fireMinorProgressUpdate(0, 1, "two"));
+
+        // THEN the removed listener should only have seen the first:
+        assertEquals(List.of("first", "second", "first"), calls);
+    }
+
+    private static class TestWorker extends MultiProgressWorker {
+        @Override
+        public void run() {
+        }
+    }
+
+    private static class RecordingListener extends MultiProgressAdapter {
+        private final String name;
+        private final List<String> calls;
+        private final boolean shouldContinue;
+
+        RecordingListener(String name, List<String> calls, boolean shouldContinue) {
+            this.name = name;
+            this.calls = calls;
+            this.shouldContinue = shouldContinue;
+        }
+
+        @Override
+        public boolean minorProgressUpdate(int majorStep, int minorStep, String message) {
+            calls.add(name);
+            return shouldContinue;
+        }
+    }
+}
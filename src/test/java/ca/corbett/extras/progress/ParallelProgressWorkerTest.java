@@ -0,0 +1,228 @@
+package ca.corbett.extras.progress;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelProgressWorkerTest {
+
+    @Test
+    public void run_withAllStepsSucceeding_shouldRunEachStepOnceAndComplete() {
+        // GIVEN a worker with lots of major steps:
+        Set<Integer> stepsRun = ConcurrentHashMap.newKeySet();
+        ParallelProgressWorker worker = new TestWorker(4, 50, 10) {
+            @Override
+            protected void runMajorStep(int majorStep, Subtask subtask) {
+                stepsRun.add(majorStep);
+                super.runMajorStep(majorStep, subtask);
+            }
+        };
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        worker.addProgressListener(listener);
+
+        // WHEN we run it:
+        worker.run();
+
+        // THEN every step should have run, and completion should be reported:
+        assertEquals(50, stepsRun.size());
+        assertEquals(50, listener.totalMajorSteps);
+        assertEquals(500, listener.totalMinorSteps);
+        assertTrue(listener.completed.get());
+        assertFalse(listener.canceled.get());
+    }
+
+    @Test
+    public void run_withVirtualThreads_shouldComplete() {
+        // GIVEN a worker that runs each step on a virtual thread:
+        ParallelProgressWorker worker = new TestWorker(0, 20, 5);
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        worker.addProgressListener(listener);
+
+        // WHEN we run it:
+        worker.run();
+
+        // THEN it should complete:
+        assertTrue(listener.completed.get());
+    }
+
+    @Test
+    public void run_withListenerCanceling_shouldStopAllSubtasks() {
+        // GIVEN a worker whose steps would never finish on their own, and a listener that cancels:
+        AtomicInteger stepsStarted = new AtomicInteger();
+        ParallelProgressWorker worker = new TestWorker(2, 100, 1) {
+            @Override
+            protected void runMajorStep(int majorStep, Subtask subtask) {
+                stepsStarted.incrementAndGet();
+                while (subtask.minorStepComplete()) {
+                    Thread.onSpinWait();
+                }
+            }
+        };
+        RecordingListener listener = new RecordingListener(2);
+        worker.addProgressListener(listener);
+
+        // WHEN we run it:
+        worker.run();
+
+        // THEN it should stop, without starting the remaining steps, and report cancellation:
+        assertTrue(worker.isCanceled());
+        assertTrue(listener.canceled.get());
+        assertFalse(listener.completed.get());
+        assertTrue(stepsStarted.get() < 100);
+    }
+
+    @Test
+    public void run_withFailingStep_shouldReportErrorAndCarryOn() {
+        // GIVEN a worker with one step that fails:
+        ParallelProgressWorker worker = new TestWorker(2, 10, 1) {
+            @Override
+            protected void runMajorStep(int majorStep, Subtask subtask) {
+                if (majorStep == 3) {
+                    throw new IllegalStateException("boom");
+                }
+                super.runMajorStep(majorStep, subtask);
+            }
+        };
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        worker.addProgressListener(listener);
+
+        // WHEN we run it:
+        worker.run();
+
+        // THEN the error should be reported, and the rest should complete:
+        assertEquals("boom", listener.lastError);
+        assertTrue(listener.completed.get());
+    }
+
+    @Test
+    public void run_withFailingStepWithoutMessage_shouldReportExceptionType() {
+        // GIVEN a worker with one step that fails with no message:
+        ParallelProgressWorker worker = new TestWorker(2, 10, 1) {
+            @Override
+            protected void runMajorStep(int majorStep, Subtask subtask) {
+                if (majorStep == 3) {
+                    throw new NullPointerException();
+                }
+                super.runMajorStep(majorStep, subtask);
+            }
+        };
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        worker.addProgressListener(listener);
+
+        // WHEN we run it:
+        worker.run();
+
+        // THEN the error should name the exception rather than just saying "null":
+        assertEquals("java.lang.NullPointerException", listener.lastError);
+    }
+
+    @Test
+    public void formatThroughput_shouldShowRateAndTimeLeft() {
+        assertEquals("100/s, about 9s left", ParallelProgressWorker.formatThroughput(100, 1000, 1000));
+        assertEquals("0.5/s, about 1m0s left", ParallelProgressWorker.formatThroughput(1, 31, 2000));
+        assertEquals("", ParallelProgressWorker.formatThroughput(0, 1000, 1000));
+    }
+
+    @Test
+    public void formatThroughput_withCommaDecimalLocale_shouldStillUseDot() {
+        Locale original = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals("0.5/s, about 1m0s left", ParallelProgressWorker.formatThroughput(1, 31, 2000));
+        }
+        finally {
+            Locale.setDefault(original);
+        }
+    }
+
+    @Test
+    public void constructor_withNegativeParallelism_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new TestWorker(-1, 1, 1));
+    }
+
+    private static class TestWorker extends ParallelProgressWorker {
+        private final int majorSteps;
+        private final int minorSteps;
+
+        TestWorker(int parallelism, int majorSteps, int minorSteps) {
+            super(parallelism);
+            this.majorSteps = majorSteps;
+            this.minorSteps = minorSteps;
+        }
+
+        @Override
+        protected int getMajorStepCount() {
+            return majorSteps;
+        }
+
+        @Override
+        protected int getMinorStepCount(int majorStep) {
+            return minorSteps;
+        }
+
+        @Override
+        protected void runMajorStep(int majorStep, Subtask subtask) {
+            for (int i = 0; i < minorSteps && subtask.minorStepComplete(); i++) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Records what it hears, and cancels after the given number of progress updates.
+     */
+    private static class RecordingListener extends MultiProgressAdapter {
+        private final int updatesBeforeCancel;
+        private final AtomicInteger updates = new AtomicInteger();
+        final AtomicBoolean completed = new AtomicBoolean();
+        final AtomicBoolean canceled = new AtomicBoolean();
+        volatile int totalMajorSteps;
+        volatile int totalMinorSteps;
+        volatile String lastError;
+
+        RecordingListener(int updatesBeforeCancel) {
+            this.updatesBeforeCancel = updatesBeforeCancel;
+        }
+
+        @Override
+        public void progressBegins(int totalMajorSteps) {
+            this.totalMajorSteps = totalMajorSteps;
+        }
+
+        @Override
+        public boolean majorProgressUpdate(int majorStep, int totalMinorSteps, String message) {
+            this.totalMinorSteps = totalMinorSteps;
+            return updates.incrementAndGet() < updatesBeforeCancel;
+        }
+
+        @Override
+        public boolean minorProgressUpdate(int majorStep, int minorStep, String message) {
+            return updates.incrementAndGet() < updatesBeforeCancel;
+        }
+
+        @Override
+        public boolean progressError(String errorSource, String errorDetails) {
+            lastError = errorDetails;
+            return true;
+        }
+
+        @Override
+        public void progressComplete() {
+            completed.set(true);
+        }
+
+        @Override
+        public void progressCanceled() {
+            canceled.set(true);
+        }
+    }
+}
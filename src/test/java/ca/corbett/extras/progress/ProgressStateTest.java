@@ -0,0 +1,58 @@
+package ca.corbett.extras.progress;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ProgressStateTest {
+
+    @Test
+    public void minorUpdate_manyTimes_shouldKeepOnlyLatest() {
+        // GIVEN a state in the middle of a major step:
+        ProgressState state = new ProgressState();
+        state.begin(3);
+        state.majorUpdate(0, 1000, "major");
+        long version = state.getVersion();
+
+        // WHEN the worker reports lots of minor progress between samples:
+        for (int i = 0; i < 1000; i++) {
+            state.minorUpdate(i, "file " + i);
+        }
+
+        // THEN a sample should see only the latest, and know that something changed:
+        assertNotEquals(version, state.getVersion());
+        assertEquals(999, state.getMinorStep());
+        assertEquals("file 999", state.getMinorMessage());
+        assertEquals(0, state.getMajorStep());
+        assertEquals(1000, state.getTotalMinorSteps());
+    }
+
+    @Test
+    public void majorUpdate_shouldResetMinorProgress() {
+        // GIVEN a state with some minor progress:
+        ProgressState state = new ProgressState();
+        state.begin(2);
+        state.majorUpdate(0, 10, "first");
+        state.minorUpdate(5, "halfway");
+
+        // WHEN the next major step begins:
+        state.majorUpdate(1, 20, "second");
+
+        // THEN minor progress should start over:
+        assertEquals(1, state.getMajorStep());
+        assertEquals("second", state.getMajorMessage());
+        assertEquals(20, state.getTotalMinorSteps());
+        assertEquals(-1, state.getMinorStep());
+        assertEquals("", state.getMinorMessage());
+    }
+
+    @Test
+    public void updates_withNullMessage_shouldStoreEmptyString() {
+        ProgressState state = new ProgressState();
+        state.majorUpdate(0, 1, null);
+        state.minorUpdate(0, null);
+        assertEquals("", state.getMajorMessage());
+        assertEquals("", state.getMinorMessage());
+    }
+}